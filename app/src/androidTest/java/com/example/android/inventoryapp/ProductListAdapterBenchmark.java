@@ -0,0 +1,111 @@
+package com.example.android.inventoryapp;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures binding rows of the product list: the time per bind and the objects it allocates
+ * on the main thread. Results are logged under the test's tag, e.g.
+ * {@code adb logcat -s ProductListAdapterBenchmark}, and checked against generous bounds.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductListAdapterBenchmark {
+    private static final String LOG_TAG = ProductListAdapterBenchmark.class.getSimpleName();
+    private static final int PRODUCTS = ProductPager.PAGE_SIZE;
+    private static final int WARMUP_BINDS = 1000;
+    private static final int BINDS = 10000;
+    private static final long LOAD_TIMEOUT_MS = 10000;
+    private static final String NAME = "Adapter benchmark product";
+    // A bind copies three texts and finds the thumbnail already shown, well below this.
+    private static final long MAX_BIND_NS = 200000;
+
+    @Rule
+    public final ActivityTestRule<MainActivity> activityRule =
+            new ActivityTestRule<>(MainActivity.class, false, false);
+
+    private ContentResolver resolver;
+
+    @Before
+    public void insertProducts() {
+        resolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+        // Leftovers of a run that didn't get to clean up, the rest of the catalog stays.
+        deleteProducts();
+        ContentValues[] products = new ContentValues[PRODUCTS];
+        for (int i = 0; i < PRODUCTS; i++) {
+            products[i] = new ContentValues();
+            products[i].put(ProductEntry.COLUMN_PRODUCT_PICTURE, "android.resource://test/picture");
+            products[i].put(ProductEntry.COLUMN_PRODUCT_NAME, NAME);
+            products[i].put(ProductEntry.COLUMN_PRODUCT_PRICE_CENTS, i * 100 + 99);
+            products[i].put(ProductEntry.COLUMN_PRODUCT_QUANTITY, i);
+            products[i].put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME, "Supplier");
+            products[i].put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL, "supplier@example.com");
+        }
+        resolver.bulkInsert(ProductEntry.CONTENT_URI, products);
+    }
+
+    @After
+    public void deleteProducts() {
+        resolver.delete(ProductEntry.CONTENT_URI, ProductEntry.COLUMN_PRODUCT_NAME + "=?",
+                new String[]{NAME});
+    }
+
+    @Test
+    public void bindRows() throws Throwable {
+        final MainActivity activity = activityRule.launchActivity(null);
+        final RecyclerView list = (RecyclerView) activity.findViewById(R.id.listView);
+        long deadline = SystemClock.elapsedRealtime() + LOAD_TIMEOUT_MS;
+        while (activity.productListAdapter.getItemCount() < PRODUCTS) {
+            assertTrue("First page not loaded", SystemClock.elapsedRealtime() < deadline);
+            SystemClock.sleep(50);
+        }
+
+        final long[] bindNs = new long[1];
+        final int[] allocations = new int[1];
+        activityRule.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                ProductListAdapter adapter = activity.productListAdapter;
+                ProductListAdapter.ViewHolder holder = adapter.onCreateViewHolder(list, 0);
+                for (int i = 0; i < WARMUP_BINDS; i++) {
+                    adapter.onBindViewHolder(holder, i % PRODUCTS);
+                }
+
+                Debug.resetThreadAllocCount();
+                Debug.startAllocCounting();
+                long start = System.nanoTime();
+                for (int i = 0; i < BINDS; i++) {
+                    adapter.onBindViewHolder(holder, i % PRODUCTS);
+                }
+                long elapsed = System.nanoTime() - start;
+                Debug.stopAllocCounting();
+
+                bindNs[0] = elapsed / BINDS;
+                allocations[0] = Debug.getThreadAllocCount();
+                Log.i(LOG_TAG, "bind: " + bindNs[0] + " ns/row, "
+                        + (float) allocations[0] / BINDS + " allocations/row, "
+                        + Debug.getThreadAllocSize() / BINDS + " bytes/row");
+            }
+        });
+        assertTrue(bindNs[0] + " ns per bind", bindNs[0] < MAX_BIND_NS);
+        // Texts and thumbnail keys are made when the page is loaded, a bind only hands them out.
+        assertEquals(allocations[0] + " allocations in " + BINDS + " binds", 0, allocations[0]);
+    }
+}
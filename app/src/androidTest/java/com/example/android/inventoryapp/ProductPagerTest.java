@@ -0,0 +1,242 @@
+package com.example.android.inventoryapp;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.mock.MockContentResolver;
+
+import com.example.android.inventoryapp.data.ProductContract;
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp.data.ProductProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a sale is reported as a change of one row, loaded with a query for that product
+ * alone instead of reloading the pages, and that the list survives shrinking below the pages
+ * it is scrolled to.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductPagerTest {
+    private static final long TIMEOUT_SECONDS = 10;
+    private static final int THUMBNAIL_SIZE = 96;
+    // Products the shrink test adds after the existing ones, enough for pages past the window.
+    private static final int SHRINK_ROWS = 6 * ProductPager.PAGE_SIZE;
+    private static final String SHRINK_NAME = "Pager shrink test product";
+
+    private Context context;
+    private ContentResolver resolver;
+    private Uri productUri;
+    private final List<Uri> queriedUris = new CopyOnWriteArrayList<>();
+    private ProductPager pager;
+    private RecordingListener listener;
+
+    @Before
+    public void insertProduct() {
+        context = InstrumentationRegistry.getTargetContext();
+        resolver = context.getContentResolver();
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_PRODUCT_PICTURE, "android.resource://test/picture");
+        values.put(ProductEntry.COLUMN_PRODUCT_NAME, "Pager test product");
+        values.put(ProductEntry.COLUMN_PRODUCT_PRICE_CENTS, 100);
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 10);
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME, "Supplier");
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL, "supplier@example.com");
+        productUri = resolver.insert(ProductEntry.CONTENT_URI, values);
+        assertNotNull(productUri);
+    }
+
+    @After
+    public void deleteProduct() {
+        if (pager != null) {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    pager.stop();
+                }
+            });
+        }
+        resolver.delete(productUri, null, null);
+        resolver.delete(ProductEntry.CONTENT_URI, ProductEntry.COLUMN_PRODUCT_NAME + "=?",
+                new String[]{SHRINK_NAME});
+    }
+
+    @Test
+    public void sale_requeriesOnlyTheSoldProduct() throws Exception {
+        // The pager reads through a provider that records every query URI.
+        ProductProvider provider = new ProductProvider() {
+            @Override
+            public Cursor query(Uri uri, String[] projection, String selection,
+                                String[] selectionArgs, String sortOrder) {
+                queriedUris.add(uri);
+                return super.query(uri, projection, selection, selectionArgs, sortOrder);
+            }
+
+            @Override
+            public Cursor query(Uri uri, String[] projection, String selection,
+                                String[] selectionArgs, String sortOrder,
+                                CancellationSignal cancellationSignal) {
+                queriedUris.add(uri);
+                return super.query(uri, projection, selection, selectionArgs, sortOrder,
+                        cancellationSignal);
+            }
+        };
+        provider.attachInfo(context, null);
+        final MockContentResolver recordingResolver = new MockContentResolver(context);
+        recordingResolver.addProvider(ProductContract.CONTENT_AUTHORITY, provider);
+
+        listener = new RecordingListener();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                pager = new ProductPager(recordingResolver, listener, THUMBNAIL_SIZE);
+                pager.start();
+            }
+        });
+        assertTrue(listener.loaded.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        queriedUris.clear();
+
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.SELL_AMOUNT, 1);
+        assertEquals(9, resolver.update(Uri.withAppendedPath(productUri, ProductContract.PATH_SELL),
+                values, null, null));
+
+        assertTrue(listener.rowChanged.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, queriedUris.size());
+        assertEquals(productUri, queriedUris.get(0));
+        assertEquals(0, listener.structuralChanges);
+    }
+
+    @Test
+    public void deleteWhileScrolledDeep_shrinksTheList() throws Exception {
+        int existingRows = countProducts();
+        ContentValues[] products = new ContentValues[SHRINK_ROWS];
+        for (int i = 0; i < SHRINK_ROWS; i++) {
+            ContentValues values = new ContentValues();
+            values.put(ProductEntry.COLUMN_PRODUCT_PICTURE, "android.resource://test/picture");
+            values.put(ProductEntry.COLUMN_PRODUCT_NAME, SHRINK_NAME);
+            values.put(ProductEntry.COLUMN_PRODUCT_PRICE_CENTS, 100);
+            values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 10);
+            values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME, "Supplier");
+            values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL, "supplier@example.com");
+            products[i] = values;
+        }
+        assertEquals(SHRINK_ROWS, resolver.bulkInsert(ProductEntry.CONTENT_URI, products));
+
+        listener = new RecordingListener();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                pager = new ProductPager(resolver, listener, THUMBNAIL_SIZE);
+                pager.start();
+            }
+        });
+        // Scroll page by page to the last one, the inserted products are at the end.
+        int lastPage = (existingRows + SHRINK_ROWS - 1) / ProductPager.PAGE_SIZE;
+        for (int page = 0; page <= lastPage; page++) {
+            waitForPage(page * ProductPager.PAGE_SIZE);
+        }
+
+        assertEquals(SHRINK_ROWS, resolver.delete(ProductEntry.CONTENT_URI,
+                ProductEntry.COLUMN_PRODUCT_NAME + "=?", new String[]{SHRINK_NAME}));
+        assertTrue(listener.removed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        final int[] rowCount = new int[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                rowCount[0] = pager.getRowCount();
+            }
+        });
+        assertTrue(rowCount[0] + " rows after the delete", rowCount[0] <= existingRows);
+    }
+
+    private int countProducts() {
+        Cursor cursor = resolver.query(ProductEntry.CONTENT_URI, new String[]{ProductEntry._ID},
+                null, null, null);
+        assertNotNull(cursor);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Shows the row on the main thread until its page has been loaded.
+    private void waitForPage(final int position) {
+        final boolean[] loaded = new boolean[1];
+        long deadline = SystemClock.elapsedRealtime() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        while (!loaded[0]) {
+            assertTrue("Row " + position + " not loaded", SystemClock.elapsedRealtime() < deadline);
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    loaded[0] = position < pager.getRowCount() && pager.getPageFor(position) != null;
+                }
+            });
+            if (!loaded[0]) {
+                SystemClock.sleep(20);
+            }
+        }
+    }
+
+    private static class RecordingListener implements ProductPager.Listener {
+        final CountDownLatch loaded = new CountDownLatch(1);
+        final CountDownLatch rowChanged = new CountDownLatch(1);
+        final CountDownLatch removed = new CountDownLatch(1);
+        // Written on the main thread, read by the test.
+        volatile int structuralChanges;
+        private boolean started;
+
+        @Override
+        public void onPagesChanged() {
+            structuralChanges++;
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            if (started) {
+                structuralChanges++;
+            } else {
+                // The first page arriving.
+                started = true;
+                loaded.countDown();
+            }
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            structuralChanges++;
+            removed.countDown();
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            structuralChanges++;
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            if (count == 1) {
+                rowChanged.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.android.inventoryapp;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Looper;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.mock.MockContentResolver;
+
+import com.example.android.inventoryapp.data.ProductContract;
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp.data.ProductProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Queues writes from the main thread and checks that the provider only ever sees them on the
+ * writer thread, that the results come back on the main thread, and that quick sales of one
+ * product are written as one.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductWriterTest {
+    private static final long TIMEOUT_SECONDS = 10;
+    private static final int STOCK = 5;
+
+    // Whether each provider call ran on the main thread, and every sell URI written.
+    private final List<Boolean> onMainThread = new CopyOnWriteArrayList<>();
+    private final List<Uri> sellUris = new CopyOnWriteArrayList<>();
+    // When set, an update that isn't a sale waits for it, holding up the writer.
+    private volatile CountDownLatch releaseWriter;
+    private ProductWriter writer;
+
+    @Before
+    public void createWriter() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        ProductProvider provider = new ProductProvider() {
+            @Override
+            public Uri insert(Uri uri, ContentValues values) {
+                onMainThread.add(isMainThread());
+                return super.insert(uri, values);
+            }
+
+            @Override
+            public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+                onMainThread.add(isMainThread());
+                if (uri.getPath().endsWith(ProductContract.PATH_SELL)) {
+                    sellUris.add(uri);
+                } else if (releaseWriter != null) {
+                    try {
+                        releaseWriter.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.update(uri, values, selection, selectionArgs);
+            }
+
+            @Override
+            public int delete(Uri uri, String selection, String[] selectionArgs) {
+                onMainThread.add(isMainThread());
+                return super.delete(uri, selection, selectionArgs);
+            }
+        };
+        provider.attachInfo(context, null);
+        MockContentResolver resolver = new MockContentResolver(context);
+        resolver.addProvider(ProductContract.CONTENT_AUTHORITY, provider);
+        writer = new ProductWriter(resolver);
+    }
+
+    @Test
+    public void writes_neverRunOnTheMainThread() throws Exception {
+        final Uri productUri = insert();
+        final CountDownLatch done = new CountDownLatch(2);
+        final AtomicReference<Boolean> callbackOnMainThread = new AtomicReference<>();
+        final AtomicInteger rowsDeleted = new AtomicInteger();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                ContentValues values = new ContentValues();
+                values.put(ProductEntry.COLUMN_PRODUCT_NAME, "Renamed");
+                writer.update(productUri, values, new ProductWriter.Callback<Integer>() {
+                    @Override
+                    public void onWriteFinished(Integer rows) {
+                        callbackOnMainThread.set(isMainThread());
+                        done.countDown();
+                    }
+                });
+                writer.delete(productUri, new ProductWriter.Callback<Integer>() {
+                    @Override
+                    public void onWriteFinished(Integer rows) {
+                        rowsDeleted.set(rows);
+                        done.countDown();
+                    }
+                });
+            }
+        });
+
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(callbackOnMainThread.get());
+        assertEquals(1, rowsDeleted.get());
+        assertEquals(3, onMainThread.size());
+        assertFalse(onMainThread.contains(true));
+    }
+
+    @Test
+    public void quickSales_areWrittenTogether() throws Exception {
+        final Uri productUri = insert();
+        final long id = Long.parseLong(productUri.getLastPathSegment());
+        final int sales = STOCK + 2;
+        final CountDownLatch done = new CountDownLatch(sales);
+        final AtomicInteger soldOut = new AtomicInteger();
+        final ProductWriter.Callback<Integer> callback = new ProductWriter.Callback<Integer>() {
+            @Override
+            public void onWriteFinished(Integer remaining) {
+                if (remaining < 0) {
+                    soldOut.incrementAndGet();
+                }
+                done.countDown();
+            }
+        };
+        releaseWriter = new CountDownLatch(1);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                // Holds up the writer, so all the sales are queued behind it.
+                ContentValues values = new ContentValues();
+                values.put(ProductEntry.COLUMN_PRODUCT_NAME, "Busy");
+                writer.update(productUri, values, null);
+                for (int i = 0; i < sales; i++) {
+                    writer.sell(id, 1, callback);
+                }
+            }
+        });
+        releaseWriter.countDown();
+
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        // One sale of everything, too big, then one by one until the stock runs out.
+        assertEquals(1 + sales, sellUris.size());
+        assertEquals(sales - STOCK, soldOut.get());
+        assertEquals(0, queryQuantity(productUri));
+        writer.delete(productUri, null);
+    }
+
+    private Uri insert() throws InterruptedException {
+        final CountDownLatch inserted = new CountDownLatch(1);
+        final AtomicReference<Uri> productUri = new AtomicReference<>();
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_PRODUCT_PICTURE, "android.resource://test/picture");
+        values.put(ProductEntry.COLUMN_PRODUCT_NAME, "Writer test product");
+        values.put(ProductEntry.COLUMN_PRODUCT_PRICE_CENTS, 100);
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, STOCK);
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME, "Supplier");
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL, "supplier@example.com");
+        writer.insert(values, new ProductWriter.Callback<Uri>() {
+            @Override
+            public void onWriteFinished(Uri uri) {
+                productUri.set(uri);
+                inserted.countDown();
+            }
+        });
+        assertTrue(inserted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertNotNull(productUri.get());
+        return productUri.get();
+    }
+
+    private static int queryQuantity(Uri productUri) {
+        Cursor cursor = InstrumentationRegistry.getTargetContext().getContentResolver().query(
+                productUri, new String[]{ProductEntry.COLUMN_PRODUCT_QUANTITY}, null, null, null);
+        assertNotNull(cursor);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+}
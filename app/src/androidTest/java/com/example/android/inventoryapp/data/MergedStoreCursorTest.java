@@ -0,0 +1,92 @@
+package com.example.android.inventoryapp.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Merges sorted cursors of several stores and checks the order of the rows, also when the
+ * merged cursor is moved backwards and with a limit.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MergedStoreCursorTest {
+    private static final String[] COLUMNS = {ProductEntry._ID, ProductEntry.COLUMN_PRODUCT_NAME};
+
+    @Test
+    public void rows_comeInSortOrderWithTheirStore() {
+        Cursor merged = new MergedStoreCursor(new Cursor[]{
+                products(1, "apple", 4, "Cherry"),
+                products(1, "Banana", 2, "banana", 3, "date"),
+                products()
+        }, new String[]{"a", "b", "c"}, 1, true, false, -1);
+        try {
+            assertEquals(5, merged.getCount());
+            assertEquals(COLUMNS.length + 1, merged.getColumnCount());
+            assertRow(merged, 0, "apple", "a");
+            // Equal names keep the order of their store.
+            assertRow(merged, 1, "Banana", "b");
+            assertRow(merged, 2, "banana", "b");
+            assertRow(merged, 3, "Cherry", "a");
+            assertRow(merged, 4, "date", "b");
+            // Rows merged already are read again from their store.
+            assertRow(merged, 0, "apple", "a");
+            assertRow(merged, 3, "Cherry", "a");
+        } finally {
+            merged.close();
+        }
+    }
+
+    @Test
+    public void limit_andDescendingOrder() {
+        Cursor merged = new MergedStoreCursor(new Cursor[]{
+                products(7, "c", 2, "a"),
+                products(9, "d", 5, "b")
+        }, new String[]{"a", "b"}, 0, false, true, 3);
+        try {
+            assertEquals(3, merged.getCount());
+            long[] ids = new long[3];
+            while (merged.moveToNext()) {
+                ids[merged.getPosition()] = merged.getLong(0);
+            }
+            assertEquals(9, ids[0]);
+            assertEquals(7, ids[1]);
+            assertEquals(5, ids[2]);
+        } finally {
+            merged.close();
+        }
+    }
+
+    @Test
+    public void compareKeys_ordersLikeSqlite() {
+        assertTrue(MergedStoreCursor.compareKeys(null, 1L, false) < 0);
+        assertTrue(MergedStoreCursor.compareKeys(10L, "1", false) < 0);
+        assertTrue(MergedStoreCursor.compareKeys(2L, 2.5, false) < 0);
+        assertTrue(MergedStoreCursor.compareKeys("B", "a", false) < 0);
+        assertEquals(0, MergedStoreCursor.compareKeys("B", "b", true));
+        // NOCASE only folds ASCII.
+        assertTrue(MergedStoreCursor.compareKeys("\u00c9", "\u00e9", true) < 0);
+    }
+
+    private static void assertRow(Cursor merged, int position, String name, String store) {
+        assertTrue(merged.moveToPosition(position));
+        assertEquals(name, merged.getString(1));
+        assertEquals(store, merged.getString(merged.getColumnIndexOrThrow(ProductEntry.COLUMN_STORE)));
+    }
+
+    // Rows given as ID and name pairs.
+    private static Cursor products(Object... rows) {
+        MatrixCursor cursor = new MatrixCursor(COLUMNS);
+        for (int i = 0; i < rows.length; i += 2) {
+            cursor.addRow(new Object[]{((Integer) rows[i]).longValue(), rows[i + 1]});
+        }
+        return cursor;
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.android.inventoryapp.data;
+
+import com.example.android.inventoryapp.sync.SyncChange;
+import com.example.android.inventoryapp.sync.SyncCodec;
+import com.example.android.inventoryapp.sync.SyncRequest;
+import com.example.android.inventoryapp.sync.SyncResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Inventory server for the sync tests, speaking just enough HTTP on a local socket for
+ * HttpURLConnection. Keeps the version and the writing device of every field, and when two
+ * devices change the same field, the one that reached the server first wins. Counts every byte
+ * that crosses the socket, headers included.
+ */
+final class MockSyncServer {
+    // Device of the changes made through change() and delete(), standing in for another phone.
+    static final String OTHER_DEVICE = "other";
+
+    private static final class Row {
+        final HashMap<String, Object> fields = new HashMap<>();
+        final HashMap<String, Long> fieldVersions = new HashMap<>();
+        final HashMap<String, String> fieldDevices = new HashMap<>();
+        long version;
+        boolean deleted;
+        String deletedBy;
+    }
+
+    private final int batchSize;
+    private final ServerSocket socket;
+    private final Thread thread;
+
+    // Guarded by this.
+    private final HashMap<String, Row> rows = new HashMap<>();
+    // Sync IDs by the version of their last change.
+    private final TreeMap<Long, String> changes = new TreeMap<>();
+    private long sequence;
+    private long bytesReceived;
+    private long bytesSent;
+
+    MockSyncServer(int batchSize) throws IOException {
+        this.batchSize = batchSize;
+        socket = new ServerSocket(0, 8, InetAddress.getByName("127.0.0.1"));
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serve();
+            }
+        }, "MockSyncServer");
+        thread.start();
+    }
+
+    URL getUrl() throws IOException {
+        return new URL("http://127.0.0.1:" + socket.getLocalPort() + "/sync");
+    }
+
+    void stop() throws IOException, InterruptedException {
+        socket.close();
+        thread.join();
+    }
+
+    synchronized long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    synchronized long getBytesSent() {
+        return bytesSent;
+    }
+
+    synchronized void resetByteCounts() {
+        bytesReceived = 0;
+        bytesSent = 0;
+    }
+
+    synchronized int countProducts() {
+        int count = 0;
+        for (Row row : rows.values()) {
+            if (!row.deleted) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    synchronized Object getField(String syncId, String field) {
+        Row row = rows.get(syncId);
+        return row != null ? row.fields.get(field) : null;
+    }
+
+    synchronized boolean isDeleted(String syncId) {
+        Row row = rows.get(syncId);
+        return row != null && row.deleted;
+    }
+
+    /**
+     * Changes a field of a product as another device would.
+     */
+    synchronized void change(String syncId, String field, Object value) {
+        Row row = rows.get(syncId);
+        row.fields.put(field, value);
+        long version = nextVersion(syncId, row);
+        row.fieldVersions.put(field, version);
+        row.fieldDevices.put(field, OTHER_DEVICE);
+    }
+
+    synchronized void delete(String syncId) {
+        Row row = rows.get(syncId);
+        row.deleted = true;
+        row.deletedBy = OTHER_DEVICE;
+        nextVersion(syncId, row);
+    }
+
+    private long nextVersion(String syncId, Row row) {
+        changes.remove(row.version);
+        row.version = ++sequence;
+        changes.put(row.version, syncId);
+        return row.version;
+    }
+
+    private void serve() {
+        while (true) {
+            Socket connection;
+            try {
+                connection = socket.accept();
+            } catch (IOException e) {
+                // Closed by stop().
+                return;
+            }
+            try {
+                handle(connection);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } finally {
+                try {
+                    connection.close();
+                } catch (IOException e) {
+                    // Nothing left to send.
+                }
+            }
+        }
+    }
+
+    private void handle(Socket connection) throws IOException {
+        InputStream in = connection.getInputStream();
+        int contentLength = 0;
+        boolean gzip = false;
+        long received = 0;
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            received += line.length() + 2;
+            int colon = line.indexOf(':');
+            if (colon == -1) {
+                continue;
+            }
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            if (name.equalsIgnoreCase("Content-Length")) {
+                contentLength = Integer.parseInt(value);
+            } else if (name.equalsIgnoreCase("Content-Encoding")) {
+                gzip = value.equalsIgnoreCase("gzip");
+            }
+        }
+        received += 2;
+        byte[] body = new byte[contentLength];
+        for (int read = 0; read < contentLength; ) {
+            int n = in.read(body, read, contentLength - read);
+            if (n == -1) {
+                throw new IOException("Request body ended early");
+            }
+            read += n;
+        }
+        received += contentLength;
+
+        InputStream bodyIn = new ByteArrayInputStream(body);
+        Reader reader = new InputStreamReader(gzip ? new GZIPInputStream(bodyIn) : bodyIn, "UTF-8");
+        SyncResponse response = respond(SyncCodec.readRequest(reader));
+
+        ByteArrayOutputStream responseBody = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(new GZIPOutputStream(responseBody), "UTF-8");
+        try {
+            SyncCodec.writeResponse(writer, response);
+        } finally {
+            writer.close();
+        }
+        byte[] headers = ("HTTP/1.1 200 OK\r\n"
+                + "Content-Type: application/json; charset=utf-8\r\n"
+                + "Content-Encoding: gzip\r\n"
+                + "Content-Length: " + responseBody.size() + "\r\n"
+                + "Connection: close\r\n\r\n").getBytes("UTF-8");
+        OutputStream out = connection.getOutputStream();
+        out.write(headers);
+        responseBody.writeTo(out);
+        out.flush();
+        synchronized (this) {
+            bytesReceived += received;
+            bytesSent += headers.length + responseBody.size();
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1 && c != '\n') {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    private synchronized SyncResponse respond(SyncRequest request) {
+        long token = request.token != null ? Long.parseLong(request.token) : 0;
+        // Rows where a field of the request lost against another device, sent back in full.
+        HashSet<String> conflicts = new HashSet<>();
+        for (SyncChange change : request.changes) {
+            Row row = rows.get(change.syncId);
+            if (row == null) {
+                row = new Row();
+                rows.put(change.syncId, row);
+            }
+            if (change.deleted) {
+                row.deleted = true;
+                row.deletedBy = request.device;
+                nextVersion(change.syncId, row);
+                continue;
+            }
+            long version = nextVersion(change.syncId, row);
+            for (Map.Entry<String, Object> field : change.fields.entrySet()) {
+                Long fieldVersion = row.fieldVersions.get(field.getKey());
+                if (fieldVersion != null && fieldVersion > token
+                        && !request.device.equals(row.fieldDevices.get(field.getKey()))) {
+                    conflicts.add(change.syncId);
+                    continue;
+                }
+                row.fields.put(field.getKey(), field.getValue());
+                row.fieldVersions.put(field.getKey(), version);
+                row.fieldDevices.put(field.getKey(), request.device);
+            }
+        }
+
+        ArrayList<SyncChange> remote = new ArrayList<>();
+        long newToken = sequence;
+        boolean more = false;
+        for (Map.Entry<Long, String> entry : changes.tailMap(token, false).entrySet()) {
+            Row row = rows.get(entry.getValue());
+            if (!conflicts.contains(entry.getValue()) && !changedByOthers(row, token, request.device)) {
+                continue;
+            }
+            if (remote.size() == batchSize) {
+                more = true;
+                break;
+            }
+            remote.add(row.deleted ? SyncChange.deletion(entry.getValue())
+                    : new SyncChange(entry.getValue(), new HashMap<>(row.fields)));
+            newToken = entry.getKey();
+        }
+        return new SyncResponse(String.valueOf(more ? newToken : sequence), remote, more);
+    }
+
+    private static boolean changedByOthers(Row row, long token, String device) {
+        if (row.deleted) {
+            return !device.equals(row.deletedBy);
+        }
+        for (Map.Entry<String, Long> field : row.fieldVersions.entrySet()) {
+            if (field.getValue() > token && !device.equals(row.fieldDevices.get(field.getKey()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
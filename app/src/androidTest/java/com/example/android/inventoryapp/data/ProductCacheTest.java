@@ -0,0 +1,225 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventoryapp.EditorActivity;
+import com.example.android.inventoryapp.data.ProductContract.DiagnosticsEntry;
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reads a product through the cache while other threads keep changing it, and checks that no
+ * read returns a value older than one that was committed before the read began.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductCacheTest {
+    private static final int WRITES = 500;
+    private static final int READERS = 4;
+    private static final String[] PROJECTION = {
+            ProductEntry._ID,
+            ProductEntry.COLUMN_PRODUCT_PRICE_CENTS,
+            ProductEntry.COLUMN_PRODUCT_QUANTITY,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME
+    };
+
+    private ContentResolver resolver;
+    private Uri productUri;
+    private Uri detailsUri;
+
+    @Before
+    public void insertProduct() {
+        resolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_PRODUCT_PICTURE, "android.resource://test/picture");
+        values.put(ProductEntry.COLUMN_PRODUCT_NAME, "Cache test product");
+        values.put(ProductEntry.COLUMN_PRODUCT_PRICE_CENTS, 0);
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 0);
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME, "Supplier");
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL, "supplier@example.com");
+        productUri = resolver.insert(ProductEntry.CONTENT_URI, values);
+        assertNotNull(productUri);
+        detailsUri = ContentUris.withAppendedId(ProductEntry.DETAILS_URI, ContentUris.parseId(productUri));
+    }
+
+    @After
+    public void deleteProduct() {
+        resolver.delete(productUri, null, null);
+    }
+
+    @Test
+    public void listPage_makesTheProductAHit() {
+        long hits = queryCacheCount("cacheHit");
+        Cursor page = resolver.query(ProductEntry.buildPageUri(
+                ContentUris.parseId(productUri) - 1, 10), new String[]{ProductEntry._ID,
+                ProductEntry.COLUMN_PRODUCT_NAME}, null, null, null);
+        assertNotNull(page);
+        page.close();
+
+        assertEquals("Supplier", readString(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME));
+        assertEquals(hits + 1, queryCacheCount("cacheHit"));
+    }
+
+    @Test
+    public void editorQuery_isAHit() {
+        // The first query reads the product into the cache, the editor opening it again hits.
+        Cursor first = resolver.query(detailsUri, EditorActivity.PROJECTION, null, null, null);
+        assertNotNull(first);
+        first.close();
+        long hits = queryCacheCount("cacheHit");
+
+        Cursor cursor = resolver.query(detailsUri, EditorActivity.PROJECTION, null, null, null);
+        assertNotNull(cursor);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(0, cursor.getInt(
+                    cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD)));
+        } finally {
+            cursor.close();
+        }
+        assertEquals(hits + 1, queryCacheCount("cacheHit"));
+    }
+
+    @Test
+    public void concurrentWrites_neverShowAnOlderValue() throws Exception {
+        // The last value of each column whose update has returned.
+        final AtomicLong committedPrice = new AtomicLong();
+        final AtomicLong committedQuantity = new AtomicLong();
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(READERS + 2);
+        List<Future<?>> writers = new ArrayList<>();
+        List<Future<?>> readers = new ArrayList<>();
+        try {
+            writers.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int price = 1; price <= WRITES; price++) {
+                        ContentValues values = new ContentValues();
+                        values.put(ProductEntry.COLUMN_PRODUCT_PRICE_CENTS, price);
+                        assertEquals(1, resolver.update(productUri, values, null, null));
+                        committedPrice.set(price);
+                    }
+                    return null;
+                }
+            }));
+            writers.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int quantity = 1; quantity <= WRITES; quantity++) {
+                        ContentValues values = new ContentValues();
+                        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, quantity);
+                        assertEquals(1, resolver.update(productUri, values, null, null));
+                        committedQuantity.set(quantity);
+                    }
+                    return null;
+                }
+            }));
+            for (int i = 0; i < READERS; i++) {
+                final boolean readsPages = i % 2 == 0;
+                readers.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        while (writing.get()) {
+                            if (readsPages) {
+                                // Fills the cache from the list while the writers run.
+                                Cursor page = resolver.query(ProductEntry.buildPageUri(
+                                        ContentUris.parseId(productUri) - 1, 1),
+                                        new String[]{ProductEntry._ID, ProductEntry.COLUMN_PRODUCT_NAME},
+                                        null, null, null);
+                                assertNotNull(page);
+                                page.close();
+                            }
+                            long minPrice = committedPrice.get();
+                            long minQuantity = committedQuantity.get();
+                            Cursor cursor = resolver.query(detailsUri, PROJECTION, null, null, null);
+                            assertNotNull(cursor);
+                            try {
+                                assertTrue(cursor.moveToFirst());
+                                assertTrue(cursor.getLong(1) >= minPrice);
+                                assertTrue(cursor.getLong(2) >= minQuantity);
+                            } finally {
+                                cursor.close();
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            writing.set(false);
+            executor.shutdown();
+        }
+        for (Future<?> reader : readers) {
+            reader.get();
+        }
+
+        Cursor cursor = resolver.query(detailsUri, PROJECTION, null, null, null);
+        assertNotNull(cursor);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(WRITES, cursor.getLong(1));
+            assertEquals(WRITES, cursor.getLong(2));
+        } finally {
+            cursor.close();
+        }
+
+        // A sale goes through the same invalidation.
+        ContentValues sale = new ContentValues();
+        sale.put(ProductEntry.SELL_AMOUNT, 1);
+        assertEquals(WRITES - 1, resolver.update(ProductEntry.buildSellUri(
+                ContentUris.parseId(productUri)), sale, null, null));
+        assertEquals(String.valueOf(WRITES - 1), readString(ProductEntry.COLUMN_PRODUCT_QUANTITY));
+    }
+
+    private String readString(String column) {
+        Cursor cursor = resolver.query(detailsUri, new String[]{column}, null, null, null);
+        assertNotNull(cursor);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getString(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private long queryCacheCount(String operation) {
+        Cursor cursor = resolver.query(DiagnosticsEntry.CONTENT_URI, null, null, null, null);
+        assertNotNull(cursor);
+        try {
+            int operationColumn = cursor.getColumnIndexOrThrow(DiagnosticsEntry.COLUMN_OPERATION);
+            while (cursor.moveToNext()) {
+                if (operation.equals(cursor.getString(operationColumn))) {
+                    return cursor.getLong(cursor.getColumnIndexOrThrow(DiagnosticsEntry.COLUMN_COUNT));
+                }
+            }
+            throw new AssertionError("No " + operation + " in the diagnostics");
+        } finally {
+            cursor.close();
+        }
+    }
+}
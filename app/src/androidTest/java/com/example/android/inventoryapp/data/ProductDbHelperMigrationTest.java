@@ -0,0 +1,115 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.inventoryapp.data.ProductContract.DailyStockEntry;
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp.data.ProductContract.SupplierEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Upgrades a seeded version 1 database to the current schema and checks that every row
+ * survives with its values converted.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductDbHelperMigrationTest {
+    private static final String LOG_TAG = ProductDbHelperMigrationTest.class.getSimpleName();
+    private static final String DATABASE_NAME = "migration-test.db";
+    private static final int ROWS = 100000;
+    // Generous bound for slow emulators, the upgrade is expected to take a few seconds.
+    private static final long MAX_UPGRADE_MS = 60000;
+
+    private Context context;
+
+    @Before
+    public void seedVersion1Database() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+
+        SQLiteDatabase db = context.openOrCreateDatabase(DATABASE_NAME, Context.MODE_PRIVATE, null);
+        db.execSQL("CREATE TABLE products (_id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + "picture TEXT NOT NULL,name TEXT NOT NULL, price FLOAT NOT NULL, "
+                + "quantity INTEGER DEFAULT 0,supplierName TEXT NOT NULL, supplierEmail TEXT NOT NULL);");
+        db.beginTransaction();
+        SQLiteStatement insert = db.compileStatement("INSERT INTO products (picture, name, price,"
+                + " quantity, supplierName, supplierEmail) VALUES (?, ?, ?, ?, ?, ?)");
+        try {
+            for (int i = 0; i < ROWS; i++) {
+                insert.bindString(1, "content://pictures/" + i);
+                insert.bindString(2, "Product " + i);
+                insert.bindString(3, (i % 1000) + ".99");
+                insert.bindLong(4, i % 50);
+                insert.bindString(5, "Supplier " + (i % 100));
+                insert.bindString(6, "supplier" + (i % 100) + "@example.com");
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            insert.close();
+            db.endTransaction();
+        }
+        db.setVersion(1);
+        db.close();
+    }
+
+    @After
+    public void deleteDatabase() {
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void upgradeFromVersion1_keepsEveryRow() {
+        ProductDbHelper helper = new ProductDbHelper(context, DATABASE_NAME);
+        long start = SystemClock.elapsedRealtime();
+        SQLiteDatabase db = helper.getWritableDatabase();
+        long upgradeMs = SystemClock.elapsedRealtime() - start;
+        Log.i(LOG_TAG, "Upgraded " + ROWS + " rows in " + upgradeMs + " ms");
+
+        try {
+            assertEquals(ROWS, DatabaseUtils.queryNumEntries(db, ProductEntry.TABLE_NAME));
+            assertEquals(ROWS, DatabaseUtils.queryNumEntries(db, ProductEntry.FTS_TABLE_NAME));
+            // The seed repeats 100 distinct suppliers.
+            assertEquals(100, DatabaseUtils.queryNumEntries(db, SupplierEntry.TABLE_NAME));
+            // The ledger opens with the stock every product had.
+            assertEquals(DatabaseUtils.longForQuery(db, "SELECT SUM(" + ProductEntry.COLUMN_PRODUCT_QUANTITY
+                            + ") FROM " + ProductEntry.TABLE_NAME, null),
+                    DatabaseUtils.longForQuery(db, "SELECT SUM(" + DailyStockEntry.COLUMN_NET_CHANGE
+                            + ") FROM " + DailyStockEntry.TABLE_NAME, null));
+            // Every product is a change the first sync sends.
+            assertEquals(ROWS, DatabaseUtils.queryNumEntries(db, ProductEntry.TABLE_NAME,
+                    ProductEntry.COLUMN_SYNC_ID + " IS NOT NULL AND " + ProductEntry.COLUMN_DIRTY_FIELDS
+                            + " = " + ProductContract.SyncEntry.ALL_FIELDS));
+
+            Cursor cursor = db.query(ProductEntry.TABLE_NAME, new String[]{
+                    ProductEntry.COLUMN_PRODUCT_NAME, ProductEntry.COLUMN_PRODUCT_PRICE_CENTS,
+                    ProductEntry.COLUMN_PRODUCT_QUANTITY}, ProductEntry._ID + "=?",
+                    new String[]{"1235"}, null, null, null);
+            try {
+                assertTrue(cursor.moveToFirst());
+                assertEquals("Product 1234", cursor.getString(0));
+                assertEquals(23499, cursor.getLong(1));
+                assertEquals(34, cursor.getInt(2));
+            } finally {
+                cursor.close();
+            }
+            assertTrue("Upgrade took " + upgradeMs + " ms", upgradeMs < MAX_UPGRADE_MS);
+        } finally {
+            helper.close();
+        }
+    }
+}
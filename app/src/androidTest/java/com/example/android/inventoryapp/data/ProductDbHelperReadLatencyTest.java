@@ -0,0 +1,153 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures how long a page query takes while another thread keeps selling, once with the
+ * default rollback journal and once in performance mode. Both percentiles are logged under
+ * the test's tag, e.g. {@code adb logcat -s ProductDbHelperReadLatencyTest}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductDbHelperReadLatencyTest {
+    private static final String LOG_TAG = ProductDbHelperReadLatencyTest.class.getSimpleName();
+    private static final String DATABASE_NAME = "latency-test.db";
+    private static final int ROWS = 5000;
+    private static final int READS = 500;
+    private static final int PAGE_SIZE = 50;
+
+    private Context context;
+
+    @Before
+    public void deleteOldDatabase() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @After
+    public void deleteDatabase() {
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void readsUnderWriteLoad_defaultMode() throws Exception {
+        long[] latencies = measure(false);
+        log("default", latencies);
+    }
+
+    @Test
+    public void readsUnderWriteLoad_performanceMode() throws Exception {
+        long[] latencies = measure(true);
+        log("performance", latencies);
+    }
+
+    @Test
+    public void performanceMode_usesWriteAheadLog() {
+        ProductDbHelper helper = new ProductDbHelper(context, DATABASE_NAME, true);
+        try {
+            assertEquals("wal", DatabaseUtils.stringForQuery(helper.getWritableDatabase(),
+                    "PRAGMA journal_mode", null));
+        } finally {
+            helper.close();
+        }
+    }
+
+    // Returns the sorted latency of every read in microseconds.
+    private long[] measure(boolean performanceMode) throws Exception {
+        final ProductDbHelper helper = new ProductDbHelper(context, DATABASE_NAME, performanceMode);
+        final SQLiteDatabase db = helper.getWritableDatabase();
+        seed(db);
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                SQLiteStatement sell = db.compileStatement("UPDATE " + ProductEntry.TABLE_NAME
+                        + " SET " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " = "
+                        + ProductEntry.COLUMN_PRODUCT_QUANTITY + " - 1 WHERE " + ProductEntry._ID + " = ?");
+                try {
+                    for (int i = 0; running.get(); i++) {
+                        // One transaction per sale, like the buy button.
+                        sell.bindLong(1, i % ROWS + 1);
+                        sell.executeUpdateDelete();
+                    }
+                } finally {
+                    sell.close();
+                }
+            }
+        });
+        writer.start();
+
+        long[] latencies = new long[READS];
+        try {
+            for (int i = 0; i < READS; i++) {
+                long start = System.nanoTime();
+                Cursor cursor = db.query(ProductEntry.TABLE_NAME, null, ProductEntry._ID + ">?",
+                        new String[]{String.valueOf(i * PAGE_SIZE % ROWS)}, null, null,
+                        ProductEntry._ID, String.valueOf(PAGE_SIZE));
+                try {
+                    while (cursor.moveToNext()) {
+                        cursor.getString(1);
+                    }
+                } finally {
+                    cursor.close();
+                }
+                latencies[i] = (System.nanoTime() - start) / 1000;
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+            helper.close();
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static void seed(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            ContentValues supplier = new ContentValues();
+            supplier.put(ProductContract.SupplierEntry.COLUMN_SUPPLIER_NAME, "Supplier");
+            supplier.put(ProductContract.SupplierEntry.COLUMN_SUPPLIER_EMAIL, "supplier@example.com");
+            long supplierId = db.insertOrThrow(ProductContract.SupplierEntry.TABLE_NAME, null, supplier);
+
+            ContentValues values = new ContentValues();
+            for (int i = 0; i < ROWS; i++) {
+                values.put(ProductEntry.COLUMN_PRODUCT_PICTURE, "content://pictures/" + i);
+                values.put(ProductEntry.COLUMN_PRODUCT_NAME, "Product " + i);
+                values.put(ProductEntry.COLUMN_PRODUCT_PRICE_CENTS, i);
+                values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, Integer.MAX_VALUE);
+                values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID, supplierId);
+                db.insertOrThrow(ProductEntry.TABLE_NAME, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static void log(String mode, long[] latencies) {
+        Log.i(LOG_TAG, mode + " mode read latency: p50 " + latencies[latencies.length / 2]
+                + " us, p95 " + latencies[latencies.length * 95 / 100]
+                + " us, max " + latencies[latencies.length - 1] + " us");
+    }
+}
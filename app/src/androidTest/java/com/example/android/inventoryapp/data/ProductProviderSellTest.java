@@ -0,0 +1,118 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventoryapp.data.ProductContract.DailyStockEntry;
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Fires parallel sales at the sell URI and checks that no unit is lost or oversold, neither in
+ * the stock nor in the ledger.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductProviderSellTest {
+    private static final int STOCK = 2000;
+    private static final int THREADS = 8;
+    private static final int SALES_PER_THREAD = 300;
+
+    private ContentResolver resolver;
+    private Uri productUri;
+
+    @Before
+    public void insertProduct() {
+        resolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_PRODUCT_PICTURE, "android.resource://test/picture");
+        values.put(ProductEntry.COLUMN_PRODUCT_NAME, "Stress test product");
+        values.put(ProductEntry.COLUMN_PRODUCT_PRICE_CENTS, 100);
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, STOCK);
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME, "Supplier");
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL, "supplier@example.com");
+        productUri = resolver.insert(ProductEntry.CONTENT_URI, values);
+        assertNotNull(productUri);
+    }
+
+    @After
+    public void deleteProduct() {
+        resolver.delete(productUri, null, null);
+    }
+
+    @Test
+    public void parallelSales_neverLoseOrOversellUnits() throws Exception {
+        final Uri sellUri = Uri.withAppendedPath(productUri, ProductContract.PATH_SELL);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    int sold = 0;
+                    for (int j = 0; j < SALES_PER_THREAD; j++) {
+                        if (resolver.update(sellUri, null, null, null) >= 0) {
+                            sold++;
+                        }
+                    }
+                    return sold;
+                }
+            }));
+        }
+
+        int totalSold = 0;
+        for (Future<Integer> result : results) {
+            totalSold += result.get();
+        }
+        executor.shutdown();
+
+        assertEquals(STOCK, totalSold);
+        assertEquals(0, queryQuantity());
+
+        // Every sale is in the ledger, so the day's totals account for the whole stock.
+        Cursor cursor = resolver.query(DailyStockEntry.CONTENT_URI, new String[]{
+                        "SUM(" + DailyStockEntry.COLUMN_UNITS_SOLD + ")",
+                        "SUM(" + DailyStockEntry.COLUMN_NET_CHANGE + ")"},
+                DailyStockEntry.COLUMN_PRODUCT_ID + "=?",
+                new String[]{String.valueOf(ContentUris.parseId(productUri))}, null);
+        assertNotNull(cursor);
+        try {
+            cursor.moveToFirst();
+            assertEquals(STOCK, cursor.getInt(0));
+            // The initial stock was recorded as a restock.
+            assertEquals(0, cursor.getInt(1));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private int queryQuantity() {
+        Cursor cursor = resolver.query(productUri,
+                new String[]{ProductEntry.COLUMN_PRODUCT_QUANTITY}, null, null, null);
+        assertNotNull(cursor);
+        try {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
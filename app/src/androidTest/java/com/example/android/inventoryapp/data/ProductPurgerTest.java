@@ -0,0 +1,155 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp.data.ProductContract.SupplierEntry;
+import com.example.android.inventoryapp.data.ProductContract.SyncEntry;
+import com.example.android.inventoryapp.image.ThumbnailDiskCache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Deletes products through the provider and checks they are hidden until restored, then
+ * purges a database of its own and checks only the deletes past the delay are removed, with
+ * everything that goes with a product.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductPurgerTest {
+    private static final String DATABASE_NAME = "purge-test.db";
+    private static final int ROWS = 1000;
+    private static final int BATCH_SIZE = 64;
+
+    private Context context;
+    private ContentResolver resolver;
+    private ProductDbHelper dbHelper;
+    private ScheduledExecutorService executor;
+
+    @Before
+    public void openDatabase() {
+        context = InstrumentationRegistry.getTargetContext();
+        resolver = context.getContentResolver();
+        context.deleteDatabase(DATABASE_NAME);
+        dbHelper = new ProductDbHelper(context, DATABASE_NAME);
+        executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void closeDatabase() {
+        executor.shutdownNow();
+        dbHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void deletedProduct_hiddenUntilRestored() {
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_PRODUCT_PICTURE, "android.resource://test/picture");
+        values.put(ProductEntry.COLUMN_PRODUCT_NAME, "Purge test product");
+        values.put(ProductEntry.COLUMN_PRODUCT_PRICE_CENTS, 100);
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 5);
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME, "Supplier");
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL, "supplier@example.com");
+        Uri productUri = resolver.insert(ProductEntry.CONTENT_URI, values);
+        assertNotNull(productUri);
+        long id = ContentUris.parseId(productUri);
+        try {
+            assertEquals(1, resolver.delete(productUri, null, null));
+            assertEquals(0, count(productUri));
+            assertEquals(0, count(ContentUris.withAppendedId(ProductEntry.DETAILS_URI, id)));
+            assertEquals(0, count(ProductEntry.buildSearchUri("Purge test", 10)));
+            // A deleted product can't be sold or changed either.
+            assertEquals(-1, resolver.update(ProductEntry.buildSellUri(id), null, null, null));
+            assertEquals(0, resolver.update(productUri, values, null, null));
+
+            String[] idArgs = {String.valueOf(id)};
+            assertEquals(1, resolver.update(ProductEntry.RESTORE_URI, null,
+                    ProductEntry._ID + "=?", idArgs));
+            assertEquals(1, count(productUri));
+            assertEquals(1, count(ProductEntry.buildSearchUri("Purge test", 10)));
+            assertEquals(4, resolver.update(ProductEntry.buildSellUri(id), null, null, null));
+        } finally {
+            resolver.delete(productUri, null, null);
+        }
+    }
+
+    @Test
+    public void purge_removesDeletesPastTheDelay() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        insertProducts(db, ROWS);
+        // Every third product deleted long ago, every fifth of the rest just now.
+        db.execSQL("UPDATE " + ProductEntry.TABLE_NAME + " SET " + ProductEntry.COLUMN_DELETED_AT
+                + " = CASE WHEN " + ProductEntry._ID + " % 3 = 0 THEN 1000 ELSE 5000 END WHERE "
+                + ProductEntry._ID + " % 3 = 0 OR " + ProductEntry._ID + " % 5 = 0");
+        long old = DatabaseUtils.queryNumEntries(db, ProductEntry.TABLE_NAME,
+                ProductEntry.COLUMN_DELETED_AT + " = 1000");
+        long recent = DatabaseUtils.queryNumEntries(db, ProductEntry.TABLE_NAME,
+                ProductEntry.COLUMN_DELETED_AT + " = 5000");
+
+        ProductPurger purger = new ProductPurger(dbHelper, ThumbnailDiskCache.getInstance(context),
+                executor, 0, BATCH_SIZE);
+        assertEquals(old, purger.purge(2000));
+        assertEquals(ROWS - old, DatabaseUtils.queryNumEntries(db, ProductEntry.TABLE_NAME));
+        assertEquals(recent, DatabaseUtils.queryNumEntries(db, ProductEntry.TABLE_NAME,
+                ProductEntry.COLUMN_DELETED_AT + " != 0"));
+        // The search index and the sync tombstones follow the rows that are really gone.
+        assertEquals(ROWS - old, DatabaseUtils.queryNumEntries(db, ProductEntry.FTS_TABLE_NAME));
+        assertEquals(old, DatabaseUtils.queryNumEntries(db, SyncEntry.TOMBSTONE_TABLE_NAME));
+
+        assertEquals(0, purger.purge(2000));
+        assertEquals(recent, purger.purge(5000));
+    }
+
+    private int count(Uri uri) {
+        Cursor cursor = resolver.query(uri, new String[]{ProductEntry._ID}, null, null, null);
+        assertNotNull(cursor);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void insertProducts(SQLiteDatabase db, int count) {
+        db.beginTransaction();
+        SQLiteStatement insert = db.compileStatement(ProductSql.INSERT_PRODUCT);
+        try {
+            ContentValues supplier = new ContentValues();
+            supplier.put(SupplierEntry.COLUMN_SUPPLIER_NAME, "Supplier");
+            supplier.put(SupplierEntry.COLUMN_SUPPLIER_EMAIL, "supplier@example.com");
+            long supplierId = db.insertOrThrow(SupplierEntry.TABLE_NAME, null, supplier);
+            for (int i = 0; i < count; i++) {
+                insert.bindString(1, "content://pictures/" + i);
+                insert.bindString(2, "Product " + i);
+                insert.bindLong(3, 100 + i);
+                insert.bindLong(4, i % 50);
+                insert.bindLong(5, supplierId);
+                insert.bindLong(6, 0);
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            insert.close();
+            db.endTransaction();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp.data.ProductContract.SupplierEntry;
+import com.example.android.inventoryapp.data.ProductContract.SyncEntry;
+import com.example.android.inventoryapp.sync.HttpSyncTransport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Syncs a database with {@link MockSyncServer} over a local socket. Measures the bytes on the
+ * wire and the time of a sync of 100,000 products with 1% of them changed, logged under the
+ * test's tag, e.g. {@code adb logcat -s ProductSyncTest}, and checks conflicts and deletions.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductSyncTest {
+    private static final String LOG_TAG = ProductSyncTest.class.getSimpleName();
+    private static final String DATABASE_NAME = "sync-test.db";
+    private static final int ROWS = 100000;
+    private static final int CHANGED_EVERY = 100;
+    private static final int BATCH_SIZE = 500;
+    // Generous bound for slow emulators, the delta sync is expected to take well under a second.
+    private static final long MAX_DELTA_SYNC_MS = 10000;
+
+    private Context context;
+    private ProductDbHelper dbHelper;
+    private MockSyncServer server;
+    private HttpSyncTransport transport;
+    private ProductSync sync;
+
+    @Before
+    public void startServer() throws Exception {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        dbHelper = new ProductDbHelper(context, DATABASE_NAME);
+        server = new MockSyncServer(BATCH_SIZE);
+        transport = new HttpSyncTransport(server.getUrl());
+        sync = new ProductSync(dbHelper, new ProductCache(100), transport, BATCH_SIZE);
+    }
+
+    @After
+    public void stopServer() throws Exception {
+        server.stop();
+        dbHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void deltaSync_sendsOnlyChangedFields() throws Exception {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        insertProducts(db, ROWS);
+        ProductSync.Result initial = sync.sync();
+        assertEquals(ROWS, initial.rowsSent);
+        assertEquals(ROWS, server.countProducts());
+        long initialBytes = server.getBytesReceived();
+        long initialPayload = transport.getBytesSent();
+        Log.i(LOG_TAG, "Initial sync: " + initial.rounds + " rounds, " + initialBytes
+                + " bytes received by the server, " + initialPayload + " of them gzipped JSON");
+
+        db.execSQL("UPDATE " + ProductEntry.TABLE_NAME + " SET " + ProductEntry.COLUMN_PRODUCT_QUANTITY
+                + " = " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " + 1 WHERE "
+                + ProductEntry._ID + " % " + CHANGED_EVERY + " = 0");
+        server.resetByteCounts();
+        long payloadBefore = transport.getBytesSent();
+        long start = SystemClock.elapsedRealtime();
+        ProductSync.Result delta = sync.sync();
+        long deltaMs = SystemClock.elapsedRealtime() - start;
+
+        long deltaBytes = server.getBytesReceived();
+        Log.i(LOG_TAG, "Delta sync of " + delta.rowsSent + " rows: " + delta.rounds + " rounds in "
+                + deltaMs + " ms, " + deltaBytes + " bytes received by the server, "
+                + (transport.getBytesSent() - payloadBefore) + " of them gzipped JSON, "
+                + server.getBytesSent() + " bytes sent back");
+        assertEquals(ROWS / CHANGED_EVERY, delta.rowsSent);
+        assertEquals(0, delta.rowsReceived);
+        // 1% of the rows with one field each instead of seven, about 0.7% of the bytes of the
+        // full sync with headers. The bound leaves room for how well other data compresses.
+        assertTrue(deltaBytes + " bytes for the delta, " + initialBytes + " for all rows",
+                deltaBytes * CHANGED_EVERY < initialBytes * 2);
+        assertTrue("Delta sync took " + deltaMs + " ms", deltaMs < MAX_DELTA_SYNC_MS);
+
+        // Nothing changed since, so the next sync is a single empty round.
+        ProductSync.Result idle = sync.sync();
+        assertEquals(1, idle.rounds);
+        assertEquals(0, idle.rowsSent);
+    }
+
+    @Test
+    public void conflicts_resolvedPerField() throws Exception {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        insertProducts(db, 1);
+        sync.sync();
+        String syncId = getSyncId(db, 1);
+
+        // Different fields changed on both sides: both changes survive.
+        server.change(syncId, ProductEntry.COLUMN_PRODUCT_NAME, "Renamed elsewhere");
+        updateProduct(db, ProductEntry.COLUMN_PRODUCT_PRICE_CENTS, 999);
+        ProductSync.Result result = sync.sync();
+        assertEquals(1, result.rowsSent);
+        assertEquals(1, result.rowsReceived);
+        assertEquals("Renamed elsewhere", readProduct(db, ProductEntry.COLUMN_PRODUCT_NAME));
+        assertEquals("999", readProduct(db, ProductEntry.COLUMN_PRODUCT_PRICE_CENTS));
+        assertEquals(999L, server.getField(syncId, ProductEntry.COLUMN_PRODUCT_PRICE_CENTS));
+
+        // The same field changed on both sides: the change that reached the server first wins.
+        server.change(syncId, ProductEntry.COLUMN_PRODUCT_QUANTITY, 7L);
+        updateProduct(db, ProductEntry.COLUMN_PRODUCT_QUANTITY, 3);
+        sync.sync();
+        assertEquals("7", readProduct(db, ProductEntry.COLUMN_PRODUCT_QUANTITY));
+        assertEquals(7L, server.getField(syncId, ProductEntry.COLUMN_PRODUCT_QUANTITY));
+
+        // Remote writes aren't local changes to send back.
+        assertEquals(0, sync.sync().rowsSent);
+    }
+
+    @Test
+    public void deletions_travelBothWays() throws Exception {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        insertProducts(db, 2);
+        sync.sync();
+        String deletedHere = getSyncId(db, 1);
+        String deletedThere = getSyncId(db, 2);
+
+        db.delete(ProductEntry.TABLE_NAME, ProductEntry._ID + "=1", null);
+        server.delete(deletedThere);
+        ProductSync.Result result = sync.sync();
+        assertEquals(1, result.rowsSent);
+        assertEquals(1, result.rowsReceived);
+        assertTrue(server.isDeleted(deletedHere));
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, ProductEntry.TABLE_NAME));
+        // Accepted tombstones are dropped.
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, SyncEntry.TOMBSTONE_TABLE_NAME));
+    }
+
+    private static void insertProducts(SQLiteDatabase db, int count) {
+        db.beginTransaction();
+        SQLiteStatement insert = db.compileStatement(ProductSql.INSERT_PRODUCT);
+        try {
+            ContentValues supplier = new ContentValues();
+            supplier.put(SupplierEntry.COLUMN_SUPPLIER_NAME, "Supplier");
+            supplier.put(SupplierEntry.COLUMN_SUPPLIER_EMAIL, "supplier@example.com");
+            long supplierId = db.insertOrThrow(SupplierEntry.TABLE_NAME, null, supplier);
+            for (int i = 0; i < count; i++) {
+                insert.bindString(1, "content://pictures/" + i);
+                insert.bindString(2, "Product " + i);
+                insert.bindLong(3, 100 + i % 1000);
+                insert.bindLong(4, i % 50);
+                insert.bindLong(5, supplierId);
+                insert.bindLong(6, 0);
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            insert.close();
+            db.endTransaction();
+        }
+    }
+
+    private static String getSyncId(SQLiteDatabase db, long id) {
+        return DatabaseUtils.stringForQuery(db, "SELECT " + ProductEntry.COLUMN_SYNC_ID + " FROM "
+                + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry._ID + " = " + id, null);
+    }
+
+    private static void updateProduct(SQLiteDatabase db, String column, long value) {
+        ContentValues values = new ContentValues();
+        values.put(column, value);
+        assertEquals(1, db.update(ProductEntry.TABLE_NAME, values, ProductEntry._ID + "=1", null));
+    }
+
+    private static String readProduct(SQLiteDatabase db, String column) {
+        return DatabaseUtils.stringForQuery(db, "SELECT " + column + " FROM "
+                + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry._ID + " = 1", null);
+    }
+}
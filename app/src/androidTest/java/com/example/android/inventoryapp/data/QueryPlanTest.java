@@ -0,0 +1,435 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.inventoryapp.EditorActivity;
+import com.example.android.inventoryapp.data.ProductContract.DailyStockEntry;
+import com.example.android.inventoryapp.data.ProductContract.ImportEntry;
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp.data.ProductContract.StockAlertEntry;
+import com.example.android.inventoryapp.data.ProductContract.StockMovementEntry;
+import com.example.android.inventoryapp.data.ProductContract.SupplierEntry;
+import com.example.android.inventoryapp.data.ProductContract.SyncEntry;
+import com.example.android.inventoryapp.importer.CatalogImporter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs every query, update and delete the app sends to {@link ProductProvider} against a
+ * seeded store, with the projections and selections of the screens that send them, and checks
+ * the query plan of each statement the provider ran for it. Fails when a statement scans a
+ * whole table or index its case doesn't list, or when the median time of a case is over its
+ * budget in {@code assets/query_budgets.properties}.
+ * <p>
+ * Measured medians are logged in the format of the budget file, e.g.
+ * {@code adb logcat -s QueryPlanTest}. A budget is only raised together with the change that
+ * makes its case slower.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryPlanTest {
+    private static final String LOG_TAG = QueryPlanTest.class.getSimpleName();
+    private static final String STORE = "query_plans";
+    private static final String BUDGETS = "query_budgets.properties";
+    private static final int PRODUCTS = 20000;
+    private static final int SUPPLIERS = 200;
+    // Every case runs once to record its statements, then this many times for the median.
+    private static final int RUNS = 5;
+    // A product in the middle of the list, not read by any page before its cases.
+    private static final long PRODUCT_ID = PRODUCTS / 2;
+    // A product with 49 units, enough for every run of the sale.
+    private static final long SELL_ID = 50;
+    // "SCAN TABLE products" or, since SQLite 3.36, "SCAN products". Scans of a subquery read
+    // rows another line of the plan found, a constant row reads no table at all.
+    private static final Pattern SCAN = Pattern.compile("^SCAN (?:TABLE )?(\\w+)(.*)$");
+    // A scan in the order of an index reads all of it, unless a LIMIT stops it early.
+    private static final Pattern SCAN_INDEX = Pattern.compile("USING (?:COVERING )?INDEX (\\w+)");
+    // Full-text lookups show as scans of the virtual table, index 0 is the one reading it whole.
+    private static final Pattern SCAN_VIRTUAL = Pattern.compile("VIRTUAL TABLE INDEX (\\d+):");
+
+    // Projections of ProductPager, EditorActivity, CatalogSnapshotLoader and CatalogExporter.
+    private static final String[] LIST_PROJECTION = {ProductEntry._ID,
+            ProductEntry.COLUMN_PRODUCT_NAME, ProductEntry.COLUMN_PRODUCT_PICTURE,
+            ProductEntry.COLUMN_PRODUCT_PRICE_CENTS, ProductEntry.COLUMN_PRODUCT_QUANTITY};
+    private static final String[] ID_PROJECTION = {ProductEntry._ID};
+    private static final String[] EDITOR_PROJECTION = EditorActivity.PROJECTION;
+    private static final String[] SNAPSHOT_PROJECTION = {ProductEntry._ID,
+            ProductEntry.COLUMN_PRODUCT_NAME, ProductEntry.COLUMN_PRODUCT_PRICE_CENTS,
+            ProductEntry.COLUMN_PRODUCT_QUANTITY};
+    private static final String[] EXPORT_PROJECTION;
+
+    static {
+        EXPORT_PROJECTION = new String[CatalogImporter.COLUMNS.length + 1];
+        EXPORT_PROJECTION[0] = ProductEntry._ID;
+        System.arraycopy(CatalogImporter.COLUMNS, 0, EXPORT_PROJECTION, 1,
+                CatalogImporter.COLUMNS.length);
+    }
+
+    /**
+     * One call of the app, with the tables and indexes its statements may read whole.
+     */
+    private abstract static class Case {
+        final String name;
+        final List<String> scanned;
+
+        Case(String name, String... scanned) {
+            this.name = name;
+            this.scanned = Arrays.asList(scanned);
+        }
+
+        abstract void run();
+    }
+
+    private Context context;
+    private ProductProvider provider;
+    private ProductDbHelper dbHelper;
+    // Statements of the case running, guarded by itself.
+    private final ArrayList<String> statements = new ArrayList<>();
+
+    @Before
+    public void seedStore() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(ProductDbHelper.getDatabaseName(STORE));
+        provider = new ProductProvider();
+        provider.attachInfo(context, null);
+
+        ContentValues[] products = new ContentValues[PRODUCTS];
+        for (int i = 0; i < PRODUCTS; i++) {
+            ContentValues values = new ContentValues();
+            values.put(ProductEntry.COLUMN_PRODUCT_PICTURE, "content://pictures/" + i);
+            values.put(ProductEntry.COLUMN_PRODUCT_NAME, "Product " + i + " model " + (i % 97));
+            values.put(ProductEntry.COLUMN_PRODUCT_PRICE_CENTS, 100 + i % 10000);
+            values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, i % 50);
+            values.put(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD, i % 10 == 0 ? 5 : 0);
+            values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME, "Supplier " + i % SUPPLIERS);
+            values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL, "supplier" + i % SUPPLIERS + "@example.com");
+            products[i] = values;
+        }
+        provider.bulkInsert(storeUri(ProductEntry.CONTENT_URI), products);
+        // Sales fill the ledger and open alerts, deletes leave rows for the purge.
+        for (long id = 1; id <= PRODUCTS; id += 37) {
+            provider.update(storeUri(ProductEntry.buildSellUri(id)), null, null, null);
+        }
+        for (long id = 3; id <= PRODUCTS; id += 211) {
+            provider.delete(storeUri(ContentUris.withAppendedId(ProductEntry.CONTENT_URI, id)),
+                    null, null);
+        }
+        dbHelper = ProductDbHelper.forStore(context, STORE);
+    }
+
+    @After
+    public void deleteStore() {
+        dbHelper.close();
+        context.deleteDatabase(ProductDbHelper.getDatabaseName(STORE));
+    }
+
+    @Test
+    public void everyUri_usesIndexesWithinBudget() throws Exception {
+        Properties budgets = new Properties();
+        InputStream in = InstrumentationRegistry.getContext().getAssets().open(BUDGETS);
+        try {
+            budgets.load(in);
+        } finally {
+            in.close();
+        }
+        provider.setStatementObserver(new ProductProvider.StatementObserver() {
+            @Override
+            public void onStatement(String sql) {
+                record(sql);
+            }
+        });
+
+        StringBuilder failures = new StringBuilder();
+        StringBuilder medians = new StringBuilder();
+        for (Case testCase : cases()) {
+            synchronized (statements) {
+                statements.clear();
+            }
+            testCase.run();
+            List<String> recorded;
+            synchronized (statements) {
+                recorded = new ArrayList<>(statements);
+                statements.clear();
+            }
+            assertTrue(testCase.name + " ran no statement", !recorded.isEmpty());
+            for (String sql : recorded) {
+                checkPlan(testCase, sql, failures);
+            }
+
+            long[] times = new long[RUNS];
+            for (int i = 0; i < RUNS; i++) {
+                long start = System.nanoTime();
+                testCase.run();
+                times[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(times);
+            double medianMs = times[RUNS / 2] / 1e6;
+            medians.append('\n').append(testCase.name).append('=')
+                    .append(String.format(Locale.US, "%.1f", medianMs));
+            String budget = budgets.getProperty(testCase.name);
+            if (budget == null) {
+                failures.append('\n').append(testCase.name).append(": no budget in ").append(BUDGETS);
+            } else if (medianMs > Double.parseDouble(budget)) {
+                failures.append('\n').append(testCase.name).append(": median ").append(medianMs)
+                        .append(" ms over the budget of ").append(budget).append(" ms");
+            }
+        }
+        Log.i(LOG_TAG, "Medians in ms:" + medians);
+        assertTrue(failures.toString(), failures.length() == 0);
+    }
+
+    private List<Case> cases() {
+        final long productId = PRODUCT_ID;
+        final Uri productUri = storeUri(ContentUris.withAppendedId(ProductEntry.CONTENT_URI, productId));
+        final String[] productArgs = {String.valueOf(productId)};
+        ArrayList<Case> cases = new ArrayList<>();
+
+        // MainActivity's list, see ProductPager.
+        cases.add(new Case("list_first_page") {
+            @Override
+            void run() {
+                query(ProductEntry.buildPageUri(0, 50), LIST_PROJECTION, null, null, null);
+            }
+        });
+        cases.add(new Case("list_middle_page") {
+            @Override
+            void run() {
+                query(ProductEntry.buildPageUri(PRODUCTS / 3, 50), LIST_PROJECTION, null, null, null);
+            }
+        });
+        cases.add(new Case("list_page_ids") {
+            @Override
+            void run() {
+                // The keys of 20 pages before the window, read again on a refresh.
+                query(ProductEntry.buildPageUri(0, 20 * 50 + 1), ID_PROJECTION, null, null, null);
+            }
+        });
+        cases.add(new Case("list_row_by_id") {
+            @Override
+            void run() {
+                query(ContentUris.withAppendedId(ProductEntry.CONTENT_URI, productId + 1),
+                        LIST_PROJECTION, null, null, null);
+            }
+        });
+        cases.add(new Case("search") {
+            @Override
+            void run() {
+                query(ProductEntry.buildSearchUri("model 42", 200), LIST_PROJECTION, null, null, null);
+            }
+        });
+        // EditorActivity's load of the product it edits.
+        cases.add(new Case("editor_load") {
+            @Override
+            void run() {
+                query(ContentUris.withAppendedId(ProductEntry.DETAILS_URI, productId),
+                        EDITOR_PROJECTION, null, null, null);
+            }
+        });
+        cases.add(new Case("snapshot_page") {
+            @Override
+            void run() {
+                query(ProductEntry.buildPageUri(PRODUCTS / 2, 1000), SNAPSHOT_PROJECTION,
+                        null, null, null);
+            }
+        });
+        cases.add(new Case("export_chunk") {
+            @Override
+            void run() {
+                query(ProductEntry.buildDetailsPageUri(PRODUCTS / 2, 500), EXPORT_PROJECTION,
+                        null, null, null);
+            }
+        });
+        // Each store is read in name order until the limit, from the name index if SQLite
+        // prefers it to sorting the live products.
+        cases.add(new Case("federated_by_name", ProductEntry.INDEX_NAME) {
+            @Override
+            void run() {
+                Uri uri = ProductEntry.CONTENT_URI.buildUpon()
+                        .appendQueryParameter(ProductContract.QUERY_PARAMETER_LIMIT, "50").build();
+                count(provider.query(ProductContract.buildFederatedUri(uri, STORE), LIST_PROJECTION,
+                        null, null, ProductEntry.SORT_BY_NAME));
+            }
+        });
+        // Alerts are few next to products, reading the open ones whole is expected.
+        cases.add(new Case("stock_alerts_open", StockAlertEntry.TABLE_NAME) {
+            @Override
+            void run() {
+                query(StockAlertEntry.CONTENT_URI, null, StockAlertEntry.SELECTION_OPEN, null, null);
+            }
+        });
+        cases.add(new Case("stock_movements_of_product") {
+            @Override
+            void run() {
+                query(StockMovementEntry.CONTENT_URI, null, StockMovementEntry.COLUMN_PRODUCT_ID + "=?",
+                        productArgs, null);
+            }
+        });
+        cases.add(new Case("daily_stock_of_product") {
+            @Override
+            void run() {
+                query(DailyStockEntry.CONTENT_URI, null, DailyStockEntry.COLUMN_PRODUCT_ID + "=?",
+                        productArgs, null);
+            }
+        });
+        cases.add(new Case("suppliers", SupplierEntry.TABLE_NAME) {
+            @Override
+            void run() {
+                query(SupplierEntry.CONTENT_URI, null, null, null, null);
+            }
+        });
+        cases.add(new Case("imports", ImportEntry.TABLE_NAME) {
+            @Override
+            void run() {
+                query(ImportEntry.CONTENT_URI, null, null, null, null);
+            }
+        });
+
+        // EditorActivity's save of an existing product.
+        cases.add(new Case("update_by_id") {
+            @Override
+            void run() {
+                ContentValues values = new ContentValues();
+                values.put(ProductEntry.COLUMN_PRODUCT_NAME, "Renamed product");
+                values.put(ProductEntry.COLUMN_PRODUCT_PRICE_CENTS, 1234);
+                values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 20);
+                values.put(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD, 3);
+                values.put(ProductEntry.COLUMN_PRODUCT_PICTURE, "content://pictures/renamed");
+                values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME, "Supplier 7");
+                values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL, "supplier7@example.com");
+                provider.update(productUri, values, null, null);
+            }
+        });
+        // The sale button of a list row.
+        cases.add(new Case("sell") {
+            @Override
+            void run() {
+                provider.update(storeUri(ProductEntry.buildSellUri(SELL_ID)), null, null, null);
+            }
+        });
+        cases.add(new Case("supplier_update") {
+            @Override
+            void run() {
+                ContentValues values = new ContentValues();
+                values.put(SupplierEntry.COLUMN_SUPPLIER_NAME, "Renamed supplier");
+                provider.update(storeUri(ContentUris.withAppendedId(SupplierEntry.CONTENT_URI, 2)),
+                        values, null, null);
+            }
+        });
+        // EditorActivity's delete, undone by id.
+        cases.add(new Case("delete_and_restore_by_id") {
+            @Override
+            void run() {
+                provider.delete(productUri, null, null);
+                provider.update(storeUri(ProductEntry.RESTORE_URI), null, ProductEntry._ID + "=?",
+                        productArgs);
+            }
+        });
+        // MainActivity's delete of all products and its undo touch every row.
+        cases.add(new Case("delete_all_and_undo", ProductEntry.TABLE_NAME) {
+            @Override
+            void run() {
+                provider.delete(storeUri(ProductEntry.CONTENT_URI), null, null);
+                provider.update(storeUri(ProductEntry.RESTORE_URI), null, null, null);
+            }
+        });
+
+        // Statements run outside of a URI, by ProductPurger and ProductSync.
+        cases.add(new Case("purge_batch") {
+            @Override
+            void run() {
+                rawQuery(ProductSql.PURGE_BATCH_PICTURES, String.valueOf(Long.MAX_VALUE), "200");
+                record("DELETE FROM " + ProductEntry.TABLE_NAME + " WHERE " + ProductSql.PURGE_BATCH);
+            }
+        });
+        // Tombstones are only kept until the server accepts them, see ProductSync.
+        cases.add(new Case("sync_pending_changes", SyncEntry.TOMBSTONE_TABLE_NAME) {
+            @Override
+            void run() {
+                rawQuery(ProductSql.PENDING_PRODUCT_CHANGES, "0", "500");
+                rawQuery(ProductSql.PENDING_DELETES, "0", "500");
+            }
+        });
+        return cases;
+    }
+
+    private void record(String sql) {
+        synchronized (statements) {
+            statements.add(sql);
+        }
+    }
+
+    private void query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                       String sortOrder) {
+        count(provider.query(storeUri(uri), projection, selection, selectionArgs, sortOrder));
+    }
+
+    private void rawQuery(String sql, String... args) {
+        record(sql);
+        count(dbHelper.getReadableDatabase().rawQuery(sql, args));
+    }
+
+    // Reads the whole result, which is most of the cost of a query.
+    private static int count(Cursor cursor) {
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void checkPlan(Case testCase, String sql, StringBuilder failures) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        // Unbound parameters are NULL, which doesn't change the plan.
+        Cursor plan = db.rawQuery("EXPLAIN QUERY PLAN " + sql, null);
+        try {
+            int detailColumn = plan.getColumnIndexOrThrow("detail");
+            while (plan.moveToNext()) {
+                String detail = plan.getString(detailColumn);
+                Matcher scan = SCAN.matcher(detail);
+                // Anything but a scan is a SEARCH, or a step such as a sort that reads no table.
+                if (!scan.matches() || scan.group(1).equals("SUBQUERY")
+                        || scan.group(1).equals("CONSTANT")) {
+                    continue;
+                }
+                Matcher virtual = SCAN_VIRTUAL.matcher(scan.group(2));
+                if (virtual.find() && !virtual.group(1).equals("0")) {
+                    continue;
+                }
+                Matcher index = SCAN_INDEX.matcher(scan.group(2));
+                String scanned = index.find() ? index.group(1) : scan.group(1);
+                if (testCase.scanned.contains(scanned)) {
+                    continue;
+                }
+                failures.append('\n').append(testCase.name).append(": ").append(detail)
+                        .append(" in ").append(sql);
+            }
+        } finally {
+            plan.close();
+        }
+    }
+
+    private static Uri storeUri(Uri uri) {
+        return ProductContract.buildStoreUri(STORE, uri);
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp.data.ProductContract.StockAlertEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Takes a product across its reorder threshold through sales and updates, and checks that
+ * every crossing opens or resolves exactly one alert.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StockAlertTest {
+    private static final int THRESHOLD = 3;
+
+    private ContentResolver resolver;
+    private Uri productUri;
+    private long productId;
+
+    @Before
+    public void insertProduct() {
+        resolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_PRODUCT_PICTURE, "android.resource://test/picture");
+        values.put(ProductEntry.COLUMN_PRODUCT_NAME, "Alert test product");
+        values.put(ProductEntry.COLUMN_PRODUCT_PRICE_CENTS, 100);
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 5);
+        values.put(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD, THRESHOLD);
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME, "Supplier");
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL, "supplier@example.com");
+        productUri = resolver.insert(ProductEntry.CONTENT_URI, values);
+        assertNotNull(productUri);
+        productId = ContentUris.parseId(productUri);
+    }
+
+    @After
+    public void deleteProduct() {
+        resolver.delete(productUri, null, null);
+        // Alerts go with their product.
+        assertEquals(0, countAlerts(false));
+    }
+
+    @Test
+    public void saleAcrossThreshold_opensOneAlert() {
+        Uri sellUri = ProductEntry.buildSellUri(productId);
+        assertEquals(4, resolver.update(sellUri, null, null, null));
+        assertEquals(0, countAlerts(true));
+
+        assertEquals(3, resolver.update(sellUri, null, null, null));
+        assertEquals(1, countAlerts(true));
+        // Further sales stay below the threshold, the alert is already open.
+        assertEquals(2, resolver.update(sellUri, null, null, null));
+        assertEquals(1, countAlerts(true));
+
+        Cursor cursor = resolver.query(StockAlertEntry.CONTENT_URI, null,
+                StockAlertEntry.COLUMN_PRODUCT_ID + "=?", new String[]{String.valueOf(productId)}, null);
+        assertNotNull(cursor);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(3, cursor.getInt(cursor.getColumnIndexOrThrow(StockAlertEntry.COLUMN_QUANTITY)));
+            assertEquals(THRESHOLD, cursor.getInt(cursor.getColumnIndexOrThrow(StockAlertEntry.COLUMN_THRESHOLD)));
+            assertEquals("Alert test product",
+                    cursor.getString(cursor.getColumnIndexOrThrow(StockAlertEntry.COLUMN_PRODUCT_NAME)));
+            assertEquals("supplier@example.com",
+                    cursor.getString(cursor.getColumnIndexOrThrow(StockAlertEntry.COLUMN_SUPPLIER_EMAIL)));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void updates_openAndResolveAlerts() {
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 1);
+        assertEquals(1, resolver.update(productUri, values, null, null));
+        assertEquals(1, countAlerts(true));
+
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 10);
+        assertEquals(1, resolver.update(productUri, values, null, null));
+        assertEquals(0, countAlerts(true));
+        assertEquals(1, countAlerts(false));
+
+        // Raising the threshold above the stock is a crossing as well.
+        values.clear();
+        values.put(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD, 10);
+        assertEquals(1, resolver.update(productUri, values, null, null));
+        assertEquals(1, countAlerts(true));
+        assertEquals(2, countAlerts(false));
+    }
+
+    private int countAlerts(boolean openOnly) {
+        String selection = StockAlertEntry.COLUMN_PRODUCT_ID + "=?";
+        if (openOnly) {
+            selection += " AND " + StockAlertEntry.SELECTION_OPEN;
+        }
+        Cursor cursor = resolver.query(StockAlertEntry.CONTENT_URI, new String[]{StockAlertEntry._ID},
+                selection, new String[]{String.valueOf(productId)}, null);
+        assertNotNull(cursor);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+}
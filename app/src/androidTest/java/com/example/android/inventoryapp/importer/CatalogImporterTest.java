@@ -0,0 +1,184 @@
+package com.example.android.inventoryapp.importer;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.inventoryapp.data.ProductContract.ImportEntry;
+import com.example.android.inventoryapp.data.ProductContract.ImportErrorEntry;
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Imports generated catalogs through the provider and checks what ends up in the tables,
+ * including an import that is interrupted and run again.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CatalogImporterTest {
+    private static final int ROWS = 1000;
+    private static final int BATCH_SIZE = 100;
+    // Every row with this remainder has no price and is rejected.
+    private static final int REJECTED_EVERY = 10;
+
+    private ContentResolver resolver;
+    private long importId;
+
+    @Before
+    public void createImport() {
+        resolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+        resolver.delete(ProductEntry.CONTENT_URI, null, null);
+        ContentValues values = new ContentValues();
+        values.put(ImportEntry.COLUMN_SOURCE, "content://test/catalog.csv");
+        Uri importUri = resolver.insert(ImportEntry.CONTENT_URI, values);
+        assertNotNull(importUri);
+        importId = ContentUris.parseId(importUri);
+    }
+
+    @After
+    public void deleteProducts() {
+        resolver.delete(ProductEntry.CONTENT_URI, null, null);
+    }
+
+    @Test
+    public void csv_importsValidRowsAndRecordsRejectedOnes() throws Exception {
+        new CatalogImporter(resolver, importId, BATCH_SIZE)
+                .run(new CsvCatalogReader(new StringReader(generateCsv(ROWS))), null);
+
+        assertImported(ROWS);
+    }
+
+    @Test
+    public void json_importsValidRows() throws Exception {
+        String json = "[{\"name\": \"Phone\", \"picture\": \"content://pictures/1\", \"priceCents\": 19999,"
+                + " \"quantity\": 3, \"supplierName\": \"Supplier\", \"supplierEmail\": \"s@example.com\","
+                + " \"notes\": {\"skipped\": true}},"
+                + " {\"name\": \"No price\", \"picture\": \"content://pictures/2\","
+                + " \"supplierName\": \"Supplier\", \"supplierEmail\": \"s@example.com\"}]";
+        new CatalogImporter(resolver, importId, BATCH_SIZE)
+                .run(new JsonCatalogReader(new StringReader(json)), null);
+
+        assertEquals(1, countProducts());
+        Cursor cursor = queryImport();
+        try {
+            assertEquals(ImportEntry.STATE_FINISHED, cursor.getInt(0));
+            assertEquals(2, cursor.getLong(1));
+            assertEquals(1, cursor.getLong(2));
+            assertEquals(1, cursor.getLong(3));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void interruptedImport_continuesAfterLastBatch() throws Exception {
+        final String csv = generateCsv(ROWS);
+        // Fails in the middle of the fourth batch, the first three are committed.
+        CatalogReader failing = new CsvCatalogReader(new StringReader(csv)) {
+            private int rows;
+
+            @Override
+            public boolean readRow(ContentValues row) throws IOException {
+                if (++rows > BATCH_SIZE * 3 + BATCH_SIZE / 2) {
+                    throw new IOException("Connection lost");
+                }
+                return super.readRow(row);
+            }
+        };
+        try {
+            new CatalogImporter(resolver, importId, BATCH_SIZE).run(failing, null);
+            fail("The import should have failed");
+        } catch (IOException expected) {
+        }
+        Cursor cursor = queryImport();
+        try {
+            assertEquals(ImportEntry.STATE_RUNNING, cursor.getInt(0));
+            assertEquals(BATCH_SIZE * 3, cursor.getLong(1));
+        } finally {
+            cursor.close();
+        }
+
+        new CatalogImporter(resolver, importId, BATCH_SIZE)
+                .run(new CsvCatalogReader(new StringReader(csv)), null);
+
+        assertImported(ROWS);
+    }
+
+    private void assertImported(int rows) {
+        int rejected = rows / REJECTED_EVERY;
+        Cursor cursor = queryImport();
+        try {
+            assertEquals(ImportEntry.STATE_FINISHED, cursor.getInt(0));
+            assertEquals(rows, cursor.getLong(1));
+            assertEquals(rows - rejected, cursor.getLong(2));
+            assertEquals(rejected, cursor.getLong(3));
+        } finally {
+            cursor.close();
+        }
+        assertEquals(rows - rejected, countProducts());
+
+        Cursor errors = resolver.query(ImportErrorEntry.CONTENT_URI,
+                new String[]{ImportErrorEntry.COLUMN_ROW, ImportErrorEntry.COLUMN_MESSAGE},
+                ImportErrorEntry.COLUMN_IMPORT_ID + "=?", new String[]{String.valueOf(importId)},
+                ImportErrorEntry.COLUMN_ROW);
+        assertNotNull(errors);
+        try {
+            assertEquals(rejected, errors.getCount());
+            errors.moveToFirst();
+            assertEquals(REJECTED_EVERY, errors.getLong(0));
+            assertEquals("Product price is empty", errors.getString(1));
+        } finally {
+            errors.close();
+        }
+    }
+
+    private Cursor queryImport() {
+        Cursor cursor = resolver.query(ContentUris.withAppendedId(ImportEntry.CONTENT_URI, importId),
+                new String[]{ImportEntry.COLUMN_STATE, ImportEntry.COLUMN_ROWS_READ,
+                        ImportEntry.COLUMN_ROWS_IMPORTED, ImportEntry.COLUMN_ROWS_FAILED},
+                null, null, null);
+        assertNotNull(cursor);
+        cursor.moveToFirst();
+        return cursor;
+    }
+
+    private long countProducts() {
+        Cursor cursor = resolver.query(ProductEntry.CONTENT_URI, new String[]{"COUNT(*)"},
+                null, null, null);
+        assertNotNull(cursor);
+        try {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Rows are numbered from 1 like in ImportErrorEntry.COLUMN_ROW.
+    private static String generateCsv(int rows) {
+        StringBuilder csv = new StringBuilder(
+                "name,picture,priceCents,quantity,supplierName,supplierEmail,unused\r\n");
+        for (int row = 1; row <= rows; row++) {
+            String price = row % REJECTED_EVERY == 0 ? "" : String.valueOf(row * 100);
+            csv.append("\"Product ").append(row).append(", imported\",content://pictures/")
+                    .append(row).append(',').append(price).append(',').append(row % 50)
+                    .append(",Supplier ").append(row % 10).append(",supplier").append(row % 10)
+                    .append("@example.com,x\r\n");
+        }
+        return csv.toString();
+    }
+}
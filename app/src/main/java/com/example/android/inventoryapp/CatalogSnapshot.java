@@ -0,0 +1,332 @@
+package com.example.android.inventoryapp;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * All products in memory, stored column by column in parallel primitive arrays ordered by ID,
+ * so the catalog can be sorted and filtered without a query.
+ * <p>
+ * Sorting and filtering work on an array of row indexes supplied by the caller and allocate
+ * nothing once the snapshot has been sorted by name after its last change. Equal names share
+ * one String instance. Not thread safe, {@link CatalogSnapshotLoader} only touches it on the
+ * main thread. Row indexes are valid until the next change.
+ */
+public final class CatalogSnapshot {
+    public static final int SORT_BY_ID = 0;
+    public static final int SORT_BY_NAME = 1;
+    public static final int SORT_BY_PRICE = 2;
+    public static final int SORT_BY_QUANTITY = 3;
+
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX_MASK = (1 << RADIX_BITS) - 1;
+
+    private long[] ids;
+    private String[] names;
+    private long[] priceCents;
+    private int[] quantities;
+    private int size;
+    private final HashMap<String, String> namePool = new HashMap<>();
+    // Position of each row when sorted by name, rebuilt on the first name sort after a change.
+    private int[] nameRanks = new int[0];
+    private boolean nameRanksValid;
+    // Buffers of sort(), kept between sorts.
+    private long[] keys = new long[0];
+    private long[] keyBuffer = new long[0];
+    private int[] rowBuffer = new int[0];
+    private final int[] counts = new int[1 << RADIX_BITS];
+
+    public CatalogSnapshot() {
+        this(16);
+    }
+
+    public CatalogSnapshot(int capacity) {
+        capacity = Math.max(capacity, 1);
+        ids = new long[capacity];
+        names = new String[capacity];
+        priceCents = new long[capacity];
+        quantities = new int[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getId(int row) {
+        return ids[row];
+    }
+
+    public String getName(int row) {
+        return names[row];
+    }
+
+    public long getPriceCents(int row) {
+        return priceCents[row];
+    }
+
+    public int getQuantity(int row) {
+        return quantities[row];
+    }
+
+    /**
+     * Returns the row of the product, or -1 if it isn't in the snapshot.
+     */
+    public int indexOf(long id) {
+        int row = Arrays.binarySearch(ids, 0, size, id);
+        return row < 0 ? -1 : row;
+    }
+
+    /**
+     * Adds the product, or replaces it if it is there already. Adding products in ID order, as
+     * a keyset paged load does, only appends.
+     */
+    public void put(long id, String name, long priceCents, int quantity) {
+        int row = Arrays.binarySearch(ids, 0, size, id);
+        if (row < 0) {
+            row = -row - 1;
+            if (size == ids.length) {
+                grow();
+            }
+            int moved = size - row;
+            if (moved > 0) {
+                System.arraycopy(ids, row, ids, row + 1, moved);
+                System.arraycopy(names, row, names, row + 1, moved);
+                System.arraycopy(this.priceCents, row, this.priceCents, row + 1, moved);
+                System.arraycopy(quantities, row, quantities, row + 1, moved);
+            }
+            size++;
+            ids[row] = id;
+            nameRanksValid = false;
+        } else if (names[row] == null ? name != null : !names[row].equals(name)) {
+            nameRanksValid = false;
+        }
+        names[row] = pool(name);
+        this.priceCents[row] = priceCents;
+        quantities[row] = quantity;
+    }
+
+    /**
+     * Removes the product, returns false if it wasn't in the snapshot.
+     */
+    public boolean remove(long id) {
+        int row = indexOf(id);
+        if (row == -1) {
+            return false;
+        }
+        int moved = size - row - 1;
+        System.arraycopy(ids, row + 1, ids, row, moved);
+        System.arraycopy(names, row + 1, names, row, moved);
+        System.arraycopy(priceCents, row + 1, priceCents, row, moved);
+        System.arraycopy(quantities, row + 1, quantities, row, moved);
+        size--;
+        names[size] = null;
+        nameRanksValid = false;
+        return true;
+    }
+
+    /**
+     * Fills {@code order} with the rows sorted by the column, ties in ID order, reversed when
+     * descending, and returns the number of rows. The array must hold {@link #size()} rows.
+     */
+    public int sort(int column, boolean descending, int[] order) {
+        if (order.length < size) {
+            throw new IllegalArgumentException("Order holds " + order.length + " of " + size + " rows");
+        }
+        if (column == SORT_BY_NAME && !nameRanksValid) {
+            rankNames();
+        }
+        for (int i = 0; i < size; i++) {
+            order[i] = descending ? size - 1 - i : i;
+        }
+        if (column == SORT_BY_ID || size < 2) {
+            return size;
+        }
+        if (keys.length < size) {
+            keys = new long[ids.length];
+            keyBuffer = new long[ids.length];
+            rowBuffer = new int[ids.length];
+        }
+
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            long key = key(column, order[i]);
+            keys[i] = key;
+            min = Math.min(min, key);
+            max = Math.max(max, key);
+        }
+        // Keys from 0 to max - min, reversed when descending, read as unsigned.
+        for (int i = 0; i < size; i++) {
+            keys[i] = descending ? max - keys[i] : keys[i] - min;
+        }
+        long range = max - min;
+
+        // LSD radix sort, one pass per byte the keys use. Each pass is stable, so ties keep
+        // the order the rows started in.
+        long[] fromKeys = keys;
+        long[] toKeys = keyBuffer;
+        int[] fromRows = order;
+        int[] toRows = rowBuffer;
+        for (int shift = 0; shift < 64 && (range >>> shift) != 0; shift += RADIX_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < size; i++) {
+                counts[(int) (fromKeys[i] >>> shift) & RADIX_MASK]++;
+            }
+            int position = 0;
+            for (int digit = 0; digit < counts.length; digit++) {
+                int count = counts[digit];
+                counts[digit] = position;
+                position += count;
+            }
+            for (int i = 0; i < size; i++) {
+                int target = counts[(int) (fromKeys[i] >>> shift) & RADIX_MASK]++;
+                toKeys[target] = fromKeys[i];
+                toRows[target] = fromRows[i];
+            }
+            long[] swapKeys = fromKeys;
+            fromKeys = toKeys;
+            toKeys = swapKeys;
+            int[] swapRows = fromRows;
+            fromRows = toRows;
+            toRows = swapRows;
+        }
+        if (fromRows != order) {
+            System.arraycopy(fromRows, 0, order, 0, size);
+        }
+        return size;
+    }
+
+    /**
+     * Keeps the first {@code count} rows of {@code order} whose name contains the text,
+     * ignoring case, and returns how many were kept.
+     */
+    public int filterByName(int[] order, int count, String text) {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int row = order[i];
+            if (contains(names[row], text)) {
+                order[kept++] = row;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Keeps the first {@code count} rows of {@code order} whose price is within the bounds,
+     * both inclusive, and returns how many were kept.
+     */
+    public int filterByPrice(int[] order, int count, long minCents, long maxCents) {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int row = order[i];
+            if (priceCents[row] >= minCents && priceCents[row] <= maxCents) {
+                order[kept++] = row;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Keeps the first {@code count} rows of {@code order} whose quantity is within the bounds,
+     * both inclusive, and returns how many were kept.
+     */
+    public int filterByQuantity(int[] order, int count, int min, int max) {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int row = order[i];
+            if (quantities[row] >= min && quantities[row] <= max) {
+                order[kept++] = row;
+            }
+        }
+        return kept;
+    }
+
+    private long key(int column, int row) {
+        switch (column) {
+            case SORT_BY_NAME:
+                return nameRanks[row];
+            case SORT_BY_PRICE:
+                return priceCents[row];
+            case SORT_BY_QUANTITY:
+                return quantities[row];
+            default:
+                throw new IllegalArgumentException("Unknown sort column " + column);
+        }
+    }
+
+    // Equal names get equal ranks, so they stay in ID order like the other columns.
+    private void rankNames() {
+        Integer[] sorted = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return compareNames(names[a], names[b]);
+            }
+        });
+        if (nameRanks.length < ids.length) {
+            nameRanks = new int[ids.length];
+        }
+        int rank = 0;
+        for (int i = 0; i < size; i++) {
+            if (i > 0 && compareNames(names[sorted[i - 1]], names[sorted[i]]) != 0) {
+                rank = i;
+            }
+            nameRanks[sorted[i]] = rank;
+        }
+        nameRanksValid = true;
+    }
+
+    // Like ProductEntry.SORT_BY_NAME, ignoring case, with missing names first.
+    private static int compareNames(String a, String b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        return a.compareToIgnoreCase(b);
+    }
+
+    private static boolean contains(String name, String text) {
+        if (name == null) {
+            return false;
+        }
+        int last = name.length() - text.length();
+        for (int start = 0; start <= last; start++) {
+            if (name.regionMatches(true, start, text, 0, text.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String pool(String name) {
+        if (name == null) {
+            return null;
+        }
+        if (namePool.size() > 2 * size + 16) {
+            // Mostly names that were changed since, keep only those still in use.
+            namePool.clear();
+            for (int row = 0; row < size; row++) {
+                if (names[row] != null) {
+                    namePool.put(names[row], names[row]);
+                }
+            }
+        }
+        String pooled = namePool.get(name);
+        if (pooled == null) {
+            namePool.put(name, name);
+            pooled = name;
+        }
+        return pooled;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        names = Arrays.copyOf(names, capacity);
+        priceCents = Arrays.copyOf(priceCents, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.android.inventoryapp;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads a {@link CatalogSnapshot} of all products from the provider and keeps it up to date
+ * from change notifications: a change of one product queries that product again, any other
+ * change loads the whole snapshot again.
+ * <p>
+ * Queries run on a background thread, the snapshot is only changed and handed to the listener
+ * on the main thread, so it can be sorted and filtered there without locking.
+ * <p>
+ * Nothing in the app creates a loader yet: the product list still pages through the provider,
+ * see {@link ProductPager}. A screen that sorts or filters in memory starts one with itself
+ * and stops it when it is destroyed.
+ */
+public class CatalogSnapshotLoader {
+    // Products read per query of a full load.
+    private static final int PAGE_SIZE = 1000;
+
+    private static final String[] PROJECTION = new String[]{
+            ProductEntry._ID,
+            ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductEntry.COLUMN_PRODUCT_PRICE_CENTS,
+            ProductEntry.COLUMN_PRODUCT_QUANTITY
+    };
+
+    /**
+     * Told on the main thread whenever the snapshot changed, and once it is first loaded.
+     */
+    public interface Listener {
+        void onSnapshotChanged(CatalogSnapshot snapshot);
+    }
+
+    private final ContentResolver resolver;
+    private final Listener listener;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ContentObserver observer = new ContentObserver(mainHandler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            reload();
+        }
+
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            long id = parseProductId(uri);
+            if (id == -1 || snapshot == null) {
+                reload();
+            } else {
+                reloadProduct(id);
+            }
+        }
+    };
+
+    // Null until the first load has finished.
+    private CatalogSnapshot snapshot;
+    // Bumped on every full load so that results of older loads are dropped.
+    private int generation;
+    // Set by stop(). Changes already posted to the main thread may still arrive after it.
+    private boolean stopped;
+
+    public CatalogSnapshotLoader(ContentResolver resolver, Listener listener) {
+        this.resolver = resolver;
+        this.listener = listener;
+    }
+
+    public void start() {
+        resolver.registerContentObserver(ProductEntry.CONTENT_URI, true, observer);
+        reload();
+    }
+
+    public void stop() {
+        stopped = true;
+        resolver.unregisterContentObserver(observer);
+        executor.shutdownNow();
+        generation++;
+    }
+
+    /**
+     * Returns the snapshot, or null while it is loaded for the first time.
+     */
+    public CatalogSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    private void reload() {
+        if (stopped) {
+            return;
+        }
+        final int loadGeneration = ++generation;
+        final int capacity = snapshot != null ? snapshot.size() : PAGE_SIZE;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final CatalogSnapshot loaded = queryAll(capacity);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (loaded != null && loadGeneration == generation) {
+                            snapshot = loaded;
+                            listener.onSnapshotChanged(snapshot);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void reloadProduct(final long id) {
+        if (stopped) {
+            return;
+        }
+        final int loadGeneration = generation;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Cursor cursor = resolver.query(ContentUris.withAppendedId(ProductEntry.CONTENT_URI, id),
+                        PROJECTION, null, null, null);
+                if (cursor == null) {
+                    return;
+                }
+                final CatalogSnapshot product = new CatalogSnapshot(1);
+                try {
+                    readRows(cursor, product);
+                } finally {
+                    cursor.close();
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // A full load started since already reads the product as it is now.
+                        if (loadGeneration != generation) {
+                            return;
+                        }
+                        if (product.size() == 0) {
+                            snapshot.remove(id);
+                        } else {
+                            snapshot.put(id, product.getName(0), product.getPriceCents(0),
+                                    product.getQuantity(0));
+                        }
+                        listener.onSnapshotChanged(snapshot);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Runs on the background thread. Reads every product by keyset pages, or returns null if
+     * a query failed.
+     */
+    private CatalogSnapshot queryAll(int capacity) {
+        CatalogSnapshot loaded = new CatalogSnapshot(capacity);
+        long afterId = 0;
+        int rows;
+        do {
+            Cursor cursor = resolver.query(ProductEntry.buildPageUri(afterId, PAGE_SIZE),
+                    PROJECTION, null, null, null);
+            if (cursor == null) {
+                return null;
+            }
+            try {
+                int before = loaded.size();
+                readRows(cursor, loaded);
+                rows = loaded.size() - before;
+            } finally {
+                cursor.close();
+            }
+            if (rows > 0) {
+                afterId = loaded.getId(loaded.size() - 1);
+            }
+        } while (rows == PAGE_SIZE);
+        return loaded;
+    }
+
+    private static void readRows(Cursor cursor, CatalogSnapshot target) {
+        int idColumn = cursor.getColumnIndexOrThrow(ProductEntry._ID);
+        int nameColumn = cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_NAME);
+        int priceColumn = cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_PRICE_CENTS);
+        int quantityColumn = cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_QUANTITY);
+        while (cursor.moveToNext()) {
+            target.put(cursor.getLong(idColumn), cursor.getString(nameColumn),
+                    cursor.getLong(priceColumn), cursor.getInt(quantityColumn));
+        }
+    }
+
+    // Returns the ID of a products/<id> URI, or -1 for any other URI.
+    private static long parseProductId(Uri uri) {
+        if (uri == null) {
+            return -1;
+        }
+        List<String> segments = uri.getPathSegments();
+        if (segments.size() != 2 || !TextUtils.isDigitsOnly(segments.get(1))) {
+            return -1;
+        }
+        return ContentUris.parseId(uri);
+    }
+}
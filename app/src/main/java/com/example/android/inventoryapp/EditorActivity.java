@@ -3,7 +3,9 @@ package com.example.android.inventoryapp;
 import android.Manifest;
 import android.app.Activity;
 import android.app.AlertDialog;
+import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.pm.PackageManager;
@@ -32,6 +34,7 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp.image.ThumbnailLoader;
 
 /**
  * Created by Edvinas on 25/06/2017.
@@ -40,6 +43,17 @@ import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
 public class EditorActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<Cursor> {
 
     public static final int EXISTING_PRODUCT_LOADER = 0;
+    // Columns of the product being edited, all of them held by the provider's product cache.
+    public static final String[] PROJECTION = {
+            ProductEntry._ID,
+            ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductEntry.COLUMN_PRODUCT_PICTURE,
+            ProductEntry.COLUMN_PRODUCT_PRICE_CENTS,
+            ProductEntry.COLUMN_PRODUCT_QUANTITY,
+            ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL
+    };
     private Uri currentProductUri;
     private Uri imageUri;
     private ImageView imageViewPicture;
@@ -48,6 +62,7 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
     private EditText editTextPrice;
     private EditText editTextSupplierName;
     private EditText editTextSupplierEmail;
+    private EditText editTextReorderThreshold;
     private Button increaseQuantity;
     private Button decreaseQuantity;
     private TextView textViewQuantity;
@@ -81,6 +96,7 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         editTextPrice = (EditText) findViewById(R.id.priceEditText);
         editTextSupplierName = (EditText) findViewById(R.id.supplierNameEditText);
         editTextSupplierEmail = (EditText) findViewById(R.id.supplierEmailEditText);
+        editTextReorderThreshold = (EditText) findViewById(R.id.reorderThresholdEditText);
         increaseQuantity = (Button) findViewById(R.id.editIncreaseQuantity);
         decreaseQuantity = (Button) findViewById(R.id.editDecreaseQuantity);
         increaseQuantityButtonPress();
@@ -115,6 +131,7 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
             editTextPrice.setOnTouchListener(touchListener);
             editTextSupplierName.setOnTouchListener(touchListener);
             editTextSupplierEmail.setOnTouchListener(touchListener);
+            editTextReorderThreshold.setOnTouchListener(touchListener);
         }
     }
 
@@ -185,17 +202,23 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
             if (data != null) {
                 imageUri = data.getData();
                 clickToAddPic.setVisibility(View.GONE);
-                imageViewPicture.setImageURI(imageUri);
-                imageViewPicture.invalidate();
+                showPicture();
             }
         }
     }
 
+    private void showPicture() {
+        // The picture spans the width of the screen, decode it to about that size.
+        int targetSize = getResources().getDisplayMetrics().widthPixels;
+        ThumbnailLoader.getInstance(this).load(imageUri.toString(), imageViewPicture, targetSize);
+    }
+
     private boolean saveProduct() {
         String nameString = editTextName.getText().toString().trim();
         String priceString = editTextPrice.getText().toString().trim();
         String supplierNameString = editTextSupplierName.getText().toString().trim();
         String supplierEmailString = editTextSupplierEmail.getText().toString().trim();
+        String thresholdString = editTextReorderThreshold.getText().toString().trim();
         String quantityString = textViewQuantity.getText().toString();
 
         // Check if this is supposed to be a new product
@@ -208,7 +231,8 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
                 TextUtils.isEmpty(nameString) &&
                 TextUtils.isEmpty(priceString) &&
                 TextUtils.isEmpty(supplierNameString) &&
-                TextUtils.isEmpty(supplierEmailString) && imageUri == null) {
+                TextUtils.isEmpty(supplierEmailString) &&
+                TextUtils.isEmpty(thresholdString) && imageUri == null) {
             canProductBeSaved = true;
             return canProductBeSaved;
         }
@@ -224,7 +248,13 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
             canProductBeSaved = false;
             return canProductBeSaved;
         }
-        contentValues.put(ProductEntry.COLUMN_PRODUCT_PRICE, priceString);
+        try {
+            contentValues.put(ProductEntry.COLUMN_PRODUCT_PRICE_CENTS, PriceFormat.toCents(priceString));
+        } catch (NumberFormatException e) {
+            Toast.makeText(this, R.string.insertPriceToast, Toast.LENGTH_SHORT).show();
+            canProductBeSaved = false;
+            return canProductBeSaved;
+        }
 
         if (TextUtils.isEmpty(supplierNameString)) {
             Toast.makeText(this, R.string.insertSupplierNameToast, Toast.LENGTH_SHORT).show();
@@ -240,6 +270,16 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         }
         contentValues.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL, supplierEmailString);
 
+        // Optional, an empty field alerts only when the product runs out.
+        try {
+            contentValues.put(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD,
+                    TextUtils.isEmpty(thresholdString) ? 0 : Integer.parseInt(thresholdString));
+        } catch (NumberFormatException e) {
+            Toast.makeText(this, R.string.insertReorderThreshold, Toast.LENGTH_SHORT).show();
+            canProductBeSaved = false;
+            return canProductBeSaved;
+        }
+
         if (imageUri == null) {
             Toast.makeText(this, R.string.productPictureNotSet, Toast.LENGTH_SHORT).show();
             canProductBeSaved = false;
@@ -247,30 +287,31 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         }
         contentValues.put(ProductEntry.COLUMN_PRODUCT_PICTURE, imageUri.toString());
 
+        // Store the list thumbnail now, so the list doesn't have to decode the picture.
+        ThumbnailLoader.getInstance(this).prefetch(imageUri.toString(),
+                getResources().getDimensionPixelSize(R.dimen.listItemHeight));
+
+        // The editor closes right away, so the result is shown with the application context.
+        final Context appContext = getApplicationContext();
         if (currentProductUri == null) {
-            Uri newUri = getContentResolver().insert(ProductEntry.CONTENT_URI, contentValues);
-            if (newUri == null) {
-                // If the new content URI is null, then there was an error with insertion.
-                Toast.makeText(this, R.string.editorInsertFailed,
-                        Toast.LENGTH_SHORT).show();
-            } else
-                // Otherwise, the insertion was successful and we can display a toast.
-                Toast.makeText(this, R.string.editorInsertSUcc,
-                        Toast.LENGTH_SHORT).show();
+            ProductWriter.getInstance(this).insert(contentValues, new ProductWriter.Callback<Uri>() {
+                @Override
+                public void onWriteFinished(Uri newUri) {
+                    // If the new content URI is null, then there was an error with insertion.
+                    Toast.makeText(appContext, newUri == null ? R.string.editorInsertFailed
+                            : R.string.editorInsertSUcc, Toast.LENGTH_SHORT).show();
+                }
+            });
         } else {
-            int rowsAffected = getContentResolver().update(currentProductUri, contentValues, null, null);
-
-            // Show a toast message depending on whether or not the update was successful.
-            if (rowsAffected == 0) {
-                // If no rows were affected, then there was an error with the update.
-                Toast.makeText(this, R.string.editUpdateFailed,
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // Otherwise, the update was successful and we can display a toast.
-                Toast.makeText(this, R.string.editUpdateProductSucc,
-                        Toast.LENGTH_SHORT).show();
-
-            }
+            ProductWriter.getInstance(this).update(currentProductUri, contentValues,
+                    new ProductWriter.Callback<Integer>() {
+                        @Override
+                        public void onWriteFinished(Integer rowsAffected) {
+                            // If no rows were affected, then there was an error with the update.
+                            Toast.makeText(appContext, rowsAffected == 0 ? R.string.editUpdateFailed
+                                    : R.string.editUpdateProductSucc, Toast.LENGTH_SHORT).show();
+                        }
+                    });
         }
         canProductBeSaved = true;
         return canProductBeSaved;
@@ -342,13 +383,16 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
     }
 
     public void orderMore() {
-        Intent intent = new Intent(android.content.Intent.ACTION_SENDTO);
-        intent.setType("text/plain");
-        intent.setData(Uri.parse("mailto:" + editTextSupplierEmail.getText().toString().trim()));
-        intent.putExtra(android.content.Intent.EXTRA_SUBJECT, "New Order");
-        String message = "We want to order n of " + editTextName.getText().toString().trim();
-        intent.putExtra(android.content.Intent.EXTRA_TEXT, message);
-        startActivity(intent);
+        // At or below the threshold the order asks for what the product is short of.
+        int units = 0;
+        try {
+            units = OrderEmail.unitsToReorder(quantity,
+                    Integer.parseInt(editTextReorderThreshold.getText().toString().trim()));
+        } catch (NumberFormatException e) {
+            // No threshold, leave the units to the user.
+        }
+        startActivity(OrderEmail.build(this, editTextSupplierEmail.getText().toString().trim(),
+                editTextName.getText().toString().trim(), units));
     }
 
     /**
@@ -386,21 +430,18 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
     private void deleteProduct() {
         // Only perform the delete if this is an existing product.
         if (currentProductUri != null) {
-            // Call the ContentResolver to delete the product at the given content URI.
-            // Pass in null for the selection and selection args because the currentProductUri
-            // content URI already identifies the product that we want.
-            int rowsDeleted = getContentResolver().delete(currentProductUri, null, null);
-
-            // Show a toast message depending on whether or not the delete was successful.
-            if (rowsDeleted == 0) {
-                // If no rows were deleted, then there was an error with the delete.
-                Toast.makeText(this, R.string.errorDeletingProduct,
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // Otherwise, the delete was successful and we can display a toast.
-                Toast.makeText(this, R.string.productDeleted,
-                        Toast.LENGTH_SHORT).show();
-            }
+            // The currentProductUri content URI already identifies the product that we want.
+            // The activity closes right away, so the result is shown with the application context.
+            final Context appContext = getApplicationContext();
+            ProductWriter.getInstance(this).delete(currentProductUri,
+                    new ProductWriter.Callback<Integer>() {
+                        @Override
+                        public void onWriteFinished(Integer rowsDeleted) {
+                            // If no rows were deleted, then there was an error with the delete.
+                            Toast.makeText(appContext, rowsDeleted == 0 ? R.string.errorDeletingProduct
+                                    : R.string.productDeleted, Toast.LENGTH_SHORT).show();
+                        }
+                    });
         }
 
         // Close the activity
@@ -453,18 +494,12 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
 
     @Override
     public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        String[] projection = new String[]{
-                ProductEntry._ID,
-                ProductEntry.COLUMN_PRODUCT_NAME,
-                ProductEntry.COLUMN_PRODUCT_PICTURE,
-                ProductEntry.COLUMN_PRODUCT_PRICE,
-                ProductEntry.COLUMN_PRODUCT_QUANTITY,
-                ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME,
-                ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL
-        };
+        // The supplier lives in its own table, read the product joined with it.
+        Uri detailsUri = ContentUris.withAppendedId(ProductEntry.DETAILS_URI,
+                ContentUris.parseId(currentProductUri));
         return new CursorLoader(this,
-                currentProductUri,
-                projection,
+                detailsUri,
+                PROJECTION,
                 null, null, null);
     }
 
@@ -476,27 +511,30 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
             // Find the columns of product attributes that we're interested in
             int pictureColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_PICTURE);
             int nameColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_NAME);
-            int priceColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_PRICE);
+            int priceColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_PRICE_CENTS);
             int quantityColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_QUANTITY);
             int supplierNameColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME);
             int supplierEmailColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL);
+            int thresholdColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD);
 
             // Extract out the value from the Cursor for the given column index
             String imageUriString = cursor.getString(pictureColumnIndex);
             String name = cursor.getString(nameColumnIndex);
-            String price = cursor.getString(priceColumnIndex);
+            String price = PriceFormat.format(cursor.getLong(priceColumnIndex));
             quantity = cursor.getInt(quantityColumnIndex);
             String supplierName = cursor.getString(supplierNameColumnIndex);
             String supplierEmail = cursor.getString(supplierEmailColumnIndex);
+            int threshold = cursor.getInt(thresholdColumnIndex);
 
             // Update the views on the screen with the values from the database
             editTextName.setText(name);
             editTextPrice.setText(price);
             editTextSupplierName.setText(supplierName);
             editTextSupplierEmail.setText(supplierEmail);
+            editTextReorderThreshold.setText(String.valueOf(threshold));
             textViewQuantity.setText(Integer.toString(quantity));
             imageUri = Uri.parse(imageUriString);
-            imageViewPicture.setImageURI(imageUri);
+            showPicture();
 
         }
     }
@@ -507,7 +545,8 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         editTextPrice.setText("");
         editTextSupplierName.setText("");
         editTextSupplierEmail.setText("");
+        editTextReorderThreshold.setText("");
         textViewQuantity.setText("");
-        imageViewPicture.setImageResource(0);
+        ThumbnailLoader.getInstance(this).cancel(imageViewPicture);
     }
 }
@@ -1,33 +1,61 @@
 package com.example.android.inventoryapp;
 
+import android.annotation.TargetApi;
+import android.app.Activity;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.design.widget.FloatingActionButton;
-import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
-import android.support.v4.content.Loader;
+import android.support.design.widget.Snackbar;
+import android.support.v4.os.TraceCompat;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.DividerItemDecoration;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
+import android.view.ViewTreeObserver;
+import android.widget.Toast;
 
-import com.example.android.inventoryapp.data.ProductContract;
 import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp.exporter.ExportService;
+import com.example.android.inventoryapp.importer.ImportService;
+import com.example.android.inventoryapp.sync.SyncScheduler;
 
-public class MainActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<Cursor> {
-    public static final int PRODUCT_LOADER = 0;
-    ProductCursorAdapter productCursorAdapter;
+public class MainActivity extends AppCompatActivity {
+    // Time to wait after the last keystroke before searching.
+    private static final long SEARCH_DELAY_MS = 300;
+    private static final int REQUEST_IMPORT_CATALOG = 1;
+    private static final int REQUEST_EXPORT_CATALOG = 2;
+
+    ProductListAdapter productListAdapter;
+    private final Handler searchHandler = new Handler();
+    private String pendingSearchQuery;
+    // Set in onDestroy(), isDestroyed() only exists since Jelly Bean MR1.
+    private boolean destroyed;
+    private final Runnable searchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            productListAdapter.setSearchQuery(pendingSearchQuery);
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        // Start loading the first page of products, the query runs while the layout inflates.
+        // After a configuration change the pager of the previous instance already has them.
+        productListAdapter = new ProductListAdapter(this,
+                (ProductPager) getLastCustomNonConfigurationInstance());
+        productListAdapter.start();
         setContentView(R.layout.activity_main);
 
         // Setup FAB to open EditorActivity
@@ -40,25 +68,82 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
             }
         });
 
-        ListView productListView = (ListView) findViewById(R.id.listView);
+        RecyclerView productListView = (RecyclerView) findViewById(R.id.listView);
+        productListView.setLayoutManager(new LinearLayoutManager(this));
+        productListView.addItemDecoration(
+                new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
 
-        View emptyView = findViewById(R.id.empty_view);
-        productListView.setEmptyView(emptyView);
+        final View emptyView = findViewById(R.id.empty_view);
 
-        productCursorAdapter = new ProductCursorAdapter(this, null);
-        productListView.setAdapter(productCursorAdapter);
+        productListView.setAdapter(productListAdapter);
 
-        productListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        // RecyclerView has no empty view of its own, show it whenever the row count changes.
+        productListAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
             @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                Intent intent = new Intent(MainActivity.this, EditorActivity.class);
-                Uri currentProductUri = ContentUris.withAppendedId(ProductEntry.CONTENT_URI, id);
-                intent.setData(currentProductUri);
-                startActivity(intent);
+            public void onChanged() {
+                updateEmptyView();
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
+
+            private void updateEmptyView() {
+                emptyView.setVisibility(productListAdapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
             }
         });
-        // Kick off the loader
-        getSupportLoaderManager().initLoader(PRODUCT_LOADER, null, this);
+        reportFirstListFrame(productListView);
+    }
+
+    /**
+     * Reports the first frame that shows the loaded list, or the empty view, as the app being
+     * fully drawn: logged by the system as "Fully drawn" with the time since the launch, see
+     * the coldStart task of the benchmark module. Work that doesn't show on the first screen
+     * starts once it is drawn.
+     */
+    private void reportFirstListFrame(final View listView) {
+        listView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                if (!productListAdapter.isLoaded()) {
+                    return true;
+                }
+                listView.getViewTreeObserver().removeOnPreDrawListener(this);
+                TraceCompat.beginSection("MainActivity.firstListFrame");
+                try {
+                    if (Build.VERSION.SDK_INT >= 19) {
+                        reportFullyDrawn();
+                    }
+                    // Keeps syncing in the background once the app has been opened.
+                    SyncScheduler.getInstance(MainActivity.this).start();
+                } finally {
+                    TraceCompat.endSection();
+                }
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public Object onRetainCustomNonConfigurationInstance() {
+        // Keeps the loaded pages, and with them the scroll position, across a rotation.
+        return productListAdapter.getPager();
+    }
+
+    @Override
+    protected void onDestroy() {
+        destroyed = true;
+        searchHandler.removeCallbacks(searchRunnable);
+        if (!isChangingConfigurations()) {
+            productListAdapter.stop();
+        }
+        super.onDestroy();
     }
 
     @Override
@@ -66,6 +151,34 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         // Inflate the menu options from the res/menu/menu_catalog.xml file.
         // This adds menu items to the app bar.
         getMenuInflater().inflate(R.menu.manu_main, menu);
+
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        SearchView searchView = (SearchView) searchItem.getActionView();
+        String searchQuery = productListAdapter.getSearchQuery();
+        if (searchQuery != null) {
+            // The pager kept the results across a rotation, show the search they belong to.
+            searchItem.expandActionView();
+            searchView.setQuery(searchQuery, false);
+        }
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                searchHandler.removeCallbacks(searchRunnable);
+                productListAdapter.setSearchQuery(query);
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                // Search once typing pauses instead of on every keystroke.
+                pendingSearchQuery = newText;
+                searchHandler.removeCallbacks(searchRunnable);
+                searchHandler.postDelayed(searchRunnable, SEARCH_DELAY_MS);
+                return true;
+            }
+        });
+        // Exports are written to a document the user creates, which needs KitKat.
+        menu.findItem(R.id.action_export_catalog).setVisible(Build.VERSION.SDK_INT >= 19);
         return true;
     }
 
@@ -77,6 +190,14 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
             case R.id.action_insert_dummy_data:
                 insertProduct();
                 return true;
+            // Respond to a click on the "Import catalog" menu option
+            case R.id.action_import_catalog:
+                selectCatalog();
+                return true;
+            // Respond to a click on the "Export catalog" menu option
+            case R.id.action_export_catalog:
+                createExportDocument();
+                return true;
             // Respond to a click on the "Delete all entries" menu option
             case R.id.action_delete_all_entries:
                 deleteAllProducts();
@@ -86,45 +207,90 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
     }
 
     private void deleteAllProducts() {
-        int rowsDeleted = getContentResolver().delete(ProductEntry.CONTENT_URI, null, null);
-        Log.v("CatalogActivity", rowsDeleted + " rows deleted from products database");
+        ProductWriter.getInstance(this).delete(ProductEntry.CONTENT_URI,
+                new ProductWriter.Callback<Integer>() {
+                    @Override
+                    public void onWriteFinished(Integer rowsDeleted) {
+                        Log.v("CatalogActivity", rowsDeleted + " rows deleted from products database");
+                        // After a rotation this instance is destroyed without finishing, and
+                        // its views are no longer shown.
+                        if (rowsDeleted != 0 && !isFinishing() && !destroyed) {
+                            showUndoDelete(rowsDeleted);
+                        }
+                    }
+                });
+    }
 
+    // Deleted products are only purged after R.integer.purgeDelaySeconds, longer than this shows.
+    private void showUndoDelete(int rowsDeleted) {
+        Snackbar.make(findViewById(R.id.listView), getString(R.string.productsDeleted, rowsDeleted),
+                Snackbar.LENGTH_LONG)
+                .setAction(R.string.undo, new View.OnClickListener() {
+                    @Override
+                    public void onClick(View view) {
+                        ProductWriter.getInstance(MainActivity.this)
+                                .update(ProductEntry.RESTORE_URI, null, null);
+                    }
+                })
+                .show();
     }
 
     private void insertProduct() {
         ContentValues values = new ContentValues();
         values.put(ProductEntry.COLUMN_PRODUCT_PICTURE, getString(R.string.dummyPictureUri));
         values.put(ProductEntry.COLUMN_PRODUCT_NAME, "Samsung Galaxy S8");
-        values.put(ProductEntry.COLUMN_PRODUCT_PRICE, "650.99");
+        values.put(ProductEntry.COLUMN_PRODUCT_PRICE_CENTS, 65099);
         values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, "7");
         values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME, getString(R.string.dummyDataSupplierName));
         values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL, getString(R.string.dummyDataSupplierEmail));
+        ProductWriter.getInstance(this).insert(values, null);
     }
 
-    @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-
-        String[] projection = new String[]{
-                ProductEntry._ID,
-                ProductEntry.COLUMN_PRODUCT_NAME,
-                ProductEntry.COLUMN_PRODUCT_PICTURE,
-                ProductEntry.COLUMN_PRODUCT_PRICE,
-                ProductEntry.COLUMN_PRODUCT_QUANTITY
-        };
-        return new CursorLoader(this,
-                ProductEntry.CONTENT_URI,
-                projection,
-                null, null, null);
+    private void selectCatalog() {
+        Intent intent;
+        if (Build.VERSION.SDK_INT < 19) {
+            intent = new Intent(Intent.ACTION_GET_CONTENT);
+        } else {
+            intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+            intent.putExtra(Intent.EXTRA_MIME_TYPES, new String[]{"text/*", "application/json"});
+        }
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("*/*");
+        startActivityForResult(Intent.createChooser(intent, getString(R.string.selectCatalog)),
+                REQUEST_IMPORT_CATALOG);
     }
 
-    @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        productCursorAdapter.swapCursor(data);
+    @TargetApi(19)
+    private void createExportDocument() {
+        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("text/csv");
+        // Renaming it to .json or adding .gz changes the format, see ExportService.
+        intent.putExtra(Intent.EXTRA_TITLE, getString(R.string.exportFileName));
+        startActivityForResult(intent, REQUEST_EXPORT_CATALOG);
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
-
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        if (requestCode == REQUEST_IMPORT_CATALOG && resultCode == Activity.RESULT_OK && data != null) {
+            Uri catalog = data.getData();
+            if (Build.VERSION.SDK_INT >= 19) {
+                // Keeps the file readable when the import resumes after the process died.
+                try {
+                    getContentResolver().takePersistableUriPermission(catalog,
+                            Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                } catch (SecurityException e) {
+                    Log.w("CatalogActivity", "No persistable permission for " + catalog, e);
+                }
+            }
+            ImportService.start(this, catalog);
+            return;
+        }
+        if (requestCode == REQUEST_EXPORT_CATALOG && resultCode == Activity.RESULT_OK && data != null) {
+            ExportService.start(this, data.getData());
+            return;
+        }
+        super.onActivityResult(requestCode, resultCode, data);
     }
 
     public void onProductClick(long id) {
@@ -135,13 +301,18 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         startActivity(intent);
     }
 
-    public void onBuyClick(long id, int quantity) {
-        Uri currentProductUri = ContentUris.withAppendedId(ProductEntry.CONTENT_URI, id);
-        Log.v("MainActivity", "Uri: " + currentProductUri);
-        quantity--;
-        ContentValues values = new ContentValues();
-        values.put(ProductContract.ProductEntry.COLUMN_PRODUCT_QUANTITY, quantity);
-        getContentResolver().update(currentProductUri, values, null, null);
+    public void onBuyClick(long id) {
+        // The provider decrements the stored quantity itself, so the value shown in the list
+        // can be stale without losing a sale. Quick taps on one product become one sale.
+        final Context appContext = getApplicationContext();
+        ProductWriter.getInstance(this).sell(id, 1, new ProductWriter.Callback<Integer>() {
+            @Override
+            public void onWriteFinished(Integer remaining) {
+                if (remaining < 0) {
+                    Toast.makeText(appContext, R.string.buy_out_of_stock, Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
     }
 
 
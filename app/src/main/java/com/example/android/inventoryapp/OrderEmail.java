@@ -0,0 +1,52 @@
+package com.example.android.inventoryapp;
+
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.example.android.inventoryapp.data.ProductContract.StockAlertEntry;
+
+/**
+ * Builds the e-mail that orders more units of a product from its supplier, either from the
+ * fields of the editor or from a row of {@link StockAlertEntry#CONTENT_URI}.
+ */
+public final class OrderEmail {
+
+    private OrderEmail() {
+    }
+
+    /**
+     * Returns the order e-mail, leaving the number of units for the user to fill in when
+     * {@code units} is 0.
+     */
+    public static Intent build(Context context, String supplierEmail, String productName, int units) {
+        Intent intent = new Intent(Intent.ACTION_SENDTO);
+        intent.setType("text/plain");
+        intent.setData(Uri.parse("mailto:" + supplierEmail));
+        intent.putExtra(Intent.EXTRA_SUBJECT, context.getString(R.string.orderSubject));
+        intent.putExtra(Intent.EXTRA_TEXT, context.getString(R.string.orderMessage,
+                units > 0 ? String.valueOf(units) : "n", productName));
+        return intent;
+    }
+
+    /**
+     * Returns the order e-mail for the alert at the cursor's position, addressed to the supplier
+     * and asking for enough units to take the product back above its threshold.
+     */
+    public static Intent fromAlert(Context context, Cursor alert) {
+        return build(context,
+                alert.getString(alert.getColumnIndexOrThrow(StockAlertEntry.COLUMN_SUPPLIER_EMAIL)),
+                alert.getString(alert.getColumnIndexOrThrow(StockAlertEntry.COLUMN_PRODUCT_NAME)),
+                unitsToReorder(alert.getInt(alert.getColumnIndexOrThrow(StockAlertEntry.COLUMN_QUANTITY)),
+                        alert.getInt(alert.getColumnIndexOrThrow(StockAlertEntry.COLUMN_THRESHOLD))));
+    }
+
+    /**
+     * Returns the units that take the quantity back above the reorder threshold, or 0 if it is
+     * above already.
+     */
+    public static int unitsToReorder(int quantity, int threshold) {
+        return quantity <= threshold ? threshold - quantity + 1 : 0;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.android.inventoryapp;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Converts between the price typed by the user and the integer cents stored in the database.
+ */
+public final class PriceFormat {
+
+    private PriceFormat() {
+    }
+
+    /**
+     * Parses a price such as "650.99" into cents, rounding half up past the second decimal.
+     *
+     * @throws NumberFormatException if the text is not a non-negative number
+     */
+    public static long toCents(String price) {
+        BigDecimal value = new BigDecimal(price.trim());
+        if (value.signum() < 0) {
+            throw new NumberFormatException("Negative price " + price);
+        }
+        return value.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+
+    /**
+     * Formats cents as a price with two decimals, e.g. 65099 as "650.99".
+     */
+    public static String format(long cents) {
+        return BigDecimal.valueOf(cents, 2).toPlainString();
+    }
+}
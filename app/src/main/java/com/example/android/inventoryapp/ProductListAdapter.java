@@ -0,0 +1,181 @@
+package com.example.android.inventoryapp;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.ImageView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.example.android.inventoryapp.image.ThumbnailLoader;
+
+/**
+ * Binds the pages loaded by {@link ProductPager} to the product list. Rows whose page is still
+ * loading are shown empty until the page arrives. Changes reported by the pager are passed on
+ * row by row, so a sale only rebinds the row of the product that was sold.
+ * <p>
+ * Binding a row only copies values the pager has already read and formatted into the cached
+ * views; all rows share one click listener that reads the product from the clicked holder.
+ */
+public class ProductListAdapter extends RecyclerView.Adapter<ProductListAdapter.ViewHolder>
+        implements ProductPager.Listener {
+    private final MainActivity activity;
+    private final ProductPager pager;
+    private final ThumbnailLoader thumbnailLoader;
+    private final int thumbnailSize;
+
+    private final View.OnClickListener clickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            ViewHolder holder = (ViewHolder) v.getTag();
+            if (holder.id == -1)
+                return;
+            if (v.getId() != R.id.buyProductButton)
+                activity.onProductClick(holder.id);
+            else if (holder.quantity > 0)
+                activity.onBuyClick(holder.id);
+            else
+                Toast.makeText(activity, R.string.buy_out_of_stock, Toast.LENGTH_SHORT).show();
+        }
+    };
+
+    /**
+     * Takes over the pages of the given pager, kept from the previous instance of the activity,
+     * or starts a new one if there is none or its thumbnails have another size.
+     */
+    public ProductListAdapter(MainActivity activity, ProductPager retainedPager) {
+        this.activity = activity;
+        thumbnailLoader = ThumbnailLoader.getInstance(activity);
+        thumbnailSize = activity.getResources().getDimensionPixelSize(R.dimen.listItemHeight);
+        if (retainedPager != null && retainedPager.getThumbnailSize() == thumbnailSize) {
+            pager = retainedPager;
+            pager.setListener(this);
+        } else {
+            if (retainedPager != null) {
+                retainedPager.stop();
+            }
+            pager = new ProductPager(activity.getContentResolver(), this, thumbnailSize);
+        }
+        setHasStableIds(true);
+    }
+
+    public ProductPager getPager() {
+        return pager;
+    }
+
+    public void start() {
+        pager.start();
+    }
+
+    public void stop() {
+        pager.stop();
+    }
+
+    public void setSearchQuery(String query) {
+        pager.setSearchQuery(query);
+    }
+
+    public String getSearchQuery() {
+        return pager.getSearchQuery();
+    }
+
+    public boolean isLoaded() {
+        return pager.isLoaded();
+    }
+
+    @Override
+    public void onPagesChanged() {
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public void onInserted(int position, int count) {
+        notifyItemRangeInserted(position, count);
+    }
+
+    @Override
+    public void onRemoved(int position, int count) {
+        notifyItemRangeRemoved(position, count);
+    }
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+        notifyItemMoved(fromPosition, toPosition);
+    }
+
+    @Override
+    public void onChanged(int position, int count, Object payload) {
+        notifyItemRangeChanged(position, count, payload);
+    }
+
+    @Override
+    public int getItemCount() {
+        return pager.getRowCount();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        // RecyclerView asks for IDs of rows it doesn't show, which must not move the window.
+        ProductPager.Page page = pager.peekPage(position);
+        int row = position % ProductPager.PAGE_SIZE;
+        if (page == null || row >= page.size) {
+            // Product IDs are positive, rows still loading get a distinct negative one.
+            return -1 - position;
+        }
+        return page.ids[row];
+    }
+
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(activity).inflate(R.layout.list_item, parent, false);
+        ViewHolder holder = new ViewHolder(view);
+        view.setTag(holder);
+        holder.buyButton.setTag(holder);
+        view.setOnClickListener(clickListener);
+        holder.buyButton.setOnClickListener(clickListener);
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        ProductPager.Page page = pager.getPageFor(position);
+        int row = position % ProductPager.PAGE_SIZE;
+        if (page == null || row >= page.size) {
+            holder.id = -1;
+            holder.nameTextView.setText("");
+            holder.quantityTextView.setText("");
+            holder.priceTextView.setText("");
+            thumbnailLoader.cancel(holder.pictureImageView);
+            return;
+        }
+        holder.id = page.ids[row];
+        holder.quantity = page.quantities[row];
+        // Update the Views with the attributes of the current product
+        holder.nameTextView.setText(page.names[row]);
+        holder.quantityTextView.setText(page.quantityTexts[row]);
+        holder.priceTextView.setText(page.priceTexts[row]);
+        thumbnailLoader.load(page.pictures[row], page.thumbnailKeys[row], holder.pictureImageView,
+                thumbnailSize);
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView nameTextView;
+        final TextView quantityTextView;
+        final TextView priceTextView;
+        final ImageView pictureImageView;
+        final Button buyButton;
+        long id = -1;
+        int quantity;
+
+        ViewHolder(View view) {
+            super(view);
+            nameTextView = (TextView) view.findViewById(R.id.productName);
+            quantityTextView = (TextView) view.findViewById(R.id.productQuantityNumber);
+            priceTextView = (TextView) view.findViewById(R.id.productPriceNumber);
+            pictureImageView = (ImageView) view.findViewById(R.id.productImage);
+            buyButton = (Button) view.findViewById(R.id.buyProductButton);
+        }
+    }
+}
@@ -0,0 +1,744 @@
+package com.example.android.inventoryapp;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.content.ContentResolverCompat;
+import android.support.v4.os.CancellationSignal;
+import android.support.v4.os.OperationCanceledException;
+import android.support.v4.os.TraceCompat;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+import android.text.TextUtils;
+
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp.image.ThumbnailLoader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads the product list in fixed size pages through the keyset paging URI of
+ * {@link com.example.android.inventoryapp.data.ProductProvider}.
+ * <p>
+ * Pages are queried on a background thread ahead of the scroll position, and only a small
+ * window of pages around the visible rows is kept in memory, so the time to the first row and
+ * the memory used don't depend on the size of the table. For pages outside the window only the
+ * ID they start after is remembered, which is enough to load them again.
+ * <p>
+ * While a search query is set, the pages hold the ranked search results instead. A new query
+ * cancels the search that is still running for the previous one.
+ * <p>
+ * Changes are reported as row updates: when the provider notifies a single product, only that
+ * row is queried again and reported as changed. Other changes reload the window and report the
+ * difference to the previous rows, computed with {@link DiffUtil}.
+ * <p>
+ * The pager outlives a configuration change: the activity hands it to its next instance, which
+ * takes over the loaded pages with {@link #setListener(Listener)} instead of loading them again.
+ * <p>
+ * All public methods must be called on the main thread.
+ */
+public class ProductPager {
+    public static final int PAGE_SIZE = 50;
+    // Pages kept loaded on each side of the page that is currently shown.
+    private static final int WINDOW_PAGES = 2;
+    // Search results are loaded at once, up to this many pages.
+    private static final int SEARCH_PAGES = 4;
+
+    private static final String[] PROJECTION = new String[]{
+            ProductEntry._ID,
+            ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductEntry.COLUMN_PRODUCT_PICTURE,
+            ProductEntry.COLUMN_PRODUCT_PRICE_CENTS,
+            ProductEntry.COLUMN_PRODUCT_QUANTITY
+    };
+    // Reads the keys of the pages before the window.
+    private static final String[] ID_PROJECTION = new String[]{ProductEntry._ID};
+
+    /**
+     * Receives row level changes, and {@link #onPagesChanged()} when the whole list was replaced.
+     */
+    public interface Listener extends ListUpdateCallback {
+        void onPagesChanged();
+    }
+
+    /**
+     * One page of products, stored column by column.
+     */
+    static final class Page {
+        final long[] ids = new long[PAGE_SIZE];
+        final String[] names = new String[PAGE_SIZE];
+        final String[] pictures = new String[PAGE_SIZE];
+        final long[] priceCents = new long[PAGE_SIZE];
+        final int[] quantities = new int[PAGE_SIZE];
+        // Display texts, formatted on the loading thread so binding a row doesn't allocate them.
+        final String[] priceTexts = new String[PAGE_SIZE];
+        final String[] quantityTexts = new String[PAGE_SIZE];
+        // ThumbnailLoader keys of the pictures at the size the list shows them.
+        final String[] thumbnailKeys = new String[PAGE_SIZE];
+        int size;
+        // ID of the last row of the page, the key the next page starts after.
+        long lastId;
+
+        boolean sameRow(int row, Page other, int otherRow) {
+            return ids[row] == other.ids[otherRow]
+                    && TextUtils.equals(names[row], other.names[otherRow])
+                    && TextUtils.equals(pictures[row], other.pictures[otherRow])
+                    && priceCents[row] == other.priceCents[otherRow]
+                    && quantities[row] == other.quantities[otherRow];
+        }
+    }
+
+    private final ContentResolver resolver;
+    private Listener listener;
+    private final int thumbnailSize;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ContentObserver observer = new ContentObserver(mainHandler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            // Without the URI, as before Jelly Bean, any row may have moved.
+            if (!stopped) {
+                refresh();
+            }
+        }
+
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            // Changes posted before stop() still arrive, the executor no longer takes work.
+            if (stopped) {
+                return;
+            }
+            long id = parseProductId(uri);
+            if (id == -1) {
+                refresh();
+            } else {
+                onProductChanged(id);
+            }
+        }
+    };
+
+    // pages.get(n) is null while page n is not loaded or has been evicted.
+    private final ArrayList<Page> pages = new ArrayList<>();
+    // afterIds[n] is the key page n starts after, known once page n - 1 has been loaded.
+    private long[] afterIds = new long[16];
+    private boolean[] loading = new boolean[16];
+    private int rowCount;
+    private boolean endReached;
+    private int currentPage;
+    // Bumped on every refresh so that results of older loads are dropped.
+    private int generation;
+    // Null while browsing all products.
+    private String searchQuery;
+    private CancellationSignal searchSignal;
+    private boolean started;
+    private boolean stopped;
+
+    public ProductPager(ContentResolver resolver, Listener listener, int thumbnailSize) {
+        this.resolver = resolver;
+        this.listener = listener;
+        this.thumbnailSize = thumbnailSize;
+    }
+
+    /**
+     * Registers for changes and loads the first page. Does nothing if the pager was already
+     * started, as when it is kept across a configuration change.
+     */
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        resolver.registerContentObserver(ProductEntry.CONTENT_URI, true, observer);
+        loadPage(0);
+    }
+
+    public void stop() {
+        stopped = true;
+        resolver.unregisterContentObserver(observer);
+        cancelSearch();
+        executor.shutdownNow();
+        generation++;
+    }
+
+    /**
+     * Reports further changes to the given listener, the adapter of the activity that took the
+     * pager over.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the search the pages hold the results of, or null while browsing all products.
+     */
+    public String getSearchQuery() {
+        return searchQuery;
+    }
+
+    public int getThumbnailSize() {
+        return thumbnailSize;
+    }
+
+    /**
+     * Switches the pages to the results of the given search, or back to all products if the
+     * query is empty.
+     */
+    public void setSearchQuery(String query) {
+        if (query != null && query.trim().isEmpty()) {
+            query = null;
+        }
+        if (query == null ? searchQuery == null : query.equals(searchQuery)) {
+            return;
+        }
+        searchQuery = query;
+        generation++;
+        cancelSearch();
+        pages.clear();
+        Arrays.fill(loading, false);
+        rowCount = 0;
+        endReached = false;
+        currentPage = 0;
+        if (searchQuery == null) {
+            loadPage(0);
+        } else {
+            search();
+        }
+        listener.onPagesChanged();
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns whether the rows to show first have been loaded, even if there are none.
+     */
+    public boolean isLoaded() {
+        return rowCount > 0 || endReached;
+    }
+
+    /**
+     * Returns the page holding the given row, or null if it isn't loaded. Unlike
+     * {@link #getPageFor(int)} it changes nothing, for reads that don't show the row.
+     */
+    Page peekPage(int position) {
+        int pageIndex = position / PAGE_SIZE;
+        return pageIndex < pages.size() ? pages.get(pageIndex) : null;
+    }
+
+    /**
+     * Returns the page holding the given row, or null if it isn't loaded yet. Also schedules the
+     * page itself and the next one for loading, and drops pages that fell out of the window.
+     */
+    Page getPageFor(int position) {
+        int pageIndex = position / PAGE_SIZE;
+        if (searchQuery != null) {
+            // All search results are loaded at once.
+            return pageIndex < pages.size() ? pages.get(pageIndex) : null;
+        }
+        if (pageIndex != currentPage) {
+            currentPage = pageIndex;
+            evictOutsideWindow();
+        }
+        loadPage(pageIndex);
+        if (position % PAGE_SIZE >= PAGE_SIZE / 2) {
+            // Past the middle of the page, fetch the next one before it is needed.
+            loadPage(pageIndex + 1);
+        }
+        return pageIndex < pages.size() ? pages.get(pageIndex) : null;
+    }
+
+    private void loadPage(final int pageIndex) {
+        if (stopped || pageIndex < pages.size() && pages.get(pageIndex) != null) {
+            return;
+        }
+        // A page can only be loaded once the key it starts after is known.
+        if (pageIndex > pages.size() || (pageIndex == pages.size() && endReached)) {
+            return;
+        }
+        ensureCapacity(pageIndex + 1);
+        if (loading[pageIndex]) {
+            return;
+        }
+        loading[pageIndex] = true;
+
+        final long afterId = afterIds[pageIndex];
+        final int loadGeneration = generation;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Page page;
+                if (pageIndex == 0) {
+                    // The first cursor of the list, on the path to its first frame.
+                    TraceCompat.beginSection("ProductPager.queryFirstPage");
+                    try {
+                        page = queryPage(afterId, PROJECTION);
+                    } finally {
+                        TraceCompat.endSection();
+                    }
+                } else {
+                    page = queryPage(afterId, PROJECTION);
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (loadGeneration == generation) {
+                            onPageLoaded(pageIndex, page);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPageLoaded(int pageIndex, Page page) {
+        loading[pageIndex] = false;
+        if (page == null) {
+            return;
+        }
+        int oldRowCount = rowCount;
+        while (pages.size() <= pageIndex) {
+            pages.add(null);
+        }
+        pages.set(pageIndex, page);
+        if (pageIndex + 1 == pages.size()) {
+            rowCount = pageIndex * PAGE_SIZE + page.size;
+            endReached = page.size < PAGE_SIZE;
+            ensureCapacity(pageIndex + 2);
+            afterIds[pageIndex + 1] = page.lastId;
+        }
+        evictOutsideWindow();
+
+        // The rows of the page were shown empty so far, rows past the old end are new.
+        int start = pageIndex * PAGE_SIZE;
+        int changedEnd = Math.min(start + page.size, Math.min(oldRowCount, rowCount));
+        if (rowCount < oldRowCount) {
+            listener.onRemoved(rowCount, oldRowCount - rowCount);
+        }
+        if (changedEnd > start) {
+            listener.onChanged(start, changedEnd - start, null);
+        }
+        if (rowCount > oldRowCount) {
+            listener.onInserted(oldRowCount, rowCount - oldRowCount);
+        } else if (rowCount == 0 && oldRowCount == 0) {
+            // Nothing changed row by row, but the list is known to be empty now.
+            listener.onPagesChanged();
+        }
+    }
+
+    /**
+     * Queries a single changed product again. If it is loaded and still there, only its row is
+     * updated; anything else may move rows between pages and reloads the window.
+     */
+    private void onProductChanged(final long id) {
+        if (findRow(id) == -1) {
+            refresh();
+            return;
+        }
+        final int loadGeneration = generation;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Page product = queryProduct(id);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (product != null && loadGeneration == generation) {
+                            onProductLoaded(id, product);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void onProductLoaded(long id, Page product) {
+        // Look the row up again, its page may have been evicted in the meantime.
+        int position = findRow(id);
+        if (position == -1) {
+            return;
+        }
+        Page page = pages.get(position / PAGE_SIZE);
+        int row = position % PAGE_SIZE;
+        if (product.size == 0
+                || (searchQuery != null && !TextUtils.equals(page.names[row], product.names[0]))) {
+            // Deleted, or renamed so the search ranking may differ.
+            refresh();
+            return;
+        }
+        page.names[row] = product.names[0];
+        page.pictures[row] = product.pictures[0];
+        page.priceCents[row] = product.priceCents[0];
+        page.quantities[row] = product.quantities[0];
+        page.priceTexts[row] = product.priceTexts[0];
+        page.quantityTexts[row] = product.quantityTexts[0];
+        listener.onChanged(position, 1, null);
+    }
+
+    // Returns the position of the loaded row with the given ID, or -1.
+    private int findRow(long id) {
+        for (int pageIndex = 0; pageIndex < pages.size(); pageIndex++) {
+            Page page = pages.get(pageIndex);
+            if (page == null) {
+                continue;
+            }
+            for (int row = 0; row < page.size; row++) {
+                if (page.ids[row] == id) {
+                    return pageIndex * PAGE_SIZE + row;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // Returns the ID of a products/<id> URI, or -1 for any other URI.
+    private static long parseProductId(Uri uri) {
+        if (uri == null) {
+            return -1;
+        }
+        List<String> segments = uri.getPathSegments();
+        if (segments.size() != 2 || !TextUtils.isDigitsOnly(segments.get(1))) {
+            return -1;
+        }
+        return ContentUris.parseId(uri);
+    }
+
+    /**
+     * Reloads the window after the products changed. Rows before the window may have been
+     * deleted or restored too, which moves every later page, so the keys of the pages before
+     * the window are read again first: one query of IDs alone, which the provider answers from
+     * an index without reading the rows. The window is then loaded from its new key. If the
+     * list shrank below the window, the window moves up to the last page.
+     */
+    private void refresh() {
+        if (searchQuery != null) {
+            generation++;
+            search();
+            return;
+        }
+        final int windowStart = Math.max(0, Math.min(currentPage, pages.size() - 1) - WINDOW_PAGES);
+        final int windowEnd = Math.max(windowStart, currentPage) + WINDOW_PAGES;
+        final int refreshGeneration = ++generation;
+        Arrays.fill(loading, false);
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long[] keys = queryPageKeys(windowStart);
+                if (keys == null) {
+                    return;
+                }
+                int firstPage = keys.length - 1;
+                ArrayList<Page> newPages = queryWindow(keys[firstPage], windowEnd - firstPage);
+                if (newPages != null && firstPage > 0 && newPages.get(0).size == 0) {
+                    // Rows were deleted after the keys were read, start over from the top.
+                    firstPage = 0;
+                    newPages = queryWindow(0, WINDOW_PAGES);
+                }
+                if (newPages == null) {
+                    return;
+                }
+                final int refreshedFirstPage = firstPage;
+                final ArrayList<Page> refreshedPages = newPages;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (refreshGeneration == generation) {
+                            onRefreshed(refreshedFirstPage, keys, refreshedPages);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Runs on the background thread. Returns the keys pages 0 to {@code pageCount} start
+     * after, fewer if the list ends before, or null if the query failed. The last key returned
+     * always starts a page that has rows, unless the list is empty.
+     */
+    private long[] queryPageKeys(int pageCount) {
+        if (pageCount == 0) {
+            return new long[]{0};
+        }
+        // One row more tells whether the last page has rows.
+        Cursor cursor = resolver.query(ProductEntry.buildPageUri(0, pageCount * PAGE_SIZE + 1),
+                ID_PROJECTION, null, null, null);
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            int rows = cursor.getCount();
+            int lastPage = rows == 0 ? 0 : Math.min(pageCount, (rows - 1) / PAGE_SIZE);
+            long[] keys = new long[lastPage + 1];
+            for (int page = 1; page <= lastPage; page++) {
+                cursor.moveToPosition(page * PAGE_SIZE - 1);
+                keys[page] = cursor.getLong(0);
+            }
+            return keys;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Runs on the background thread. Returns the pages after the given key up to the first
+     * short one, at most {@code maxPages + 1}, or null if a query failed.
+     */
+    private ArrayList<Page> queryWindow(long afterId, int maxPages) {
+        ArrayList<Page> newPages = new ArrayList<>();
+        for (int i = 0; i <= maxPages; i++) {
+            Page page = queryPage(afterId, PROJECTION);
+            if (page == null) {
+                return null;
+            }
+            newPages.add(page);
+            afterId = page.lastId;
+            if (page.size < PAGE_SIZE) {
+                break;
+            }
+        }
+        return newPages;
+    }
+
+    private void onRefreshed(int firstPage, long[] keys, ArrayList<Page> newPages) {
+        ArrayList<Page> oldPages = new ArrayList<>(pages);
+        int oldRowCount = rowCount;
+
+        // The list now ends with the last page queried, the window is never empty.
+        pages.clear();
+        for (int i = 0; i < firstPage; i++) {
+            pages.add(null);
+        }
+        pages.addAll(newPages);
+        ensureCapacity(pages.size() + 1);
+        System.arraycopy(keys, 0, afterIds, 0, firstPage + 1);
+        for (int i = 0; i < newPages.size(); i++) {
+            afterIds[firstPage + i + 1] = newPages.get(i).lastId;
+        }
+        Page lastPage = newPages.get(newPages.size() - 1);
+        rowCount = (pages.size() - 1) * PAGE_SIZE + lastPage.size;
+        endReached = lastPage.size < PAGE_SIZE;
+
+        // Only a few windows of rows are known, so the diff is cheap enough for the main thread.
+        DiffUtil.calculateDiff(new RowDiff(oldPages, oldRowCount, pages, rowCount), false)
+                .dispatchUpdatesTo(listener);
+    }
+
+    private void search() {
+        cancelSearch();
+        if (stopped) {
+            return;
+        }
+        final CancellationSignal signal = new CancellationSignal();
+        searchSignal = signal;
+        final String query = searchQuery;
+        final int searchGeneration = generation;
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final ArrayList<Page> results = querySearch(query, signal);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (results != null && searchGeneration == generation) {
+                            onSearchFinished(results);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void onSearchFinished(ArrayList<Page> results) {
+        searchSignal = null;
+        pages.clear();
+        pages.addAll(results);
+        Page lastPage = results.get(results.size() - 1);
+        rowCount = (results.size() - 1) * PAGE_SIZE + lastPage.size;
+        endReached = true;
+        listener.onPagesChanged();
+    }
+
+    private void cancelSearch() {
+        if (searchSignal != null) {
+            searchSignal.cancel();
+            searchSignal = null;
+        }
+    }
+
+    private void evictOutsideWindow() {
+        for (int i = 0; i < pages.size(); i++) {
+            if (Math.abs(i - currentPage) > WINDOW_PAGES) {
+                pages.set(i, null);
+            }
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (afterIds.length < size) {
+            int newLength = Math.max(size, afterIds.length * 2);
+            afterIds = Arrays.copyOf(afterIds, newLength);
+            loading = Arrays.copyOf(loading, newLength);
+        }
+    }
+
+    /**
+     * Runs on the background thread. Returns null if the query failed.
+     */
+    private Page queryPage(long afterId, String[] projection) {
+        Cursor cursor = resolver.query(ProductEntry.buildPageUri(afterId, PAGE_SIZE),
+                projection, null, null, null);
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            Page page = readPage(cursor, projection.length > 1);
+            if (page.size == 0) {
+                page.lastId = afterId;
+            }
+            return page;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Runs on the background thread. Returns a page holding the product, an empty page if it
+     * doesn't exist anymore, or null if the query failed.
+     */
+    private Page queryProduct(long id) {
+        Cursor cursor = resolver.query(ContentUris.withAppendedId(ProductEntry.CONTENT_URI, id),
+                PROJECTION, null, null, null);
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            return readPage(cursor, true);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Runs on the background thread. Returns null if the search failed or was cancelled.
+     */
+    private ArrayList<Page> querySearch(String query, CancellationSignal signal) {
+        Cursor cursor;
+        try {
+            cursor = ContentResolverCompat.query(resolver,
+                    ProductEntry.buildSearchUri(query, SEARCH_PAGES * PAGE_SIZE),
+                    PROJECTION, null, null, null, signal);
+        } catch (OperationCanceledException e) {
+            return null;
+        }
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            ArrayList<Page> results = new ArrayList<>();
+            do {
+                results.add(readPage(cursor, true));
+            } while (results.get(results.size() - 1).size == PAGE_SIZE && !cursor.isLast()
+                    && !cursor.isAfterLast());
+            return results;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Reads up to a page of rows from the cursor, starting after its current position.
+     */
+    private Page readPage(Cursor cursor, boolean fullRows) {
+        Page page = new Page();
+        int idColumn = cursor.getColumnIndexOrThrow(ProductEntry._ID);
+        int nameColumn = fullRows ? cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_NAME) : -1;
+        int pictureColumn = fullRows ? cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_PICTURE) : -1;
+        int priceColumn = fullRows ? cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_PRICE_CENTS) : -1;
+        int quantityColumn = fullRows ? cursor.getColumnIndexOrThrow(ProductEntry.COLUMN_PRODUCT_QUANTITY) : -1;
+        while (page.size < PAGE_SIZE && cursor.moveToNext()) {
+            int row = page.size++;
+            page.ids[row] = cursor.getLong(idColumn);
+            if (fullRows) {
+                page.names[row] = cursor.getString(nameColumn);
+                page.pictures[row] = cursor.getString(pictureColumn);
+                page.priceCents[row] = cursor.getLong(priceColumn);
+                page.quantities[row] = cursor.getInt(quantityColumn);
+                page.priceTexts[row] = PriceFormat.format(page.priceCents[row]);
+                page.quantityTexts[row] = Integer.toString(page.quantities[row]);
+                page.thumbnailKeys[row] = ThumbnailLoader.cacheKey(page.pictures[row], thumbnailSize);
+            }
+        }
+        if (page.size > 0) {
+            page.lastId = page.ids[page.size - 1];
+        }
+        return page;
+    }
+
+    /**
+     * Compares the rows before and after a refresh. Rows whose page isn't loaded on either side
+     * are taken to be unchanged, they are bound again anyway once their page is loaded.
+     */
+    private static final class RowDiff extends DiffUtil.Callback {
+        private final List<Page> oldPages;
+        private final int oldRowCount;
+        private final List<Page> newPages;
+        private final int newRowCount;
+
+        RowDiff(List<Page> oldPages, int oldRowCount, List<Page> newPages, int newRowCount) {
+            this.oldPages = oldPages;
+            this.oldRowCount = oldRowCount;
+            this.newPages = newPages;
+            this.newRowCount = newRowCount;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldRowCount;
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newRowCount;
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            Page oldPage = pageAt(oldPages, oldPosition);
+            Page newPage = pageAt(newPages, newPosition);
+            if (oldPage == null || newPage == null) {
+                return oldPosition == newPosition;
+            }
+            return oldPage.ids[oldPosition % PAGE_SIZE] == newPage.ids[newPosition % PAGE_SIZE];
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            Page oldPage = pageAt(oldPages, oldPosition);
+            Page newPage = pageAt(newPages, newPosition);
+            if (oldPage == null || newPage == null) {
+                return oldPage == newPage;
+            }
+            return oldPage.sameRow(oldPosition % PAGE_SIZE, newPage, newPosition % PAGE_SIZE);
+        }
+
+        private static Page pageAt(List<Page> pages, int position) {
+            int pageIndex = position / PAGE_SIZE;
+            if (pageIndex >= pages.size()) {
+                return null;
+            }
+            Page page = pages.get(pageIndex);
+            return page != null && position % PAGE_SIZE < page.size ? page : null;
+        }
+    }
+}
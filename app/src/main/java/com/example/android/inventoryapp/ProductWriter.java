@@ -0,0 +1,177 @@
+package com.example.android.inventoryapp;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Writes products through the provider on one background thread, in the order they were
+ * queued, and reports the results back on the main thread.
+ * <p>
+ * The writer lives as long as the process, so a write queued by an activity that is then
+ * recreated or finished still happens. Sales of a product queued while an earlier sale of it
+ * is waiting are written as one sale of the summed amount.
+ */
+public class ProductWriter {
+    /**
+     * Told the result of a write on the main thread.
+     */
+    public interface Callback<T> {
+        void onWriteFinished(T result);
+    }
+
+    private static ProductWriter instance;
+
+    private final ContentResolver resolver;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Sales not written yet by product id, guarded by itself.
+    private final HashMap<Long, ArrayList<Sale>> pendingSales = new HashMap<>();
+
+    ProductWriter(ContentResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    public static synchronized ProductWriter getInstance(Context context) {
+        if (instance == null) {
+            instance = new ProductWriter(context.getApplicationContext().getContentResolver());
+        }
+        return instance;
+    }
+
+    /**
+     * Inserts a product, the callback gets its URI or null if it was rejected.
+     */
+    public void insert(final ContentValues values, final Callback<Uri> callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Uri uri;
+                try {
+                    uri = resolver.insert(ProductEntry.CONTENT_URI, values);
+                } catch (IllegalArgumentException e) {
+                    uri = null;
+                }
+                deliver(callback, uri);
+            }
+        });
+    }
+
+    /**
+     * Updates the products at the URI, the callback gets the number of rows updated.
+     */
+    public void update(final Uri uri, final ContentValues values, final Callback<Integer> callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int rows;
+                try {
+                    rows = resolver.update(uri, values, null, null);
+                } catch (IllegalArgumentException e) {
+                    rows = 0;
+                }
+                deliver(callback, rows);
+            }
+        });
+    }
+
+    /**
+     * Deletes the products at the URI, the callback gets the number of rows deleted.
+     */
+    public void delete(final Uri uri, final Callback<Integer> callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                deliver(callback, resolver.delete(uri, null, null));
+            }
+        });
+    }
+
+    /**
+     * Sells units of a product like {@link ProductEntry#buildSellUri}, the callback gets the
+     * remaining quantity or -1 if there were too few units.
+     */
+    public void sell(final long productId, int amount, Callback<Integer> callback) {
+        synchronized (pendingSales) {
+            ArrayList<Sale> sales = pendingSales.get(productId);
+            if (sales != null) {
+                // Joins the sale that is already queued.
+                sales.add(new Sale(amount, callback));
+                return;
+            }
+            sales = new ArrayList<>();
+            sales.add(new Sale(amount, callback));
+            pendingSales.put(productId, sales);
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeSales(productId);
+            }
+        });
+    }
+
+    private void writeSales(long productId) {
+        ArrayList<Sale> sales;
+        synchronized (pendingSales) {
+            sales = pendingSales.remove(productId);
+        }
+        int amount = 0;
+        for (Sale sale : sales) {
+            amount += sale.amount;
+        }
+        int remaining = sell(productId, amount);
+        if (remaining < 0 && sales.size() > 1) {
+            // Too few units for all of them, the ones that still fit are sold one by one.
+            for (Sale sale : sales) {
+                deliver(sale.callback, sell(productId, sale.amount));
+            }
+            return;
+        }
+        for (Sale sale : sales) {
+            deliver(sale.callback, remaining);
+        }
+    }
+
+    private int sell(long productId, int amount) {
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.SELL_AMOUNT, amount);
+        try {
+            return resolver.update(ProductEntry.buildSellUri(productId), values, null, null);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private <T> void deliver(final Callback<T> callback, final T result) {
+        if (callback == null) {
+            return;
+        }
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onWriteFinished(result);
+            }
+        });
+    }
+
+    private static class Sale {
+        final int amount;
+        final Callback<Integer> callback;
+
+        Sale(int amount, Callback<Integer> callback) {
+            this.amount = amount;
+            this.callback = callback;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.android.inventoryapp.data;
+
+/**
+ * Counts call latencies in buckets of powers of two microseconds, so recording is a few
+ * arithmetic operations and the memory used is fixed. Not thread safe.
+ */
+final class LatencyHistogram {
+    // Bucket 0 holds calls under a microsecond, bucket n those under 2^n, the last one the rest.
+    static final int BUCKETS = 32;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+    private long rows;
+
+    void add(long nanos, int rowCount) {
+        long micros = nanos / 1000;
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        counts[bucket]++;
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+        rows += rowCount;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getTotalMicros() {
+        return totalNanos / 1000;
+    }
+
+    long getMaxMicros() {
+        return maxNanos / 1000;
+    }
+
+    long getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the upper bound in microseconds of the bucket holding the given fraction of the
+     * calls, never more than the slowest call. 0 if nothing was recorded.
+     */
+    long getPercentileMicros(double fraction) {
+        long target = (long) Math.ceil(fraction * count);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts[bucket];
+            if (seen >= target && seen > 0) {
+                // The last bucket has no upper bound of its own.
+                return bucket == BUCKETS - 1 ? getMaxMicros() : Math.min(1L << bucket, getMaxMicros());
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.android.inventoryapp.data;
+
+import android.database.AbstractCursor;
+import android.database.Cursor;
+
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+
+import java.util.Arrays;
+
+/**
+ * The rows of several stores as one cursor, merged from cursors that are each sorted by the
+ * same column. Rows are merged only as far as the cursor has been moved, one k-way merge step
+ * per row, and all that is kept of a merged row is its store and its position there, so the
+ * stores are never copied into memory. Moving back reads the row from its store again.
+ * <p>
+ * Ties between stores keep the order of the stores. Adds {@link ProductEntry#COLUMN_STORE}
+ * with the store of each row.
+ */
+final class MergedStoreCursor extends AbstractCursor {
+    private final Cursor[] cursors;
+    private final String[] stores;
+    private final int keyColumn;
+    private final boolean noCase;
+    private final boolean descending;
+    private final String[] columnNames;
+    private final int storeColumn;
+    private final int count;
+
+    // Next position of every store that isn't merged yet, and the sort key found there.
+    private final int[] heads;
+    private final Object[] headKeys;
+    // Store and position of every row merged so far.
+    private int[] rowStores = new int[64];
+    private int[] rowPositions = new int[64];
+    private int merged;
+    private int currentStore;
+
+    /**
+     * @param cursors    one cursor per store, with the same columns, sorted by {@code keyColumn}
+     * @param noCase     whether text keys were sorted {@code COLLATE NOCASE}
+     * @param descending whether the cursors were sorted in descending order
+     * @param limit      the maximum number of rows, or -1 for all of them
+     */
+    MergedStoreCursor(Cursor[] cursors, String[] stores, int keyColumn, boolean noCase,
+                      boolean descending, int limit) {
+        this.cursors = cursors;
+        this.stores = stores;
+        this.keyColumn = keyColumn;
+        this.noCase = noCase;
+        this.descending = descending;
+
+        String[] names = cursors[0].getColumnNames();
+        columnNames = Arrays.copyOf(names, names.length + 1);
+        storeColumn = names.length;
+        columnNames[storeColumn] = ProductEntry.COLUMN_STORE;
+
+        int total = 0;
+        for (Cursor cursor : cursors) {
+            total += cursor.getCount();
+        }
+        count = limit >= 0 ? Math.min(limit, total) : total;
+
+        heads = new int[cursors.length];
+        headKeys = new Object[cursors.length];
+        for (int store = 0; store < cursors.length; store++) {
+            headKeys[store] = readKey(store);
+        }
+    }
+
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return columnNames;
+    }
+
+    @Override
+    public boolean onMove(int oldPosition, int newPosition) {
+        while (merged <= newPosition) {
+            mergeNext();
+        }
+        currentStore = rowStores[newPosition];
+        return cursors[currentStore].moveToPosition(rowPositions[newPosition]);
+    }
+
+    // A handful of stores, so a linear scan for the smallest head beats keeping a heap.
+    private void mergeNext() {
+        int next = -1;
+        for (int store = 0; store < cursors.length; store++) {
+            if (heads[store] >= cursors[store].getCount()) {
+                continue;
+            }
+            if (next == -1 || compareHeads(store, next) < 0) {
+                next = store;
+            }
+        }
+        if (merged == rowStores.length) {
+            rowStores = Arrays.copyOf(rowStores, merged * 2);
+            rowPositions = Arrays.copyOf(rowPositions, merged * 2);
+        }
+        rowStores[merged] = next;
+        rowPositions[merged] = heads[next];
+        merged++;
+        heads[next]++;
+        headKeys[next] = readKey(next);
+    }
+
+    private int compareHeads(int store, int other) {
+        int order = compareKeys(headKeys[store], headKeys[other], noCase);
+        return descending ? -order : order;
+    }
+
+    private Object readKey(int store) {
+        Cursor cursor = cursors[store];
+        if (heads[store] >= cursor.getCount()) {
+            return null;
+        }
+        cursor.moveToPosition(heads[store]);
+        switch (cursor.getType(keyColumn)) {
+            case FIELD_TYPE_INTEGER:
+                return cursor.getLong(keyColumn);
+            case FIELD_TYPE_FLOAT:
+                return cursor.getDouble(keyColumn);
+            case FIELD_TYPE_STRING:
+                return cursor.getString(keyColumn);
+            case FIELD_TYPE_BLOB:
+                return cursor.getBlob(keyColumn);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Compares two values the way SQLite orders them: NULL first, then numbers, text and blobs.
+     * Text is compared by code point, which is the order of its UTF-8 bytes, and NOCASE only
+     * folds ASCII letters, like SQLite does.
+     */
+    static int compareKeys(Object a, Object b, boolean noCase) {
+        int typeA = typeRank(a);
+        int typeB = typeRank(b);
+        if (typeA != typeB) {
+            return typeA < typeB ? -1 : 1;
+        }
+        if (a instanceof Long && b instanceof Long) {
+            long x = (Long) a;
+            long y = (Long) b;
+            return x < y ? -1 : (x == y ? 0 : 1);
+        }
+        if (a instanceof Number) {
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+        if (a instanceof String) {
+            return compareText((String) a, (String) b, noCase);
+        }
+        if (a instanceof byte[]) {
+            return compareBlobs((byte[]) a, (byte[]) b);
+        }
+        return 0;
+    }
+
+    private static int typeRank(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Number) {
+            return 1;
+        }
+        return value instanceof String ? 2 : 3;
+    }
+
+    private static int compareText(String a, String b, boolean noCase) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int x = a.codePointAt(i);
+            int y = b.codePointAt(j);
+            if (noCase) {
+                x = x >= 'A' && x <= 'Z' ? x + ('a' - 'A') : x;
+                y = y >= 'A' && y <= 'Z' ? y + ('a' - 'A') : y;
+            }
+            if (x != y) {
+                return x < y ? -1 : 1;
+            }
+            i += Character.charCount(x);
+            j += Character.charCount(y);
+        }
+        int restA = a.length() - i;
+        int restB = b.length() - j;
+        return restA == restB ? 0 : (restA < restB ? -1 : 1);
+    }
+
+    private static int compareBlobs(byte[] a, byte[] b) {
+        for (int i = 0; i < a.length && i < b.length; i++) {
+            int x = a[i] & 0xff;
+            int y = b[i] & 0xff;
+            if (x != y) {
+                return x < y ? -1 : 1;
+            }
+        }
+        return a.length == b.length ? 0 : (a.length < b.length ? -1 : 1);
+    }
+
+    @Override
+    public String getString(int column) {
+        if (column == storeColumn) {
+            return stores[currentStore];
+        }
+        return cursors[currentStore].getString(column);
+    }
+
+    @Override
+    public short getShort(int column) {
+        return column == storeColumn ? 0 : cursors[currentStore].getShort(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return column == storeColumn ? 0 : cursors[currentStore].getInt(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        return column == storeColumn ? 0 : cursors[currentStore].getLong(column);
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return column == storeColumn ? 0 : cursors[currentStore].getFloat(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return column == storeColumn ? 0 : cursors[currentStore].getDouble(column);
+    }
+
+    @Override
+    public byte[] getBlob(int column) {
+        if (column == storeColumn) {
+            return stores[currentStore].getBytes();
+        }
+        return cursors[currentStore].getBlob(column);
+    }
+
+    @Override
+    public int getType(int column) {
+        return column == storeColumn ? FIELD_TYPE_STRING : cursors[currentStore].getType(column);
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return column != storeColumn && cursors[currentStore].isNull(column);
+    }
+
+    @Override
+    public void deactivate() {
+        super.deactivate();
+        for (Cursor cursor : cursors) {
+            cursor.deactivate();
+        }
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        for (Cursor cursor : cursors) {
+            cursor.close();
+        }
+    }
+}
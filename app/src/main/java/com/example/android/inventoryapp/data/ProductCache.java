@@ -0,0 +1,210 @@
+package com.example.android.inventoryapp.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.util.LruCache;
+
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Product rows joined with their supplier, kept in memory by product ID so that single
+ * products can be answered without SQLite.
+ * <p>
+ * The provider calls {@link #beginWrite} before it changes products or suppliers and
+ * {@link #endWrite} once the change is committed. Rows read from the database are only stored
+ * if no write ran since the read began, so a row read before a commit never outlives it. All
+ * methods are thread safe.
+ */
+final class ProductCache {
+    // Passed to the write methods when the changed products aren't known.
+    static final long ALL_PRODUCTS = -1;
+
+    // Columns of a cached row, readable from the products joined with their supplier.
+    static final String[] COLUMNS = {
+            ProductEntry._ID,
+            ProductEntry.COLUMN_PRODUCT_PICTURE,
+            ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductEntry.COLUMN_PRODUCT_PRICE_CENTS,
+            ProductEntry.COLUMN_PRODUCT_QUANTITY,
+            ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL
+    };
+    // The first columns of COLUMNS are those of the products table itself.
+    private static final int PRODUCT_COLUMN_COUNT = 7;
+
+    private final LruCache<Long, Object[]> rows;
+    // Changed by every write, guarded by this.
+    private long generation;
+    private int activeWrites;
+
+    ProductCache(int maxRows) {
+        rows = new LruCache<>(maxRows);
+    }
+
+    /**
+     * Returns whether a query with this projection can be answered from a cached row, for the
+     * products table alone or joined with the suppliers.
+     */
+    static boolean canServe(String[] projection, boolean withSupplier) {
+        if (projection == null) {
+            return false;
+        }
+        int columns = withSupplier ? COLUMNS.length : PRODUCT_COLUMN_COUNT;
+        for (String column : projection) {
+            if (indexOf(column, columns) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the projection followed by the columns of {@link #COLUMNS} it lacks, so rows
+     * read with it can be stored.
+     */
+    static String[] widen(String[] projection) {
+        ArrayList<String> widened = new ArrayList<>(Arrays.asList(projection));
+        for (String column : COLUMNS) {
+            if (!widened.contains(column)) {
+                widened.add(column);
+            }
+        }
+        return widened.toArray(new String[widened.size()]);
+    }
+
+    /**
+     * Returns the row of the product, or null on a miss. Counts the hit or miss.
+     */
+    Object[] get(long id) {
+        return rows.get(id);
+    }
+
+    /**
+     * Returns the value to pass to {@link #put} for rows read from now on.
+     */
+    synchronized long beginRead() {
+        return generation;
+    }
+
+    /**
+     * Stores a row read since {@code readGeneration}, unless a write ran in the meantime.
+     */
+    synchronized void put(long readGeneration, Object[] row) {
+        if (activeWrites == 0 && generation == readGeneration) {
+            rows.put((Long) row[0], row);
+        }
+    }
+
+    /**
+     * Stores every row of the cursor, which must hold all of {@link #COLUMNS}, and moves it
+     * back before the first row.
+     */
+    void putAll(long readGeneration, Cursor cursor) {
+        int[] indexes = new int[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            indexes[i] = cursor.getColumnIndexOrThrow(COLUMNS[i]);
+        }
+        while (cursor.moveToNext()) {
+            put(readGeneration, readRow(cursor, indexes));
+        }
+        cursor.moveToPosition(-1);
+    }
+
+    /**
+     * Reads the current row of a cursor whose columns are {@link #COLUMNS}.
+     */
+    static Object[] readRow(Cursor cursor) {
+        int[] indexes = new int[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            indexes[i] = i;
+        }
+        return readRow(cursor, indexes);
+    }
+
+    private static Object[] readRow(Cursor cursor, int[] indexes) {
+        Object[] row = new Object[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            int index = indexes[i];
+            switch (cursor.getType(index)) {
+                case Cursor.FIELD_TYPE_NULL:
+                    break;
+                case Cursor.FIELD_TYPE_INTEGER:
+                    row[i] = cursor.getLong(index);
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    row[i] = cursor.getDouble(index);
+                    break;
+                case Cursor.FIELD_TYPE_BLOB:
+                    row[i] = cursor.getBlob(index);
+                    break;
+                default:
+                    row[i] = cursor.getString(index);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Returns a cursor over the row, or over no row if it is null, with the given columns.
+     */
+    static Cursor toCursor(Object[] row, String[] projection) {
+        MatrixCursor cursor = new MatrixCursor(projection, 1);
+        if (row != null) {
+            Object[] values = new Object[projection.length];
+            for (int i = 0; i < projection.length; i++) {
+                values[i] = row[indexOf(projection[i], COLUMNS.length)];
+            }
+            cursor.addRow(values);
+        }
+        return cursor;
+    }
+
+    /**
+     * Drops the product, or all of them, before it is changed. Rows read until the matching
+     * {@link #endWrite} aren't stored.
+     */
+    synchronized void beginWrite(long id) {
+        activeWrites++;
+        generation++;
+        remove(id);
+    }
+
+    /**
+     * Drops the product again once the change is committed or rolled back.
+     */
+    synchronized void endWrite(long id) {
+        activeWrites--;
+        generation++;
+        remove(id);
+    }
+
+    private void remove(long id) {
+        if (id == ALL_PRODUCTS) {
+            rows.evictAll();
+        } else {
+            rows.remove(id);
+        }
+    }
+
+    int hitCount() {
+        return rows.hitCount();
+    }
+
+    int missCount() {
+        return rows.missCount();
+    }
+
+    private static int indexOf(String column, int columns) {
+        for (int i = 0; i < columns; i++) {
+            if (COLUMNS[i].equals(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,8 +1,14 @@
 package com.example.android.inventoryapp.data;
 
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.net.Uri;
 import android.provider.BaseColumns;
+import android.text.TextUtils;
+
+import java.util.List;
+import java.util.TimeZone;
+import java.util.regex.Pattern;
 
 /**
  * Created by Edvinas on 25/06/2017.
@@ -12,10 +18,124 @@ public class ProductContract {
     public static final String CONTENT_AUTHORITY = "com.example.android.inventoryapp";
     public static final Uri BASE_CONTENT_URI = Uri.parse("content://" + CONTENT_AUTHORITY);
     public static final String PATH_PRODUCTS_DB = "products";
+    public static final String PATH_SELL = "sell";
+    // Query parameters for keyset paging over ProductEntry.CONTENT_URI and DETAILS_URI.
+    public static final String QUERY_PARAMETER_LIMIT = "limit";
+    public static final String QUERY_PARAMETER_AFTER_ID = "after_id";
+    public static final String PATH_SUPPLIERS = "suppliers";
+    public static final String PATH_PRODUCT_DETAILS = "product_details";
+    public static final String PATH_SEARCH = "search";
+    public static final String PATH_RESTORE = "restore";
+    // Query parameter of the search URI holding the text typed by the user.
+    public static final String QUERY_PARAMETER_SEARCH = "q";
+    public static final String PATH_DIAGNOSTICS = "diagnostics";
+    public static final String PATH_STOCK_MOVEMENTS = "stock_movements";
+    public static final String PATH_DAILY_STOCK = "stock_daily";
+    public static final String PATH_IMPORTS = "imports";
+    public static final String PATH_IMPORT_ERRORS = "import_errors";
+    public static final String PATH_STOCK_ALERTS = "stock_alerts";
+    // Prefix of the URIs of a store, see buildStoreUri().
+    public static final String PATH_STORES = "stores";
+    // Prefix of the URIs that read all stores at once, see buildFederatedUri().
+    public static final String PATH_FEDERATED = "federated";
+    // Query parameter of a federated URI naming the stores to read, comma separated.
+    public static final String QUERY_PARAMETER_STORES = "stores";
+    // Store of the URIs without a store segment, the database the app had before stores.
+    public static final String DEFAULT_STORE = "default";
+    // ContentResolver.call() method that syncs the store named by its argument, the default
+    // store if null, with the server of R.string.syncEndpoint. The result holds the
+    // EXTRA_ values below.
+    public static final String METHOD_SYNC = "sync";
+    public static final String EXTRA_ROWS_SENT = "rowsSent";
+    public static final String EXTRA_ROWS_RECEIVED = "rowsReceived";
+    // Message of the error that ended the sync, missing if it succeeded.
+    public static final String EXTRA_ERROR = "error";
+
+    private static final Pattern STORE_NAME = Pattern.compile("[a-z0-9_]{1,64}");
+
+    /**
+     * Returns the URI of the same table or row in the given store. Every store is a database
+     * of its own with the same tables, so writes to different stores don't wait for each other.
+     * The URIs of the default store are the plain ones.
+     */
+    public static Uri buildStoreUri(String store, Uri uri) {
+        if (!isValidStoreName(store)) {
+            throw new IllegalArgumentException("Invalid store name " + store);
+        }
+        Uri tableUri = withoutStore(uri);
+        if (DEFAULT_STORE.equals(store)) {
+            return tableUri;
+        }
+        Uri.Builder builder = tableUri.buildUpon().path("")
+                .appendPath(PATH_STORES)
+                .appendPath(store);
+        for (String segment : tableUri.getPathSegments()) {
+            builder.appendPath(segment);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the store a URI belongs to, {@link #DEFAULT_STORE} if it has no store segment.
+     */
+    public static String getStore(Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        if (segments.size() < 2 || !PATH_STORES.equals(segments.get(0))) {
+            return DEFAULT_STORE;
+        }
+        return segments.get(1);
+    }
+
+    /**
+     * Returns the URI without its store segment, as the default store would name it.
+     */
+    public static Uri withoutStore(Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        if (segments.size() < 2 || !PATH_STORES.equals(segments.get(0))) {
+            return uri;
+        }
+        Uri.Builder builder = uri.buildUpon().path("");
+        for (String segment : segments.subList(2, segments.size())) {
+            builder.appendPath(segment);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns a URI that queries the table in every store, or in the given ones, as a single
+     * cursor sorted by the query's sort order. Rows carry their store in
+     * {@link ProductEntry#COLUMN_STORE}. Only {@link ProductEntry#CONTENT_URI} and
+     * {@link ProductEntry#DETAILS_URI} can be federated, and only with a sort order of a single
+     * column, optionally {@code COLLATE NOCASE} and {@code ASC} or {@code DESC}.
+     */
+    public static Uri buildFederatedUri(Uri tableUri, String... stores) {
+        Uri.Builder builder = tableUri.buildUpon().path("").appendPath(PATH_FEDERATED);
+        for (String segment : tableUri.getPathSegments()) {
+            builder.appendPath(segment);
+        }
+        for (String store : stores) {
+            if (!isValidStoreName(store)) {
+                throw new IllegalArgumentException("Invalid store name " + store);
+            }
+        }
+        if (stores.length > 0) {
+            builder.appendQueryParameter(QUERY_PARAMETER_STORES, TextUtils.join(",", stores));
+        }
+        return builder.build();
+    }
+
+    public static boolean isValidStoreName(String store) {
+        return store != null && STORE_NAME.matcher(store).matches();
+    }
 
     public static abstract class ProductEntry implements BaseColumns {
 
         public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_PRODUCTS_DB);
+        /**
+         * Products joined with their supplier, read only. Rows have the product columns plus
+         * {@link #COLUMN_PRODUCT_SUPPLIER_NAME} and {@link #COLUMN_PRODUCT_SUPPLIER_EMAIL}.
+         */
+        public static final Uri DETAILS_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_PRODUCT_DETAILS);
 
         // The MIME type of the {@link #CONTENT_URI} for a list of products.
         public static final String CONTENT_LIST_TYPE =
@@ -25,14 +145,339 @@ public class ProductContract {
                 ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_PRODUCTS_DB;
 
         public static final String TABLE_NAME = "products";
+        public static final String INDEX_NAME = "products_name_idx";
+        public static final String INDEX_SUPPLIER_ID = "products_supplier_idx";
+        public static final String INDEX_QUANTITY = "products_quantity_idx";
+        public static final String INDEX_SYNC_ID = "products_sync_id_idx";
+        public static final String INDEX_SYNC_VERSION = "products_sync_version_idx";
+        public static final String INDEX_DELETED_AT = "products_deleted_at_idx";
+        // Full-text index over the name and supplier columns, kept in sync by triggers.
+        public static final String FTS_TABLE_NAME = "products_fts";
 
         public static final String _ID = BaseColumns._ID;
         public static final String COLUMN_PRODUCT_PICTURE = "picture";
         public static final String COLUMN_PRODUCT_NAME = "name";
-        public static final String COLUMN_PRODUCT_PRICE = "price";
+        // Price in integer cents, so comparisons and sums are exact.
+        public static final String COLUMN_PRODUCT_PRICE_CENTS = "priceCents";
         public static final String COLUMN_PRODUCT_QUANTITY = "quantity";
+        // A write that takes the quantity to this or below opens a StockAlertEntry, 0 by default.
+        public static final String COLUMN_PRODUCT_REORDER_THRESHOLD = "reorderThreshold";
+        // References SupplierEntry._ID.
+        public static final String COLUMN_PRODUCT_SUPPLIER_ID = "supplierId";
+        // Supplier columns of DETAILS_URI. Products can also be written with these instead of a
+        // supplier ID, the provider then finds or creates the matching supplier.
         public static final String COLUMN_PRODUCT_SUPPLIER_NAME = "supplierName";
         public static final String COLUMN_PRODUCT_SUPPLIER_EMAIL = "supplierEmail";
+        // Column of federated URIs holding the store of a row, IDs are only unique per store.
+        public static final String COLUMN_STORE = "store";
+        // Change tracking, maintained by triggers, see SyncEntry. The sync ID names the product
+        // on every device, the version is that of its last local change and the dirty fields
+        // are the SyncEntry.FIELD_ bits changed since the server last accepted the row.
+        public static final String COLUMN_SYNC_ID = "syncId";
+        public static final String COLUMN_SYNC_VERSION = "syncVersion";
+        public static final String COLUMN_DIRTY_FIELDS = "dirtyFields";
+        // When the product was deleted in milliseconds since the epoch, 0 while it isn't.
+        // Deleted products are left out of every query and can be restored through RESTORE_URI
+        // until the provider purges them, R.integer.purgeDelaySeconds later.
+        public static final String COLUMN_DELETED_AT = "deletedAt";
+
+        // Optional ContentValues key for the sell URI holding the number of units sold, 1 by default.
+        public static final String SELL_AMOUNT = "amount";
+
+        /**
+         * Uri that sells units of a single product. Updating it decrements the stock in one
+         * statement and returns the remaining quantity, or -1 if there is not enough in stock.
+         */
+        public static Uri buildSellUri(long id) {
+            return Uri.withAppendedPath(ContentUris.withAppendedId(CONTENT_URI, id), PATH_SELL);
+        }
+
+        /**
+         * Updating this URI restores deleted products that haven't been purged yet. Without a
+         * selection it restores the products of the latest delete, with one the deleted
+         * products matching it. The values are ignored, the result is the number of products
+         * restored.
+         */
+        public static final Uri RESTORE_URI = Uri.withAppendedPath(CONTENT_URI, PATH_RESTORE);
+
+        /**
+         * Uri for one page of products ordered by ID: at most {@code limit} rows whose ID is
+         * greater than {@code afterId}. Pass 0 as {@code afterId} for the first page.
+         */
+        public static Uri buildPageUri(long afterId, int limit) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_AFTER_ID, String.valueOf(afterId))
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                    .build();
+        }
+
+        /**
+         * Same as {@link #buildPageUri} for {@link #DETAILS_URI}, products joined with their
+         * supplier.
+         */
+        public static Uri buildDetailsPageUri(long afterId, int limit) {
+            return DETAILS_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_AFTER_ID, String.valueOf(afterId))
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                    .build();
+        }
+
+        // Sort order served by INDEX_NAME.
+        public static final String SORT_BY_NAME = COLUMN_PRODUCT_NAME + " COLLATE NOCASE";
+
+        /**
+         * Uri that searches the product name, supplier name and supplier e-mail for words
+         * starting with the words in {@code query}. Products matching by name come first.
+         */
+        public static Uri buildSearchUri(String query, int limit) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(PATH_SEARCH)
+                    .appendQueryParameter(QUERY_PARAMETER_SEARCH, query)
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                    .build();
+        }
+    }
+
+    public static abstract class SupplierEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_SUPPLIERS);
+
+        // The MIME type of the {@link #CONTENT_URI} for a list of suppliers.
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUPPLIERS;
+        // The MIME type of the {@link #CONTENT_URI} for a single supplier.
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUPPLIERS;
+
+        public static final String TABLE_NAME = "suppliers";
+
+        public static final String _ID = BaseColumns._ID;
+        public static final String COLUMN_SUPPLIER_NAME = "name";
+        public static final String COLUMN_SUPPLIER_EMAIL = "email";
+    }
+
+    /**
+     * Append-only ledger of every change to a product's quantity, read only. The provider writes
+     * a movement in the same transaction as the change, so the deltas of a product always add up
+     * to its quantity. Movements are kept when their product is deleted.
+     */
+    public static abstract class StockMovementEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_STOCK_MOVEMENTS);
+
+        // The MIME type of the {@link #CONTENT_URI}.
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_STOCK_MOVEMENTS;
+
+        public static final String TABLE_NAME = "stock_movements";
+        public static final String INDEX_PRODUCT_TIME = "stock_movements_product_idx";
+
+        public static final String _ID = BaseColumns._ID;
+        // References ProductEntry._ID.
+        public static final String COLUMN_PRODUCT_ID = "productId";
+        // One of the TYPE_ constants.
+        public static final String COLUMN_TYPE = "type";
+        // Change of the quantity, negative for sales.
+        public static final String COLUMN_DELTA = "delta";
+        // Milliseconds since the epoch.
+        public static final String COLUMN_TIMESTAMP = "timestamp";
+        // Local calendar day of the timestamp, see toEpochDay().
+        public static final String COLUMN_DAY = "day";
+
+        public static final int TYPE_SALE = 0;
+        public static final int TYPE_RESTOCK = 1;
+        public static final int TYPE_ADJUSTMENT = 2;
+
+        /**
+         * Returns the day of {@link #COLUMN_DAY} for a timestamp: days since 1970-01-01 in the
+         * default time zone.
+         */
+        public static long toEpochDay(long timeMillis) {
+            long localMillis = timeMillis + TimeZone.getDefault().getOffset(timeMillis);
+            return (long) Math.floor(localMillis / 86400000d);
+        }
+    }
+
+    /**
+     * Movements summed per product and day, read only. A row is updated by every movement
+     * written, so a report over a date range reads one row per day instead of every movement.
+     */
+    public static abstract class DailyStockEntry {
+
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_DAILY_STOCK);
+
+        // The MIME type of the {@link #CONTENT_URI}.
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_DAILY_STOCK;
+
+        public static final String TABLE_NAME = "stock_daily";
+
+        // Primary key together with COLUMN_DAY.
+        public static final String COLUMN_PRODUCT_ID = "productId";
+        // Same day numbers as StockMovementEntry.COLUMN_DAY.
+        public static final String COLUMN_DAY = "day";
+        public static final String COLUMN_UNITS_SOLD = "unitsSold";
+        public static final String COLUMN_UNITS_RESTOCKED = "unitsRestocked";
+        // Sum of all deltas of the day, adjustments included.
+        public static final String COLUMN_NET_CHANGE = "netChange";
+        public static final String COLUMN_MOVEMENTS = "movements";
+    }
+
+    /**
+     * Catalog imports, one row per imported file. The row is updated in the same transaction as
+     * every batch of products, so after a crash the import continues after the last row that
+     * was committed.
+     */
+    public static abstract class ImportEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_IMPORTS);
+
+        // The MIME type of the {@link #CONTENT_URI} for a list of imports.
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_IMPORTS;
+        // The MIME type of the {@link #CONTENT_URI} for a single import.
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_IMPORTS;
+
+        public static final String TABLE_NAME = "imports";
+
+        public static final String _ID = BaseColumns._ID;
+        // Content URI of the imported file.
+        public static final String COLUMN_SOURCE = "source";
+        // One of the STATE_ constants.
+        public static final String COLUMN_STATE = "state";
+        // Rows of the file committed so far, imported or rejected.
+        public static final String COLUMN_ROWS_READ = "rowsRead";
+        public static final String COLUMN_ROWS_IMPORTED = "rowsImported";
+        public static final String COLUMN_ROWS_FAILED = "rowsFailed";
+        // Why a failed import stopped.
+        public static final String COLUMN_ERROR = "error";
+
+        public static final int STATE_RUNNING = 0;
+        public static final int STATE_FINISHED = 1;
+        public static final int STATE_FAILED = 2;
+    }
+
+    /**
+     * Rows of an import that were rejected, with the reason. Only the first rows of an import
+     * are kept, {@link ImportEntry#COLUMN_ROWS_FAILED} counts all of them.
+     */
+    public static abstract class ImportErrorEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_IMPORT_ERRORS);
+
+        // The MIME type of the {@link #CONTENT_URI}.
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_IMPORT_ERRORS;
+
+        public static final String TABLE_NAME = "import_errors";
+        public static final String INDEX_IMPORT_ID = "import_errors_import_idx";
+
+        public static final String _ID = BaseColumns._ID;
+        // References ImportEntry._ID.
+        public static final String COLUMN_IMPORT_ID = "importId";
+        // Number of the rejected row in the file, the first data row is 1.
+        public static final String COLUMN_ROW = "row";
+        public static final String COLUMN_MESSAGE = "message";
+    }
+
+    /**
+     * Low-stock alerts, read only. An alert is opened by the write that takes a product from
+     * above its reorder threshold to at or below it, and resolved by the write that takes it
+     * back above. Rows also carry the product name and supplier e-mail, so an order can be
+     * written from the alert alone. Alerts are deleted with their product.
+     */
+    public static abstract class StockAlertEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_STOCK_ALERTS);
+
+        // The MIME type of the {@link #CONTENT_URI}.
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_STOCK_ALERTS;
+
+        public static final String TABLE_NAME = "stock_alerts";
+        public static final String INDEX_PRODUCT_ID = "stock_alerts_product_idx";
+
+        public static final String _ID = BaseColumns._ID;
+        // References ProductEntry._ID.
+        public static final String COLUMN_PRODUCT_ID = "productId";
+        // Quantity and reorder threshold the product had when the alert was opened.
+        public static final String COLUMN_QUANTITY = "quantity";
+        public static final String COLUMN_THRESHOLD = "threshold";
+        // Milliseconds since the epoch.
+        public static final String COLUMN_CREATED = "createdAt";
+        // Milliseconds since the epoch, NULL while the alert is open.
+        public static final String COLUMN_RESOLVED = "resolvedAt";
+        // Read from the product and its supplier.
+        public static final String COLUMN_PRODUCT_NAME = "productName";
+        public static final String COLUMN_SUPPLIER_EMAIL = "supplierEmail";
+
+        // Selection of the alerts that are still open.
+        public static final String SELECTION_OPEN = COLUMN_RESOLVED + " IS NULL";
+    }
+
+    /**
+     * Change tracking of the products for {@link #METHOD_SYNC}. Every local write to a product
+     * gives it the next version of the database, and a deleted product leaves a tombstone with
+     * one, so the changes still to send are those above the last version the server accepted.
+     * Written only by triggers and the sync itself.
+     */
+    public static abstract class SyncEntry {
+
+        public static final String TOMBSTONE_TABLE_NAME = "product_tombstones";
+        // Holds a single row.
+        public static final String STATE_TABLE_NAME = "sync_state";
+
+        // Columns of the tombstones: the sync ID of the deleted product and the version of the
+        // deletion.
+        public static final String COLUMN_SYNC_ID = "syncId";
+        public static final String COLUMN_SYNC_VERSION = "syncVersion";
+
+        // Last version handed out.
+        public static final String COLUMN_SEQUENCE = "sequence";
+        // Every change up to this version has been accepted by the server.
+        public static final String COLUMN_ACKED_VERSION = "ackedVersion";
+        // Opaque token of the server for the remote changes received so far, NULL before the
+        // first sync.
+        public static final String COLUMN_TOKEN = "token";
+        // Random ID of this database, so the server doesn't send its own changes back.
+        public static final String COLUMN_DEVICE = "device";
+        // 1 while remote changes are written, which the triggers then leave untracked.
+        public static final String COLUMN_APPLYING = "applying";
+
+        // Bits of ProductEntry.COLUMN_DIRTY_FIELDS.
+        public static final int FIELD_PICTURE = 1;
+        public static final int FIELD_NAME = 2;
+        public static final int FIELD_PRICE = 4;
+        public static final int FIELD_QUANTITY = 8;
+        public static final int FIELD_SUPPLIER = 16;
+        public static final int FIELD_REORDER_THRESHOLD = 32;
+        public static final int ALL_FIELDS = 63;
+    }
+
+    /**
+     * Read only snapshot of the provider metrics, one row per URI and operation plus one row
+     * counting change notifications. Empty unless {@code R.bool.providerMetrics} is set.
+     */
+    public static abstract class DiagnosticsEntry {
+
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_DIAGNOSTICS);
+
+        // The MIME type of the {@link #CONTENT_URI}.
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_DIAGNOSTICS;
 
+        // URI pattern the calls matched, e.g. "products/#".
+        public static final String COLUMN_URI = "uri";
+        // query, insert, bulkInsert, update, delete, notifyChange, cacheHit or cacheMiss.
+        public static final String COLUMN_OPERATION = "operation";
+        public static final String COLUMN_COUNT = "count";
+        public static final String COLUMN_TOTAL_MICROS = "totalMicros";
+        public static final String COLUMN_MAX_MICROS = "maxMicros";
+        // Upper bounds of the histogram bucket the percentile falls in.
+        public static final String COLUMN_P50_MICROS = "p50Micros";
+        public static final String COLUMN_P95_MICROS = "p95Micros";
+        // Rows returned by queries, or affected by writes.
+        public static final String COLUMN_ROWS = "rows";
     }
 }
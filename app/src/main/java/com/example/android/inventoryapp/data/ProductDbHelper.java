@@ -1,39 +1,220 @@
 package com.example.android.inventoryapp.data;
 
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
+import android.support.v4.os.TraceCompat;
 
-import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp.R;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Created by Edvinas on 25/06/2017.
+ * <p>
+ * Opens the inventory database; its tables are defined by {@link ProductSchema}.
  */
 
 public class ProductDbHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "inventory.db";
-    private static final int DATABASE_VERSION = 1;
+    // Database files of the other stores are named inventory-<store>.db.
+    private static final String STORE_DATABASE_PREFIX = "inventory-";
+    private static final String STORE_DATABASE_SUFFIX = ".db";
+    private static final int DATABASE_VERSION = ProductSchema.VERSION;
+
+    // Page cache of the performance mode, about 2 MB with the default 4 KB pages.
+    private static final int PERFORMANCE_CACHE_PAGES = 500;
+    // The framework checkpoints every 100 pages, the performance mode lets the log grow larger
+    // and checkpoints after bulk writes instead, see checkpoint().
+    private static final int PERFORMANCE_AUTOCHECKPOINT_PAGES = 1000;
 
+    private final boolean performanceMode;
+    // Set once the database has been opened, so only the first open is traced.
+    private volatile boolean opened;
+
+    /**
+     * Opens the app database, in performance mode if {@code R.bool.databasePerformanceMode}
+     * is set.
+     */
     public ProductDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME,
+                context.getResources().getBoolean(R.bool.databasePerformanceMode));
+    }
+
+    /**
+     * Opens the database of a store, see {@link ProductContract#buildStoreUri}.
+     */
+    static ProductDbHelper forStore(Context context, String store) {
+        return new ProductDbHelper(context, getDatabaseName(store),
+                context.getResources().getBoolean(R.bool.databasePerformanceMode));
+    }
+
+    static String getDatabaseName(String store) {
+        if (ProductContract.DEFAULT_STORE.equals(store)) {
+            return DATABASE_NAME;
+        }
+        return STORE_DATABASE_PREFIX + store + STORE_DATABASE_SUFFIX;
+    }
+
+    /**
+     * Returns the default store followed by every other store that has a database, by name.
+     */
+    static List<String> listStores(Context context) {
+        ArrayList<String> stores = new ArrayList<>();
+        for (String file : context.databaseList()) {
+            if (file.startsWith(STORE_DATABASE_PREFIX) && file.endsWith(STORE_DATABASE_SUFFIX)) {
+                String store = file.substring(STORE_DATABASE_PREFIX.length(),
+                        file.length() - STORE_DATABASE_SUFFIX.length());
+                if (ProductContract.isValidStoreName(store)
+                        && !ProductContract.DEFAULT_STORE.equals(store)) {
+                    stores.add(store);
+                }
+            }
+        }
+        Collections.sort(stores);
+        stores.add(0, ProductContract.DEFAULT_STORE);
+        return stores;
+    }
+
+    // Lets tests work on their own database file.
+    ProductDbHelper(Context context, String name) {
+        this(context, name, false);
+    }
+
+    /**
+     * @param performanceMode turns on write-ahead logging, so readers no longer wait for a
+     *                        running write and the other way round, together with a larger page
+     *                        cache, NORMAL synchronous writes and fewer checkpoints.
+     */
+    ProductDbHelper(Context context, String name, boolean performanceMode) {
+        super(context, name, null, DATABASE_VERSION);
+        this.performanceMode = performanceMode;
+        if (performanceMode && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            enableWriteAheadLogging();
+        }
+    }
+
+    /**
+     * Opening the database runs the schema check, and creates or migrates the schema when
+     * needed. The first open is traced as {@code ProductDbHelper.open}, so it can be told apart
+     * from the query waiting for it in a startup trace.
+     */
+    @Override
+    public SQLiteDatabase getWritableDatabase() {
+        if (opened) {
+            return super.getWritableDatabase();
+        }
+        TraceCompat.beginSection("ProductDbHelper.open");
+        try {
+            SQLiteDatabase db = super.getWritableDatabase();
+            opened = true;
+            return db;
+        } finally {
+            TraceCompat.endSection();
+        }
+    }
+
+    @Override
+    public SQLiteDatabase getReadableDatabase() {
+        if (opened) {
+            return super.getReadableDatabase();
+        }
+        TraceCompat.beginSection("ProductDbHelper.open");
+        try {
+            SQLiteDatabase db = super.getReadableDatabase();
+            opened = true;
+            return db;
+        } finally {
+            TraceCompat.endSection();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        opened = false;
+        super.close();
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void enableWriteAheadLogging() {
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (db.isReadOnly()) {
+            return;
+        }
+        // SQLite leaves foreign keys unchecked unless asked on every connection.
+        db.execSQL("PRAGMA foreign_keys = ON");
+        if (performanceMode) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+                db.enableWriteAheadLogging();
+            }
+            // With WAL, NORMAL only risks the last transactions on power loss, never corruption.
+            db.execSQL("PRAGMA synchronous = NORMAL");
+            pragma(db, "cache_size = " + PERFORMANCE_CACHE_PAGES);
+            pragma(db, "wal_autocheckpoint = " + PERFORMANCE_AUTOCHECKPOINT_PAGES);
+        }
+    }
+
+    /**
+     * Copies the write-ahead log back into the database without waiting for readers. Called
+     * after bulk writes in performance mode, so the log doesn't keep growing until the next
+     * automatic checkpoint and slow down every read in between.
+     */
+    void checkpoint() {
+        if (performanceMode) {
+            pragma(getWritableDatabase(), "wal_checkpoint(PASSIVE)");
+        }
+    }
+
+    // Some pragmas answer with a row, which execSQL() refuses, so they run as a query.
+    private static void pragma(SQLiteDatabase db, String statement) {
+        Cursor cursor = db.rawQuery("PRAGMA " + statement, null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
-        String SQL_CREATE_PRODUCTS_TABLE = "CREATE TABLE " + ProductEntry.TABLE_NAME + " ("
-                + ProductEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
-                + ProductEntry.COLUMN_PRODUCT_PICTURE + " TEXT NOT NULL,"
-                + ProductEntry.COLUMN_PRODUCT_NAME + " TEXT NOT NULL, "
-                + ProductEntry.COLUMN_PRODUCT_PRICE + " FLOAT NOT NULL, "
-                + ProductEntry.COLUMN_PRODUCT_QUANTITY + " INTEGER DEFAULT 0,"
-                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + " TEXT NOT NULL, "
-                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL + " TEXT NOT NULL);";
-        db.execSQL(SQL_CREATE_PRODUCTS_TABLE);
+        TraceCompat.beginSection("ProductSchema.create");
+        try {
+            ProductSchema.create(wrap(db));
+        } finally {
+            TraceCompat.endSection();
+        }
     }
 
+    /**
+     * SQLiteOpenHelper wraps the call in a transaction, so a failing migration leaves the
+     * database at the old version, untouched.
+     */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // The database is still at version 1, so there's nothing to do be done here.
+        TraceCompat.beginSection("ProductSchema.upgrade");
+        try {
+            ProductSchema.upgrade(wrap(db), oldVersion, newVersion);
+        } finally {
+            TraceCompat.endSection();
+        }
     }
 
+    private static ProductSchema.Database wrap(final SQLiteDatabase db) {
+        return new ProductSchema.Database() {
+            @Override
+            public void execSQL(String sql) {
+                db.execSQL(sql);
+            }
+        };
+    }
 }
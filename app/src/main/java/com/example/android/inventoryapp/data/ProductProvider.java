@@ -1,15 +1,55 @@
 package com.example.android.inventoryapp.data;
 
+import android.annotation.SuppressLint;
+import android.annotation.TargetApi;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
+import android.content.res.Resources;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.Process;
+import android.support.v4.os.TraceCompat;
 import android.util.Log;
+import android.util.SparseArray;
 
+import com.example.android.inventoryapp.R;
+import com.example.android.inventoryapp.data.ProductContract.DailyStockEntry;
+import com.example.android.inventoryapp.data.ProductContract.DiagnosticsEntry;
+import com.example.android.inventoryapp.data.ProductContract.ImportEntry;
+import com.example.android.inventoryapp.data.ProductContract.ImportErrorEntry;
 import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp.data.ProductContract.StockAlertEntry;
+import com.example.android.inventoryapp.data.ProductContract.StockMovementEntry;
+import com.example.android.inventoryapp.data.ProductContract.SupplierEntry;
+import com.example.android.inventoryapp.image.ThumbnailDiskCache;
+import com.example.android.inventoryapp.sync.HttpSyncTransport;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Created by Edvinas on 25/06/2017.
@@ -23,111 +63,943 @@ public class ProductProvider extends ContentProvider {
 
     private static final int ALL_PRODUCTS = 100;
     private static final int PRODUCTS_BY_ID = 101;
+    private static final int PRODUCT_SELL = 102;
+    private static final int PRODUCTS_SEARCH = 103;
+    private static final int PRODUCTS_RESTORE = 104;
+    private static final int ALL_SUPPLIERS = 200;
+    private static final int SUPPLIERS_BY_ID = 201;
+    private static final int ALL_PRODUCT_DETAILS = 300;
+    private static final int PRODUCT_DETAILS_BY_ID = 301;
+    private static final int STOCK_MOVEMENTS = 400;
+    private static final int DAILY_STOCK = 500;
+    private static final int ALL_IMPORTS = 600;
+    private static final int IMPORTS_BY_ID = 601;
+    private static final int IMPORT_ERRORS = 700;
+    private static final int STOCK_ALERTS = 800;
+    private static final int DIAGNOSTICS = 900;
     private static final UriMatcher uriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
+    // Path pattern of every match code, named in the metrics.
+    private static final SparseArray<String> uriPatterns = new SparseArray<>();
 
     // Runs when this class is called.
     static {
         // Uri for all products
-        uriMatcher.addURI(ProductContract.CONTENT_AUTHORITY,
-                ProductContract.PATH_PRODUCTS_DB, ALL_PRODUCTS);
+        addUri(ProductContract.PATH_PRODUCTS_DB, ALL_PRODUCTS);
         // Uri for product by it's ID
-        uriMatcher.addURI(ProductContract.CONTENT_AUTHORITY, ProductContract.PATH_PRODUCTS_DB
+        addUri(ProductContract.PATH_PRODUCTS_DB
                 + "/#", PRODUCTS_BY_ID);
+        // Uri for selling units of a product by it's ID
+        addUri(ProductContract.PATH_PRODUCTS_DB
+                + "/#/" + ProductContract.PATH_SELL, PRODUCT_SELL);
+        // Uri for full-text search over the products
+        addUri(ProductContract.PATH_PRODUCTS_DB
+                + "/" + ProductContract.PATH_SEARCH, PRODUCTS_SEARCH);
+        // Uri for restoring deleted products
+        addUri(ProductContract.PATH_PRODUCTS_DB
+                + "/" + ProductContract.PATH_RESTORE, PRODUCTS_RESTORE);
+        // Uris for all suppliers and for a supplier by it's ID
+        addUri(ProductContract.PATH_SUPPLIERS, ALL_SUPPLIERS);
+        addUri(ProductContract.PATH_SUPPLIERS
+                + "/#", SUPPLIERS_BY_ID);
+        // Uris for products joined with their supplier
+        addUri(ProductContract.PATH_PRODUCT_DETAILS, ALL_PRODUCT_DETAILS);
+        addUri(ProductContract.PATH_PRODUCT_DETAILS
+                + "/#", PRODUCT_DETAILS_BY_ID);
+        // Uris for the stock ledger and its daily aggregates
+        addUri(ProductContract.PATH_STOCK_MOVEMENTS, STOCK_MOVEMENTS);
+        addUri(ProductContract.PATH_DAILY_STOCK, DAILY_STOCK);
+        // Uris for catalog imports and their rejected rows
+        addUri(ProductContract.PATH_IMPORTS, ALL_IMPORTS);
+        addUri(ProductContract.PATH_IMPORTS
+                + "/#", IMPORTS_BY_ID);
+        addUri(ProductContract.PATH_IMPORT_ERRORS, IMPORT_ERRORS);
+        // Uri for the low-stock alerts
+        addUri(ProductContract.PATH_STOCK_ALERTS, STOCK_ALERTS);
+        // Uri for the metrics snapshot
+        addUri(ProductContract.PATH_DIAGNOSTICS, DIAGNOSTICS);
+    }
+
+    private static void addUri(String path, int code) {
+        uriMatcher.addURI(ProductContract.CONTENT_AUTHORITY, path, code);
+        uriPatterns.put(code, path);
+    }
+
+    private static final String DETAILS_TABLES = ProductEntry.TABLE_NAME + " JOIN "
+            + SupplierEntry.TABLE_NAME + " ON " + ProductEntry.TABLE_NAME + "."
+            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + " = " + SupplierEntry.TABLE_NAME + "."
+            + SupplierEntry._ID;
+    // Maps the columns of ProductEntry.DETAILS_URI to the columns of the joined tables.
+    private static final HashMap<String, String> DETAILS_PROJECTION_MAP = new HashMap<>();
+
+    static {
+        String[] productColumns = {ProductEntry._ID, ProductEntry.COLUMN_PRODUCT_PICTURE,
+                ProductEntry.COLUMN_PRODUCT_NAME, ProductEntry.COLUMN_PRODUCT_PRICE_CENTS,
+                ProductEntry.COLUMN_PRODUCT_QUANTITY, ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD,
+                ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID};
+        for (String column : productColumns) {
+            DETAILS_PROJECTION_MAP.put(column, ProductEntry.TABLE_NAME + "." + column + " AS " + column);
+        }
+        DETAILS_PROJECTION_MAP.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME, SupplierEntry.TABLE_NAME
+                + "." + SupplierEntry.COLUMN_SUPPLIER_NAME + " AS " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME);
+        DETAILS_PROJECTION_MAP.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL, SupplierEntry.TABLE_NAME
+                + "." + SupplierEntry.COLUMN_SUPPLIER_EMAIL + " AS " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL);
     }
 
-    private ProductDbHelper dbHelper;
+    private static final String ALERT_TABLES = StockAlertEntry.TABLE_NAME + " JOIN "
+            + ProductEntry.TABLE_NAME + " ON " + StockAlertEntry.TABLE_NAME + "."
+            + StockAlertEntry.COLUMN_PRODUCT_ID + " = " + ProductEntry.TABLE_NAME + "."
+            + ProductEntry._ID + " JOIN " + SupplierEntry.TABLE_NAME + " ON "
+            + ProductEntry.TABLE_NAME + "." + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + " = "
+            + SupplierEntry.TABLE_NAME + "." + SupplierEntry._ID;
+    // Maps the columns of StockAlertEntry.CONTENT_URI to the columns of the joined tables.
+    private static final HashMap<String, String> ALERT_PROJECTION_MAP = new HashMap<>();
+
+    static {
+        String[] alertColumns = {StockAlertEntry._ID, StockAlertEntry.COLUMN_PRODUCT_ID,
+                StockAlertEntry.COLUMN_QUANTITY, StockAlertEntry.COLUMN_THRESHOLD,
+                StockAlertEntry.COLUMN_CREATED, StockAlertEntry.COLUMN_RESOLVED};
+        for (String column : alertColumns) {
+            ALERT_PROJECTION_MAP.put(column, StockAlertEntry.TABLE_NAME + "." + column + " AS " + column);
+        }
+        ALERT_PROJECTION_MAP.put(StockAlertEntry.COLUMN_PRODUCT_NAME, ProductEntry.TABLE_NAME
+                + "." + ProductEntry.COLUMN_PRODUCT_NAME + " AS " + StockAlertEntry.COLUMN_PRODUCT_NAME);
+        ALERT_PROJECTION_MAP.put(StockAlertEntry.COLUMN_SUPPLIER_EMAIL, SupplierEntry.TABLE_NAME
+                + "." + SupplierEntry.COLUMN_SUPPLIER_EMAIL + " AS " + StockAlertEntry.COLUMN_SUPPLIER_EMAIL);
+    }
+
+    // Returned by getCachedProductId() for writes that don't touch products.
+    private static final long NO_CACHED_PRODUCT = -2;
+
+    // Sort orders a federated query can merge: a column, optionally NOCASE, ASC or DESC.
+    private static final Pattern FEDERATED_SORT_ORDER = Pattern.compile(
+            "(\\w+)(\\s+COLLATE\\s+NOCASE)?(\\s+(?:ASC|DESC))?", Pattern.CASE_INSENSITIVE);
+
+    // Default number of search results when the URI has no limit.
+    private static final int SEARCH_LIMIT = 100;
+    // Query parameter of the sync endpoint naming the store synced.
+    private static final String SYNC_QUERY_PARAMETER_STORE = "store";
+
+    /**
+     * Set while applyBatch() runs on the current thread. Notifications raised by the single
+     * operations are only recorded here, as the top level URI of the table they changed, and
+     * sent once when the batch has been committed.
+     */
+    private final ThreadLocal<HashSet<Uri>> pendingBatchChanges = new ThreadLocal<>();
+
+    // Opened on first use, guarded by itself.
+    private final HashMap<String, ProductStore> stores = new HashMap<>();
 
+    // Opens the default store ahead of its first query, and purges the deleted products of
+    // every store, one task at a time.
+    private final ScheduledExecutorService backgroundExecutor =
+            Executors.newSingleThreadScheduledExecutor();
+
+    private ProviderMetrics metrics;
+    // Null unless a test watches the statements, see setStatementObserver().
+    private volatile StatementObserver statementObserver;
+    private int cacheSize;
+    private long purgeDelayMs;
+    private int purgeBatchSize;
+
+    /**
+     * Told the SQL of the statements the provider runs for a call, without the bound values.
+     */
+    interface StatementObserver {
+        void onStatement(String sql);
+    }
+
+    /**
+     * Lets a test see the SQL of every query and of the updates and deletes of products and
+     * suppliers, to check their query plans. Costs nothing while null.
+     */
+    void setStatementObserver(StatementObserver observer) {
+        statementObserver = observer;
+    }
+
+    /**
+     * Runs on the main thread before the first activity is created, so nothing here touches
+     * the disk. Stores are opened on first use, the default one right away on a background
+     * thread if {@code R.bool.prewarmDatabase} is set.
+     */
     @Override
     public boolean onCreate() {
-        dbHelper = new ProductDbHelper(getContext());
-        return true;
+        TraceCompat.beginSection("ProductProvider.onCreate");
+        try {
+            Resources resources = getContext().getResources();
+            metrics = new ProviderMetrics(resources.getBoolean(R.bool.providerMetrics),
+                    resources.getInteger(R.integer.slowQueryThresholdMs), uriPatterns);
+            cacheSize = resources.getInteger(R.integer.productCacheSize);
+            purgeDelayMs = TimeUnit.SECONDS.toMillis(resources.getInteger(R.integer.purgeDelaySeconds));
+            purgeBatchSize = resources.getInteger(R.integer.purgeBatchSize);
+            if (resources.getBoolean(R.bool.prewarmDatabase)) {
+                backgroundExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        openDefaultStore();
+                    }
+                });
+            }
+            return true;
+        } finally {
+            TraceCompat.endSection();
+        }
+    }
+
+    /**
+     * Opens the database of the default store, running its migrations if any, while the app
+     * inflates its first screen. The list's first query waits for this open instead of
+     * starting its own.
+     */
+    private void openDefaultStore() {
+        // The purges lower the priority of the shared thread, the list is waiting for this.
+        Process.setThreadPriority(Process.THREAD_PRIORITY_DEFAULT);
+        try {
+            getStore(ProductContract.DEFAULT_STORE).dbHelper.getWritableDatabase();
+        } catch (SQLiteException e) {
+            // The first query opens it again and reports the error to its caller.
+            Log.e(LOG_TAG, "Failed to open the default store", e);
+        }
+    }
+
+    private ProductStore getStore(Uri uri) {
+        return getStore(ProductContract.getStore(uri));
+    }
+
+    private ProductStore getStore(String name) {
+        if (!ProductContract.isValidStoreName(name)) {
+            throw new IllegalArgumentException("Invalid store name " + name);
+        }
+        synchronized (stores) {
+            ProductStore store = stores.get(name);
+            if (store == null) {
+                ProductDbHelper dbHelper = ProductDbHelper.forStore(getContext(), name);
+                store = new ProductStore(name, dbHelper, new ProductCache(cacheSize),
+                        new ProductPurger(dbHelper, ThumbnailDiskCache.getInstance(getContext()),
+                                backgroundExecutor, purgeDelayMs, purgeBatchSize));
+                stores.put(name, store);
+                // Products deleted shortly before the process died haven't been purged yet.
+                store.purger.schedule(System.currentTimeMillis());
+            }
+            return store;
+        }
     }
 
     @Override
     public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
                         String sortOrder) {
-        SQLiteDatabase database = dbHelper.getReadableDatabase();
+        return queryProducts(uri, projection, selection, selectionArgs, sortOrder, null);
+    }
+
+    /**
+     * Same as the query above, but lets the caller cancel a long running query, which is what
+     * a search that is already outdated by the next keystroke needs.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                        String sortOrder, CancellationSignal cancellationSignal) {
+        return queryProducts(uri, projection, selection, selectionArgs, sortOrder, cancellationSignal);
+    }
+
+    private Cursor queryProducts(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                                 String sortOrder, CancellationSignal cancellationSignal) {
+        List<String> segments = uri.getPathSegments();
+        if (!segments.isEmpty() && ProductContract.PATH_FEDERATED.equals(segments.get(0))) {
+            return queryFederated(uri, projection, selection, selectionArgs, sortOrder,
+                    cancellationSignal);
+        }
+        return queryStore(getStore(uri), uri, projection, selection, selectionArgs, sortOrder,
+                cancellationSignal);
+    }
+
+    private Cursor queryStore(ProductStore store, Uri uri, String[] projection, String selection,
+                              String[] selectionArgs, String sortOrder,
+                              CancellationSignal cancellationSignal) {
+        SQLiteDatabase database = store.dbHelper.getReadableDatabase();
         Cursor cursor; // cursor that will return query data
+        Uri notificationUri = uri;
+        String limit = uri.getQueryParameter(ProductContract.QUERY_PARAMETER_LIMIT);
+        if (limit != null) {
+            limit = String.valueOf(Integer.parseInt(limit));
+        }
 
-        int match = uriMatcher.match(uri);
+        int match = uriMatcher.match(ProductContract.withoutStore(uri));
         switch (match) {
             case ALL_PRODUCTS:
-                cursor = database.query(ProductContract.ProductEntry.TABLE_NAME, projection,
-                        selection, selectionArgs, null, null, sortOrder);
+                String afterId = uri.getQueryParameter(ProductContract.QUERY_PARAMETER_AFTER_ID);
+                if (afterId != null && selection == null && projection != null
+                        && projection.length > 1 && ProductCache.canServe(projection, false)) {
+                    // A page of the list: read whole rows, so opening one of them is a hit.
+                    cursor = queryPageIntoCache(database, store.cache, match, projection,
+                            Long.parseLong(afterId), limit, cancellationSignal);
+                    break;
+                }
+                if (afterId != null) {
+                    // Keyset paging: seek past the last ID of the previous page on the primary
+                    // key instead of using OFFSET, so every page costs the same.
+                    selection = appendSelection(selection, ProductEntry._ID + ">?");
+                    selectionArgs = appendSelectionArg(selectionArgs,
+                            String.valueOf(Long.parseLong(afterId)));
+                    sortOrder = ProductEntry._ID + " ASC";
+                }
+                cursor = runQuery(database, match, ProductEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, sortOrder, limit, cancellationSignal);
                 break;
             case PRODUCTS_BY_ID:
+                if (ProductCache.canServe(projection, false)) {
+                    cursor = queryCachedProduct(database, store.cache, match, ContentUris.parseId(uri),
+                            projection, cancellationSignal);
+                    break;
+                }
                 selection = ProductContract.ProductEntry._ID + "=?";
                 selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
-                cursor = database.query(ProductContract.ProductEntry.TABLE_NAME, projection, selection, selectionArgs,
-                        null, null, sortOrder);
+                cursor = runQuery(database, match, ProductEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, sortOrder, null, cancellationSignal);
+                break;
+            case PRODUCTS_SEARCH:
+                String text = uri.getQueryParameter(ProductContract.QUERY_PARAMETER_SEARCH);
+                String matchQuery = buildMatchQuery(text, null);
+                if (matchQuery == null) {
+                    // Nothing searchable was typed, so nothing matches.
+                    selection = "0";
+                    selectionArgs = null;
+                } else {
+                    selection = appendSelection(selection, ProductSql.SEARCH_MATCH);
+                    selectionArgs = appendSelectionArg(selectionArgs, matchQuery);
+                    // Rank products matching by name above those matching by supplier only.
+                    sortOrder = ProductSql.SEARCH_MATCH + " DESC, " + ProductEntry.SORT_BY_NAME;
+                    selectionArgs = appendSelectionArg(selectionArgs,
+                            buildMatchQuery(text, ProductEntry.COLUMN_PRODUCT_NAME));
+                }
+                cursor = runQuery(database, match, ProductEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, sortOrder, limit != null ? limit : String.valueOf(SEARCH_LIMIT),
+                        cancellationSignal);
+                // Results change with any product, not just with the search URI itself.
+                notificationUri = ProductEntry.CONTENT_URI;
+                break;
+            case ALL_SUPPLIERS:
+                cursor = runQuery(database, match, SupplierEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, sortOrder, limit, cancellationSignal);
+                break;
+            case SUPPLIERS_BY_ID:
+                selection = SupplierEntry._ID + "=?";
+                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
+                cursor = runQuery(database, match, SupplierEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, sortOrder, null, cancellationSignal);
+                break;
+            case ALL_PRODUCT_DETAILS:
+                String detailsAfterId = uri.getQueryParameter(ProductContract.QUERY_PARAMETER_AFTER_ID);
+                if (detailsAfterId != null) {
+                    String idColumn = ProductEntry.TABLE_NAME + "." + ProductEntry._ID;
+                    selection = appendSelection(selection, idColumn + ">?");
+                    selectionArgs = appendSelectionArg(selectionArgs,
+                            String.valueOf(Long.parseLong(detailsAfterId)));
+                    sortOrder = idColumn + " ASC";
+                }
+                cursor = runQuery(database, match, DETAILS_TABLES, projection, selection, selectionArgs,
+                        sortOrder, limit, cancellationSignal);
+                // The join changes with products and suppliers, both notify CONTENT_URI.
+                notificationUri = ProductEntry.CONTENT_URI;
+                break;
+            case PRODUCT_DETAILS_BY_ID:
+                long detailsId = ContentUris.parseId(uri);
+                notificationUri = ContentUris.withAppendedId(ProductEntry.CONTENT_URI, detailsId);
+                if (ProductCache.canServe(projection, true)) {
+                    cursor = queryCachedProduct(database, store.cache, match, detailsId, projection,
+                            cancellationSignal);
+                    break;
+                }
+                selection = ProductEntry.TABLE_NAME + "." + ProductEntry._ID + "=?";
+                selectionArgs = new String[]{String.valueOf(detailsId)};
+                cursor = runQuery(database, match, DETAILS_TABLES, projection, selection, selectionArgs,
+                        sortOrder, null, cancellationSignal);
+                break;
+            case STOCK_MOVEMENTS:
+                cursor = runQuery(database, match, StockMovementEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, sortOrder, limit, cancellationSignal);
+                // Movements are only written together with a product, which notifies CONTENT_URI.
+                notificationUri = ProductEntry.CONTENT_URI;
+                break;
+            case DAILY_STOCK:
+                cursor = runQuery(database, match, DailyStockEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, sortOrder, limit, cancellationSignal);
+                notificationUri = ProductEntry.CONTENT_URI;
+                break;
+            case ALL_IMPORTS:
+                cursor = runQuery(database, match, ImportEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, sortOrder, limit, cancellationSignal);
+                break;
+            case IMPORTS_BY_ID:
+                selection = ImportEntry._ID + "=?";
+                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
+                cursor = runQuery(database, match, ImportEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, sortOrder, null, cancellationSignal);
+                break;
+            case IMPORT_ERRORS:
+                cursor = runQuery(database, match, ImportErrorEntry.TABLE_NAME, projection, selection,
+                        selectionArgs, sortOrder, limit, cancellationSignal);
                 break;
+            case STOCK_ALERTS:
+                if (sortOrder == null) {
+                    // Newest first, _id alone would be ambiguous in the join.
+                    sortOrder = StockAlertEntry.TABLE_NAME + "." + StockAlertEntry._ID + " DESC";
+                }
+                cursor = runQuery(database, match, ALERT_TABLES, projection, selection, selectionArgs,
+                        sortOrder, limit, cancellationSignal);
+                // Alerts are only written together with a product, which notifies CONTENT_URI.
+                notificationUri = ProductEntry.CONTENT_URI;
+                break;
+            case DIAGNOSTICS:
+                return metrics.snapshot(store.cache);
             default:
                 throw new IllegalArgumentException("Cannot query unknown URI " + uri);
         }
 
-        cursor.setNotificationUri(getContext().getContentResolver(), uri);
-        Log.v(LOG_TAG, "Cursor: " + cursor);
+        cursor.setNotificationUri(getContext().getContentResolver(), store.toStoreUri(notificationUri));
+
+        return cursor;
+    }
+
+    /**
+     * Runs the query in every store of the URI and merges the results by the sort column.
+     * Each store applies the selection and the limit itself, so no store returns more rows
+     * than the merged cursor can show.
+     */
+    private Cursor queryFederated(Uri uri, String[] projection, String selection,
+                                  String[] selectionArgs, String sortOrder,
+                                  CancellationSignal cancellationSignal) {
+        List<String> segments = uri.getPathSegments();
+        Uri.Builder builder = uri.buildUpon().path("");
+        for (String segment : segments.subList(1, segments.size())) {
+            builder.appendPath(segment);
+        }
+        Uri tableUri = builder.build();
+        int match = uriMatcher.match(tableUri);
+        if (match != ALL_PRODUCTS && match != ALL_PRODUCT_DETAILS) {
+            throw new IllegalArgumentException("Cannot query unknown URI " + uri);
+        }
+
+        Matcher order = FEDERATED_SORT_ORDER.matcher(sortOrder != null ? sortOrder : ProductEntry._ID);
+        if (!order.matches()) {
+            throw new IllegalArgumentException("Federated queries sort by a single column: " + sortOrder);
+        }
+        String sortColumn = order.group(1);
+        boolean noCase = order.group(2) != null;
+        boolean descending = order.group(3) != null && order.group(3).trim().equalsIgnoreCase("DESC");
+        // Ties within a store in ID order, which keeps the merge stable.
+        String storeSortOrder = sortColumn + (noCase ? " COLLATE NOCASE" : "")
+                + (descending ? " DESC" : "") + ", " + ProductEntry._ID + (descending ? " DESC" : "");
+        if (projection != null && !Arrays.asList(projection).contains(sortColumn)) {
+            projection = Arrays.copyOf(projection, projection.length + 1);
+            projection[projection.length - 1] = sortColumn;
+        }
 
+        String storeList = uri.getQueryParameter(ProductContract.QUERY_PARAMETER_STORES);
+        List<String> storeNames = storeList != null ? Arrays.asList(storeList.split(",", -1))
+                : ProductDbHelper.listStores(getContext());
+        // Checked before any store is opened. A store named twice would merge its rows twice.
+        if (storeNames.isEmpty()) {
+            throw new IllegalArgumentException("No store to query in " + uri);
+        }
+        HashSet<String> uniqueStoreNames = new HashSet<>();
+        for (String storeName : storeNames) {
+            if (!ProductContract.isValidStoreName(storeName)) {
+                throw new IllegalArgumentException("Invalid store name \"" + storeName + "\" in " + uri);
+            }
+            if (!uniqueStoreNames.add(storeName)) {
+                throw new IllegalArgumentException("Store " + storeName + " named twice in " + uri);
+            }
+        }
+        Cursor[] cursors = new Cursor[storeNames.size()];
+        try {
+            for (int i = 0; i < cursors.length; i++) {
+                cursors[i] = queryStore(getStore(storeNames.get(i)), tableUri, projection,
+                        selection, selectionArgs, storeSortOrder, cancellationSignal);
+            }
+        } catch (RuntimeException e) {
+            for (Cursor cursor : cursors) {
+                if (cursor != null) {
+                    cursor.close();
+                }
+            }
+            throw e;
+        }
+
+        String limit = uri.getQueryParameter(ProductContract.QUERY_PARAMETER_LIMIT);
+        Cursor merged = new MergedStoreCursor(cursors, storeNames.toArray(new String[cursors.length]),
+                cursors[0].getColumnIndexOrThrow(sortColumn), noCase, descending,
+                limit != null ? Integer.parseInt(limit) : -1);
+        // Any store changing changes the result.
+        merged.setNotificationUri(getContext().getContentResolver(), ProductContract.BASE_CONTENT_URI);
+        return merged;
+    }
+
+    /**
+     * Answers a query for one product from the cache, reading the product joined with its
+     * supplier into it on a miss. Every product has a supplier, so the join finds the same
+     * products as the products table.
+     */
+    private Cursor queryCachedProduct(SQLiteDatabase database, ProductCache cache, int match, long id,
+                                      String[] projection, CancellationSignal cancellationSignal) {
+        Object[] row = cache.get(id);
+        if (row == null) {
+            long generation = cache.beginRead();
+            Cursor cursor = runQuery(database, match, DETAILS_TABLES, ProductCache.COLUMNS,
+                    ProductEntry.TABLE_NAME + "." + ProductEntry._ID + "=?",
+                    new String[]{String.valueOf(id)}, null, null, cancellationSignal);
+            try {
+                if (cursor.moveToFirst()) {
+                    row = ProductCache.readRow(cursor);
+                    cache.put(generation, row);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return ProductCache.toCursor(row, projection);
+    }
+
+    /**
+     * Reads a keyset page of products joined with their suppliers, with the cached columns
+     * added to the projection, and stores its rows in the cache.
+     */
+    private Cursor queryPageIntoCache(SQLiteDatabase database, ProductCache cache, int match,
+                                      String[] projection,
+                                      long afterId, String limit,
+                                      CancellationSignal cancellationSignal) {
+        long generation = cache.beginRead();
+        String idColumn = ProductEntry.TABLE_NAME + "." + ProductEntry._ID;
+        Cursor cursor = runQuery(database, match, DETAILS_TABLES, ProductCache.widen(projection),
+                idColumn + ">?", new String[]{String.valueOf(afterId)}, idColumn + " ASC", limit,
+                cancellationSignal);
+        cache.putAll(generation, cursor);
+        return cursor;
+    }
+
+    // The cancellation signal can only be non-null on Jelly Bean and newer.
+    @SuppressLint("NewApi")
+    private Cursor runQuery(SQLiteDatabase database, int match, String tables, String[] projection,
+                            String selection, String[] selectionArgs, String sortOrder,
+                            String limit, CancellationSignal cancellationSignal) {
+        SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+        builder.setTables(tables);
+        if (DETAILS_TABLES.equals(tables)) {
+            builder.setProjectionMap(DETAILS_PROJECTION_MAP);
+        } else if (ALERT_TABLES.equals(tables)) {
+            builder.setProjectionMap(ALERT_PROJECTION_MAP);
+        }
+        if (ProductEntry.TABLE_NAME.equals(tables) || DETAILS_TABLES.equals(tables)
+                || ALERT_TABLES.equals(tables)) {
+            // Every read of products goes through here, so none of them sees deleted ones.
+            selection = appendSelection(selection, ProductSql.LIVE_PRODUCTS);
+        }
+        StatementObserver observer = statementObserver;
+        if (observer != null) {
+            observer.onStatement(builder.buildQuery(projection, selection, null, null, sortOrder, limit));
+        }
+        long start = metrics.start();
+        Cursor cursor;
+        if (cancellationSignal != null) {
+            cursor = builder.query(database, projection, selection, selectionArgs, null, null,
+                    sortOrder, limit, cancellationSignal);
+        } else {
+            cursor = builder.query(database, projection, selection, selectionArgs, null, null,
+                    sortOrder, limit);
+        }
+        if (metrics.isEnabled()) {
+            // Filling the window here counts the rows and makes the time include the read,
+            // which is most of the cost of a query.
+            long elapsed = metrics.record(match, ProviderMetrics.QUERY, start, cursor.getCount());
+            if (metrics.isSlow(elapsed)) {
+                logSlowQuery(database, builder.buildQuery(projection, selection, null, null,
+                        sortOrder, limit), selectionArgs, elapsed);
+            }
+        }
         return cursor;
     }
 
+    private static void logSlowQuery(SQLiteDatabase database, String sql, String[] selectionArgs,
+                                     long elapsedNanos) {
+        StringBuilder report = new StringBuilder("Slow query (")
+                .append(elapsedNanos / 1000000).append(" ms): ").append(sql);
+        Cursor plan = database.rawQuery("EXPLAIN QUERY PLAN " + sql, selectionArgs);
+        try {
+            int detailColumn = plan.getColumnIndexOrThrow("detail");
+            while (plan.moveToNext()) {
+                report.append("\n  ").append(plan.getString(detailColumn));
+            }
+        } finally {
+            plan.close();
+        }
+        Log.w(LOG_TAG, report.toString());
+    }
+
+    /**
+     * Turns the typed text into an FTS query that matches every word as a prefix, optionally
+     * only in the given column. Returns null if the text has no searchable words.
+     */
+    static String buildMatchQuery(String text, String column) {
+        if (text == null) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder();
+        // Splitting on anything but letters and digits also drops the FTS operator characters.
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            if (column != null) {
+                builder.append(column).append(':');
+            }
+            builder.append(word).append('*');
+        }
+        return builder.length() == 0 ? null : builder.toString();
+    }
+
     @Override
     public Uri insert(Uri uri, ContentValues contentValues) {
-        final int match = uriMatcher.match(uri);
+        final int match = uriMatcher.match(ProductContract.withoutStore(uri));
+        long start = metrics.start();
+        Uri inserted = insert(getStore(uri), match, uri, contentValues);
+        metrics.record(match, ProviderMetrics.INSERT, start, inserted == null ? 0 : 1);
+        return inserted;
+    }
+
+    private Uri insert(ProductStore store, int match, Uri uri, ContentValues contentValues) {
         switch (match) {
             case ALL_PRODUCTS:
-                return insertProduct(uri, contentValues);
+                return insertProduct(store, uri, contentValues);
+            case ALL_SUPPLIERS:
+                return insertSupplier(store, uri, contentValues);
+            case ALL_IMPORTS:
+                return insertRow(store, uri, ImportEntry.TABLE_NAME, contentValues);
+            case IMPORT_ERRORS:
+                return insertRow(store, uri, ImportErrorEntry.TABLE_NAME, contentValues);
             default:
                 throw new IllegalArgumentException("Insertion is not supported for " + uri);
         }
     }
 
-    private Uri insertProduct(Uri uri, ContentValues values) {
-        SQLiteDatabase database = dbHelper.getReadableDatabase();
+    private Uri insertProduct(ProductStore store, Uri uri, ContentValues values) {
+        SQLiteDatabase database = store.dbHelper.getWritableDatabase();
 
         validateFields(values);
 
-        long id = database.insert(ProductEntry.TABLE_NAME, null, values);
+        long id;
+        database.beginTransaction();
+        try {
+            id = database.insert(ProductEntry.TABLE_NAME, null, withSupplierId(database, values, null));
+            Integer quantity = values.getAsInteger(ProductEntry.COLUMN_PRODUCT_QUANTITY);
+            if (id != -1 && quantity != null && quantity != 0) {
+                insertMovement(database, id, StockMovementEntry.TYPE_RESTOCK, quantity);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        if (id == -1) {
+            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+            return null;
+        }
+
+        notifyChange(store, uri);
+
+        return ContentUris.withAppendedId(uri, id);
+    }
+
+    private Uri insertSupplier(ProductStore store, Uri uri, ContentValues values) {
+        validateSupplierFields(values);
+
+        SQLiteDatabase database = store.dbHelper.getWritableDatabase();
+        long id = database.insert(SupplierEntry.TABLE_NAME, null, values);
+        if (id == -1) {
+            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+            return null;
+        }
+
+        notifyChange(store, uri);
+
+        return ContentUris.withAppendedId(uri, id);
+    }
+
+    // Inserts into a table that needs no validation beyond its constraints.
+    private Uri insertRow(ProductStore store, Uri uri, String table, ContentValues values) {
+        SQLiteDatabase database = store.dbHelper.getWritableDatabase();
+        long id = database.insert(table, null, values);
         if (id == -1) {
             Log.e(LOG_TAG, "Failed to insert row for " + uri);
             return null;
         }
 
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyChange(store, uri);
 
         return ContentUris.withAppendedId(uri, id);
     }
 
+    /**
+     * Returns the values to write for a product. If they carry the supplier name and e-mail
+     * instead of a supplier ID, these are swapped for the ID of the matching supplier, which is
+     * created if it doesn't exist yet. Must be called inside a transaction.
+     *
+     * @param supplierIds IDs found so far, keyed by name and e-mail, or null
+     */
+    static ContentValues withSupplierId(SQLiteDatabase database, ContentValues values,
+                                        HashMap<String, Long> supplierIds) {
+        boolean hasName = values.containsKey(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME);
+        boolean hasEmail = values.containsKey(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL);
+        if (!hasName && !hasEmail) {
+            return values;
+        }
+        if (hasName != hasEmail) {
+            throw new IllegalArgumentException("Product supplier name and email must be set together");
+        }
+
+        String name = values.getAsString(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME);
+        String email = values.getAsString(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL);
+        String key = name + '\n' + email;
+        Long supplierId = supplierIds != null ? supplierIds.get(key) : null;
+        if (supplierId == null) {
+            supplierId = findOrCreateSupplier(database, name, email);
+            if (supplierIds != null) {
+                supplierIds.put(key, supplierId);
+            }
+        }
+
+        ContentValues productValues = new ContentValues(values);
+        productValues.remove(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME);
+        productValues.remove(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL);
+        productValues.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID, supplierId);
+        return productValues;
+    }
+
+    private static long findOrCreateSupplier(SQLiteDatabase database, String name, String email) {
+        Cursor cursor = database.query(SupplierEntry.TABLE_NAME, new String[]{SupplierEntry._ID},
+                SupplierEntry.COLUMN_SUPPLIER_NAME + "=? AND " + SupplierEntry.COLUMN_SUPPLIER_EMAIL + "=?",
+                new String[]{name, email}, null, null, null);
+        try {
+            if (cursor.moveToFirst()) {
+                return cursor.getLong(0);
+            }
+        } finally {
+            cursor.close();
+        }
+        ContentValues values = new ContentValues();
+        values.put(SupplierEntry.COLUMN_SUPPLIER_NAME, name);
+        values.put(SupplierEntry.COLUMN_SUPPLIER_EMAIL, email);
+        return database.insertOrThrow(SupplierEntry.TABLE_NAME, null, values);
+    }
+
+    /**
+     * Inserts all rows in a single transaction through one precompiled statement and notifies
+     * {@link ProductEntry#CONTENT_URI} once at the end. The batch is all or nothing: a row that
+     * fails validation or a constraint rolls back every row before it.
+     */
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        final int match = uriMatcher.match(ProductContract.withoutStore(uri));
+        if (match != ALL_PRODUCTS) {
+            throw new IllegalArgumentException("Insertion is not supported for " + uri);
+        }
+        long start = metrics.start();
+
+        ProductStore store = getStore(uri);
+        SQLiteDatabase database = store.dbHelper.getWritableDatabase();
+        int rowsInserted = 0;
+        // Catalogs repeat a handful of suppliers, so each one is looked up only once.
+        HashMap<String, Long> supplierIds = new HashMap<>();
+
+        long now = System.currentTimeMillis();
+        database.beginTransaction();
+        SQLiteStatement statement = null;
+        SQLiteStatement movement = null;
+        try {
+            statement = database.compileStatement(ProductSql.INSERT_PRODUCT);
+            movement = database.compileStatement(ProductSql.INSERT_MOVEMENT);
+            for (ContentValues row : values) {
+                validateFields(row);
+                row = withSupplierId(database, row, supplierIds);
+                bindString(statement, 1, row.getAsString(ProductEntry.COLUMN_PRODUCT_PICTURE));
+                bindString(statement, 2, row.getAsString(ProductEntry.COLUMN_PRODUCT_NAME));
+                Long priceCents = row.getAsLong(ProductEntry.COLUMN_PRODUCT_PRICE_CENTS);
+                if (priceCents == null) {
+                    statement.bindNull(3);
+                } else {
+                    statement.bindLong(3, priceCents);
+                }
+                // Binding NULL would bypass the column default, so bind it explicitly.
+                Integer quantity = row.getAsInteger(ProductEntry.COLUMN_PRODUCT_QUANTITY);
+                statement.bindLong(4, quantity == null ? 0 : quantity);
+                Long supplierId = row.getAsLong(ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID);
+                if (supplierId == null) {
+                    statement.bindNull(5);
+                } else {
+                    statement.bindLong(5, supplierId);
+                }
+                Integer threshold = row.getAsInteger(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD);
+                statement.bindLong(6, threshold == null ? 0 : threshold);
+                long id = statement.executeInsert();
+                if (quantity != null && quantity != 0) {
+                    bindMovement(movement, id, StockMovementEntry.TYPE_RESTOCK, quantity, now);
+                    movement.executeInsert();
+                }
+                rowsInserted++;
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            if (statement != null) {
+                statement.close();
+            }
+            if (movement != null) {
+                movement.close();
+            }
+            database.endTransaction();
+        }
+
+        if (rowsInserted != 0) {
+            notifyChange(store, ProductEntry.CONTENT_URI);
+        }
+        store.dbHelper.checkpoint();
+        metrics.record(match, ProviderMetrics.BULK_INSERT, start, rowsInserted);
+        return rowsInserted;
+    }
+
+    /**
+     * Runs all operations inside one transaction and sends a single notification per changed
+     * table, such as {@link ProductEntry#CONTENT_URI}, once the transaction has been committed.
+     * All operations must write to the same store.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        String storeName = ProductContract.DEFAULT_STORE;
+        for (int i = 0; i < operations.size(); i++) {
+            String operationStore = ProductContract.getStore(operations.get(i).getUri());
+            if (i > 0 && !operationStore.equals(storeName)) {
+                throw new IllegalArgumentException("A batch can only write to one store");
+            }
+            storeName = operationStore;
+        }
+        ProductStore store = getStore(storeName);
+        ProductCache cache = store.cache;
+        SQLiteDatabase database = store.dbHelper.getWritableDatabase();
+        ContentProviderResult[] results;
+        HashSet<Uri> changes = new HashSet<>();
+
+        pendingBatchChanges.set(changes);
+        // The single operations end their writes before the batch is committed.
+        cache.beginWrite(ProductCache.ALL_PRODUCTS);
+        database.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            cache.endWrite(ProductCache.ALL_PRODUCTS);
+            pendingBatchChanges.remove();
+        }
+
+        store.dbHelper.checkpoint();
+        for (Uri changedUri : changes) {
+            getContext().getContentResolver().notifyChange(changedUri, null);
+            metrics.recordNotification();
+        }
+        return results;
+    }
+
     @Override
     public int update(Uri uri, ContentValues contentValues, String selection, String[] selectionArgs) {
-        final int match = uriMatcher.match(uri);
+        final int match = uriMatcher.match(ProductContract.withoutStore(uri));
+        long start = metrics.start();
+        ProductStore store = getStore(uri);
+        long cachedId = getCachedProductId(match, uri);
+        int result;
+        if (cachedId == NO_CACHED_PRODUCT) {
+            result = update(store, match, uri, contentValues, selection, selectionArgs);
+        } else {
+            store.cache.beginWrite(cachedId);
+            try {
+                result = update(store, match, uri, contentValues, selection, selectionArgs);
+            } finally {
+                store.cache.endWrite(cachedId);
+            }
+        }
+        // A sale returns the remaining stock instead of a row count.
+        int rows = match == PRODUCT_SELL ? (result < 0 ? 0 : 1) : result;
+        metrics.record(match, ProviderMetrics.UPDATE, start, rows);
+        return result;
+    }
+
+    private int update(ProductStore store, int match, Uri uri, ContentValues contentValues,
+                       String selection, String[] selectionArgs) {
         switch (match) {
             case ALL_PRODUCTS:
-                return updateProduct(uri, contentValues, selection, selectionArgs);
+                return updateProduct(store, uri, contentValues, selection, selectionArgs);
             case PRODUCTS_BY_ID:
                 // For the PRODUCTS_BY_ID code, extract out the ID from the URI,
                 // so we know which row to update. Selection will be "_id=?" and selection
                 // arguments will be a String array containing the actual ID.
                 selection = ProductEntry._ID + "=?";
                 selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
-                return updateProduct(uri, contentValues, selection, selectionArgs);
+                return updateProduct(store, uri, contentValues, selection, selectionArgs);
+            case PRODUCT_SELL:
+                return sellProduct(store, uri, contentValues);
+            case PRODUCTS_RESTORE:
+                return restoreProducts(store, selection, selectionArgs);
+            case ALL_SUPPLIERS:
+                return updateSupplier(store, uri, contentValues, selection, selectionArgs);
+            case SUPPLIERS_BY_ID:
+                selection = SupplierEntry._ID + "=?";
+                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
+                return updateSupplier(store, uri, contentValues, selection, selectionArgs);
+            case IMPORTS_BY_ID:
+                int rowsUpdated = store.dbHelper.getWritableDatabase().update(ImportEntry.TABLE_NAME,
+                        contentValues, ImportEntry._ID + "=?",
+                        new String[]{String.valueOf(ContentUris.parseId(uri))});
+                if (rowsUpdated != 0) {
+                    notifyChange(store, uri);
+                }
+                return rowsUpdated;
             default:
                 throw new IllegalArgumentException("Update is not supported for " + uri);
         }
     }
 
-    private int updateProduct(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+    private int updateProduct(ProductStore store, Uri uri, ContentValues values, String selection,
+                              String[] selectionArgs) {
         validateFields(values);
+        // Deleted products stay as they were deleted, the alerts and ledger read the same rows.
+        selection = appendSelection(selection, ProductSql.LIVE_PRODUCTS);
 
-        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        SQLiteDatabase database = store.dbHelper.getWritableDatabase();
 
         // Perform the update on the database and get the number of rows affected
-        int rowsUpdated = database.update(ProductEntry.TABLE_NAME, values, selection, selectionArgs);
+        int rowsUpdated;
+        database.beginTransaction();
+        try {
+            Integer quantity = values.getAsInteger(ProductEntry.COLUMN_PRODUCT_QUANTITY);
+            if (quantity != null) {
+                recordQuantityChanges(database, quantity, selection, selectionArgs);
+            }
+            Integer threshold = values.getAsInteger(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD);
+            if (quantity != null || threshold != null) {
+                evaluateStockAlerts(database, quantity, threshold, selection, selectionArgs);
+            }
+            ContentValues productValues = withSupplierId(database, values, null);
+            observeUpdate(ProductEntry.TABLE_NAME, productValues, selection);
+            rowsUpdated = database.update(ProductEntry.TABLE_NAME, productValues, selection,
+                    selectionArgs);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
 
         // If 1 or more rows were updated, then notify all listeners that the data at the
         // given URI has changed
         if (rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(store, uri);
         }
 
         // Returns the number of database rows affected by the update statement
@@ -135,77 +1007,447 @@ public class ProductProvider extends ContentProvider {
 
     }
 
+    /**
+     * Undoes deletes of products that haven't been purged yet, see
+     * {@link ProductEntry#RESTORE_URI}.
+     */
+    private int restoreProducts(ProductStore store, String selection, String[] selectionArgs) {
+        if (selection == null || selection.isEmpty()) {
+            selection = ProductSql.LATEST_DELETE;
+            selectionArgs = null;
+        } else {
+            selection = appendSelection(selection, ProductSql.DELETED_PRODUCTS);
+        }
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_DELETED_AT, 0);
+        observeUpdate(ProductEntry.TABLE_NAME, values, selection);
+        int rowsRestored = store.dbHelper.getWritableDatabase().update(ProductEntry.TABLE_NAME,
+                values, selection, selectionArgs);
+        if (rowsRestored != 0) {
+            notifyChange(store, ProductEntry.CONTENT_URI);
+        }
+        return rowsRestored;
+    }
+
+    private int updateSupplier(ProductStore store, Uri uri, ContentValues values, String selection,
+                               String[] selectionArgs) {
+        validateSupplierFields(values);
+
+        SQLiteDatabase database = store.dbHelper.getWritableDatabase();
+        observeUpdate(SupplierEntry.TABLE_NAME, values, selection);
+        int rowsUpdated = database.update(SupplierEntry.TABLE_NAME, values, selection, selectionArgs);
+        if (rowsUpdated != 0) {
+            notifyChange(store, uri);
+            // Product details show the supplier, so they changed as well.
+            notifyChange(store, ProductEntry.CONTENT_URI);
+        }
+        return rowsUpdated;
+    }
+
+    /**
+     * Decrements the stock of the product in a single conditional UPDATE, so concurrent sales can
+     * never lose a unit or push the quantity below zero. The sale is written to the stock ledger,
+     * and a low-stock alert opened if it is due, in the same transaction.
+     *
+     * @return the remaining quantity, or -1 if the product doesn't exist or has too few units
+     */
+    private int sellProduct(ProductStore store, Uri uri, ContentValues values) {
+        long id = parseSellId(uri);
+        int amount = 1;
+        if (values != null && values.containsKey(ProductEntry.SELL_AMOUNT)) {
+            Integer sellAmount = values.getAsInteger(ProductEntry.SELL_AMOUNT);
+            if (sellAmount == null) {
+                throw new IllegalArgumentException("Sale amount must be a number");
+            }
+            amount = sellAmount;
+        }
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Sale amount must be positive");
+        }
+
+        SQLiteDatabase database = store.dbHelper.getWritableDatabase();
+        long remaining;
+
+        // The transaction is the only lock: it holds the database's single write connection, so
+        // sales, batches and other writes are serialized in the order they begin transactions,
+        // and the statements compiled below are only used by one thread at a time.
+        database.beginTransaction();
+        try {
+            if (store.sellStatement == null) {
+                store.sellStatement = database.compileStatement(ProductSql.SELL_PRODUCT);
+                store.quantityStatement = database.compileStatement(ProductSql.PRODUCT_QUANTITY);
+                store.movementStatement = database.compileStatement(ProductSql.INSERT_MOVEMENT);
+                store.alertStatement = database.compileStatement(ProductSql.OPEN_ALERT_AFTER_SALE);
+            }
+            observe(ProductSql.SELL_PRODUCT);
+            observe(ProductSql.PRODUCT_QUANTITY);
+            observe(ProductSql.OPEN_ALERT_AFTER_SALE);
+            store.sellStatement.bindLong(1, amount);
+            store.sellStatement.bindLong(2, id);
+            store.sellStatement.bindLong(3, amount);
+            if (store.sellStatement.executeUpdateDelete() == 0) {
+                return -1;
+            }
+            store.quantityStatement.bindLong(1, id);
+            remaining = store.quantityStatement.simpleQueryForLong();
+            long now = System.currentTimeMillis();
+            bindMovement(store.movementStatement, id, StockMovementEntry.TYPE_SALE, -amount, now);
+            store.movementStatement.executeInsert();
+            // Only the sold product can cross its threshold, and a sale never resolves an alert.
+            store.alertStatement.bindLong(1, now);
+            store.alertStatement.bindLong(2, id);
+            store.alertStatement.bindLong(3, amount);
+            store.alertStatement.executeInsert();
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        // Only the sold item changed, observers of the whole list still hear about it
+        // because they are registered for descendants of CONTENT_URI.
+        notifyChange(store, ContentUris.withAppendedId(ProductEntry.CONTENT_URI, id));
+        return (int) remaining;
+    }
+
     @Override
     public int delete(Uri uri, String selection, String[] selectionArgs) {
-        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        final int match = uriMatcher.match(ProductContract.withoutStore(uri));
+        long start = metrics.start();
+        ProductStore store = getStore(uri);
+        long cachedId = getCachedProductId(match, uri);
+        int rowsDeleted;
+        if (cachedId == NO_CACHED_PRODUCT) {
+            rowsDeleted = delete(store, match, uri, selection, selectionArgs);
+        } else {
+            store.cache.beginWrite(cachedId);
+            try {
+                rowsDeleted = delete(store, match, uri, selection, selectionArgs);
+            } finally {
+                store.cache.endWrite(cachedId);
+            }
+        }
+        metrics.record(match, ProviderMetrics.DELETE, start, rowsDeleted);
+        return rowsDeleted;
+    }
+
+    private int delete(ProductStore store, int match, Uri uri, String selection, String[] selectionArgs) {
+        SQLiteDatabase database = store.dbHelper.getWritableDatabase();
         int rowsDeleted;
 
-        final int match = uriMatcher.match(uri);
         switch (match) {
             case ALL_PRODUCTS:
-                rowsDeleted = database.delete(ProductContract.ProductEntry.TABLE_NAME, null, null);
-                if (rowsDeleted != 0)
-                    getContext().getContentResolver().notifyChange(uri, null);
+                // Every product unless a selection narrows it down.
+                rowsDeleted = softDelete(store, database, selection, selectionArgs);
+                if (rowsDeleted != 0) {
+                    notifyChange(store, uri);
+                }
                 return rowsDeleted;
             case PRODUCTS_BY_ID:
                 selection = ProductContract.ProductEntry._ID + "=?";
                 selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
-                rowsDeleted = database.delete(ProductContract.ProductEntry.TABLE_NAME, selection, selectionArgs);
-                if (rowsDeleted != 0)
-                    getContext().getContentResolver().notifyChange(uri, null);
+                rowsDeleted = softDelete(store, database, selection, selectionArgs);
+                if (rowsDeleted != 0) {
+                    notifyChange(store, uri);
+                }
+                return rowsDeleted;
+            case SUPPLIERS_BY_ID:
+                selection = SupplierEntry._ID + "=?";
+                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
+                observe("DELETE FROM " + SupplierEntry.TABLE_NAME + " WHERE " + selection);
+                try {
+                    rowsDeleted = database.delete(SupplierEntry.TABLE_NAME, selection, selectionArgs);
+                } catch (SQLiteConstraintException e) {
+                    // Suppliers are only deleted once no product refers to them anymore.
+                    Log.e(LOG_TAG, "Supplier still in use " + uri, e);
+                    return 0;
+                }
+                if (rowsDeleted != 0) {
+                    notifyChange(store, uri);
+                }
                 return rowsDeleted;
             default:
                 throw new IllegalArgumentException("Deletion is not supported for " + uri);
         }
     }
 
+    /**
+     * Marks the selected products deleted and leaves removing them to the purge. A single
+     * UPDATE of a column no trigger reads, so even deleting the whole catalog is quick, and the
+     * products can be restored with their stored thumbnails until the purge runs.
+     */
+    private int softDelete(ProductStore store, SQLiteDatabase database, String selection,
+                           String[] selectionArgs) {
+        long now = System.currentTimeMillis();
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_DELETED_AT, now);
+        selection = appendSelection(selection, ProductSql.LIVE_PRODUCTS);
+        observeUpdate(ProductEntry.TABLE_NAME, values, selection);
+        int rowsDeleted = database.update(ProductEntry.TABLE_NAME, values, selection, selectionArgs);
+        if (rowsDeleted != 0) {
+            store.purger.schedule(now);
+        }
+        return rowsDeleted;
+    }
+
+    /**
+     * Answers {@link ProductContract#METHOD_SYNC}: syncs the store named by {@code arg} with the
+     * server of {@code R.string.syncEndpoint}, see {@link ProductSync}. Syncs of the same store
+     * run one after the other.
+     */
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (!ProductContract.METHOD_SYNC.equals(method)) {
+            return super.call(method, arg, extras);
+        }
+        ProductStore store = getStore(arg != null ? arg : ProductContract.DEFAULT_STORE);
+        Bundle result = new Bundle();
+        String endpoint = getContext().getString(R.string.syncEndpoint);
+        if (endpoint.isEmpty()) {
+            result.putString(ProductContract.EXTRA_ERROR, "No sync endpoint configured");
+            return result;
+        }
+        synchronized (store.syncLock) {
+            try {
+                // Each store is a catalog of its own on the server as well.
+                URL url = new URL(Uri.parse(endpoint).buildUpon()
+                        .appendQueryParameter(SYNC_QUERY_PARAMETER_STORE, store.name)
+                        .build().toString());
+                ProductSync.Result sync = new ProductSync(store.dbHelper, store.cache,
+                        new HttpSyncTransport(url),
+                        getContext().getResources().getInteger(R.integer.syncBatchSize)).sync();
+                result.putInt(ProductContract.EXTRA_ROWS_SENT, sync.rowsSent);
+                result.putInt(ProductContract.EXTRA_ROWS_RECEIVED, sync.rowsReceived);
+                if (sync.rowsReceived != 0) {
+                    notifyChange(store, ProductEntry.CONTENT_URI);
+                }
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Sync of store " + store.name + " failed", e);
+                result.putString(ProductContract.EXTRA_ERROR, String.valueOf(e.getMessage()));
+            }
+        }
+        return result;
+    }
+
     @Override
     public String getType(Uri uri) {
-        final int match = uriMatcher.match(uri);
+        List<String> segments = uri.getPathSegments();
+        if (!segments.isEmpty() && ProductContract.PATH_FEDERATED.equals(segments.get(0))) {
+            // Federated URIs only read lists of products.
+            return ProductEntry.CONTENT_LIST_TYPE;
+        }
+        final int match = uriMatcher.match(ProductContract.withoutStore(uri));
         switch (match) {
             case ALL_PRODUCTS:
                 return ProductContract.ProductEntry.CONTENT_LIST_TYPE;
             case PRODUCTS_BY_ID:
+            case PRODUCT_SELL:
+                return ProductContract.ProductEntry.CONTENT_ITEM_TYPE;
+            case PRODUCTS_SEARCH:
+            case PRODUCTS_RESTORE:
+            case ALL_PRODUCT_DETAILS:
+                return ProductContract.ProductEntry.CONTENT_LIST_TYPE;
+            case PRODUCT_DETAILS_BY_ID:
                 return ProductContract.ProductEntry.CONTENT_ITEM_TYPE;
+            case ALL_SUPPLIERS:
+                return SupplierEntry.CONTENT_LIST_TYPE;
+            case SUPPLIERS_BY_ID:
+                return SupplierEntry.CONTENT_ITEM_TYPE;
+            case STOCK_MOVEMENTS:
+                return StockMovementEntry.CONTENT_LIST_TYPE;
+            case DAILY_STOCK:
+                return DailyStockEntry.CONTENT_LIST_TYPE;
+            case ALL_IMPORTS:
+                return ImportEntry.CONTENT_LIST_TYPE;
+            case IMPORTS_BY_ID:
+                return ImportEntry.CONTENT_ITEM_TYPE;
+            case IMPORT_ERRORS:
+                return ImportErrorEntry.CONTENT_LIST_TYPE;
+            case STOCK_ALERTS:
+                return StockAlertEntry.CONTENT_LIST_TYPE;
+            case DIAGNOSTICS:
+                return DiagnosticsEntry.CONTENT_LIST_TYPE;
             default:
                 throw new IllegalStateException("Unknown URI " + uri + " with match " + match);
         }
     }
 
-    private void validateFields(ContentValues values) {
-        if (values.containsKey(ProductEntry.COLUMN_PRODUCT_NAME)) {
-            String name = values.getAsString(ProductEntry.COLUMN_PRODUCT_NAME);
-            if (name == null) {
-                throw new IllegalArgumentException("Product name is empty");
-            }
+    /**
+     * Returns the product an update or delete of the URI can change in the cache,
+     * {@link ProductCache#ALL_PRODUCTS} if it can change any of them, or
+     * {@link #NO_CACHED_PRODUCT} if it changes none. Inserts never change a cached row.
+     */
+    private static long getCachedProductId(int match, Uri uri) {
+        switch (match) {
+            case PRODUCTS_BY_ID:
+                return ContentUris.parseId(uri);
+            case PRODUCT_SELL:
+                return parseSellId(uri);
+            case ALL_PRODUCTS:
+            case ALL_SUPPLIERS:
+            case SUPPLIERS_BY_ID:
+                // Cached rows hold the supplier as well.
+                return ProductCache.ALL_PRODUCTS;
+            case PRODUCTS_RESTORE:
+                // Deleted products are never read, so never cached.
+            default:
+                return NO_CACHED_PRODUCT;
         }
+    }
 
-        if (values.containsKey(ProductEntry.COLUMN_PRODUCT_PRICE)) {
-            String price = values.getAsString(ProductEntry.COLUMN_PRODUCT_PRICE);
-            if (price == null) {
-                throw new IllegalArgumentException("Product price is empty");
-            }
+    // The ID is the segment before "sell", so ContentUris.parseId() can't be used here.
+    private static long parseSellId(Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        return Long.parseLong(segments.get(segments.size() - 2));
+    }
+
+    /**
+     * Writes one stock movement. Must be called inside the transaction that changes the quantity.
+     */
+    private static void insertMovement(SQLiteDatabase database, long productId, int type, long delta) {
+        long now = System.currentTimeMillis();
+        ContentValues values = new ContentValues();
+        values.put(StockMovementEntry.COLUMN_PRODUCT_ID, productId);
+        values.put(StockMovementEntry.COLUMN_TYPE, type);
+        values.put(StockMovementEntry.COLUMN_DELTA, delta);
+        values.put(StockMovementEntry.COLUMN_TIMESTAMP, now);
+        values.put(StockMovementEntry.COLUMN_DAY, StockMovementEntry.toEpochDay(now));
+        database.insertOrThrow(StockMovementEntry.TABLE_NAME, null, values);
+    }
+
+    private static void bindMovement(SQLiteStatement statement, long productId, int type, long delta,
+                                     long timeMillis) {
+        statement.bindLong(1, productId);
+        statement.bindLong(2, type);
+        statement.bindLong(3, delta);
+        statement.bindLong(4, timeMillis);
+        statement.bindLong(5, StockMovementEntry.toEpochDay(timeMillis));
+    }
+
+    /**
+     * Writes a movement for every selected product whose quantity is about to be set to a
+     * different one: a restock if it grows, an adjustment if it shrinks. Must be called inside
+     * the transaction of the update, before it runs.
+     */
+    static void recordQuantityChanges(SQLiteDatabase database, int quantity, String selection,
+                                      String[] selectionArgs) {
+        long now = System.currentTimeMillis();
+        int extraArgs = selectionArgs == null ? 0 : selectionArgs.length;
+        Object[] bindArgs = new Object[5 + extraArgs];
+        bindArgs[0] = quantity;
+        bindArgs[1] = quantity;
+        bindArgs[2] = now;
+        bindArgs[3] = StockMovementEntry.toEpochDay(now);
+        bindArgs[4] = quantity;
+        if (extraArgs != 0) {
+            System.arraycopy(selectionArgs, 0, bindArgs, 5, extraArgs);
         }
+        database.execSQL(ProductSql.recordQuantityChanges(selection), bindArgs);
+    }
 
-        if (values.containsKey(ProductEntry.COLUMN_PRODUCT_PICTURE)) {
-            String imageURi = values.getAsString(ProductEntry.COLUMN_PRODUCT_PICTURE);
-            if (imageURi == null) {
-                throw new IllegalArgumentException("No product image is selected");
-            }
+    /**
+     * Opens and resolves the low-stock alerts of the products an update is about to change.
+     * Only the rows of the update's own selection are read, so the cost follows the size of the
+     * write, not of the catalog. Must be called inside the transaction of the update, before it
+     * runs.
+     *
+     * @param quantity  the new quantity, or null if the update keeps it
+     * @param threshold the new reorder threshold, or null if the update keeps it
+     */
+    static void evaluateStockAlerts(SQLiteDatabase database, Integer quantity, Integer threshold,
+                                    String selection, String[] selectionArgs) {
+        long now = System.currentTimeMillis();
+        int extraArgs = selectionArgs == null ? 0 : selectionArgs.length;
+        Object[] openArgs = new Object[5 + extraArgs];
+        openArgs[0] = quantity;
+        openArgs[1] = threshold;
+        openArgs[2] = now;
+        openArgs[3] = quantity;
+        openArgs[4] = threshold;
+        Object[] resolveArgs = new Object[3 + extraArgs];
+        resolveArgs[0] = now;
+        resolveArgs[1] = quantity;
+        resolveArgs[2] = threshold;
+        if (extraArgs != 0) {
+            System.arraycopy(selectionArgs, 0, openArgs, 5, extraArgs);
+            System.arraycopy(selectionArgs, 0, resolveArgs, 3, extraArgs);
         }
+        database.execSQL(ProductSql.openStockAlerts(selection), openArgs);
+        database.execSQL(ProductSql.resolveStockAlerts(selection), resolveArgs);
+    }
 
-        if (values.containsKey(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME)) {
-            String sName = values.getAsString(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME);
-            if (sName == null) {
-                throw new IllegalArgumentException("Product supplier name is empty");
-            }
+    /**
+     * Notifies observers of the given URI in the store, or defers the notification to the end
+     * of the batch when called from inside applyBatch().
+     */
+    private void notifyChange(ProductStore store, Uri uri) {
+        HashSet<Uri> changes = pendingBatchChanges.get();
+        if (changes != null) {
+            changes.add(store.toStoreUri(ProductContract.BASE_CONTENT_URI.buildUpon()
+                    .appendPath(ProductContract.withoutStore(uri).getPathSegments().get(0)).build()));
+            return;
         }
+        getContext().getContentResolver().notifyChange(store.toStoreUri(uri), null);
+        metrics.recordNotification();
+    }
 
-        if (values.containsKey(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL)) {
-            String email = values.getAsString(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL);
-            if (email == null) {
-                throw new IllegalArgumentException("Product supplier email is empty");
-            }
+    private void observe(String sql) {
+        StatementObserver observer = statementObserver;
+        if (observer != null) {
+            observer.onStatement(sql);
+        }
+    }
+
+    // Observes the statement SQLiteDatabase.update() builds from the same arguments.
+    private void observeUpdate(String table, ContentValues values, String selection) {
+        if (statementObserver == null) {
+            return;
+        }
+        StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+        boolean first = true;
+        for (String column : values.keySet()) {
+            sql.append(first ? "" : ", ").append(column).append(" = ?");
+            first = false;
+        }
+        if (selection != null && !selection.isEmpty()) {
+            sql.append(" WHERE ").append(selection);
+        }
+        observe(sql.toString());
+    }
+
+    private static String appendSelection(String selection, String condition) {
+        if (selection == null || selection.isEmpty()) {
+            return condition;
+        }
+        return "(" + selection + ") AND " + condition;
+    }
+
+    private static String[] appendSelectionArg(String[] selectionArgs, String arg) {
+        if (selectionArgs == null) {
+            return new String[]{arg};
+        }
+        String[] args = new String[selectionArgs.length + 1];
+        System.arraycopy(selectionArgs, 0, args, 0, selectionArgs.length);
+        args[selectionArgs.length] = arg;
+        return args;
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    private void validateFields(ContentValues values) {
+        for (Map.Entry<String, Object> value : values.valueSet()) {
+            ProductValidator.validateProductField(value.getKey(), value.getValue());
+        }
+    }
+
+    private void validateSupplierFields(ContentValues values) {
+        for (Map.Entry<String, Object> value : values.valueSet()) {
+            ProductValidator.validateSupplierField(value.getKey(), value.getValue());
         }
     }
 
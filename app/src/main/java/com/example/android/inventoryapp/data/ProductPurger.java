@@ -0,0 +1,113 @@
+package com.example.android.inventoryapp.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Process;
+
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp.image.ThumbnailDiskCache;
+
+import java.util.ArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Removes the deleted products of one database for good once they can no longer be restored,
+ * see {@link ProductEntry#COLUMN_DELETED_AT}. Deleting a row is the expensive part of a
+ * delete: the search index, the sync tombstone and the alerts of the product go with it. The
+ * purge does it on a background thread in batches of their own transaction, so a foreground
+ * write waits for one batch at most instead of for the whole catalog. The stored thumbnails of
+ * the products go last, until then an undo brings the product back with its thumbnail.
+ */
+final class ProductPurger {
+    private final ProductDbHelper dbHelper;
+    private final ThumbnailDiskCache thumbnails;
+    private final ScheduledExecutorService executor;
+    private final long delayMs;
+    private final int batchSize;
+
+    // Guarded by this.
+    private boolean scheduled;
+    private long lastDeletedAt;
+
+    private final Runnable purgeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            synchronized (ProductPurger.this) {
+                scheduled = false;
+            }
+            long now = System.currentTimeMillis();
+            purge(now - delayMs);
+            synchronized (ProductPurger.this) {
+                // A delete made while a run was already scheduled is purged by the next one.
+                if (!scheduled && lastDeletedAt > now - delayMs) {
+                    scheduleAt(lastDeletedAt + delayMs);
+                }
+            }
+        }
+    };
+
+    ProductPurger(ProductDbHelper dbHelper, ThumbnailDiskCache thumbnails,
+                  ScheduledExecutorService executor, long delayMs, int batchSize) {
+        this.dbHelper = dbHelper;
+        this.thumbnails = thumbnails;
+        this.executor = executor;
+        this.delayMs = delayMs;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Purges the products deleted at the given time once the delay has passed. Runs that are
+     * due together are merged into one.
+     */
+    synchronized void schedule(long deletedAt) {
+        lastDeletedAt = Math.max(lastDeletedAt, deletedAt);
+        if (!scheduled) {
+            scheduleAt(deletedAt + delayMs);
+        }
+    }
+
+    private void scheduleAt(long timeMillis) {
+        scheduled = true;
+        executor.schedule(purgeRunnable, Math.max(0, timeMillis - System.currentTimeMillis()),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Removes the products deleted at or before the given time and returns how many.
+     */
+    int purge(long deletedBefore) {
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        String[] args = {String.valueOf(deletedBefore), String.valueOf(batchSize)};
+        int purged = 0;
+        int batch;
+        do {
+            ArrayList<String> pictures = new ArrayList<>();
+            // Every batch commits on its own, waiting writers get the database in between.
+            database.beginTransaction();
+            try {
+                Cursor cursor = database.rawQuery(ProductSql.PURGE_BATCH_PICTURES, args);
+                try {
+                    while (cursor.moveToNext()) {
+                        pictures.add(cursor.getString(0));
+                    }
+                } finally {
+                    cursor.close();
+                }
+                batch = database.delete(ProductEntry.TABLE_NAME, ProductSql.PURGE_BATCH, args);
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+            if (batch != 0) {
+                thumbnails.removeAsync(pictures);
+            }
+            purged += batch;
+        } while (batch == batchSize);
+        if (purged != 0) {
+            dbHelper.checkpoint();
+        }
+        return purged;
+    }
+}
@@ -0,0 +1,510 @@
+package com.example.android.inventoryapp.data;
+
+import com.example.android.inventoryapp.data.ProductContract.DailyStockEntry;
+import com.example.android.inventoryapp.data.ProductContract.ImportEntry;
+import com.example.android.inventoryapp.data.ProductContract.ImportErrorEntry;
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp.data.ProductContract.StockAlertEntry;
+import com.example.android.inventoryapp.data.ProductContract.StockMovementEntry;
+import com.example.android.inventoryapp.data.ProductContract.SupplierEntry;
+import com.example.android.inventoryapp.data.ProductContract.SyncEntry;
+
+/**
+ * The SQL of the inventory schema, kept free of Android types so the JVM benchmarks can build
+ * the same tables through a plain SQLite driver.
+ * <p>
+ * The schema is defined only by its migrations: a new database is created at version 1 and
+ * then taken through the same steps an upgraded one goes through, so both always end up with
+ * the same tables. Migrations never drop user data; a table whose columns change is rebuilt
+ * and its rows copied over.
+ */
+public final class ProductSchema {
+    public static final int VERSION = 9;
+
+    // Column of schema version 1 and 2, replaced by ProductEntry.COLUMN_PRODUCT_PRICE_CENTS.
+    private static final String LEGACY_COLUMN_PRICE = "price";
+    // Index of schema version 3, replaced by ProductEntry.INDEX_SUPPLIER_ID.
+    private static final String LEGACY_INDEX_SUPPLIER_NAME = "products_supplier_name_idx";
+    // 128 random bits as hex, for sync IDs and the device ID.
+    private static final String RANDOM_ID = "lower(hex(randomblob(16)))";
+
+    /**
+     * Runs the statements of the schema, on Android a SQLiteDatabase.
+     */
+    public interface Database {
+        void execSQL(String sql);
+    }
+
+    /**
+     * One step of the schema, from {@code toVersion - 1} to {@code toVersion}.
+     */
+    abstract static class Migration {
+        final int toVersion;
+
+        Migration(int toVersion) {
+            this.toVersion = toVersion;
+        }
+
+        abstract void migrate(Database db);
+    }
+
+    // Every migration in order, a new one is added here together with VERSION.
+    private static final Migration[] MIGRATIONS = {
+            new Migration(2) {
+                @Override
+                void migrate(Database db) {
+                    createSearchIndex(db);
+                    // Index the products that already exist.
+                    db.execSQL("INSERT INTO " + ProductEntry.FTS_TABLE_NAME + " (docid, "
+                            + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + ", "
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL + ") SELECT "
+                            + ProductEntry._ID + ", "
+                            + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + ", "
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL + " FROM " + ProductEntry.TABLE_NAME);
+                }
+            },
+            new Migration(3) {
+                @Override
+                void migrate(Database db) {
+                    // The price moves from FLOAT to integer cents, which SQLite can only do by
+                    // rebuilding the table.
+                    String newTable = ProductEntry.TABLE_NAME + "_new";
+                    db.execSQL("CREATE TABLE " + newTable + " ("
+                            + ProductEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                            + ProductEntry.COLUMN_PRODUCT_PICTURE + " TEXT NOT NULL,"
+                            + ProductEntry.COLUMN_PRODUCT_NAME + " TEXT NOT NULL, "
+                            + ProductEntry.COLUMN_PRODUCT_PRICE_CENTS + " INTEGER NOT NULL, "
+                            + ProductEntry.COLUMN_PRODUCT_QUANTITY + " INTEGER DEFAULT 0,"
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + " TEXT NOT NULL, "
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL + " TEXT NOT NULL);");
+                    db.execSQL("INSERT INTO " + newTable + " ("
+                            + ProductEntry._ID + ", "
+                            + ProductEntry.COLUMN_PRODUCT_PICTURE + ", "
+                            + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                            + ProductEntry.COLUMN_PRODUCT_PRICE_CENTS + ", "
+                            + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + ", "
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL + ") SELECT "
+                            + ProductEntry._ID + ", "
+                            + ProductEntry.COLUMN_PRODUCT_PICTURE + ", "
+                            + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                            + "CAST(ROUND(" + LEGACY_COLUMN_PRICE + " * 100) AS INTEGER), "
+                            + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + ", "
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL + " FROM " + ProductEntry.TABLE_NAME);
+                    renameRebuiltTable(db, newTable, ProductEntry.TABLE_NAME);
+                    createProductSearchTriggers(db);
+
+                    db.execSQL("CREATE INDEX " + ProductEntry.INDEX_NAME + " ON " + ProductEntry.TABLE_NAME
+                            + " (" + ProductEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE)");
+                    db.execSQL("CREATE INDEX " + LEGACY_INDEX_SUPPLIER_NAME + " ON " + ProductEntry.TABLE_NAME
+                            + " (" + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + ")");
+                    db.execSQL("CREATE INDEX " + ProductEntry.INDEX_QUANTITY + " ON " + ProductEntry.TABLE_NAME
+                            + " (" + ProductEntry.COLUMN_PRODUCT_QUANTITY + ")");
+                }
+            },
+            new Migration(4) {
+                @Override
+                void migrate(Database db) {
+                    // Suppliers get their own table, every distinct name and e-mail pair once.
+                    db.execSQL("CREATE TABLE " + SupplierEntry.TABLE_NAME + " ("
+                            + SupplierEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                            + SupplierEntry.COLUMN_SUPPLIER_NAME + " TEXT NOT NULL, "
+                            + SupplierEntry.COLUMN_SUPPLIER_EMAIL + " TEXT NOT NULL, "
+                            + "UNIQUE (" + SupplierEntry.COLUMN_SUPPLIER_NAME + ", "
+                            + SupplierEntry.COLUMN_SUPPLIER_EMAIL + "));");
+                    db.execSQL("INSERT INTO " + SupplierEntry.TABLE_NAME + " ("
+                            + SupplierEntry.COLUMN_SUPPLIER_NAME + ", "
+                            + SupplierEntry.COLUMN_SUPPLIER_EMAIL + ") SELECT DISTINCT "
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + ", "
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL + " FROM " + ProductEntry.TABLE_NAME);
+
+                    String newTable = ProductEntry.TABLE_NAME + "_new";
+                    db.execSQL("CREATE TABLE " + newTable + " ("
+                            + ProductEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                            + ProductEntry.COLUMN_PRODUCT_PICTURE + " TEXT NOT NULL,"
+                            + ProductEntry.COLUMN_PRODUCT_NAME + " TEXT NOT NULL, "
+                            + ProductEntry.COLUMN_PRODUCT_PRICE_CENTS + " INTEGER NOT NULL, "
+                            + ProductEntry.COLUMN_PRODUCT_QUANTITY + " INTEGER DEFAULT 0,"
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + " INTEGER NOT NULL REFERENCES "
+                            + SupplierEntry.TABLE_NAME + " (" + SupplierEntry._ID + "));");
+                    db.execSQL("INSERT INTO " + newTable + " ("
+                            + ProductEntry._ID + ", "
+                            + ProductEntry.COLUMN_PRODUCT_PICTURE + ", "
+                            + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                            + ProductEntry.COLUMN_PRODUCT_PRICE_CENTS + ", "
+                            + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + ") SELECT p."
+                            + ProductEntry._ID + ", p."
+                            + ProductEntry.COLUMN_PRODUCT_PICTURE + ", p."
+                            + ProductEntry.COLUMN_PRODUCT_NAME + ", p."
+                            + ProductEntry.COLUMN_PRODUCT_PRICE_CENTS + ", p."
+                            + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", s."
+                            + SupplierEntry._ID + " FROM " + ProductEntry.TABLE_NAME + " p JOIN "
+                            + SupplierEntry.TABLE_NAME + " s ON s." + SupplierEntry.COLUMN_SUPPLIER_NAME
+                            + " = p." + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + " AND s."
+                            + SupplierEntry.COLUMN_SUPPLIER_EMAIL + " = p."
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL);
+                    renameRebuiltTable(db, newTable, ProductEntry.TABLE_NAME);
+
+                    db.execSQL("CREATE INDEX " + ProductEntry.INDEX_NAME + " ON " + ProductEntry.TABLE_NAME
+                            + " (" + ProductEntry.COLUMN_PRODUCT_NAME + " COLLATE NOCASE)");
+                    db.execSQL("CREATE INDEX " + ProductEntry.INDEX_QUANTITY + " ON " + ProductEntry.TABLE_NAME
+                            + " (" + ProductEntry.COLUMN_PRODUCT_QUANTITY + ")");
+                    db.execSQL("CREATE INDEX " + ProductEntry.INDEX_SUPPLIER_ID + " ON " + ProductEntry.TABLE_NAME
+                            + " (" + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + ")");
+                    // The search index keeps its rows, only the triggers now read the supplier table.
+                    createSupplierSearchTriggers(db);
+                }
+            },
+            new Migration(5) {
+                @Override
+                void migrate(Database db) {
+                    // No foreign key, the history of a product outlives it.
+                    db.execSQL("CREATE TABLE " + StockMovementEntry.TABLE_NAME + " ("
+                            + StockMovementEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                            + StockMovementEntry.COLUMN_PRODUCT_ID + " INTEGER NOT NULL, "
+                            + StockMovementEntry.COLUMN_TYPE + " INTEGER NOT NULL, "
+                            + StockMovementEntry.COLUMN_DELTA + " INTEGER NOT NULL, "
+                            + StockMovementEntry.COLUMN_TIMESTAMP + " INTEGER NOT NULL, "
+                            + StockMovementEntry.COLUMN_DAY + " INTEGER NOT NULL);");
+                    db.execSQL("CREATE INDEX " + StockMovementEntry.INDEX_PRODUCT_TIME + " ON "
+                            + StockMovementEntry.TABLE_NAME + " (" + StockMovementEntry.COLUMN_PRODUCT_ID
+                            + ", " + StockMovementEntry.COLUMN_TIMESTAMP + ")");
+                    db.execSQL("CREATE TABLE " + DailyStockEntry.TABLE_NAME + " ("
+                            + DailyStockEntry.COLUMN_PRODUCT_ID + " INTEGER NOT NULL, "
+                            + DailyStockEntry.COLUMN_DAY + " INTEGER NOT NULL, "
+                            + DailyStockEntry.COLUMN_UNITS_SOLD + " INTEGER NOT NULL DEFAULT 0, "
+                            + DailyStockEntry.COLUMN_UNITS_RESTOCKED + " INTEGER NOT NULL DEFAULT 0, "
+                            + DailyStockEntry.COLUMN_NET_CHANGE + " INTEGER NOT NULL DEFAULT 0, "
+                            + DailyStockEntry.COLUMN_MOVEMENTS + " INTEGER NOT NULL DEFAULT 0, "
+                            + "PRIMARY KEY (" + DailyStockEntry.COLUMN_PRODUCT_ID + ", "
+                            + DailyStockEntry.COLUMN_DAY + "));");
+                    createStockLedgerTriggers(db);
+
+                    // Open the ledger with the current stock, so the deltas add up to it.
+                    db.execSQL("INSERT INTO " + StockMovementEntry.TABLE_NAME + " ("
+                            + StockMovementEntry.COLUMN_PRODUCT_ID + ", "
+                            + StockMovementEntry.COLUMN_TYPE + ", "
+                            + StockMovementEntry.COLUMN_DELTA + ", "
+                            + StockMovementEntry.COLUMN_TIMESTAMP + ", "
+                            + StockMovementEntry.COLUMN_DAY + ") SELECT "
+                            + ProductEntry._ID + ", "
+                            + StockMovementEntry.TYPE_ADJUSTMENT + ", "
+                            + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+                            + "CAST(strftime('%s', 'now') AS INTEGER) * 1000, "
+                            + "CAST(strftime('%s', 'now', 'localtime') AS INTEGER) / 86400 FROM "
+                            + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " != 0");
+                }
+            },
+            new Migration(6) {
+                @Override
+                void migrate(Database db) {
+                    db.execSQL("CREATE TABLE " + ImportEntry.TABLE_NAME + " ("
+                            + ImportEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                            + ImportEntry.COLUMN_SOURCE + " TEXT NOT NULL, "
+                            + ImportEntry.COLUMN_STATE + " INTEGER NOT NULL DEFAULT "
+                            + ImportEntry.STATE_RUNNING + ", "
+                            + ImportEntry.COLUMN_ROWS_READ + " INTEGER NOT NULL DEFAULT 0, "
+                            + ImportEntry.COLUMN_ROWS_IMPORTED + " INTEGER NOT NULL DEFAULT 0, "
+                            + ImportEntry.COLUMN_ROWS_FAILED + " INTEGER NOT NULL DEFAULT 0, "
+                            + ImportEntry.COLUMN_ERROR + " TEXT);");
+                    db.execSQL("CREATE TABLE " + ImportErrorEntry.TABLE_NAME + " ("
+                            + ImportErrorEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                            + ImportErrorEntry.COLUMN_IMPORT_ID + " INTEGER NOT NULL REFERENCES "
+                            + ImportEntry.TABLE_NAME + " (" + ImportEntry._ID + ") ON DELETE CASCADE, "
+                            + ImportErrorEntry.COLUMN_ROW + " INTEGER NOT NULL, "
+                            + ImportErrorEntry.COLUMN_MESSAGE + " TEXT NOT NULL);");
+                    db.execSQL("CREATE INDEX " + ImportErrorEntry.INDEX_IMPORT_ID + " ON "
+                            + ImportErrorEntry.TABLE_NAME + " (" + ImportErrorEntry.COLUMN_IMPORT_ID + ")");
+                }
+            },
+            new Migration(7) {
+                @Override
+                void migrate(Database db) {
+                    // A column with a constant default is added without rewriting the rows.
+                    db.execSQL("ALTER TABLE " + ProductEntry.TABLE_NAME + " ADD COLUMN "
+                            + ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD + " INTEGER NOT NULL DEFAULT 0");
+                    db.execSQL("CREATE TABLE " + StockAlertEntry.TABLE_NAME + " ("
+                            + StockAlertEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                            + StockAlertEntry.COLUMN_PRODUCT_ID + " INTEGER NOT NULL REFERENCES "
+                            + ProductEntry.TABLE_NAME + " (" + ProductEntry._ID + ") ON DELETE CASCADE, "
+                            + StockAlertEntry.COLUMN_QUANTITY + " INTEGER NOT NULL, "
+                            + StockAlertEntry.COLUMN_THRESHOLD + " INTEGER NOT NULL, "
+                            + StockAlertEntry.COLUMN_CREATED + " INTEGER NOT NULL, "
+                            + StockAlertEntry.COLUMN_RESOLVED + " INTEGER);");
+                    // Serves resolving the open alert of a product and the cascading delete.
+                    db.execSQL("CREATE INDEX " + StockAlertEntry.INDEX_PRODUCT_ID + " ON "
+                            + StockAlertEntry.TABLE_NAME + " (" + StockAlertEntry.COLUMN_PRODUCT_ID
+                            + ", " + StockAlertEntry.COLUMN_RESOLVED + ")");
+                }
+            },
+            new Migration(8) {
+                @Override
+                void migrate(Database db) {
+                    db.execSQL("ALTER TABLE " + ProductEntry.TABLE_NAME + " ADD COLUMN "
+                            + ProductEntry.COLUMN_SYNC_ID + " TEXT");
+                    db.execSQL("ALTER TABLE " + ProductEntry.TABLE_NAME + " ADD COLUMN "
+                            + ProductEntry.COLUMN_SYNC_VERSION + " INTEGER NOT NULL DEFAULT 0");
+                    db.execSQL("ALTER TABLE " + ProductEntry.TABLE_NAME + " ADD COLUMN "
+                            + ProductEntry.COLUMN_DIRTY_FIELDS + " INTEGER NOT NULL DEFAULT 0");
+                    // Products written before change tracking are all unsent, in the order of
+                    // their IDs.
+                    db.execSQL("UPDATE " + ProductEntry.TABLE_NAME + " SET "
+                            + ProductEntry.COLUMN_SYNC_ID + " = " + RANDOM_ID + ", "
+                            + ProductEntry.COLUMN_SYNC_VERSION + " = " + ProductEntry._ID + ", "
+                            + ProductEntry.COLUMN_DIRTY_FIELDS + " = " + SyncEntry.ALL_FIELDS);
+                    db.execSQL("CREATE UNIQUE INDEX " + ProductEntry.INDEX_SYNC_ID + " ON "
+                            + ProductEntry.TABLE_NAME + " (" + ProductEntry.COLUMN_SYNC_ID + ")");
+                    // Serves reading the changes since the last sync without a full scan.
+                    db.execSQL("CREATE INDEX " + ProductEntry.INDEX_SYNC_VERSION + " ON "
+                            + ProductEntry.TABLE_NAME + " (" + ProductEntry.COLUMN_SYNC_VERSION + ")");
+                    db.execSQL("CREATE TABLE " + SyncEntry.TOMBSTONE_TABLE_NAME + " ("
+                            + SyncEntry.COLUMN_SYNC_ID + " TEXT PRIMARY KEY, "
+                            + SyncEntry.COLUMN_SYNC_VERSION + " INTEGER NOT NULL);");
+                    db.execSQL("CREATE TABLE " + SyncEntry.STATE_TABLE_NAME + " ("
+                            + SyncEntry.COLUMN_SEQUENCE + " INTEGER NOT NULL, "
+                            + SyncEntry.COLUMN_ACKED_VERSION + " INTEGER NOT NULL, "
+                            + SyncEntry.COLUMN_TOKEN + " TEXT, "
+                            + SyncEntry.COLUMN_DEVICE + " TEXT NOT NULL, "
+                            + SyncEntry.COLUMN_APPLYING + " INTEGER NOT NULL);");
+                    db.execSQL("INSERT INTO " + SyncEntry.STATE_TABLE_NAME + " SELECT IFNULL(MAX("
+                            + ProductEntry._ID + "), 0), 0, NULL, " + RANDOM_ID + ", 0 FROM "
+                            + ProductEntry.TABLE_NAME);
+                    createSyncTriggers(db);
+                }
+            },
+            new Migration(9) {
+                @Override
+                void migrate(Database db) {
+                    db.execSQL("ALTER TABLE " + ProductEntry.TABLE_NAME + " ADD COLUMN "
+                            + ProductEntry.COLUMN_DELETED_AT + " INTEGER NOT NULL DEFAULT 0");
+                    // Finds the latest delete for an undo and the deletes due for the purge.
+                    // Not a partial index of the deleted rows, those need SQLite 3.8.0 and API
+                    // 15 ships 3.7.11.
+                    db.execSQL("CREATE INDEX " + ProductEntry.INDEX_DELETED_AT + " ON "
+                            + ProductEntry.TABLE_NAME + " (" + ProductEntry.COLUMN_DELETED_AT + ")");
+                }
+            }
+    };
+
+    private ProductSchema() {
+    }
+
+    /**
+     * Creates the tables of the current version in an empty database.
+     */
+    public static void create(Database db) {
+        String SQL_CREATE_PRODUCTS_TABLE = "CREATE TABLE " + ProductEntry.TABLE_NAME + " ("
+                + ProductEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + ProductEntry.COLUMN_PRODUCT_PICTURE + " TEXT NOT NULL,"
+                + ProductEntry.COLUMN_PRODUCT_NAME + " TEXT NOT NULL, "
+                + LEGACY_COLUMN_PRICE + " FLOAT NOT NULL, "
+                + ProductEntry.COLUMN_PRODUCT_QUANTITY + " INTEGER DEFAULT 0,"
+                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + " TEXT NOT NULL, "
+                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL + " TEXT NOT NULL);";
+        db.execSQL(SQL_CREATE_PRODUCTS_TABLE);
+        upgrade(db, 1, VERSION);
+    }
+
+    /**
+     * Runs every migration between the two versions. The caller runs it inside a transaction,
+     * so a failing step leaves the database at the old version, untouched.
+     */
+    public static void upgrade(Database db, int oldVersion, int newVersion) {
+        for (Migration migration : MIGRATIONS) {
+            if (migration.toVersion > oldVersion && migration.toVersion <= newVersion) {
+                migration.migrate(db);
+            }
+        }
+    }
+
+    /**
+     * Replaces a table with its rebuilt copy. The AUTOINCREMENT counter is carried over so
+     * IDs of deleted products are never handed out again.
+     */
+    private static void renameRebuiltTable(Database db, String newTable, String table) {
+        db.execSQL("UPDATE sqlite_sequence SET seq = (SELECT seq FROM sqlite_sequence WHERE name = '"
+                + table + "') WHERE name = '" + newTable + "' AND EXISTS (SELECT 1 FROM sqlite_sequence"
+                + " WHERE name = '" + table + "')");
+        db.execSQL("DROP TABLE " + table);
+        db.execSQL("ALTER TABLE " + newTable + " RENAME TO " + table);
+    }
+
+    /**
+     * Creates the full-text index of the searchable columns. Its docid is the product ID, and
+     * triggers keep it in sync with every insert, delete and update of those columns.
+     */
+    private static void createSearchIndex(Database db) {
+        db.execSQL("CREATE VIRTUAL TABLE " + ProductEntry.FTS_TABLE_NAME + " USING fts4("
+                + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + ", "
+                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL + ")");
+        createProductSearchTriggers(db);
+    }
+
+    // Triggers of schema version 2 and 3, when the supplier columns were part of products.
+    private static void createProductSearchTriggers(Database db) {
+        db.execSQL("CREATE TRIGGER " + ProductEntry.FTS_TABLE_NAME + "_insert AFTER INSERT ON "
+                + ProductEntry.TABLE_NAME + " BEGIN INSERT INTO " + ProductEntry.FTS_TABLE_NAME
+                + " (docid, " + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + ", "
+                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL + ") VALUES (new." + ProductEntry._ID
+                + ", new." + ProductEntry.COLUMN_PRODUCT_NAME
+                + ", new." + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME
+                + ", new." + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL + "); END");
+
+        // Only fires for the indexed columns, so selling a product doesn't touch the index.
+        db.execSQL("CREATE TRIGGER " + ProductEntry.FTS_TABLE_NAME + "_update AFTER UPDATE OF "
+                + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + ", "
+                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL + " ON " + ProductEntry.TABLE_NAME
+                + " BEGIN UPDATE " + ProductEntry.FTS_TABLE_NAME + " SET "
+                + ProductEntry.COLUMN_PRODUCT_NAME + " = new." + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + " = new." + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + ", "
+                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL + " = new." + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL
+                + " WHERE docid = old." + ProductEntry._ID + "; END");
+
+        db.execSQL("CREATE TRIGGER " + ProductEntry.FTS_TABLE_NAME + "_delete AFTER DELETE ON "
+                + ProductEntry.TABLE_NAME + " BEGIN DELETE FROM " + ProductEntry.FTS_TABLE_NAME
+                + " WHERE docid = old." + ProductEntry._ID + "; END");
+    }
+
+    /**
+     * Search index triggers since schema version 4. The supplier columns of the index are read
+     * from the supplier table, and renaming a supplier updates the rows of all its products.
+     * The triggers belong to the tables and have to be created again when one is rebuilt.
+     */
+    private static void createSupplierSearchTriggers(Database db) {
+        String supplierName = "(SELECT " + SupplierEntry.COLUMN_SUPPLIER_NAME + " FROM "
+                + SupplierEntry.TABLE_NAME + " WHERE " + SupplierEntry._ID + " = new."
+                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + ")";
+        String supplierEmail = "(SELECT " + SupplierEntry.COLUMN_SUPPLIER_EMAIL + " FROM "
+                + SupplierEntry.TABLE_NAME + " WHERE " + SupplierEntry._ID + " = new."
+                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + ")";
+
+        db.execSQL("CREATE TRIGGER " + ProductEntry.FTS_TABLE_NAME + "_insert AFTER INSERT ON "
+                + ProductEntry.TABLE_NAME + " BEGIN INSERT INTO " + ProductEntry.FTS_TABLE_NAME
+                + " (docid, " + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + ", "
+                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL + ") VALUES (new." + ProductEntry._ID
+                + ", new." + ProductEntry.COLUMN_PRODUCT_NAME
+                + ", " + supplierName + ", " + supplierEmail + "); END");
+
+        // Only fires for the indexed columns, so selling a product doesn't touch the index.
+        db.execSQL("CREATE TRIGGER " + ProductEntry.FTS_TABLE_NAME + "_update AFTER UPDATE OF "
+                + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + " ON " + ProductEntry.TABLE_NAME
+                + " BEGIN UPDATE " + ProductEntry.FTS_TABLE_NAME + " SET "
+                + ProductEntry.COLUMN_PRODUCT_NAME + " = new." + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + " = " + supplierName + ", "
+                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL + " = " + supplierEmail
+                + " WHERE docid = old." + ProductEntry._ID + "; END");
+
+        db.execSQL("CREATE TRIGGER " + ProductEntry.FTS_TABLE_NAME + "_delete AFTER DELETE ON "
+                + ProductEntry.TABLE_NAME + " BEGIN DELETE FROM " + ProductEntry.FTS_TABLE_NAME
+                + " WHERE docid = old." + ProductEntry._ID + "; END");
+
+        db.execSQL("CREATE TRIGGER " + SupplierEntry.TABLE_NAME + "_fts_update AFTER UPDATE OF "
+                + SupplierEntry.COLUMN_SUPPLIER_NAME + ", " + SupplierEntry.COLUMN_SUPPLIER_EMAIL
+                + " ON " + SupplierEntry.TABLE_NAME + " BEGIN UPDATE " + ProductEntry.FTS_TABLE_NAME
+                + " SET " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME + " = new."
+                + SupplierEntry.COLUMN_SUPPLIER_NAME + ", " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL
+                + " = new." + SupplierEntry.COLUMN_SUPPLIER_EMAIL + " WHERE docid IN (SELECT "
+                + ProductEntry._ID + " FROM " + ProductEntry.TABLE_NAME + " WHERE "
+                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + " = new." + SupplierEntry._ID + "); END");
+    }
+
+    /**
+     * Keeps the daily aggregates up to date with every movement inserted, in the same statement,
+     * and rejects changes to movements already written.
+     */
+    private static void createStockLedgerTriggers(Database db) {
+        db.execSQL("CREATE TRIGGER " + DailyStockEntry.TABLE_NAME + "_insert AFTER INSERT ON "
+                + StockMovementEntry.TABLE_NAME + " BEGIN INSERT OR IGNORE INTO "
+                + DailyStockEntry.TABLE_NAME + " (" + DailyStockEntry.COLUMN_PRODUCT_ID + ", "
+                + DailyStockEntry.COLUMN_DAY + ") VALUES (new." + StockMovementEntry.COLUMN_PRODUCT_ID
+                + ", new." + StockMovementEntry.COLUMN_DAY + "); UPDATE " + DailyStockEntry.TABLE_NAME
+                + " SET " + DailyStockEntry.COLUMN_UNITS_SOLD + " = " + DailyStockEntry.COLUMN_UNITS_SOLD
+                + " + CASE WHEN new." + StockMovementEntry.COLUMN_TYPE + " = " + StockMovementEntry.TYPE_SALE
+                + " THEN -new." + StockMovementEntry.COLUMN_DELTA + " ELSE 0 END, "
+                + DailyStockEntry.COLUMN_UNITS_RESTOCKED + " = " + DailyStockEntry.COLUMN_UNITS_RESTOCKED
+                + " + CASE WHEN new." + StockMovementEntry.COLUMN_TYPE + " = " + StockMovementEntry.TYPE_RESTOCK
+                + " THEN new." + StockMovementEntry.COLUMN_DELTA + " ELSE 0 END, "
+                + DailyStockEntry.COLUMN_NET_CHANGE + " = " + DailyStockEntry.COLUMN_NET_CHANGE
+                + " + new." + StockMovementEntry.COLUMN_DELTA + ", "
+                + DailyStockEntry.COLUMN_MOVEMENTS + " = " + DailyStockEntry.COLUMN_MOVEMENTS + " + 1"
+                + " WHERE " + DailyStockEntry.COLUMN_PRODUCT_ID + " = new." + StockMovementEntry.COLUMN_PRODUCT_ID
+                + " AND " + DailyStockEntry.COLUMN_DAY + " = new." + StockMovementEntry.COLUMN_DAY + "; END");
+
+        db.execSQL("CREATE TRIGGER " + StockMovementEntry.TABLE_NAME + "_update BEFORE UPDATE ON "
+                + StockMovementEntry.TABLE_NAME + " BEGIN SELECT RAISE(ABORT, 'stock movements are append-only'); END");
+        db.execSQL("CREATE TRIGGER " + StockMovementEntry.TABLE_NAME + "_delete BEFORE DELETE ON "
+                + StockMovementEntry.TABLE_NAME + " BEGIN SELECT RAISE(ABORT, 'stock movements are append-only'); END");
+    }
+
+    /**
+     * Tracks every local change to a product for the sync: it gets the next version and the
+     * fields it changed are added to its dirty fields, which start over once the server has
+     * accepted the previous version. Deletes leave a tombstone. Nothing is tracked while
+     * {@link SyncEntry#COLUMN_APPLYING} is set, remote changes are not sent back.
+     */
+    private static void createSyncTriggers(Database db) {
+        String tracking = " WHEN (SELECT " + SyncEntry.COLUMN_APPLYING + " FROM "
+                + SyncEntry.STATE_TABLE_NAME + ") = 0";
+        String nextVersion = " BEGIN UPDATE " + SyncEntry.STATE_TABLE_NAME + " SET "
+                + SyncEntry.COLUMN_SEQUENCE + " = " + SyncEntry.COLUMN_SEQUENCE + " + 1; ";
+        String version = "(SELECT " + SyncEntry.COLUMN_SEQUENCE + " FROM " + SyncEntry.STATE_TABLE_NAME + ")";
+
+        db.execSQL("CREATE TRIGGER " + ProductEntry.TABLE_NAME + "_sync_insert AFTER INSERT ON "
+                + ProductEntry.TABLE_NAME + tracking + nextVersion + "UPDATE " + ProductEntry.TABLE_NAME
+                + " SET " + ProductEntry.COLUMN_SYNC_ID + " = IFNULL(new." + ProductEntry.COLUMN_SYNC_ID
+                + ", " + RANDOM_ID + "), " + ProductEntry.COLUMN_SYNC_VERSION + " = " + version + ", "
+                + ProductEntry.COLUMN_DIRTY_FIELDS + " = " + SyncEntry.ALL_FIELDS
+                + " WHERE " + ProductEntry._ID + " = new." + ProductEntry._ID + "; END");
+
+        String[] columns = {
+                ProductEntry.COLUMN_PRODUCT_PICTURE,
+                ProductEntry.COLUMN_PRODUCT_NAME,
+                ProductEntry.COLUMN_PRODUCT_PRICE_CENTS,
+                ProductEntry.COLUMN_PRODUCT_QUANTITY,
+                ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID,
+                ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD
+        };
+        int[] fields = {
+                SyncEntry.FIELD_PICTURE,
+                SyncEntry.FIELD_NAME,
+                SyncEntry.FIELD_PRICE,
+                SyncEntry.FIELD_QUANTITY,
+                SyncEntry.FIELD_SUPPLIER,
+                SyncEntry.FIELD_REORDER_THRESHOLD
+        };
+        StringBuilder updateOf = new StringBuilder();
+        StringBuilder changed = new StringBuilder();
+        StringBuilder dirtyFields = new StringBuilder("(CASE WHEN old." + ProductEntry.COLUMN_SYNC_VERSION
+                + " > (SELECT " + SyncEntry.COLUMN_ACKED_VERSION + " FROM " + SyncEntry.STATE_TABLE_NAME
+                + ") THEN old." + ProductEntry.COLUMN_DIRTY_FIELDS + " ELSE 0 END)");
+        for (int i = 0; i < columns.length; i++) {
+            String columnChanged = "new." + columns[i] + " IS NOT old." + columns[i];
+            updateOf.append(i == 0 ? "" : ", ").append(columns[i]);
+            changed.append(i == 0 ? "" : " OR ").append(columnChanged);
+            dirtyFields.append(" | (").append(columnChanged).append(") * ").append(fields[i]);
+        }
+        // Writes that leave the values as they were, like most restocks from an import, aren't
+        // changes to send.
+        db.execSQL("CREATE TRIGGER " + ProductEntry.TABLE_NAME + "_sync_update AFTER UPDATE OF "
+                + updateOf + " ON " + ProductEntry.TABLE_NAME + tracking
+                + " AND (" + changed + ")" + nextVersion + "UPDATE " + ProductEntry.TABLE_NAME
+                + " SET " + ProductEntry.COLUMN_SYNC_VERSION + " = " + version + ", "
+                + ProductEntry.COLUMN_DIRTY_FIELDS + " = " + dirtyFields
+                + " WHERE " + ProductEntry._ID + " = new." + ProductEntry._ID + "; END");
+
+        db.execSQL("CREATE TRIGGER " + ProductEntry.TABLE_NAME + "_sync_delete AFTER DELETE ON "
+                + ProductEntry.TABLE_NAME + tracking + nextVersion + "INSERT OR REPLACE INTO "
+                + SyncEntry.TOMBSTONE_TABLE_NAME + " (" + SyncEntry.COLUMN_SYNC_ID + ", "
+                + SyncEntry.COLUMN_SYNC_VERSION + ") VALUES (old." + ProductEntry.COLUMN_SYNC_ID
+                + ", " + version + "); END");
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.android.inventoryapp.data;
+
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp.data.ProductContract.StockAlertEntry;
+import com.example.android.inventoryapp.data.ProductContract.StockMovementEntry;
+import com.example.android.inventoryapp.data.ProductContract.SupplierEntry;
+import com.example.android.inventoryapp.data.ProductContract.SyncEntry;
+
+/**
+ * Statements of {@link ProductProvider} that are compiled or bound by hand instead of being
+ * built from a URI. Free of Android types, so the JVM benchmarks run the same SQL.
+ */
+final class ProductSql {
+    // Condition of every query and write of products, deleted ones wait for the purge unseen.
+    // Qualified, so it also works in the joins with the products table.
+    static final String LIVE_PRODUCTS = ProductEntry.TABLE_NAME + "."
+            + ProductEntry.COLUMN_DELETED_AT + " = 0";
+    // The deleted products of the latest delete, the ones an undo restores.
+    static final String LATEST_DELETE = ProductEntry.COLUMN_DELETED_AT + " > 0 AND "
+            + ProductEntry.COLUMN_DELETED_AT + " = (SELECT MAX(" + ProductEntry.COLUMN_DELETED_AT
+            + ") FROM " + ProductEntry.TABLE_NAME + ")";
+    // A range rather than != 0, so it can be read from the index.
+    static final String DELETED_PRODUCTS = ProductEntry.COLUMN_DELETED_AT + " > 0";
+
+    // IDs of the products matching a full-text query.
+    static final String SEARCH_MATCH = ProductEntry._ID + " IN (SELECT docid FROM "
+            + ProductEntry.FTS_TABLE_NAME + " WHERE " + ProductEntry.FTS_TABLE_NAME + " MATCH ?)";
+
+    // Insert statement compiled once per bulkInsert() call, columns bound in this order.
+    static final String INSERT_PRODUCT = "INSERT INTO " + ProductEntry.TABLE_NAME + " ("
+            + ProductEntry.COLUMN_PRODUCT_PICTURE + ", "
+            + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+            + ProductEntry.COLUMN_PRODUCT_PRICE_CENTS + ", "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + ", "
+            + ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD + ") VALUES (?, ?, ?, ?, ?, ?)";
+
+    // Takes the amount, the product ID and the amount again; changes no row if stock is short.
+    static final String SELL_PRODUCT = "UPDATE " + ProductEntry.TABLE_NAME
+            + " SET " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " = "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + " - ? WHERE " + ProductEntry._ID + " = ? AND "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + " >= ? AND " + LIVE_PRODUCTS;
+    static final String PRODUCT_QUANTITY = "SELECT " + ProductEntry.COLUMN_PRODUCT_QUANTITY
+            + " FROM " + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry._ID + " = ?";
+
+    // Binds the product ID, type, delta, timestamp and day of one stock movement.
+    static final String INSERT_MOVEMENT = "INSERT INTO " + StockMovementEntry.TABLE_NAME + " ("
+            + StockMovementEntry.COLUMN_PRODUCT_ID + ", "
+            + StockMovementEntry.COLUMN_TYPE + ", "
+            + StockMovementEntry.COLUMN_DELTA + ", "
+            + StockMovementEntry.COLUMN_TIMESTAMP + ", "
+            + StockMovementEntry.COLUMN_DAY + ") VALUES (?, ?, ?, ?, ?)";
+
+    // Binds the timestamp, the product ID and the amount sold. Opens an alert if the sale, which
+    // has already run, took the product from above its reorder threshold to at or below it.
+    static final String OPEN_ALERT_AFTER_SALE = "INSERT INTO " + StockAlertEntry.TABLE_NAME + " ("
+            + StockAlertEntry.COLUMN_PRODUCT_ID + ", "
+            + StockAlertEntry.COLUMN_QUANTITY + ", "
+            + StockAlertEntry.COLUMN_THRESHOLD + ", "
+            + StockAlertEntry.COLUMN_CREATED + ") SELECT "
+            + ProductEntry._ID + ", "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+            + ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD + ", ? FROM "
+            + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry._ID + " = ? AND "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + " <= " + ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD
+            + " AND " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " + ? > "
+            + ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD;
+
+    /**
+     * Returns the statement that opens an alert for every product of the selection that is
+     * above its reorder threshold and won't be after the update, to run right before it. Takes
+     * the new quantity and threshold, the timestamp, the new quantity and threshold again and
+     * then the selection arguments. A new value that is NULL keeps the current one.
+     */
+    static String openStockAlerts(String selection) {
+        String quantity = "IFNULL(?, IFNULL(" + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", 0))";
+        String threshold = "IFNULL(?, " + ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD + ")";
+        return "INSERT INTO " + StockAlertEntry.TABLE_NAME + " ("
+                + StockAlertEntry.COLUMN_PRODUCT_ID + ", "
+                + StockAlertEntry.COLUMN_QUANTITY + ", "
+                + StockAlertEntry.COLUMN_THRESHOLD + ", "
+                + StockAlertEntry.COLUMN_CREATED + ") SELECT "
+                + ProductEntry._ID + ", " + quantity + ", " + threshold + ", ? FROM "
+                + ProductEntry.TABLE_NAME + " WHERE IFNULL(" + ProductEntry.COLUMN_PRODUCT_QUANTITY
+                + ", 0) > " + ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD + " AND "
+                + quantity + " <= " + threshold
+                + (selection == null || selection.isEmpty() ? "" : " AND (" + selection + ")");
+    }
+
+    /**
+     * Returns the statement that resolves the open alerts of the products of the selection that
+     * will be above their reorder threshold after the update. Takes the timestamp, the new
+     * quantity and threshold and then the selection arguments, like openStockAlerts().
+     */
+    static String resolveStockAlerts(String selection) {
+        return "UPDATE " + StockAlertEntry.TABLE_NAME + " SET " + StockAlertEntry.COLUMN_RESOLVED
+                + " = ? WHERE " + StockAlertEntry.SELECTION_OPEN + " AND "
+                + StockAlertEntry.COLUMN_PRODUCT_ID + " IN (SELECT " + ProductEntry._ID + " FROM "
+                + ProductEntry.TABLE_NAME + " WHERE IFNULL(?, IFNULL("
+                + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", 0)) > IFNULL(?, "
+                + ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD + ")"
+                + (selection == null || selection.isEmpty() ? "" : " AND (" + selection + ")") + ")";
+    }
+
+    /**
+     * Returns the statement that writes a movement for every product of the selection whose
+     * quantity differs from the new one, to run right before setting it. Takes the new quantity
+     * twice, the timestamp, the day, the new quantity again and then the selection arguments.
+     */
+    static String recordQuantityChanges(String selection) {
+        String quantity = "IFNULL(" + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", 0)";
+        return "INSERT INTO " + StockMovementEntry.TABLE_NAME + " ("
+                + StockMovementEntry.COLUMN_PRODUCT_ID + ", "
+                + StockMovementEntry.COLUMN_TYPE + ", "
+                + StockMovementEntry.COLUMN_DELTA + ", "
+                + StockMovementEntry.COLUMN_TIMESTAMP + ", "
+                + StockMovementEntry.COLUMN_DAY + ") SELECT "
+                + ProductEntry._ID + ", CASE WHEN ? > " + quantity
+                + " THEN " + StockMovementEntry.TYPE_RESTOCK + " ELSE " + StockMovementEntry.TYPE_ADJUSTMENT
+                + " END, ? - " + quantity + ", ?, ? FROM "
+                + ProductEntry.TABLE_NAME + " WHERE " + quantity + " != ?"
+                + (selection == null || selection.isEmpty() ? "" : " AND (" + selection + ")");
+    }
+
+    // Binds the last version the server accepted and the batch size: the products changed
+    // since, oldest change first, with their supplier. CROSS JOIN keeps products the outer loop,
+    // so the rows are read from INDEX_SYNC_VERSION instead of sorting the whole table.
+    static final String PENDING_PRODUCT_CHANGES = "SELECT "
+            + ProductEntry.TABLE_NAME + "." + ProductEntry.COLUMN_SYNC_ID + ", "
+            + ProductEntry.TABLE_NAME + "." + ProductEntry.COLUMN_SYNC_VERSION + ", "
+            + ProductEntry.TABLE_NAME + "." + ProductEntry.COLUMN_DIRTY_FIELDS + ", "
+            + ProductEntry.TABLE_NAME + "." + ProductEntry.COLUMN_PRODUCT_PICTURE + ", "
+            + ProductEntry.TABLE_NAME + "." + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+            + ProductEntry.TABLE_NAME + "." + ProductEntry.COLUMN_PRODUCT_PRICE_CENTS + ", "
+            + ProductEntry.TABLE_NAME + "." + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+            + ProductEntry.TABLE_NAME + "." + ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD + ", "
+            + SupplierEntry.TABLE_NAME + "." + SupplierEntry.COLUMN_SUPPLIER_NAME + ", "
+            + SupplierEntry.TABLE_NAME + "." + SupplierEntry.COLUMN_SUPPLIER_EMAIL
+            + " FROM " + ProductEntry.TABLE_NAME + " CROSS JOIN " + SupplierEntry.TABLE_NAME + " ON "
+            + SupplierEntry.TABLE_NAME + "." + SupplierEntry._ID + " = "
+            + ProductEntry.TABLE_NAME + "." + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + " WHERE "
+            + ProductEntry.TABLE_NAME + "." + ProductEntry.COLUMN_SYNC_VERSION + " > ? ORDER BY "
+            + ProductEntry.TABLE_NAME + "." + ProductEntry.COLUMN_SYNC_VERSION + " LIMIT ?";
+    // Same binding, the products deleted since.
+    static final String PENDING_DELETES = "SELECT " + SyncEntry.COLUMN_SYNC_ID + ", "
+            + SyncEntry.COLUMN_SYNC_VERSION + " FROM " + SyncEntry.TOMBSTONE_TABLE_NAME + " WHERE "
+            + SyncEntry.COLUMN_SYNC_VERSION + " > ? ORDER BY " + SyncEntry.COLUMN_SYNC_VERSION + " LIMIT ?";
+    // Binds a sync ID. Only tombstones not accepted yet are kept, see DELETE_ACKED_TOMBSTONES.
+    static final String HAS_PENDING_DELETE = "SELECT COUNT(*) FROM " + SyncEntry.TOMBSTONE_TABLE_NAME
+            + " WHERE " + SyncEntry.COLUMN_SYNC_ID + " = ?";
+    static final String SYNC_STATE = "SELECT " + SyncEntry.COLUMN_ACKED_VERSION + ", "
+            + SyncEntry.COLUMN_TOKEN + ", " + SyncEntry.COLUMN_DEVICE + " FROM " + SyncEntry.STATE_TABLE_NAME;
+    // Binds the last version sent and the server's new token.
+    static final String ACK_CHANGES = "UPDATE " + SyncEntry.STATE_TABLE_NAME + " SET "
+            + SyncEntry.COLUMN_ACKED_VERSION + " = MAX(" + SyncEntry.COLUMN_ACKED_VERSION + ", ?), "
+            + SyncEntry.COLUMN_TOKEN + " = ?";
+    // Binds the last version sent.
+    static final String DELETE_ACKED_TOMBSTONES = "DELETE FROM " + SyncEntry.TOMBSTONE_TABLE_NAME
+            + " WHERE " + SyncEntry.COLUMN_SYNC_VERSION + " <= ?";
+    static final String BEGIN_APPLYING = "UPDATE " + SyncEntry.STATE_TABLE_NAME + " SET "
+            + SyncEntry.COLUMN_APPLYING + " = 1";
+    static final String END_APPLYING = "UPDATE " + SyncEntry.STATE_TABLE_NAME + " SET "
+            + SyncEntry.COLUMN_APPLYING + " = 0";
+
+    // Binds the time deleted products have to be older than and the batch size: the IDs of the
+    // next batch to purge, the oldest deletes first. Read from the deletedAt index, so the
+    // purge never reads a live product. Products restored in between no longer match.
+    private static final String PURGE_BATCH_IDS = "SELECT " + ProductEntry._ID + " FROM "
+            + ProductEntry.TABLE_NAME + " WHERE " + DELETED_PRODUCTS + " AND "
+            + ProductEntry.COLUMN_DELETED_AT + " <= ? ORDER BY " + ProductEntry.COLUMN_DELETED_AT
+            + " LIMIT ?";
+    // Same arguments, the pictures of the batch, read before it is deleted in one transaction.
+    static final String PURGE_BATCH_PICTURES = "SELECT " + ProductEntry.COLUMN_PRODUCT_PICTURE
+            + " FROM " + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry._ID + " IN ("
+            + PURGE_BATCH_IDS + ")";
+    // Same arguments, selection of the products of the batch.
+    static final String PURGE_BATCH = ProductEntry._ID + " IN (" + PURGE_BATCH_IDS + ")";
+
+    private ProductSql() {
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.android.inventoryapp.data;
+
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+
+/**
+ * What {@link ProductProvider} keeps per store: its database, the cache of its rows, the
+ * purge of its deleted products and the statements compiled against it. Stores share none of
+ * it, so a write to one store never waits for a write to another.
+ */
+final class ProductStore {
+    final String name;
+    final ProductDbHelper dbHelper;
+    // Product IDs are only unique within a store, so every store caches its own rows.
+    final ProductCache cache;
+    final ProductPurger purger;
+
+    // Compiled on the first sale and reused afterwards, only used inside the sale's transaction.
+    SQLiteStatement sellStatement;
+    SQLiteStatement quantityStatement;
+    SQLiteStatement movementStatement;
+    SQLiteStatement alertStatement;
+
+    // Held for the whole of a sync, so two syncs never send the same changes.
+    final Object syncLock = new Object();
+
+    ProductStore(String name, ProductDbHelper dbHelper, ProductCache cache, ProductPurger purger) {
+        this.name = name;
+        this.dbHelper = dbHelper;
+        this.cache = cache;
+        this.purger = purger;
+    }
+
+    /**
+     * Returns the URI as this store names it, for notifications.
+     */
+    Uri toStoreUri(Uri uri) {
+        return ProductContract.buildStoreUri(name, uri);
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp.data.ProductContract.SyncEntry;
+import com.example.android.inventoryapp.sync.SyncChange;
+import com.example.android.inventoryapp.sync.SyncRequest;
+import com.example.android.inventoryapp.sync.SyncResponse;
+import com.example.android.inventoryapp.sync.SyncTransport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Syncs the products of one database with the server, in rounds of at most one batch each
+ * way. A round sends the oldest local changes the server hasn't accepted yet, only the fields
+ * that changed, and applies the remote changes that come back. Conflicts are resolved per
+ * field: the server decides between devices, and a field changed here while a round was under
+ * way keeps the local value, which the next round sends.
+ * <p>
+ * The changes to send are found by version, see {@link SyncEntry}, so a round reads the changed
+ * rows only, never the whole table. Call from one thread at a time.
+ */
+final class ProductSync {
+    // Product columns of ProductSql.PENDING_PRODUCT_CHANGES, after the sync ID, version and
+    // dirty fields, with the field bit each belongs to.
+    private static final String[] COLUMNS = {
+            ProductEntry.COLUMN_PRODUCT_PICTURE,
+            ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductEntry.COLUMN_PRODUCT_PRICE_CENTS,
+            ProductEntry.COLUMN_PRODUCT_QUANTITY,
+            ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL
+    };
+    private static final int[] FIELDS = {
+            SyncEntry.FIELD_PICTURE,
+            SyncEntry.FIELD_NAME,
+            SyncEntry.FIELD_PRICE,
+            SyncEntry.FIELD_QUANTITY,
+            SyncEntry.FIELD_REORDER_THRESHOLD,
+            SyncEntry.FIELD_SUPPLIER,
+            SyncEntry.FIELD_SUPPLIER
+    };
+    private static final int FIRST_COLUMN = 3;
+
+    /**
+     * What a sync did, summed over its rounds.
+     */
+    static final class Result {
+        int rounds;
+        int rowsSent;
+        int rowsReceived;
+    }
+
+    private final ProductDbHelper dbHelper;
+    private final ProductCache cache;
+    private final SyncTransport transport;
+    private final int batchSize;
+
+    ProductSync(ProductDbHelper dbHelper, ProductCache cache, SyncTransport transport, int batchSize) {
+        this.dbHelper = dbHelper;
+        this.cache = cache;
+        this.transport = transport;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Runs rounds until every local change has been sent and every remote one received. A
+     * failing round leaves the database as the last successful one left it, so the next sync
+     * picks up from there.
+     */
+    Result sync() throws IOException {
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        Result result = new Result();
+        while (true) {
+            ArrayList<SyncChange> changes = new ArrayList<>();
+            String device;
+            String token;
+            long lastVersion;
+            // One transaction, so the products and tombstones read are of the same version:
+            // a change missed between the two reads would be taken as accepted.
+            database.beginTransactionNonExclusive();
+            try {
+                Cursor state = database.rawQuery(ProductSql.SYNC_STATE, null);
+                try {
+                    state.moveToFirst();
+                    lastVersion = state.getLong(0);
+                    token = state.getString(1);
+                    device = state.getString(2);
+                } finally {
+                    state.close();
+                }
+                lastVersion = readPendingChanges(database, lastVersion, changes);
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+
+            SyncResponse response = transport.exchange(new SyncRequest(device, token, changes));
+            apply(database, lastVersion, response);
+
+            result.rounds++;
+            result.rowsSent += changes.size();
+            result.rowsReceived += response.changes.size();
+            if (changes.size() < batchSize && !response.more) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Adds the oldest changes above the accepted version to the batch, products and deletions
+     * merged by version, and returns the version of the last one.
+     */
+    private long readPendingChanges(SQLiteDatabase database, long ackedVersion,
+                                    ArrayList<SyncChange> changes) {
+        String[] args = {String.valueOf(ackedVersion), String.valueOf(batchSize)};
+        Cursor products = database.rawQuery(ProductSql.PENDING_PRODUCT_CHANGES, args);
+        try {
+            Cursor deletes = database.rawQuery(ProductSql.PENDING_DELETES, args);
+            try {
+                long lastVersion = ackedVersion;
+                boolean hasProduct = products.moveToFirst();
+                boolean hasDelete = deletes.moveToFirst();
+                while (changes.size() < batchSize && (hasProduct || hasDelete)) {
+                    if (hasProduct && (!hasDelete || products.getLong(1) < deletes.getLong(1))) {
+                        changes.add(readProductChange(products));
+                        lastVersion = products.getLong(1);
+                        hasProduct = products.moveToNext();
+                    } else {
+                        changes.add(SyncChange.deletion(deletes.getString(0)));
+                        lastVersion = deletes.getLong(1);
+                        hasDelete = deletes.moveToNext();
+                    }
+                }
+                return lastVersion;
+            } finally {
+                deletes.close();
+            }
+        } finally {
+            products.close();
+        }
+    }
+
+    private static SyncChange readProductChange(Cursor cursor) {
+        int dirtyFields = cursor.getInt(2);
+        HashMap<String, Object> fields = new HashMap<>();
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if ((dirtyFields & FIELDS[i]) == 0) {
+                continue;
+            }
+            int column = FIRST_COLUMN + i;
+            if (cursor.getType(column) == Cursor.FIELD_TYPE_INTEGER) {
+                fields.put(COLUMNS[i], cursor.getLong(column));
+            } else {
+                fields.put(COLUMNS[i], cursor.getString(column));
+            }
+        }
+        return new SyncChange(cursor.getString(0), fields);
+    }
+
+    /**
+     * Marks the changes sent as accepted and writes the remote ones, in one transaction, so a
+     * crash never leaves a round half applied.
+     */
+    private void apply(SQLiteDatabase database, long lastVersion, SyncResponse response)
+            throws IOException {
+        boolean remote = !response.changes.isEmpty();
+        if (remote) {
+            cache.beginWrite(ProductCache.ALL_PRODUCTS);
+        }
+        database.beginTransaction();
+        try {
+            database.execSQL(ProductSql.ACK_CHANGES, new Object[]{lastVersion, response.token});
+            database.execSQL(ProductSql.DELETE_ACKED_TOMBSTONES, new Object[]{lastVersion});
+            if (remote) {
+                database.execSQL(ProductSql.BEGIN_APPLYING);
+                HashMap<String, Long> supplierIds = new HashMap<>();
+                for (SyncChange change : response.changes) {
+                    applyChange(database, change, lastVersion, supplierIds);
+                }
+                database.execSQL(ProductSql.END_APPLYING);
+            }
+            database.setTransactionSuccessful();
+        } catch (IllegalArgumentException | SQLException e) {
+            throw new IOException("Invalid change from the server", e);
+        } finally {
+            database.endTransaction();
+            if (remote) {
+                cache.endWrite(ProductCache.ALL_PRODUCTS);
+            }
+        }
+    }
+
+    private static void applyChange(SQLiteDatabase database, SyncChange change, long ackedVersion,
+                                    HashMap<String, Long> supplierIds) {
+        long id = -1;
+        int localFields = 0;
+        Cursor cursor = database.query(ProductEntry.TABLE_NAME, new String[]{ProductEntry._ID,
+                        ProductEntry.COLUMN_SYNC_VERSION, ProductEntry.COLUMN_DIRTY_FIELDS},
+                ProductEntry.COLUMN_SYNC_ID + "=?", new String[]{change.syncId}, null, null, null);
+        try {
+            if (cursor.moveToFirst()) {
+                id = cursor.getLong(0);
+                // Fields changed after the last version sent haven't reached the server yet.
+                localFields = cursor.getLong(1) > ackedVersion ? cursor.getInt(2) : 0;
+            }
+        } finally {
+            cursor.close();
+        }
+
+        if (id == -1 && DatabaseUtils.longForQuery(database, ProductSql.HAS_PENDING_DELETE,
+                new String[]{change.syncId}) != 0) {
+            // Deleted here and not sent yet, the deletion wins like any other local change.
+            return;
+        }
+        String[] idArgs = {String.valueOf(id)};
+        if (change.deleted) {
+            if (id != -1) {
+                database.delete(ProductEntry.TABLE_NAME, ProductEntry._ID + "=?", idArgs);
+            }
+            return;
+        }
+
+        ContentValues values = new ContentValues();
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if ((localFields & FIELDS[i]) == 0 && change.fields.containsKey(COLUMNS[i])) {
+                Object value = change.fields.get(COLUMNS[i]);
+                ProductValidator.validateProductField(COLUMNS[i], value);
+                putValue(values, COLUMNS[i], value);
+            }
+        }
+        values = ProductProvider.withSupplierId(database, values, supplierIds);
+
+        if (id == -1) {
+            values.put(ProductEntry.COLUMN_SYNC_ID, change.syncId);
+            database.insertOrThrow(ProductEntry.TABLE_NAME, null, values);
+        } else if (values.size() != 0) {
+            // Remote stock changes go into the ledger and alerts like local ones.
+            Integer quantity = values.getAsInteger(ProductEntry.COLUMN_PRODUCT_QUANTITY);
+            Integer threshold = values.getAsInteger(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD);
+            String selection = ProductEntry._ID + "=?";
+            if (quantity != null) {
+                ProductProvider.recordQuantityChanges(database, quantity, selection, idArgs);
+            }
+            if (quantity != null || threshold != null) {
+                ProductProvider.evaluateStockAlerts(database, quantity, threshold, selection, idArgs);
+            }
+            database.update(ProductEntry.TABLE_NAME, values, selection, idArgs);
+        }
+    }
+
+    private static void putValue(ContentValues values, String column, Object value) {
+        if (value instanceof Long) {
+            values.put(column, (Long) value);
+        } else if (value == null) {
+            values.putNull(column);
+        } else {
+            values.put(column, value.toString());
+        }
+    }
+}
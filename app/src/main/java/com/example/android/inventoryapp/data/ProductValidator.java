@@ -0,0 +1,103 @@
+package com.example.android.inventoryapp.data;
+
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp.data.ProductContract.SupplierEntry;
+
+/**
+ * Checks single values written through {@link ProductProvider}, one column at a time so it
+ * works without ContentValues. Values are converted the way ContentValues converts them, and
+ * an invalid value throws an IllegalArgumentException.
+ */
+public final class ProductValidator {
+
+    private ProductValidator() {
+    }
+
+    public static void validateProductField(String column, Object value) {
+        switch (column) {
+            case ProductEntry.COLUMN_PRODUCT_NAME:
+                if (value == null) {
+                    throw new IllegalArgumentException("Product name is empty");
+                }
+                break;
+            case ProductEntry.COLUMN_PRODUCT_PRICE_CENTS:
+                Long priceCents = toLong(value);
+                if (priceCents == null) {
+                    throw new IllegalArgumentException("Product price is empty");
+                }
+                if (priceCents < 0) {
+                    throw new IllegalArgumentException("Product price is negative");
+                }
+                break;
+            case ProductEntry.COLUMN_PRODUCT_QUANTITY:
+                // May be left out, the column defaults to 0.
+                if (value != null) {
+                    Long quantity = toLong(value);
+                    if (quantity == null) {
+                        throw new IllegalArgumentException("Product quantity is not a number");
+                    }
+                    if (quantity < 0) {
+                        throw new IllegalArgumentException("Product quantity is negative");
+                    }
+                }
+                break;
+            case ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD:
+                // May be left out as well, 0 alerts only when the product runs out.
+                if (value != null) {
+                    Long threshold = toLong(value);
+                    if (threshold == null) {
+                        throw new IllegalArgumentException("Product reorder threshold is not a number");
+                    }
+                    if (threshold < 0) {
+                        throw new IllegalArgumentException("Product reorder threshold is negative");
+                    }
+                }
+                break;
+            case ProductEntry.COLUMN_PRODUCT_PICTURE:
+                if (value == null) {
+                    throw new IllegalArgumentException("No product image is selected");
+                }
+                break;
+            case ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME:
+                if (value == null) {
+                    throw new IllegalArgumentException("Product supplier name is empty");
+                }
+                break;
+            case ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL:
+                if (value == null) {
+                    throw new IllegalArgumentException("Product supplier email is empty");
+                }
+                break;
+        }
+    }
+
+    static void validateSupplierField(String column, Object value) {
+        switch (column) {
+            case SupplierEntry.COLUMN_SUPPLIER_NAME:
+                if (value == null) {
+                    throw new IllegalArgumentException("Supplier name is empty");
+                }
+                break;
+            case SupplierEntry.COLUMN_SUPPLIER_EMAIL:
+                if (value == null) {
+                    throw new IllegalArgumentException("Supplier email is empty");
+                }
+                break;
+        }
+    }
+
+    // Same conversion as ContentValues.getAsLong(), null if the value isn't a number.
+    private static Long toLong(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        try {
+            return Long.valueOf(value.toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
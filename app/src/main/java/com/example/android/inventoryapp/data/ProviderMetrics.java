@@ -0,0 +1,121 @@
+package com.example.android.inventoryapp.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.util.SparseArray;
+
+import com.example.android.inventoryapp.data.ProductContract.DiagnosticsEntry;
+
+/**
+ * Latency histograms and row counts of {@link ProductProvider} calls, kept per URI match code
+ * and operation, plus the number of change notifications sent.
+ * <p>
+ * While disabled every method returns right away, so the provider only pays for reading a
+ * final field. All methods are thread safe.
+ */
+final class ProviderMetrics {
+    static final int QUERY = 0;
+    static final int INSERT = 1;
+    static final int BULK_INSERT = 2;
+    static final int UPDATE = 3;
+    static final int DELETE = 4;
+    private static final String[] OPERATION_NAMES = {"query", "insert", "bulkInsert", "update", "delete"};
+
+    private static final String[] COLUMNS = {
+            DiagnosticsEntry.COLUMN_URI,
+            DiagnosticsEntry.COLUMN_OPERATION,
+            DiagnosticsEntry.COLUMN_COUNT,
+            DiagnosticsEntry.COLUMN_TOTAL_MICROS,
+            DiagnosticsEntry.COLUMN_MAX_MICROS,
+            DiagnosticsEntry.COLUMN_P50_MICROS,
+            DiagnosticsEntry.COLUMN_P95_MICROS,
+            DiagnosticsEntry.COLUMN_ROWS
+    };
+
+    private final boolean enabled;
+    private final long slowQueryNanos;
+    // URI pattern of each match code, for the snapshot.
+    private final SparseArray<String> matchPatterns;
+    // Keyed by match code * OPERATION_NAMES.length + operation.
+    private final SparseArray<LatencyHistogram> histograms = new SparseArray<>();
+    private long notifications;
+
+    ProviderMetrics(boolean enabled, long slowQueryMillis, SparseArray<String> matchPatterns) {
+        this.enabled = enabled;
+        this.slowQueryNanos = slowQueryMillis * 1000000;
+        this.matchPatterns = matchPatterns;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the start time to pass to {@link #record}, 0 while disabled.
+     */
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records a call that began at {@code start} and returns how long it took in nanoseconds,
+     * or 0 while disabled.
+     */
+    long record(int match, int operation, long start, int rows) {
+        if (!enabled) {
+            return 0;
+        }
+        long elapsed = System.nanoTime() - start;
+        int key = match * OPERATION_NAMES.length + operation;
+        synchronized (this) {
+            LatencyHistogram histogram = histograms.get(key);
+            if (histogram == null) {
+                histogram = new LatencyHistogram();
+                histograms.put(key, histogram);
+            }
+            histogram.add(elapsed, rows);
+        }
+        return elapsed;
+    }
+
+    boolean isSlow(long elapsedNanos) {
+        return enabled && elapsedNanos >= slowQueryNanos;
+    }
+
+    void recordNotification() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            notifications++;
+        }
+    }
+
+    /**
+     * Returns the current numbers in the columns of {@link DiagnosticsEntry}, with the hits
+     * and misses of the product cache, which are counted even while disabled.
+     */
+    synchronized Cursor snapshot(ProductCache cache) {
+        MatrixCursor cursor = new MatrixCursor(COLUMNS, histograms.size() + 3);
+        for (int i = 0; i < histograms.size(); i++) {
+            int key = histograms.keyAt(i);
+            LatencyHistogram histogram = histograms.valueAt(i);
+            cursor.addRow(new Object[]{
+                    matchPatterns.get(key / OPERATION_NAMES.length),
+                    OPERATION_NAMES[key % OPERATION_NAMES.length],
+                    histogram.getCount(),
+                    histogram.getTotalMicros(),
+                    histogram.getMaxMicros(),
+                    histogram.getPercentileMicros(0.5),
+                    histogram.getPercentileMicros(0.95),
+                    histogram.getRows()
+            });
+        }
+        if (enabled) {
+            cursor.addRow(new Object[]{null, "notifyChange", notifications, 0, 0, 0, 0, 0});
+        }
+        cursor.addRow(new Object[]{null, "cacheHit", cache.hitCount(), 0, 0, 0, 0, 0});
+        cursor.addRow(new Object[]{null, "cacheMiss", cache.missCount(), 0, 0, 0, 0, 0});
+        return cursor;
+    }
+}
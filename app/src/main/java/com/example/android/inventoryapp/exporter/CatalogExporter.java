@@ -0,0 +1,79 @@
+package com.example.android.inventoryapp.exporter;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp.importer.CatalogImporter;
+
+import java.io.IOException;
+
+/**
+ * Writes every product with its supplier to a catalog file.
+ * <p>
+ * The products are read through {@link ProductEntry#buildDetailsPageUri} in chunks ordered by
+ * ID, each chunk a query of its own. No read transaction spans the export, so sales and edits
+ * go on while it runs, and only one chunk is in memory at a time. A product changed during the
+ * export is written as it was when its chunk was read.
+ */
+public class CatalogExporter {
+    private static final String[] PROJECTION;
+
+    static {
+        PROJECTION = new String[CatalogImporter.COLUMNS.length + 1];
+        PROJECTION[0] = ProductEntry._ID;
+        System.arraycopy(CatalogImporter.COLUMNS, 0, PROJECTION, 1, CatalogImporter.COLUMNS.length);
+    }
+
+    /**
+     * Told about the progress after every chunk, on the exporting thread.
+     */
+    public interface Listener {
+        void onChunkWritten(long rowsWritten);
+    }
+
+    private final ContentResolver resolver;
+    private final int chunkSize;
+
+    public CatalogExporter(ContentResolver resolver, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.resolver = resolver;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Writes all products and returns how many there were. The writer is left open.
+     */
+    public long run(CatalogWriter writer, Listener listener) throws IOException {
+        String[] values = new String[CatalogImporter.COLUMNS.length];
+        long rowsWritten = 0;
+        long afterId = 0;
+        int rows;
+        do {
+            Cursor cursor = resolver.query(ProductEntry.buildDetailsPageUri(afterId, chunkSize),
+                    PROJECTION, null, null, null);
+            if (cursor == null) {
+                throw new IOException("Cannot query products after " + afterId);
+            }
+            try {
+                rows = cursor.getCount();
+                while (cursor.moveToNext()) {
+                    afterId = cursor.getLong(0);
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = cursor.getString(i + 1);
+                    }
+                    writer.writeRow(values);
+                }
+            } finally {
+                cursor.close();
+            }
+            rowsWritten += rows;
+            if (listener != null) {
+                listener.onChunkWritten(rowsWritten);
+            }
+        } while (rows == chunkSize);
+        return rowsWritten;
+    }
+}
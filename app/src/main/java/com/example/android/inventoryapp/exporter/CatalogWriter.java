@@ -0,0 +1,22 @@
+package com.example.android.inventoryapp.exporter;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes the products of a catalog file one row at a time, in the columns of
+ * {@link com.example.android.inventoryapp.importer.CatalogImporter#COLUMNS}, so the file can be
+ * imported again.
+ */
+public interface CatalogWriter extends Closeable {
+    /**
+     * Writes one product, {@code values} holds a value or null for every column.
+     */
+    void writeRow(String[] values) throws IOException;
+
+    /**
+     * Finishes the file and closes the underlying writer.
+     */
+    @Override
+    void close() throws IOException;
+}
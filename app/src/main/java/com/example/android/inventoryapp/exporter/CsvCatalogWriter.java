@@ -0,0 +1,36 @@
+package com.example.android.inventoryapp.exporter;
+
+import com.example.android.inventoryapp.importer.CatalogImporter;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes a CSV catalog with a header line naming the columns.
+ */
+public class CsvCatalogWriter implements CatalogWriter {
+    private final Writer writer;
+    private final CsvWriter csv;
+
+    public CsvCatalogWriter(Writer writer) throws IOException {
+        this.writer = writer;
+        csv = new CsvWriter(writer);
+        for (String column : CatalogImporter.COLUMNS) {
+            csv.writeField(column);
+        }
+        csv.endRecord();
+    }
+
+    @Override
+    public void writeRow(String[] values) throws IOException {
+        for (String value : values) {
+            csv.writeField(value);
+        }
+        csv.endRecord();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.android.inventoryapp.exporter;
+
+import android.app.IntentService;
+import android.app.Notification;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.OpenableColumns;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.app.NotificationManagerCompat;
+import android.util.Log;
+
+import com.example.android.inventoryapp.R;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports the catalog in the background to a document chosen by the user, showing the progress
+ * in a notification. The format follows the name of the document: JSON for ".json", CSV
+ * otherwise, gzip-compressed when it ends with ".gz".
+ */
+public class ExportService extends IntentService {
+    private static final String LOG_TAG = ExportService.class.getSimpleName();
+    private static final int NOTIFICATION_ID = 2;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Starts exporting all products to {@code destination}, replacing its content.
+     */
+    public static void start(Context context, Uri destination) {
+        context.startService(new Intent(context, ExportService.class).setData(destination));
+    }
+
+    public ExportService() {
+        super("ExportService");
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        Uri destination = intent.getData();
+        ContentResolver resolver = getContentResolver();
+        String name = getDisplayName(resolver, destination).toLowerCase();
+        boolean gzip = name.endsWith(".gz");
+        boolean json = name.endsWith(".json") || name.endsWith(".json.gz");
+
+        startForeground(NOTIFICATION_ID, buildProgressNotification(0));
+        final NotificationManagerCompat notifications = NotificationManagerCompat.from(this);
+        try {
+            OutputStream output = resolver.openOutputStream(destination, "w");
+            if (output == null) {
+                throw new IOException("Cannot open " + destination);
+            }
+            output = gzip
+                    ? new GZIPOutputStream(new BufferedOutputStream(output, BUFFER_SIZE), BUFFER_SIZE)
+                    : new BufferedOutputStream(output, BUFFER_SIZE);
+            Writer text = new BufferedWriter(new OutputStreamWriter(output, "UTF-8"), BUFFER_SIZE);
+            CatalogWriter writer = json ? new JsonCatalogWriter(text) : new CsvCatalogWriter(text);
+            long rows;
+            try {
+                rows = new CatalogExporter(resolver, getResources().getInteger(R.integer.exportChunkSize))
+                        .run(writer, new CatalogExporter.Listener() {
+                            @Override
+                            public void onChunkWritten(long rowsWritten) {
+                                notifications.notify(NOTIFICATION_ID,
+                                        buildProgressNotification(rowsWritten));
+                            }
+                        });
+            } finally {
+                writer.close();
+            }
+            stopForeground(true);
+            notifications.notify(NOTIFICATION_ID,
+                    buildDoneNotification(getString(R.string.exportFinished, rows)));
+        } catch (IOException | RuntimeException e) {
+            Log.e(LOG_TAG, "Export to " + destination + " failed", e);
+            stopForeground(true);
+            notifications.notify(NOTIFICATION_ID,
+                    buildDoneNotification(getString(R.string.exportFailed)));
+        }
+    }
+
+    // The name the user gave the document, or the last segment of its URI.
+    private static String getDisplayName(ContentResolver resolver, Uri destination) {
+        Cursor cursor = resolver.query(destination, new String[]{OpenableColumns.DISPLAY_NAME},
+                null, null, null);
+        if (cursor != null) {
+            try {
+                if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                    return cursor.getString(0);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        String segment = destination.getLastPathSegment();
+        return segment != null ? segment : "";
+    }
+
+    private Notification buildProgressNotification(long rowsWritten) {
+        return new NotificationCompat.Builder(this)
+                .setSmallIcon(android.R.drawable.stat_sys_upload)
+                .setContentTitle(getString(R.string.exportTitle))
+                .setContentText(getString(R.string.exportProgress, rowsWritten))
+                .setProgress(0, 0, true)
+                .setOngoing(true)
+                .build();
+    }
+
+    private Notification buildDoneNotification(String text) {
+        return new NotificationCompat.Builder(this)
+                .setSmallIcon(android.R.drawable.stat_sys_upload_done)
+                .setContentTitle(getString(R.string.exportTitle))
+                .setContentText(text)
+                .build();
+    }
+}
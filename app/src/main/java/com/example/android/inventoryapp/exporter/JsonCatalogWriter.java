@@ -0,0 +1,56 @@
+package com.example.android.inventoryapp.exporter;
+
+import android.util.JsonWriter;
+
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp.importer.CatalogImporter;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes a JSON catalog: an array with one object per product. Price and quantity are written
+ * as numbers, null values are left out.
+ */
+public class JsonCatalogWriter implements CatalogWriter {
+    private final JsonWriter writer;
+
+    public JsonCatalogWriter(Writer writer) throws IOException {
+        this.writer = new JsonWriter(writer);
+        this.writer.beginArray();
+    }
+
+    @Override
+    public void writeRow(String[] values) throws IOException {
+        writer.beginObject();
+        for (int i = 0; i < values.length; i++) {
+            String value = values[i];
+            if (value == null) {
+                continue;
+            }
+            String column = CatalogImporter.COLUMNS[i];
+            writer.name(column);
+            if (column.equals(ProductEntry.COLUMN_PRODUCT_PRICE_CENTS)
+                    || column.equals(ProductEntry.COLUMN_PRODUCT_QUANTITY)
+                    || column.equals(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD)) {
+                try {
+                    writer.value(Long.parseLong(value));
+                    continue;
+                } catch (NumberFormatException e) {
+                    // Written as it is stored.
+                }
+            }
+            writer.value(value);
+        }
+        writer.endObject();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.endArray();
+        } finally {
+            writer.close();
+        }
+    }
+}
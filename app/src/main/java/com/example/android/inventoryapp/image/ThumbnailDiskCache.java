@@ -0,0 +1,228 @@
+package com.example.android.inventoryapp.image;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Size bounded store of decoded thumbnails under the app cache directory, so pictures don't
+ * have to be decoded again after every process start.
+ * <p>
+ * Each thumbnail is a file named after a hash of the picture URI plus the size it was decoded
+ * to. Files are written to a temporary name and renamed, so a crash never leaves a half written
+ * thumbnail behind. Losing the last writes on a power cut is fine, they are decoded again, so
+ * files aren't synced. The least recently read files are deleted once the store grows past its
+ * bound. Reads and writes do disk I/O and must not be called on the main thread, and run
+ * concurrently; only the bookkeeping of the size is serialized.
+ */
+public class ThumbnailDiskCache {
+    private static final String LOG_TAG = ThumbnailDiskCache.class.getSimpleName();
+
+    private static final String DIRECTORY_NAME = "thumbnails";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long MAX_SIZE_BYTES = 20 * 1024 * 1024;
+    private static final int QUALITY = 85;
+
+    private static ThumbnailDiskCache instance;
+
+    private final File directory;
+    // Temporary files older than this were left behind by an earlier process.
+    private final long createdAt = System.currentTimeMillis();
+    private final ExecutorService removeExecutor = Executors.newSingleThreadExecutor();
+    // Total size of the files in the directory, -1 until it has been measured. Guarded by this.
+    private long size = -1;
+
+    private ThumbnailDiskCache(Context context) {
+        directory = new File(context.getCacheDir(), DIRECTORY_NAME);
+    }
+
+    public static synchronized ThumbnailDiskCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new ThumbnailDiskCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the stored thumbnail, or null if there is none.
+     */
+    public Bitmap get(String picture, int targetSize) {
+        File file = new File(directory, fileName(picture, targetSize));
+        if (!file.exists()) {
+            return null;
+        }
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+        if (bitmap == null) {
+            // Unreadable, drop it so it gets written again.
+            synchronized (this) {
+                deleteFile(file);
+            }
+            return null;
+        }
+        // The modification time doubles as the last access time for eviction.
+        file.setLastModified(System.currentTimeMillis());
+        return bitmap;
+    }
+
+    public void put(String picture, int targetSize, Bitmap bitmap) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(LOG_TAG, "Failed to create " + directory);
+            return;
+        }
+        File file = new File(directory, fileName(picture, targetSize));
+        // Named per thread, both decode threads may write the same thumbnail at once.
+        File tempFile = new File(directory,
+                file.getName() + "." + Thread.currentThread().getId() + TEMP_SUFFIX);
+        try {
+            FileOutputStream out = new FileOutputStream(tempFile);
+            try {
+                // Photos are opaque and JPEG writes them fastest, WEBP keeps the alpha of the rest.
+                bitmap.compress(bitmap.hasAlpha() ? Bitmap.CompressFormat.WEBP
+                        : Bitmap.CompressFormat.JPEG, QUALITY, out);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Failed to write thumbnail for " + picture, e);
+            tempFile.delete();
+            return;
+        }
+
+        // Only the size bookkeeping is locked, the thumbnail was written without it.
+        synchronized (this) {
+            ensureSizeMeasured();
+            if (file.exists()) {
+                deleteFile(file);
+            }
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete();
+                return;
+            }
+            size += file.length();
+            trimToSize();
+        }
+    }
+
+    /**
+     * Deletes the thumbnails of all sizes of the given pictures in the background.
+     */
+    public void removeAsync(final Collection<String> pictures) {
+        final Set<String> prefixes = new HashSet<>();
+        for (String picture : pictures) {
+            prefixes.add(hash(picture));
+        }
+        removeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                remove(prefixes);
+            }
+        });
+    }
+
+    // Removes the files whose hash is in the set.
+    private synchronized void remove(Set<String> hashes) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        ensureSizeMeasured();
+        for (File file : files) {
+            String name = file.getName();
+            int separator = name.indexOf('_');
+            if (separator > 0 && !isTempFile(file)
+                    && hashes.contains(name.substring(0, separator))) {
+                deleteFile(file);
+            }
+        }
+    }
+
+    /**
+     * Measures the thumbnails once per process. Temporary files being written don't count, and
+     * those a crashed process left behind are deleted.
+     */
+    private void ensureSizeMeasured() {
+        if (size >= 0) {
+            return;
+        }
+        size = 0;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!isTempFile(file)) {
+                    size += file.length();
+                } else if (file.lastModified() < createdAt) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private void trimToSize() {
+        if (size <= MAX_SIZE_BYTES) {
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        // Oldest access first.
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = a.lastModified() - b.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+        for (int i = 0; i < files.length && size > MAX_SIZE_BYTES; i++) {
+            // Another thread is still writing it, and it isn't counted yet.
+            if (!isTempFile(files[i])) {
+                deleteFile(files[i]);
+            }
+        }
+    }
+
+    private static boolean isTempFile(File file) {
+        return file.getName().endsWith(TEMP_SUFFIX);
+    }
+
+    private void deleteFile(File file) {
+        long length = file.length();
+        if (file.delete() && size >= 0) {
+            size -= length;
+        }
+    }
+
+    private static String fileName(String picture, int targetSize) {
+        return hash(picture) + "_" + targetSize;
+    }
+
+    private static String hash(String picture) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(picture.getBytes("UTF-8"));
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+                builder.append(Character.forDigit(b & 0xf, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            // Both are guaranteed to exist on every Android device.
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.android.inventoryapp.image;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import com.example.android.inventoryapp.R;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads product pictures into ImageViews without decoding on the main thread.
+ * <p>
+ * Pictures are decoded on a background thread, subsampled to roughly the size they are shown
+ * at, and kept in a memory cache sized as a fraction of the heap. Decoded thumbnails are also
+ * written to {@link ThumbnailDiskCache}, which is read before decoding after a restart.
+ * Binding a recycled view to a different picture cancels the load still pending for it, so
+ * stale bitmaps never show up in the wrong row.
+ */
+public class ThumbnailLoader {
+    private static final String LOG_TAG = ThumbnailLoader.class.getSimpleName();
+
+    // Part of the maximum heap that decoded bitmaps may take.
+    private static final int MEMORY_CACHE_HEAP_FRACTION = 8;
+    private static final int DECODE_THREADS = 2;
+
+    private static ThumbnailLoader instance;
+
+    private final ContentResolver resolver;
+    private final LruCache<String, Bitmap> memoryCache;
+    private final ThumbnailDiskCache diskCache;
+    private final ExecutorService executor = Executors.newFixedThreadPool(DECODE_THREADS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private ThumbnailLoader(Context context) {
+        resolver = context.getContentResolver();
+        diskCache = ThumbnailDiskCache.getInstance(context);
+        int cacheSizeKb = (int) (Runtime.getRuntime().maxMemory() / 1024 / MEMORY_CACHE_HEAP_FRACTION);
+        memoryCache = new LruCache<String, Bitmap>(cacheSizeKb) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount() / 1024;
+            }
+        };
+    }
+
+    public static synchronized ThumbnailLoader getInstance(Context context) {
+        if (instance == null) {
+            instance = new ThumbnailLoader(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Shows the picture in the view, decoded so that neither side is much larger than
+     * {@code targetSize} pixels. Must be called on the main thread.
+     */
+    public void load(String picture, ImageView view, int targetSize) {
+        load(picture, cacheKey(picture, targetSize), view, targetSize);
+    }
+
+    /**
+     * Same as above with the key of {@link #cacheKey(String, int)} computed up front, so that
+     * binding a row allocates nothing when its view already shows the picture.
+     */
+    public void load(String picture, String key, ImageView view, int targetSize) {
+        // Shown, being loaded or failed to load, either way there's nothing new to do.
+        if (key.equals(view.getTag(R.id.thumbnailKey))) {
+            return;
+        }
+        view.setTag(R.id.thumbnailKey, key);
+        Request pending = (Request) view.getTag(R.id.thumbnailRequest);
+        if (pending != null) {
+            pending.cancel();
+        }
+
+        Bitmap cached = memoryCache.get(key);
+        if (cached != null) {
+            view.setTag(R.id.thumbnailRequest, null);
+            view.setImageBitmap(cached);
+            return;
+        }
+
+        view.setImageDrawable(null);
+        Request request = new Request(key, picture, targetSize, view);
+        view.setTag(R.id.thumbnailRequest, request);
+        request.future = executor.submit(request);
+    }
+
+    /**
+     * Cancels the load pending for the view, if any, and clears it.
+     */
+    public void cancel(ImageView view) {
+        Request pending = (Request) view.getTag(R.id.thumbnailRequest);
+        if (pending != null) {
+            pending.cancel();
+            view.setTag(R.id.thumbnailRequest, null);
+        }
+        view.setTag(R.id.thumbnailKey, null);
+        view.setImageDrawable(null);
+    }
+
+    /**
+     * Decodes the picture into the caches in the background without showing it anywhere, so
+     * that the list can show it right away later on.
+     */
+    public void prefetch(final String picture, final int targetSize) {
+        final String key = cacheKey(picture, targetSize);
+        if (memoryCache.get(key) != null) {
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                loadBitmap(key, picture, targetSize);
+            }
+        });
+    }
+
+    /**
+     * Runs on a background thread. Looks the thumbnail up on disk and decodes the picture
+     * only if it isn't stored there yet.
+     */
+    private Bitmap loadBitmap(String key, String picture, int targetSize) {
+        Bitmap bitmap = diskCache.get(picture, targetSize);
+        if (bitmap == null) {
+            bitmap = decode(picture, targetSize);
+            if (bitmap != null) {
+                diskCache.put(picture, targetSize, bitmap);
+            }
+        }
+        if (bitmap != null) {
+            memoryCache.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Key of the picture decoded to the given size in the memory cache.
+     */
+    public static String cacheKey(String picture, int targetSize) {
+        return picture + "@" + targetSize;
+    }
+
+    /**
+     * Decodes the picture on a background thread. Returns null if it can't be read.
+     */
+    private Bitmap decode(String picture, int targetSize) {
+        Uri uri = Uri.parse(picture);
+        try {
+            // First pass only reads the dimensions to work out the sample size.
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            decodeStream(uri, options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
+
+            options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, targetSize);
+            options.inJustDecodeBounds = false;
+            return decodeStream(uri, options);
+        } catch (IOException | SecurityException e) {
+            Log.e(LOG_TAG, "Failed to decode picture " + picture, e);
+            return null;
+        }
+    }
+
+    private Bitmap decodeStream(Uri uri, BitmapFactory.Options options) throws IOException {
+        InputStream in = resolver.openInputStream(uri);
+        if (in == null) {
+            return null;
+        }
+        try {
+            return BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Largest power of two that keeps both sides of the decoded bitmap at least
+     * {@code targetSize} pixels long.
+     */
+    static int calculateInSampleSize(int width, int height, int targetSize) {
+        int inSampleSize = 1;
+        while (width / (inSampleSize * 2) >= targetSize && height / (inSampleSize * 2) >= targetSize) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    private class Request implements Runnable {
+        final String key;
+        final String picture;
+        final int targetSize;
+        final ImageView view;
+        Future<?> future;
+        volatile boolean cancelled;
+
+        Request(String key, String picture, int targetSize, ImageView view) {
+            this.key = key;
+            this.picture = picture;
+            this.targetSize = targetSize;
+            this.view = view;
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            final Bitmap bitmap = loadBitmap(key, picture, targetSize);
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    // The view may have been rebound to another picture in the meantime.
+                    if (cancelled || view.getTag(R.id.thumbnailRequest) != Request.this) {
+                        return;
+                    }
+                    view.setTag(R.id.thumbnailRequest, null);
+                    view.setImageBitmap(bitmap);
+                }
+            });
+        }
+    }
+}
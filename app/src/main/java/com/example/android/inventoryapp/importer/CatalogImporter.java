@@ -0,0 +1,193 @@
+package com.example.android.inventoryapp.importer;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.RemoteException;
+
+import com.example.android.inventoryapp.data.ProductContract;
+import com.example.android.inventoryapp.data.ProductContract.ImportEntry;
+import com.example.android.inventoryapp.data.ProductContract.ImportErrorEntry;
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp.data.ProductValidator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Imports the rows of a catalog into the products of one {@link ImportEntry} row.
+ * <p>
+ * Rows are validated like the provider validates them, and committed in batches through
+ * applyBatch(): the products of a batch, its rejected rows and the new progress of the import
+ * are one transaction. A batch is only read once the one before it has been written, so the
+ * file is never read faster than the database takes it, and an import that is run again after
+ * a crash skips the rows already committed.
+ */
+public class CatalogImporter {
+    // Product columns a catalog can set, also the columns of an export.
+    public static final String[] COLUMNS = {
+            ProductEntry.COLUMN_PRODUCT_PICTURE,
+            ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductEntry.COLUMN_PRODUCT_PRICE_CENTS,
+            ProductEntry.COLUMN_PRODUCT_QUANTITY,
+            ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL
+    };
+    // Columns every product needs, a row without one of them is rejected.
+    private static final String[] REQUIRED_COLUMNS = {
+            ProductEntry.COLUMN_PRODUCT_PICTURE,
+            ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductEntry.COLUMN_PRODUCT_PRICE_CENTS,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL
+    };
+    // Rejected rows kept per import, a broken file would otherwise copy itself into the table.
+    static final int MAX_STORED_ERRORS = 1000;
+
+    /**
+     * Told about the progress after every committed batch, on the importing thread.
+     */
+    public interface Listener {
+        void onBatchCommitted(long rowsRead, long rowsImported, long rowsFailed);
+    }
+
+    private final ContentResolver resolver;
+    private final Uri importUri;
+    private final int batchSize;
+
+    public CatalogImporter(ContentResolver resolver, long importId, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.resolver = resolver;
+        this.importUri = ContentUris.withAppendedId(ImportEntry.CONTENT_URI, importId);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Imports the rows after the last committed one and marks the import finished. Nothing of
+     * the batch that was being read when this throws is kept.
+     */
+    public void run(CatalogReader reader, Listener listener)
+            throws IOException, RemoteException, OperationApplicationException {
+        long rowsRead;
+        long rowsImported;
+        long rowsFailed;
+        Cursor cursor = resolver.query(importUri, new String[]{ImportEntry.COLUMN_ROWS_READ,
+                ImportEntry.COLUMN_ROWS_IMPORTED, ImportEntry.COLUMN_ROWS_FAILED}, null, null, null);
+        if (cursor == null) {
+            throw new IllegalStateException("Cannot query " + importUri);
+        }
+        try {
+            if (!cursor.moveToFirst()) {
+                throw new IllegalArgumentException("Unknown import " + importUri);
+            }
+            rowsRead = cursor.getLong(0);
+            rowsImported = cursor.getLong(1);
+            rowsFailed = cursor.getLong(2);
+        } finally {
+            cursor.close();
+        }
+
+        long importId = ContentUris.parseId(importUri);
+        ContentValues row = new ContentValues();
+        for (long skipped = 0; skipped < rowsRead; skipped++) {
+            row.clear();
+            if (!reader.readRow(row)) {
+                throw new IOException("File has " + skipped + " rows, " + rowsRead + " were imported");
+            }
+        }
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(batchSize + 1);
+        int batchRows = 0;
+        while (true) {
+            row.clear();
+            if (!reader.readRow(row)) {
+                break;
+            }
+            rowsRead++;
+            String error = validate(row);
+            if (error == null) {
+                // The builder copies the values, so the row can be reused.
+                operations.add(ContentProviderOperation.newInsert(ProductEntry.CONTENT_URI)
+                        .withValues(row)
+                        .build());
+                rowsImported++;
+            } else {
+                rowsFailed++;
+                if (rowsFailed <= MAX_STORED_ERRORS) {
+                    operations.add(ContentProviderOperation.newInsert(ImportErrorEntry.CONTENT_URI)
+                            .withValue(ImportErrorEntry.COLUMN_IMPORT_ID, importId)
+                            .withValue(ImportErrorEntry.COLUMN_ROW, rowsRead)
+                            .withValue(ImportErrorEntry.COLUMN_MESSAGE, error)
+                            .build());
+                }
+            }
+
+            if (++batchRows == batchSize) {
+                commit(operations, rowsRead, rowsImported, rowsFailed, false);
+                batchRows = 0;
+                if (listener != null) {
+                    listener.onBatchCommitted(rowsRead, rowsImported, rowsFailed);
+                }
+            }
+        }
+        commit(operations, rowsRead, rowsImported, rowsFailed, true);
+        if (listener != null) {
+            listener.onBatchCommitted(rowsRead, rowsImported, rowsFailed);
+        }
+    }
+
+    private void commit(ArrayList<ContentProviderOperation> operations, long rowsRead,
+                        long rowsImported, long rowsFailed, boolean finished)
+            throws RemoteException, OperationApplicationException {
+        ContentProviderOperation.Builder progress = ContentProviderOperation.newUpdate(importUri)
+                .withValue(ImportEntry.COLUMN_ROWS_READ, rowsRead)
+                .withValue(ImportEntry.COLUMN_ROWS_IMPORTED, rowsImported)
+                .withValue(ImportEntry.COLUMN_ROWS_FAILED, rowsFailed);
+        if (finished) {
+            progress.withValue(ImportEntry.COLUMN_STATE, ImportEntry.STATE_FINISHED);
+        }
+        operations.add(progress.build());
+        resolver.applyBatch(ProductContract.CONTENT_AUTHORITY, operations);
+        operations.clear();
+    }
+
+    /**
+     * Returns why the row can't be inserted, or null if it can.
+     */
+    static String validate(ContentValues row) {
+        try {
+            for (Map.Entry<String, Object> value : row.valueSet()) {
+                ProductValidator.validateProductField(value.getKey(), value.getValue());
+            }
+            for (String column : REQUIRED_COLUMNS) {
+                if (!row.containsKey(column)) {
+                    ProductValidator.validateProductField(column, null);
+                }
+            }
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * Returns the product column a catalog names {@code name}, ignoring case, or null if it
+     * isn't one of {@link #COLUMNS}.
+     */
+    static String toColumn(String name) {
+        for (String column : COLUMNS) {
+            if (column.equalsIgnoreCase(name)) {
+                return column;
+            }
+        }
+        return null;
+    }
+}
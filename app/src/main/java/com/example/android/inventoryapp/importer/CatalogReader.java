@@ -0,0 +1,22 @@
+package com.example.android.inventoryapp.importer;
+
+import android.content.ContentValues;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads the products of a catalog file one row at a time, so a file of any size is imported
+ * with the same memory.
+ */
+public interface CatalogReader extends Closeable {
+    /**
+     * Puts the columns of the next row into {@code row}, as strings keyed by the product
+     * columns of {@link CatalogImporter#COLUMNS}. Columns that are missing or empty in the file
+     * are left out.
+     *
+     * @return false at the end of the file
+     * @throws IOException if the file can't be read or is malformed
+     */
+    boolean readRow(ContentValues row) throws IOException;
+}
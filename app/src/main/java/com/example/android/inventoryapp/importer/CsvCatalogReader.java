@@ -0,0 +1,58 @@
+package com.example.android.inventoryapp.importer;
+
+import android.content.ContentValues;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a CSV catalog whose first line names the column of every field. Columns that aren't
+ * product columns are ignored, and so are empty lines.
+ */
+public class CsvCatalogReader implements CatalogReader {
+    private final Reader reader;
+    private final CsvParser parser;
+    // Product column of every field, null for the ignored ones.
+    private String[] columns;
+
+    public CsvCatalogReader(Reader reader) {
+        this.reader = reader;
+        parser = new CsvParser(reader);
+    }
+
+    @Override
+    public boolean readRow(ContentValues row) throws IOException {
+        if (columns == null) {
+            String[] header = parser.readRecord();
+            if (header == null) {
+                return false;
+            }
+            columns = new String[header.length];
+            for (int i = 0; i < header.length; i++) {
+                // Editors saving "UTF-8 with BOM" put it in front of the first name.
+                String name = i == 0 && header[i].startsWith("\uFEFF") ? header[i].substring(1) : header[i];
+                columns[i] = CatalogImporter.toColumn(name.trim());
+            }
+        }
+
+        String[] record;
+        do {
+            record = parser.readRecord();
+            if (record == null) {
+                return false;
+            }
+        } while (record.length == 1 && record[0].isEmpty());
+
+        for (int i = 0; i < record.length && i < columns.length; i++) {
+            if (columns[i] != null && !record[i].isEmpty()) {
+                row.put(columns[i], record[i]);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
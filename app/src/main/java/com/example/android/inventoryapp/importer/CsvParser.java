@@ -0,0 +1,105 @@
+package com.example.android.inventoryapp.importer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+
+/**
+ * Reads RFC 4180 CSV one record at a time: fields separated by commas, optionally quoted with
+ * doubled quotes inside, records ending with LF or CRLF. Only one record is held in memory,
+ * and a field longer than {@link #MAX_FIELD_LENGTH} fails instead of growing without bound,
+ * which is what an unterminated quote would otherwise do.
+ */
+final class CsvParser {
+    static final int MAX_FIELD_LENGTH = 64 * 1024;
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private final StringBuilder field = new StringBuilder();
+    private final ArrayList<String> fields = new ArrayList<>();
+    private long records;
+
+    CsvParser(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Returns the fields of the next record, or null at the end of the input. An empty line is
+     * a record with one empty field.
+     */
+    String[] readRecord() throws IOException {
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+        fields.clear();
+        while (true) {
+            field.setLength(0);
+            if (c == '"') {
+                while (true) {
+                    c = read();
+                    if (c == -1) {
+                        throw new IOException("Unterminated quoted field in record " + (records + 1));
+                    }
+                    if (c == '"') {
+                        c = read();
+                        if (c != '"') {
+                            // The closing quote, c is the character after it.
+                            break;
+                        }
+                    }
+                    append((char) c);
+                }
+            } else {
+                while (c != ',' && c != '\n' && c != '\r' && c != -1) {
+                    append((char) c);
+                    c = read();
+                }
+            }
+            fields.add(field.toString());
+
+            if (c == ',') {
+                c = read();
+                continue;
+            }
+            if (c == '\r') {
+                if (read() != '\n') {
+                    unread();
+                }
+            } else if (c != '\n' && c != -1) {
+                throw new IOException("Unexpected character after quoted field in record "
+                        + (records + 1));
+            }
+            records++;
+            return fields.toArray(new String[fields.size()]);
+        }
+    }
+
+    private void append(char c) throws IOException {
+        if (field.length() == MAX_FIELD_LENGTH) {
+            throw new IOException("Field too long in record " + (records + 1));
+        }
+        field.append(c);
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    // Steps back over the character just read, which was not the end of the input.
+    private void unread() {
+        if (limit != 0) {
+            position--;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.android.inventoryapp.importer;
+
+import android.app.IntentService;
+import android.app.Notification;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.content.OperationApplicationException;
+import android.content.res.AssetFileDescriptor;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.RemoteException;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.app.NotificationManagerCompat;
+import android.util.Log;
+
+import com.example.android.inventoryapp.R;
+import com.example.android.inventoryapp.data.ProductContract.ImportEntry;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Imports a CSV or JSON catalog file in the background, one file at a time, showing the
+ * progress in a notification. The intent is redelivered if the process dies, and the import
+ * then continues after the last committed batch.
+ */
+public class ImportService extends IntentService {
+    private static final String LOG_TAG = ImportService.class.getSimpleName();
+    private static final int NOTIFICATION_ID = 1;
+
+    /**
+     * Starts importing the catalog at {@code source}, or continues its unfinished import.
+     */
+    public static void start(Context context, Uri source) {
+        context.startService(new Intent(context, ImportService.class).setData(source));
+    }
+
+    public ImportService() {
+        super("ImportService");
+        setIntentRedelivery(true);
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        Uri source = intent.getData();
+        ContentResolver resolver = getContentResolver();
+        Uri importUri = findOrCreateImport(resolver, source);
+        if (importUri == null) {
+            return;
+        }
+
+        final long length = getLength(resolver, source);
+        startForeground(NOTIFICATION_ID, buildProgressNotification(0, 0, length));
+        try {
+            InputStream input = resolver.openInputStream(source);
+            if (input == null) {
+                throw new IOException("Cannot open " + source);
+            }
+            final CountingInputStream counter = new CountingInputStream(input);
+            InputStreamReader text = new InputStreamReader(counter, "UTF-8");
+            CatalogReader reader = isJson(resolver, source)
+                    ? new JsonCatalogReader(text) : new CsvCatalogReader(text);
+            final NotificationManagerCompat notifications = NotificationManagerCompat.from(this);
+            final long[] result = new long[2];
+            try {
+                new CatalogImporter(resolver, ContentUris.parseId(importUri),
+                        getResources().getInteger(R.integer.importBatchSize))
+                        .run(reader, new CatalogImporter.Listener() {
+                            @Override
+                            public void onBatchCommitted(long rowsRead, long rowsImported, long rowsFailed) {
+                                notifications.notify(NOTIFICATION_ID,
+                                        buildProgressNotification(rowsRead, counter.count, length));
+                                result[0] = rowsImported;
+                                result[1] = rowsFailed;
+                            }
+                        });
+            } finally {
+                reader.close();
+            }
+            stopForeground(true);
+            notifications.notify(NOTIFICATION_ID, buildDoneNotification(
+                    getString(R.string.importFinished, result[0], result[1])));
+        } catch (IOException | RemoteException | OperationApplicationException | RuntimeException e) {
+            Log.e(LOG_TAG, "Import of " + source + " failed", e);
+            ContentValues values = new ContentValues();
+            values.put(ImportEntry.COLUMN_STATE, ImportEntry.STATE_FAILED);
+            values.put(ImportEntry.COLUMN_ERROR, String.valueOf(e.getMessage()));
+            resolver.update(importUri, values, null, null);
+            stopForeground(true);
+            NotificationManagerCompat.from(this).notify(NOTIFICATION_ID,
+                    buildDoneNotification(getString(R.string.importFailed)));
+        }
+    }
+
+    /**
+     * Returns the unfinished import of the file, or a new one. Null if it can't be created.
+     */
+    private static Uri findOrCreateImport(ContentResolver resolver, Uri source) {
+        Cursor cursor = resolver.query(ImportEntry.CONTENT_URI, new String[]{ImportEntry._ID},
+                ImportEntry.COLUMN_SOURCE + "=? AND " + ImportEntry.COLUMN_STATE + "=?",
+                new String[]{source.toString(), String.valueOf(ImportEntry.STATE_RUNNING)}, null);
+        if (cursor != null) {
+            try {
+                if (cursor.moveToFirst()) {
+                    return ContentUris.withAppendedId(ImportEntry.CONTENT_URI, cursor.getLong(0));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        ContentValues values = new ContentValues();
+        values.put(ImportEntry.COLUMN_SOURCE, source.toString());
+        return resolver.insert(ImportEntry.CONTENT_URI, values);
+    }
+
+    private static boolean isJson(ContentResolver resolver, Uri source) {
+        String type = resolver.getType(source);
+        if (type != null) {
+            return type.contains("json");
+        }
+        String path = source.getPath();
+        return path != null && path.toLowerCase().endsWith(".json");
+    }
+
+    // Size of the file in bytes, or -1 if the provider doesn't know it.
+    private static long getLength(ContentResolver resolver, Uri source) {
+        try {
+            AssetFileDescriptor descriptor = resolver.openAssetFileDescriptor(source, "r");
+            if (descriptor == null) {
+                return -1;
+            }
+            try {
+                return descriptor.getLength();
+            } finally {
+                descriptor.close();
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private Notification buildProgressNotification(long rowsRead, long bytesRead, long length) {
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this)
+                .setSmallIcon(android.R.drawable.stat_sys_download)
+                .setContentTitle(getString(R.string.importTitle))
+                .setContentText(getString(R.string.importProgress, rowsRead))
+                .setOngoing(true);
+        if (length > 0) {
+            builder.setProgress(100, (int) Math.min(100, bytesRead * 100 / length), false);
+        } else {
+            builder.setProgress(0, 0, true);
+        }
+        return builder.build();
+    }
+
+    private Notification buildDoneNotification(String text) {
+        return new NotificationCompat.Builder(this)
+                .setSmallIcon(android.R.drawable.stat_sys_download_done)
+                .setContentTitle(getString(R.string.importTitle))
+                .setContentText(text)
+                .build();
+    }
+
+    // Counts the bytes read, ahead of the rows by what the reader has buffered.
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
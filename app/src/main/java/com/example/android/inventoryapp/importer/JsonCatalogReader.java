@@ -0,0 +1,63 @@
+package com.example.android.inventoryapp.importer;
+
+import android.content.ContentValues;
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a JSON catalog: an array with one object per product, keyed by the product columns.
+ * Other keys and values that aren't strings or numbers are skipped.
+ */
+public class JsonCatalogReader implements CatalogReader {
+    private final JsonReader reader;
+    private boolean started;
+    private boolean finished;
+
+    public JsonCatalogReader(Reader reader) {
+        this.reader = new JsonReader(reader);
+    }
+
+    @Override
+    public boolean readRow(ContentValues row) throws IOException {
+        if (finished) {
+            return false;
+        }
+        try {
+            if (!started) {
+                reader.beginArray();
+                started = true;
+            }
+            if (!reader.hasNext()) {
+                reader.endArray();
+                finished = true;
+                return false;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String column = CatalogImporter.toColumn(reader.nextName());
+                JsonToken token = reader.peek();
+                if (column != null && (token == JsonToken.STRING || token == JsonToken.NUMBER)) {
+                    String value = reader.nextString();
+                    if (!value.isEmpty()) {
+                        row.put(column, value);
+                    }
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return true;
+        } catch (IllegalStateException e) {
+            // Thrown for valid JSON of the wrong shape, such as a top level object.
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.android.inventoryapp.sync;
+
+import java.util.Random;
+
+/**
+ * Delays between attempts of a failing sync: doubling from the base delay up to the maximum,
+ * each picked at random from the upper half of its range, so devices that failed together
+ * don't retry together. Not thread safe.
+ */
+public final class Backoff {
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final Random random;
+    private int failures;
+
+    public Backoff(long baseDelayMs, long maxDelayMs, Random random) {
+        if (baseDelayMs <= 0 || maxDelayMs < baseDelayMs) {
+            throw new IllegalArgumentException("Invalid backoff " + baseDelayMs + ".." + maxDelayMs);
+        }
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.random = random;
+    }
+
+    /**
+     * Counts a failure and returns how long to wait before the next attempt.
+     */
+    public long nextDelayMs() {
+        // Compared before shifting, so the delay never overflows however often it failed.
+        long delay = failures < 63 && baseDelayMs <= maxDelayMs >> failures
+                ? baseDelayMs << failures : maxDelayMs;
+        failures++;
+        long half = delay / 2;
+        return delay - half + (long) (random.nextDouble() * half);
+    }
+
+    public void reset() {
+        failures = 0;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+}
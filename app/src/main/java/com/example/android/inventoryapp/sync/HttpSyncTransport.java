@@ -0,0 +1,125 @@
+package com.example.android.inventoryapp.sync;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Posts every round of a sync as gzip-compressed JSON to one URL, see {@link SyncCodec}, and
+ * reads the response, compressed as well if the server chooses to. Counts the bytes of both
+ * bodies as they go over the wire.
+ */
+public class HttpSyncTransport implements SyncTransport {
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 60000;
+
+    private final URL url;
+    private long bytesSent;
+    private long bytesReceived;
+
+    public HttpSyncTransport(URL url) {
+        this.url = url;
+    }
+
+    @Override
+    public SyncResponse exchange(SyncRequest request) throws IOException {
+        // A request holds a single batch, small once compressed, so it is built in memory and
+        // sent with a Content-Length instead of chunks.
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(new GZIPOutputStream(body), "UTF-8");
+        try {
+            SyncCodec.writeRequest(writer, request);
+        } finally {
+            writer.close();
+        }
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.size());
+            connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+            connection.setRequestProperty("Content-Encoding", "gzip");
+            // Asking for gzip ourselves turns off the transparent decompression, so the
+            // response is counted as it was sent.
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            OutputStream out = connection.getOutputStream();
+            try {
+                body.writeTo(out);
+            } finally {
+                out.close();
+            }
+            bytesSent += body.size();
+
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Sync failed with HTTP " + status);
+            }
+            CountingInputStream counting = new CountingInputStream(connection.getInputStream());
+            InputStream in = "gzip".equalsIgnoreCase(connection.getContentEncoding())
+                    ? new GZIPInputStream(counting) : counting;
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+            try {
+                return SyncCodec.readResponse(reader);
+            } finally {
+                reader.close();
+                bytesReceived += counting.count;
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.android.inventoryapp.sync;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * One product as it travels between a device and the server, named by its sync ID: either the
+ * fields that changed, keyed by their ProductEntry column, or its deletion. Values are Strings
+ * or Longs, the supplier travels as its name and e-mail.
+ */
+public final class SyncChange {
+    public final String syncId;
+    public final boolean deleted;
+    public final Map<String, Object> fields;
+
+    public SyncChange(String syncId, Map<String, Object> fields) {
+        this(syncId, false, fields);
+    }
+
+    private SyncChange(String syncId, boolean deleted, Map<String, Object> fields) {
+        this.syncId = syncId;
+        this.deleted = deleted;
+        this.fields = fields;
+    }
+
+    public static SyncChange deletion(String syncId) {
+        return new SyncChange(syncId, true, Collections.<String, Object>emptyMap());
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.android.inventoryapp.sync;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The JSON of the sync protocol, streamed in both directions. A request is
+ * {@code {"device": ..., "token": ..., "changes": [...]}}, a response
+ * {@code {"token": ..., "more": ..., "changes": [...]}}, and every change is either
+ * {@code {"id": ..., "fields": {...}}} or {@code {"id": ..., "deleted": true}}. Unknown keys
+ * are skipped, so either side can add some.
+ */
+public final class SyncCodec {
+    private static final String KEY_DEVICE = "device";
+    private static final String KEY_TOKEN = "token";
+    private static final String KEY_MORE = "more";
+    private static final String KEY_CHANGES = "changes";
+    private static final String KEY_ID = "id";
+    private static final String KEY_FIELDS = "fields";
+    private static final String KEY_DELETED = "deleted";
+
+    private SyncCodec() {
+    }
+
+    public static void writeRequest(Writer out, SyncRequest request) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginObject();
+        writer.name(KEY_DEVICE).value(request.device);
+        writer.name(KEY_TOKEN).value(request.token);
+        writeChanges(writer, request.changes);
+        writer.endObject();
+        writer.flush();
+    }
+
+    public static SyncRequest readRequest(Reader in) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        String device = null;
+        String token = null;
+        List<SyncChange> changes = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case KEY_DEVICE:
+                    device = nextStringOrNull(reader);
+                    break;
+                case KEY_TOKEN:
+                    token = nextStringOrNull(reader);
+                    break;
+                case KEY_CHANGES:
+                    changes = readChanges(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new SyncRequest(device, token, changes);
+    }
+
+    public static void writeResponse(Writer out, SyncResponse response) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginObject();
+        writer.name(KEY_TOKEN).value(response.token);
+        writer.name(KEY_MORE).value(response.more);
+        writeChanges(writer, response.changes);
+        writer.endObject();
+        writer.flush();
+    }
+
+    public static SyncResponse readResponse(Reader in) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        String token = null;
+        boolean more = false;
+        List<SyncChange> changes = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case KEY_TOKEN:
+                    token = nextStringOrNull(reader);
+                    break;
+                case KEY_MORE:
+                    more = reader.nextBoolean();
+                    break;
+                case KEY_CHANGES:
+                    changes = readChanges(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new SyncResponse(token, changes, more);
+    }
+
+    private static void writeChanges(JsonWriter writer, List<SyncChange> changes) throws IOException {
+        writer.name(KEY_CHANGES).beginArray();
+        for (SyncChange change : changes) {
+            writer.beginObject();
+            writer.name(KEY_ID).value(change.syncId);
+            if (change.deleted) {
+                writer.name(KEY_DELETED).value(true);
+            } else {
+                writer.name(KEY_FIELDS).beginObject();
+                for (Map.Entry<String, Object> field : change.fields.entrySet()) {
+                    writer.name(field.getKey());
+                    Object value = field.getValue();
+                    if (value instanceof Number) {
+                        writer.value(((Number) value).longValue());
+                    } else if (value == null) {
+                        writer.nullValue();
+                    } else {
+                        writer.value(value.toString());
+                    }
+                }
+                writer.endObject();
+            }
+            writer.endObject();
+        }
+        writer.endArray();
+    }
+
+    private static List<SyncChange> readChanges(JsonReader reader) throws IOException {
+        ArrayList<SyncChange> changes = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String id = null;
+            boolean deleted = false;
+            HashMap<String, Object> fields = new HashMap<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case KEY_ID:
+                        id = reader.nextString();
+                        break;
+                    case KEY_DELETED:
+                        deleted = reader.nextBoolean();
+                        break;
+                    case KEY_FIELDS:
+                        readFields(reader, fields);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (id == null) {
+                throw new IOException("Sync change without an id");
+            }
+            changes.add(deleted ? SyncChange.deletion(id) : new SyncChange(id, fields));
+        }
+        reader.endArray();
+        return changes;
+    }
+
+    private static void readFields(JsonReader reader, Map<String, Object> fields) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            JsonToken token = reader.peek();
+            if (token == JsonToken.NUMBER) {
+                fields.put(name, reader.nextLong());
+            } else if (token == JsonToken.STRING) {
+                fields.put(name, reader.nextString());
+            } else if (token == JsonToken.NULL) {
+                reader.nextNull();
+                fields.put(name, null);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static String nextStringOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+}
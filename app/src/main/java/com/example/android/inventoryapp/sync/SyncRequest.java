@@ -0,0 +1,20 @@
+package com.example.android.inventoryapp.sync;
+
+import java.util.List;
+
+/**
+ * One round of a sync as the device sends it: a batch of its local changes, oldest first, and
+ * the token of the remote changes it has received so far.
+ */
+public final class SyncRequest {
+    public final String device;
+    // Null on the first sync.
+    public final String token;
+    public final List<SyncChange> changes;
+
+    public SyncRequest(String device, String token, List<SyncChange> changes) {
+        this.device = device;
+        this.token = token;
+        this.changes = changes;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.android.inventoryapp.sync;
+
+import java.util.List;
+
+/**
+ * The server's answer to a {@link SyncRequest}, sent once it has accepted the request's
+ * changes: a batch of the changes other devices made since the request's token, and the token
+ * to send next. Changes carry the server's value of every field, also of those where a
+ * field the device sent lost a conflict.
+ */
+public final class SyncResponse {
+    public final String token;
+    public final List<SyncChange> changes;
+    // Whether the server holds more changes than fit in this response.
+    public final boolean more;
+
+    public SyncResponse(String token, List<SyncChange> changes, boolean more) {
+        this.token = token;
+        this.changes = changes;
+        this.more = more;
+    }
+}
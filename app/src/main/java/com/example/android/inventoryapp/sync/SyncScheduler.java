@@ -0,0 +1,93 @@
+package com.example.android.inventoryapp.sync;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.res.Resources;
+import android.os.Bundle;
+import android.util.Log;
+
+import com.example.android.inventoryapp.R;
+import com.example.android.inventoryapp.data.ProductContract;
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Syncs the default store in the background for as long as the process lives: once started,
+ * then every {@code R.integer.syncIntervalMinutes} while syncs succeed. A failed sync is
+ * retried after a {@link Backoff}, from {@code R.integer.syncRetryBaseSeconds} up to
+ * {@code R.integer.syncRetryMaxMinutes}. Does nothing while {@code R.string.syncEndpoint} is
+ * empty.
+ */
+public class SyncScheduler {
+    private static final String LOG_TAG = SyncScheduler.class.getSimpleName();
+
+    private static SyncScheduler instance;
+
+    private final ContentResolver resolver;
+    private final boolean enabled;
+    private final long intervalMs;
+    // Only used on the executor thread.
+    private final Backoff backoff;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private boolean started;
+
+    private SyncScheduler(Context context) {
+        resolver = context.getContentResolver();
+        Resources resources = context.getResources();
+        enabled = !resources.getString(R.string.syncEndpoint).isEmpty();
+        intervalMs = TimeUnit.MINUTES.toMillis(resources.getInteger(R.integer.syncIntervalMinutes));
+        backoff = new Backoff(TimeUnit.SECONDS.toMillis(resources.getInteger(R.integer.syncRetryBaseSeconds)),
+                TimeUnit.MINUTES.toMillis(resources.getInteger(R.integer.syncRetryMaxMinutes)), new Random());
+    }
+
+    public static synchronized SyncScheduler getInstance(Context context) {
+        if (instance == null) {
+            instance = new SyncScheduler(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Runs the first sync right away, later calls do nothing.
+     */
+    public synchronized void start() {
+        if (!enabled || started) {
+            return;
+        }
+        started = true;
+        schedule(0);
+    }
+
+    private void schedule(long delayMs) {
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                schedule(sync());
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Returns the delay until the next sync.
+    private long sync() {
+        String error;
+        try {
+            Bundle result = resolver.call(ProductEntry.CONTENT_URI, ProductContract.METHOD_SYNC, null, null);
+            error = result != null ? result.getString(ProductContract.EXTRA_ERROR) : "No result";
+        } catch (RuntimeException e) {
+            // Thrown by the provider for a broken database, which a later attempt may find fixed.
+            error = e.toString();
+        }
+        if (error == null) {
+            backoff.reset();
+            return intervalMs;
+        }
+        long delayMs = backoff.nextDelayMs();
+        Log.w(LOG_TAG, "Sync failed " + backoff.getFailures() + " times, retrying in "
+                + delayMs + " ms: " + error);
+        return delayMs;
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.android.inventoryapp.sync;
+
+import java.io.IOException;
+
+/**
+ * Carries one round of a sync to the server and back, see {@link HttpSyncTransport}.
+ */
+public interface SyncTransport {
+    SyncResponse exchange(SyncRequest request) throws IOException;
+}
@@ -0,0 +1,112 @@
+package com.example.android.inventoryapp;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests for {@link CatalogSnapshot}.
+ */
+public class CatalogSnapshotTest {
+    @Test
+    public void put_keepsRowsInIdOrder() throws Exception {
+        CatalogSnapshot snapshot = new CatalogSnapshot(1);
+        snapshot.put(3, "C", 300, 3);
+        snapshot.put(1, "A", 100, 1);
+        snapshot.put(2, "B", 200, 2);
+        snapshot.put(1, "A", 150, 0);
+
+        assertEquals(3, snapshot.size());
+        assertEquals(1, snapshot.getId(0));
+        assertEquals(150, snapshot.getPriceCents(0));
+        assertEquals(0, snapshot.getQuantity(0));
+        assertEquals(2, snapshot.indexOf(3));
+
+        assertTrue(snapshot.remove(2));
+        assertFalse(snapshot.remove(2));
+        assertEquals(-1, snapshot.indexOf(2));
+        assertEquals(1, snapshot.indexOf(3));
+    }
+
+    @Test
+    public void put_sharesEqualNames() throws Exception {
+        CatalogSnapshot snapshot = new CatalogSnapshot();
+        snapshot.put(1, new String("Phone"), 100, 1);
+        snapshot.put(2, new String("Phone"), 100, 1);
+
+        assertSame(snapshot.getName(0), snapshot.getName(1));
+    }
+
+    @Test
+    public void sort_ordersByColumnWithTiesById() throws Exception {
+        CatalogSnapshot snapshot = new CatalogSnapshot();
+        snapshot.put(1, "banana", 300, 5);
+        snapshot.put(2, "Apple", 100, 5);
+        snapshot.put(3, "cherry", 100, 1);
+        snapshot.put(4, "apple", 200, 9);
+        int[] order = new int[4];
+
+        snapshot.sort(CatalogSnapshot.SORT_BY_PRICE, false, order);
+        assertIds(snapshot, order, 4, 2, 3, 4, 1);
+        snapshot.sort(CatalogSnapshot.SORT_BY_QUANTITY, true, order);
+        assertIds(snapshot, order, 4, 4, 2, 1, 3);
+        snapshot.sort(CatalogSnapshot.SORT_BY_NAME, false, order);
+        assertIds(snapshot, order, 4, 2, 4, 1, 3);
+
+        // Renaming ranks the names again.
+        snapshot.put(3, "Aardvark", 100, 1);
+        snapshot.sort(CatalogSnapshot.SORT_BY_NAME, false, order);
+        assertIds(snapshot, order, 4, 3, 2, 4, 1);
+    }
+
+    @Test
+    public void sort_matchesComparisonOfLargeRandomCatalog() throws Exception {
+        Random random = new Random(7);
+        CatalogSnapshot snapshot = new CatalogSnapshot();
+        for (int id = 1; id <= 100000; id++) {
+            // Prices cover more than the low bytes, so every radix pass is exercised.
+            snapshot.put(id, "Product " + random.nextInt(1000),
+                    random.nextInt(Integer.MAX_VALUE) * 1000L, random.nextInt(100));
+        }
+        int[] order = new int[snapshot.size()];
+
+        snapshot.sort(CatalogSnapshot.SORT_BY_PRICE, true, order);
+        for (int i = 1; i < order.length; i++) {
+            long previous = snapshot.getPriceCents(order[i - 1]);
+            long current = snapshot.getPriceCents(order[i]);
+            assertTrue(previous > current || (previous == current
+                    && snapshot.getId(order[i - 1]) > snapshot.getId(order[i])));
+        }
+    }
+
+    @Test
+    public void filters_keepMatchingRowsInOrder() throws Exception {
+        CatalogSnapshot snapshot = new CatalogSnapshot();
+        snapshot.put(1, "Samsung Galaxy S8", 65099, 7);
+        snapshot.put(2, "Galaxy Tab", 30000, 0);
+        snapshot.put(3, "Pixel", 64900, 3);
+        int[] order = new int[3];
+
+        int count = snapshot.sort(CatalogSnapshot.SORT_BY_PRICE, false, order);
+        count = snapshot.filterByName(order, count, "galaxy");
+        assertIds(snapshot, order, count, 2, 1);
+        count = snapshot.filterByQuantity(order, count, 1, Integer.MAX_VALUE);
+        assertIds(snapshot, order, count, 1);
+
+        count = snapshot.sort(CatalogSnapshot.SORT_BY_ID, false, order);
+        count = snapshot.filterByPrice(order, count, 60000, 65000);
+        assertIds(snapshot, order, count, 3);
+    }
+
+    private static void assertIds(CatalogSnapshot snapshot, int[] order, int count, long... ids) {
+        assertEquals(ids.length, count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(ids[i], snapshot.getId(order[i]));
+        }
+    }
+}
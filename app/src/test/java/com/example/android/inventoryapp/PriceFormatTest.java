@@ -0,0 +1,35 @@
+package com.example.android.inventoryapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit tests for {@link PriceFormat}.
+ */
+public class PriceFormatTest {
+    @Test
+    public void toCents_parsesDecimalPrice() throws Exception {
+        assertEquals(65099, PriceFormat.toCents("650.99"));
+        assertEquals(700, PriceFormat.toCents("7"));
+        assertEquals(50, PriceFormat.toCents(".5"));
+    }
+
+    @Test
+    public void toCents_roundsHalfUp() throws Exception {
+        assertEquals(101, PriceFormat.toCents("1.005"));
+        assertEquals(100, PriceFormat.toCents("1.004"));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void toCents_rejectsNegativePrice() throws Exception {
+        PriceFormat.toCents("-1");
+    }
+
+    @Test
+    public void format_alwaysShowsTwoDecimals() throws Exception {
+        assertEquals("650.99", PriceFormat.format(65099));
+        assertEquals("7.00", PriceFormat.format(700));
+        assertEquals("0.05", PriceFormat.format(5));
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.android.inventoryapp.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit tests for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+    @Test
+    public void percentile_isUpperBoundOfBucket() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.add(3000, 1); // 3 us, bucket [2, 4)
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.add(100000, 1); // 100 us, bucket [64, 128)
+        }
+
+        assertEquals(4, histogram.getPercentileMicros(0.5));
+        assertEquals(100, histogram.getPercentileMicros(0.95));
+    }
+
+    @Test
+    public void add_sumsCountsTimesAndRows() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.add(1500, 10);
+        histogram.add(2500, 5);
+
+        assertEquals(2, histogram.getCount());
+        assertEquals(4, histogram.getTotalMicros());
+        assertEquals(2, histogram.getMaxMicros());
+        assertEquals(15, histogram.getRows());
+    }
+
+    @Test
+    public void percentile_ofEmptyHistogramIsZero() throws Exception {
+        assertEquals(0, new LatencyHistogram().getPercentileMicros(0.95));
+    }
+
+    @Test
+    public void add_keepsVerySlowCallsInLastBucket() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.add(Long.MAX_VALUE / 2, 0);
+
+        assertEquals(histogram.getMaxMicros(), histogram.getPercentileMicros(1));
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.android.inventoryapp.exporter;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit tests for {@link CsvWriter}.
+ */
+public class CsvWriterTest {
+    @Test
+    public void writeField_quotesOnlyWhenNeeded() throws Exception {
+        StringWriter out = new StringWriter();
+        CsvWriter csv = new CsvWriter(out);
+        csv.writeField("plain");
+        csv.writeField("Tablet, 10\"");
+        csv.writeField("two\nlines");
+        csv.endRecord();
+
+        assertEquals("plain,\"Tablet, 10\"\"\",\"two\nlines\"\r\n", out.toString());
+    }
+
+    @Test
+    public void writeField_writesNullAsEmptyField() throws Exception {
+        StringWriter out = new StringWriter();
+        CsvWriter csv = new CsvWriter(out);
+        csv.writeField(null);
+        csv.writeField("b");
+        csv.endRecord();
+        csv.writeField("c");
+        csv.endRecord();
+
+        assertEquals(",b\r\nc\r\n", out.toString());
+    }
+}
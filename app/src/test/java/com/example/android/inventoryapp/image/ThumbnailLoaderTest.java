@@ -0,0 +1,26 @@
+package com.example.android.inventoryapp.image;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit tests for the sample size calculation of {@link ThumbnailLoader}.
+ */
+public class ThumbnailLoaderTest {
+    @Test
+    public void smallPicture_isNotSubsampled() throws Exception {
+        assertEquals(1, ThumbnailLoader.calculateInSampleSize(200, 150, 300));
+    }
+
+    @Test
+    public void cameraPhoto_isSubsampledToTargetSize() throws Exception {
+        // 4032x3024 down to a 300px thumbnail: 4032/8 = 504 and 3024/8 = 378 are still >= 300.
+        assertEquals(8, ThumbnailLoader.calculateInSampleSize(4032, 3024, 300));
+    }
+
+    @Test
+    public void shortSide_limitsSampleSize() throws Exception {
+        assertEquals(2, ThumbnailLoader.calculateInSampleSize(4000, 700, 300));
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.android.inventoryapp.importer;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Local unit tests for {@link CsvParser}. The unit tests run with a small heap, see
+ * build.gradle, so the large file test fails if records are kept around.
+ */
+public class CsvParserTest {
+    private static final int LARGE_FILE_ROWS = 1000000;
+
+    @Test
+    public void readRecord_splitsFieldsAndLines() throws Exception {
+        CsvParser parser = new CsvParser(new StringReader("a,b,c\r\n1,,3\n"));
+
+        assertArrayEquals(new String[]{"a", "b", "c"}, parser.readRecord());
+        assertArrayEquals(new String[]{"1", "", "3"}, parser.readRecord());
+        assertNull(parser.readRecord());
+    }
+
+    @Test
+    public void readRecord_unquotesFields() throws Exception {
+        CsvParser parser = new CsvParser(new StringReader("\"Tablet, 10\"\"\",\"two\nlines\"\n"));
+
+        assertArrayEquals(new String[]{"Tablet, 10\"", "two\nlines"}, parser.readRecord());
+        assertNull(parser.readRecord());
+    }
+
+    @Test
+    public void readRecord_readsLastLineWithoutNewline() throws Exception {
+        CsvParser parser = new CsvParser(new StringReader("a\r\nb,"));
+
+        assertArrayEquals(new String[]{"a"}, parser.readRecord());
+        assertArrayEquals(new String[]{"b", ""}, parser.readRecord());
+        assertNull(parser.readRecord());
+    }
+
+    @Test(expected = IOException.class)
+    public void readRecord_failsOnUnterminatedQuote() throws Exception {
+        new CsvParser(new StringReader("\"never closed\n")).readRecord();
+    }
+
+    @Test(expected = IOException.class)
+    public void readRecord_failsOnTooLongField() throws Exception {
+        StringBuilder field = new StringBuilder();
+        for (int i = 0; i <= CsvParser.MAX_FIELD_LENGTH; i++) {
+            field.append('x');
+        }
+        new CsvParser(new StringReader(field.toString())).readRecord();
+    }
+
+    @Test
+    public void readRecord_streamsLargeFile() throws Exception {
+        CsvParser parser = new CsvParser(new GeneratedCatalog(LARGE_FILE_ROWS));
+
+        int rows = 0;
+        String[] record;
+        while ((record = parser.readRecord()) != null) {
+            assertEquals(6, record.length);
+            rows++;
+        }
+        assertEquals(LARGE_FILE_ROWS, rows);
+    }
+
+    /**
+     * A catalog of the given number of rows that is generated while it is read, so the test
+     * itself doesn't hold the file in memory.
+     */
+    private static class GeneratedCatalog extends Reader {
+        private final int rows;
+        private int row;
+        private String line = "";
+        private int position;
+
+        GeneratedCatalog(int rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position == line.length()) {
+                if (row == rows) {
+                    return -1;
+                }
+                line = "content://pictures/" + row + ",\"Product " + row + ", large\"," + row % 100000
+                        + "," + row % 50 + ",Supplier " + row % 100 + ",supplier" + row % 100
+                        + "@example.com\r\n";
+                position = 0;
+                row++;
+            }
+            int count = Math.min(length, line.length() - position);
+            line.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
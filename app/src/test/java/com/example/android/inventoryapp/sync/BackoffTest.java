@@ -0,0 +1,42 @@
+package com.example.android.inventoryapp.sync;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests for {@link Backoff}.
+ */
+public class BackoffTest {
+    @Test
+    public void delays_doubleUpToMaximum() throws Exception {
+        Backoff backoff = new Backoff(1000, 10000, new Random(42));
+        long[] ranges = {1000, 2000, 4000, 8000, 10000, 10000};
+        for (long range : ranges) {
+            long delay = backoff.nextDelayMs();
+            assertTrue(delay + " not in upper half of " + range, delay >= range / 2 && delay <= range);
+        }
+        assertEquals(ranges.length, backoff.getFailures());
+    }
+
+    @Test
+    public void reset_startsOverAtBaseDelay() throws Exception {
+        Backoff backoff = new Backoff(1000, 60000, new Random(42));
+        for (int i = 0; i < 5; i++) {
+            backoff.nextDelayMs();
+        }
+        backoff.reset();
+        assertTrue(backoff.nextDelayMs() <= 1000);
+    }
+
+    @Test
+    public void manyFailures_neverOverflow() throws Exception {
+        Backoff backoff = new Backoff(1, Long.MAX_VALUE, new Random(42));
+        for (int i = 0; i < 200; i++) {
+            assertTrue(backoff.nextDelayMs() > 0);
+        }
+    }
+}
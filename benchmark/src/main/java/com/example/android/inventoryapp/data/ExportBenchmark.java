@@ -0,0 +1,169 @@
+package com.example.android.inventoryapp.data;
+
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp.data.ProductContract.SupplierEntry;
+import com.example.android.inventoryapp.exporter.CsvWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports {@code rows} products to a CSV file the way CatalogExporter and ExportService do:
+ * chunks of the products joined with their supplier, read by ID, through the same buffers and
+ * optional gzip stream. The score is the time of one whole export, the throughput is
+ * {@code rows} divided by it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExportBenchmark {
+    // Same as the exportChunkSize resource and the buffer of ExportService.
+    private static final int CHUNK_SIZE = 500;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int SUPPLIERS = 100;
+
+    private static final String SQL_CHUNK = "SELECT p." + ProductEntry._ID
+            + ", p." + ProductEntry.COLUMN_PRODUCT_PICTURE
+            + ", p." + ProductEntry.COLUMN_PRODUCT_NAME
+            + ", p." + ProductEntry.COLUMN_PRODUCT_PRICE_CENTS
+            + ", p." + ProductEntry.COLUMN_PRODUCT_QUANTITY
+            + ", s." + SupplierEntry.COLUMN_SUPPLIER_NAME
+            + ", s." + SupplierEntry.COLUMN_SUPPLIER_EMAIL
+            + " FROM " + ProductEntry.TABLE_NAME + " p JOIN " + SupplierEntry.TABLE_NAME + " s ON p."
+            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + " = s." + SupplierEntry._ID
+            + " WHERE p." + ProductEntry._ID + " > ? ORDER BY p." + ProductEntry._ID + " LIMIT ?";
+    private static final String[] HEADER = {
+            ProductEntry.COLUMN_PRODUCT_PICTURE,
+            ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductEntry.COLUMN_PRODUCT_PRICE_CENTS,
+            ProductEntry.COLUMN_PRODUCT_QUANTITY,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL
+    };
+
+    @Param("1000000")
+    public int rows;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    private File file;
+    private File output;
+    private Connection connection;
+    private PreparedStatement chunk;
+
+    @Setup(Level.Trial)
+    public void createDatabase() throws IOException, SQLException {
+        file = File.createTempFile("products", ".db");
+        output = File.createTempFile("inventory", gzip ? ".csv.gz" : ".csv");
+        connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+        JdbcDatabase database = new JdbcDatabase(connection);
+
+        connection.setAutoCommit(false);
+        ProductSchema.create(database);
+        for (int i = 0; i < SUPPLIERS; i++) {
+            database.execSQL("INSERT INTO " + SupplierEntry.TABLE_NAME + " ("
+                    + SupplierEntry.COLUMN_SUPPLIER_NAME + ", " + SupplierEntry.COLUMN_SUPPLIER_EMAIL
+                    + ") VALUES ('Supplier " + i + "', 'supplier" + i + "@example.com')");
+        }
+        PreparedStatement insert = connection.prepareStatement(ProductSql.INSERT_PRODUCT);
+        try {
+            for (int i = 0; i < rows; i++) {
+                insert.setString(1, "content://pictures/" + i);
+                // Every tenth name needs quoting.
+                insert.setString(2, i % 10 == 0 ? "Product " + i + ", large" : "Product " + i);
+                insert.setLong(3, i * 100L + 99);
+                insert.setInt(4, i % 50);
+                insert.setLong(5, i % SUPPLIERS + 1);
+                insert.setInt(6, 0);
+                insert.executeUpdate();
+            }
+        } finally {
+            insert.close();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+
+        chunk = connection.prepareStatement(SQL_CHUNK);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws SQLException {
+        connection.close();
+        file.delete();
+        output.delete();
+    }
+
+    @Benchmark
+    public long exportCsv() throws IOException, SQLException {
+        OutputStream stream = new FileOutputStream(output);
+        stream = gzip
+                ? new GZIPOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE), BUFFER_SIZE)
+                : new BufferedOutputStream(stream, BUFFER_SIZE);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"), BUFFER_SIZE);
+        long rowsWritten = 0;
+        try {
+            CsvWriter csv = new CsvWriter(writer);
+            for (String column : HEADER) {
+                csv.writeField(column);
+            }
+            csv.endRecord();
+
+            long afterId = 0;
+            int chunkRows;
+            do {
+                chunkRows = 0;
+                // Auto-commit: like a provider query, every chunk is its own read transaction.
+                chunk.setLong(1, afterId);
+                chunk.setInt(2, CHUNK_SIZE);
+                ResultSet result = chunk.executeQuery();
+                try {
+                    while (result.next()) {
+                        afterId = result.getLong(1);
+                        for (int i = 2; i <= 7; i++) {
+                            csv.writeField(result.getString(i));
+                        }
+                        csv.endRecord();
+                        chunkRows++;
+                    }
+                } finally {
+                    result.close();
+                }
+                rowsWritten += chunkRows;
+            } while (chunkRows == CHUNK_SIZE);
+        } finally {
+            writer.close();
+        }
+        return rowsWritten;
+    }
+}
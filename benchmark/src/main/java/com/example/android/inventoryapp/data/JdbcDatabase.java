@@ -0,0 +1,31 @@
+package com.example.android.inventoryapp.data;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Runs the statements of {@link ProductSchema} on a JDBC connection, the way ProductDbHelper
+ * runs them on a SQLiteDatabase.
+ */
+final class JdbcDatabase implements ProductSchema.Database {
+    private final Connection connection;
+
+    JdbcDatabase(Connection connection) {
+        this.connection = connection;
+    }
+
+    @Override
+    public void execSQL(String sql) {
+        try {
+            Statement statement = connection.createStatement();
+            try {
+                statement.execute(sql);
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to run " + sql, e);
+        }
+    }
+}
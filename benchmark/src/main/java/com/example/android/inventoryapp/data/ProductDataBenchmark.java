@@ -0,0 +1,250 @@
+package com.example.android.inventoryapp.data;
+
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp.data.ProductContract.StockMovementEntry;
+import com.example.android.inventoryapp.data.ProductContract.SupplierEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the provider's SQL and validation against a file database built by
+ * {@link ProductSchema}, holding {@code rows} products.
+ * <p>
+ * Writes go through the same statements ProductProvider compiles, reads select the columns
+ * the product list shows. Rows inserted by a benchmark are deleted after every iteration, so
+ * each one starts from the same table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductDataBenchmark {
+    private static final int BULK_SIZE = 100;
+    // Sales never run a product out of stock during a run.
+    private static final int SEED_QUANTITY = Integer.MAX_VALUE / 2;
+
+    private static final String LIST_COLUMNS = ProductEntry._ID + ", "
+            + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+            + ProductEntry.COLUMN_PRODUCT_PICTURE + ", "
+            + ProductEntry.COLUMN_PRODUCT_PRICE_CENTS + ", "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY;
+    private static final String SQL_QUERY_BY_ID = "SELECT " + LIST_COLUMNS + " FROM "
+            + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry._ID + " = ?";
+    private static final String SQL_FULL_SCAN = "SELECT " + LIST_COLUMNS + " FROM "
+            + ProductEntry.TABLE_NAME;
+    private static final String SQL_SORTED_SCAN = SQL_FULL_SCAN + " ORDER BY " + ProductEntry.SORT_BY_NAME;
+    private static final String SQL_DELETE_INSERTED = "DELETE FROM " + ProductEntry.TABLE_NAME
+            + " WHERE " + ProductEntry._ID + " > ?";
+
+    @Param("10000")
+    public int rows;
+
+    private File file;
+    private Connection connection;
+    private long supplierId;
+    private PreparedStatement insert;
+    private PreparedStatement queryById;
+    private PreparedStatement fullScan;
+    private PreparedStatement sortedScan;
+    private PreparedStatement sell;
+    private PreparedStatement quantity;
+    private PreparedStatement movement;
+    private final Map<String, Object> values = new LinkedHashMap<>();
+    // Cycles through the seeded IDs.
+    private int nextId;
+
+    @Setup(Level.Trial)
+    public void createDatabase() throws IOException, SQLException {
+        file = File.createTempFile("products", ".db");
+        connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+        JdbcDatabase database = new JdbcDatabase(connection);
+        database.execSQL("PRAGMA foreign_keys = ON");
+
+        connection.setAutoCommit(false);
+        ProductSchema.create(database);
+        database.execSQL("INSERT INTO " + SupplierEntry.TABLE_NAME + " ("
+                + SupplierEntry.COLUMN_SUPPLIER_NAME + ", " + SupplierEntry.COLUMN_SUPPLIER_EMAIL
+                + ") VALUES ('Supplier', 'supplier@example.com')");
+        supplierId = 1;
+        insert = connection.prepareStatement(ProductSql.INSERT_PRODUCT);
+        for (int i = 0; i < rows; i++) {
+            bindProduct(i);
+            insert.executeUpdate();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+
+        queryById = connection.prepareStatement(SQL_QUERY_BY_ID);
+        fullScan = connection.prepareStatement(SQL_FULL_SCAN);
+        sortedScan = connection.prepareStatement(SQL_SORTED_SCAN);
+        sell = connection.prepareStatement(ProductSql.SELL_PRODUCT);
+        quantity = connection.prepareStatement(ProductSql.PRODUCT_QUANTITY);
+        movement = connection.prepareStatement(ProductSql.INSERT_MOVEMENT);
+
+        values.put(ProductEntry.COLUMN_PRODUCT_PICTURE, "content://pictures/1");
+        values.put(ProductEntry.COLUMN_PRODUCT_NAME, "Product 1");
+        values.put(ProductEntry.COLUMN_PRODUCT_PRICE_CENTS, 199L);
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, 7);
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_NAME, "Supplier");
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_EMAIL, "supplier@example.com");
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteInsertedRows() throws SQLException {
+        PreparedStatement delete = connection.prepareStatement(SQL_DELETE_INSERTED);
+        try {
+            delete.setLong(1, rows);
+            delete.executeUpdate();
+        } finally {
+            delete.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDatabase() throws SQLException {
+        connection.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public void insert() throws SQLException {
+        bindProduct(nextId());
+        insert.executeUpdate();
+    }
+
+    // Like ProductProvider.bulkInsert(), all rows in one transaction; reported per row.
+    @Benchmark
+    @OperationsPerInvocation(BULK_SIZE)
+    public void bulkInsert() throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            for (int i = 0; i < BULK_SIZE; i++) {
+                bindProduct(nextId());
+                insert.executeUpdate();
+            }
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    @Benchmark
+    public void queryById(Blackhole blackhole) throws SQLException {
+        queryById.setLong(1, nextId());
+        readRows(queryById, blackhole);
+    }
+
+    @Benchmark
+    public void fullScan(Blackhole blackhole) throws SQLException {
+        readRows(fullScan, blackhole);
+    }
+
+    @Benchmark
+    public void sortedScan(Blackhole blackhole) throws SQLException {
+        readRows(sortedScan, blackhole);
+    }
+
+    // Like ProductProvider.sellProduct(), the conditional decrement, the read back of the
+    // remaining stock and the ledger entry in one transaction.
+    @Benchmark
+    public long sellProduct() throws SQLException {
+        int id = nextId();
+        connection.setAutoCommit(false);
+        try {
+            sell.setLong(1, 1);
+            sell.setLong(2, id);
+            sell.setLong(3, 1);
+            sell.executeUpdate();
+            quantity.setLong(1, id);
+            ResultSet result = quantity.executeQuery();
+            try {
+                result.next();
+                long remaining = result.getLong(1);
+                long now = System.currentTimeMillis();
+                movement.setLong(1, id);
+                movement.setLong(2, StockMovementEntry.TYPE_SALE);
+                movement.setLong(3, -1);
+                movement.setLong(4, now);
+                movement.setLong(5, toEpochDay(now));
+                movement.executeUpdate();
+                connection.commit();
+                return remaining;
+            } finally {
+                result.close();
+            }
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    @Benchmark
+    public void validateFields() {
+        for (Map.Entry<String, Object> value : values.entrySet()) {
+            ProductValidator.validateProductField(value.getKey(), value.getValue());
+        }
+    }
+
+    // Same day as StockMovementEntry.toEpochDay(). Calling it would initialize ProductContract,
+    // whose URIs need android.jar at run time.
+    private static long toEpochDay(long timeMillis) {
+        long localMillis = timeMillis + TimeZone.getDefault().getOffset(timeMillis);
+        return (long) Math.floor(localMillis / 86400000d);
+    }
+
+    private int nextId() {
+        nextId = nextId % rows + 1;
+        return nextId;
+    }
+
+    private void bindProduct(int i) throws SQLException {
+        insert.setString(1, "content://pictures/" + i);
+        insert.setString(2, "Product " + i);
+        insert.setLong(3, i * 100L + 99);
+        insert.setInt(4, SEED_QUANTITY);
+        insert.setLong(5, supplierId);
+        insert.setInt(6, 0);
+    }
+
+    private static void readRows(PreparedStatement statement, Blackhole blackhole) throws SQLException {
+        ResultSet result = statement.executeQuery();
+        try {
+            while (result.next()) {
+                blackhole.consume(result.getLong(1));
+                blackhole.consume(result.getString(2));
+                blackhole.consume(result.getString(3));
+                blackhole.consume(result.getLong(4));
+                blackhole.consume(result.getInt(5));
+            }
+        } finally {
+            result.close();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.android.inventoryapp.data;
+
+import com.example.android.inventoryapp.data.ProductContract.ProductEntry;
+import com.example.android.inventoryapp.data.ProductContract.SupplierEntry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searches {@code rows} products by a word typed in the search box, once through the full-text
+ * index with the query ProductProvider runs for {@link ProductEntry#buildSearchUri}, and once
+ * with {@code LIKE '%word%'} over the names. A {@code common} word is part of one name in 20,
+ * a {@code rare} one of a single name.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+    // Same as the default search limit of ProductProvider.
+    private static final int LIMIT = 100;
+    private static final String[] BRANDS = {"Samsung", "Apple", "Google", "Huawei", "Nokia",
+            "Sony", "Motorola", "Lenovo", "Asus", "Acer", "Philips", "Bosch", "Siemens", "Canon",
+            "Nikon", "Garmin", "Logitech", "Dell", "Xiaomi", "Oneplus"};
+
+    private static final String LIST_COLUMNS = ProductEntry._ID + ", "
+            + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+            + ProductEntry.COLUMN_PRODUCT_PICTURE + ", "
+            + ProductEntry.COLUMN_PRODUCT_PRICE_CENTS + ", "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY;
+    // Binds the match of every column and the match of the name alone, which ranks first.
+    private static final String SQL_FTS = "SELECT " + LIST_COLUMNS + " FROM "
+            + ProductEntry.TABLE_NAME + " WHERE " + ProductSql.LIVE_PRODUCTS + " AND "
+            + ProductSql.SEARCH_MATCH + " ORDER BY " + ProductSql.SEARCH_MATCH + " DESC, "
+            + ProductEntry.SORT_BY_NAME + " LIMIT " + LIMIT;
+    private static final String SQL_LIKE = "SELECT " + LIST_COLUMNS + " FROM "
+            + ProductEntry.TABLE_NAME + " WHERE " + ProductSql.LIVE_PRODUCTS + " AND "
+            + ProductEntry.COLUMN_PRODUCT_NAME + " LIKE ? ORDER BY " + ProductEntry.SORT_BY_NAME
+            + " LIMIT " + LIMIT;
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"common", "rare"})
+    public String word;
+
+    private File file;
+    private Connection connection;
+    private PreparedStatement ftsSearch;
+    private PreparedStatement likeSearch;
+
+    @Setup(Level.Trial)
+    public void createDatabase() throws IOException, SQLException {
+        file = File.createTempFile("search", ".db");
+        connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+        JdbcDatabase database = new JdbcDatabase(connection);
+
+        connection.setAutoCommit(false);
+        ProductSchema.create(database);
+        database.execSQL("INSERT INTO " + SupplierEntry.TABLE_NAME + " ("
+                + SupplierEntry.COLUMN_SUPPLIER_NAME + ", " + SupplierEntry.COLUMN_SUPPLIER_EMAIL
+                + ") VALUES ('Supplier', 'supplier@example.com')");
+        PreparedStatement insert = connection.prepareStatement(ProductSql.INSERT_PRODUCT);
+        try {
+            for (int i = 0; i < rows; i++) {
+                insert.setString(1, "content://pictures/" + i);
+                insert.setString(2, BRANDS[i % BRANDS.length] + " model " + modelNumber(i));
+                insert.setLong(3, i * 100L + 99);
+                insert.setInt(4, i % 50);
+                insert.setLong(5, 1);
+                insert.setInt(6, 0);
+                insert.executeUpdate();
+            }
+        } finally {
+            insert.close();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+
+        // The prefix a user has typed so far.
+        String typed = word.equals("common") ? "sams" : modelNumber(rows / 2);
+        ftsSearch = connection.prepareStatement(SQL_FTS);
+        // Same as ProductProvider.buildMatchQuery() for a single word.
+        ftsSearch.setString(1, typed + "*");
+        ftsSearch.setString(2, ProductEntry.COLUMN_PRODUCT_NAME + ":" + typed + "*");
+        likeSearch = connection.prepareStatement(SQL_LIKE);
+        likeSearch.setString(1, "%" + typed + "%");
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDatabase() throws SQLException {
+        connection.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public void ftsMatch(Blackhole blackhole) throws SQLException {
+        readRows(ftsSearch, blackhole);
+    }
+
+    @Benchmark
+    public void likeScan(Blackhole blackhole) throws SQLException {
+        readRows(likeSearch, blackhole);
+    }
+
+    // A token no other name contains, so a rare word matches one product.
+    private static String modelNumber(int i) {
+        return "x" + Integer.toString(i, 36) + "q";
+    }
+
+    private static void readRows(PreparedStatement statement, Blackhole blackhole) throws SQLException {
+        ResultSet result = statement.executeQuery();
+        try {
+            while (result.next()) {
+                blackhole.consume(result.getLong(1));
+                blackhole.consume(result.getString(2));
+                blackhole.consume(result.getString(3));
+                blackhole.consume(result.getLong(4));
+                blackhole.consume(result.getInt(5));
+            }
+        } finally {
+            result.close();
+        }
+    }
+}